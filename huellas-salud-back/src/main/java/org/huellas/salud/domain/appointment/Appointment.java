@@ -20,6 +20,9 @@ import java.util.List;
 @AllArgsConstructor
 public class Appointment implements Serializable {
 
+    // Duracion asumida para servicios y citas registradas antes de que se almacenara la duracion
+    public static final int DEFAULT_DURATION_MINUTES = 30;
+
     @BsonProperty("idCita")
     @Schema(example = "faf32d41-65b2-431b-a468-0dbc6650ae47")
     @Null(message = "No debe enviar ningún valor en el campo idAppointment", groups = ValidationGroups.Post.class)
@@ -45,6 +48,12 @@ public class Appointment implements Serializable {
     @FutureOrPresent(message = "La fecha debe ser actual o futura", groups = ValidationGroups.Post.class)
     private LocalDateTime dateTime;
 
+    @BsonProperty("fechaHoraFin")
+    @Schema(example = "2025-12-05T16:41:27.34")
+    @Null(message = "No debe enviar ningún valor en el campo endDateTime, se calcula con la duracion de los servicios",
+            groups = ValidationGroups.Post.class)
+    private LocalDateTime endDateTime;
+
     @BsonProperty("estado")
     @Schema(example = "PENDIENTE")
     private AppointmentStatus status;
@@ -56,4 +65,8 @@ public class Appointment implements Serializable {
     @BsonProperty("idVeterinario")
     @Schema(example = "faf32d41-65b2-431b-a468-0dbc6650ae47")
     private String idVeterinarian;
-}
\ No newline at end of file
+
+    public LocalDateTime resolveEndDateTime() {
+        return endDateTime != null ? endDateTime : dateTime.plusMinutes(DEFAULT_DURATION_MINUTES);
+    }
+}
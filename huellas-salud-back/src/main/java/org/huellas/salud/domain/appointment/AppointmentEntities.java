@@ -0,0 +1,28 @@
+package org.huellas.salud.domain.appointment;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import org.huellas.salud.domain.pet.PetMsg;
+import org.huellas.salud.domain.service.ServiceMsg;
+import org.huellas.salud.domain.user.UserMsg;
+import org.huellas.salud.helper.availability.EffectiveDay;
+
+import java.util.Map;
+import java.util.Optional;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class AppointmentEntities {
+
+    private Optional<UserMsg> owner;
+
+    private Optional<UserMsg> veterinarian;
+
+    private Optional<PetMsg> pet;
+
+    private Map<String, ServiceMsg> services;
+
+    private EffectiveDay scheduleDay;
+}
@@ -0,0 +1,44 @@
+package org.huellas.salud.domain.appointment;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentEvent {
+
+    @Schema(example = "CREADA")
+    private AppointmentEventType type;
+
+    @Schema(example = "faf32d41-65b2-431b-a468-0dbc6650ae47")
+    private String idAppointment;
+
+    @Schema(example = "1234567890")
+    private String idVeterinarian;
+
+    // Veterinario que tenia la cita antes de reasignarla; nulo si no cambio
+    @Schema(example = "9876543210")
+    private String idPreviousVeterinarian;
+
+    @Schema(example = "1234567890")
+    private String idOwner;
+
+    @Schema(example = "2025-12-05T16:00:00")
+    private LocalDateTime dateTime;
+
+    @Schema(example = "2025-12-05T16:30:00")
+    private LocalDateTime endDateTime;
+
+    @Schema(example = "PENDIENTE")
+    private AppointmentStatus status;
+
+    @Schema(example = "2025-12-01T09:15:00")
+    private LocalDateTime occurredAt;
+}
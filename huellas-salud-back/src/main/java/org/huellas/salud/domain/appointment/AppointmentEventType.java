@@ -0,0 +1,19 @@
+package org.huellas.salud.domain.appointment;
+
+import lombok.Getter;
+
+@Getter
+public enum AppointmentEventType {
+    CREADA("Creada"),
+    ACTUALIZADA("Actualizada"),
+    CANCELADA("Cancelada"),
+    ELIMINADA("Eliminada"),
+    // Evento sin cita que se envia periodicamente para que los proxies no cierren las conexiones inactivas
+    LATIDO("Latido");
+
+    private final String value;
+
+    AppointmentEventType(String value) {
+        this.value = value;
+    }
+}
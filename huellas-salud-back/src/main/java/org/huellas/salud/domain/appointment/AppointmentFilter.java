@@ -0,0 +1,27 @@
+package org.huellas.salud.domain.appointment;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentFilter {
+
+    private AppointmentStatus status;
+
+    private LocalDateTime from;
+
+    private LocalDateTime to;
+
+    private String idVeterinarian;
+
+    private String idPet;
+
+    private String idOwner;
+}
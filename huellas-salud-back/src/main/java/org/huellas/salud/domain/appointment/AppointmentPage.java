@@ -0,0 +1,23 @@
+package org.huellas.salud.domain.appointment;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentPage {
+
+    private List<AppointmentMsg> appointments;
+
+    @Schema(example = "MjAyNS0xMi0wNVQxNjoxMTI3fDY1ZjFhMmIzYzRkNWU2ZjcwODE5MmEzYg")
+    private String nextCursor;
+
+    private boolean hasMore;
+}
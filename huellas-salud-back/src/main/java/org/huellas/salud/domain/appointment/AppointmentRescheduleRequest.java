@@ -0,0 +1,34 @@
+package org.huellas.salud.domain.appointment;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentRescheduleRequest {
+
+    @Schema(example = "1234567890")
+    @NotBlank(message = "Debe indicar el veterinario que no estara disponible")
+    private String idVeterinarian;
+
+    @Schema(example = "2025-12-05T00:00:00")
+    @NotNull(message = "Debe indicar el inicio del periodo de ausencia")
+    private LocalDateTime from;
+
+    @Schema(example = "2025-12-06T00:00:00")
+    @NotNull(message = "Debe indicar el fin del periodo de ausencia")
+    private LocalDateTime to;
+
+    @Schema(description = "Veterinario que recibe las citas. Si no se envia, las citas se mueven a los siguientes "
+            + "horarios libres del mismo veterinario despues del periodo de ausencia", example = "0987654321")
+    private String idTargetVeterinarian;
+}
@@ -0,0 +1,39 @@
+package org.huellas.salud.domain.appointment;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentRescheduleResult {
+
+    public enum Status { REPROGRAMADA, SIN_DISPONIBILIDAD, ERROR }
+
+    @Schema(example = "faf32d41-65b2-431b-a468-0dbc6650ae47")
+    private String idAppointment;
+
+    @Schema(example = "REPROGRAMADA")
+    private Status status;
+
+    @Schema(example = "1234567890")
+    private String previousVeterinarian;
+
+    @Schema(example = "2025-12-05T16:00:00")
+    private LocalDateTime previousDateTime;
+
+    @Schema(example = "0987654321")
+    private String newVeterinarian;
+
+    @Schema(example = "2025-12-05T16:00:00")
+    private LocalDateTime newDateTime;
+
+    @Schema(example = "No se encontro un horario libre en los siguientes 30 dias")
+    private String message;
+}
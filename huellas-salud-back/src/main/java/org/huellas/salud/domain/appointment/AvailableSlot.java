@@ -0,0 +1,25 @@
+package org.huellas.salud.domain.appointment;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailableSlot {
+
+    @Schema(example = "1013100931")
+    private String idVeterinarian;
+
+    @Schema(example = "Laura Gomez")
+    private String veterinarianName;
+
+    @Schema(example = "2025-12-05T16:00:00")
+    private LocalDateTime dateTime;
+}
@@ -0,0 +1,28 @@
+package org.huellas.salud.domain.appointment;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.codecs.pojo.annotations.BsonProperty;
+
+import java.time.LocalDateTime;
+
+/**
+ * Intervalo [inicio, fin) que una cita ocupa en la agenda de su veterinario.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservedInterval {
+
+    @BsonProperty("idCita")
+    private String idAppointment;
+
+    @BsonProperty("inicio")
+    private LocalDateTime start;
+
+    @BsonProperty("fin")
+    private LocalDateTime end;
+}
@@ -0,0 +1,45 @@
+package org.huellas.salud.domain.appointment;
+
+import io.quarkus.mongodb.panache.common.MongoEntity;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.codecs.pojo.annotations.BsonProperty;
+import org.bson.types.ObjectId;
+import org.huellas.salud.helper.utils.ConvertFormatJSON;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Citas reservadas de un veterinario en un dia. Hay un solo documento por veterinario y dia, de modo que la
+ * validacion de cruces y el registro del nuevo intervalo se hacen en una sola escritura atomica sobre el documento.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@MongoEntity(collection = "AgendaReservaMsg")
+public class SlotReservation {
+
+    private ObjectId id;
+
+    @BsonProperty("idVeterinario")
+    private String idVeterinarian;
+
+    @BsonProperty("fecha")
+    private LocalDate date;
+
+    @BsonProperty("reservas")
+    private List<ReservedInterval> reservations;
+
+    @BsonProperty("fechaExpiracion")
+    private LocalDateTime expirationDate;
+
+    @Override
+    public String toString() {
+        return ConvertFormatJSON.toJson(this);
+    }
+}
@@ -0,0 +1,45 @@
+package org.huellas.salud.domain.idempotency;
+
+import io.quarkus.mongodb.panache.common.MongoEntity;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.codecs.pojo.annotations.BsonId;
+import org.bson.codecs.pojo.annotations.BsonProperty;
+
+import java.time.LocalDateTime;
+
+/**
+ * Registro de una solicitud enviada con la cabecera {@code Idempotency-Key}. Mientras la solicitud se procesa queda
+ * EN_PROCESO; al terminar guarda la respuesta para devolverla tal cual a los reintentos. Un indice TTL sobre la
+ * fecha de creacion elimina los registros despues de 24 horas.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@MongoEntity(collection = "IdempotenciaMsg")
+public class IdempotencyRecord {
+
+    // operacion|usuario|llave
+    @BsonId
+    private String id;
+
+    // SHA-256 del cuerpo de la solicitud original
+    @BsonProperty("huella")
+    private String fingerprint;
+
+    @BsonProperty("estado")
+    private IdempotencyStatus status;
+
+    @BsonProperty("codigoRespuesta")
+    private Integer responseStatus;
+
+    @BsonProperty("respuesta")
+    private String responseBody;
+
+    // En UTC para que el indice TTL expire los registros a tiempo
+    @BsonProperty("fechaCreacion")
+    private LocalDateTime creationDate;
+}
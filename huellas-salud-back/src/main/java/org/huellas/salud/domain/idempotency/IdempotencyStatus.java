@@ -0,0 +1,6 @@
+package org.huellas.salud.domain.idempotency;
+
+public enum IdempotencyStatus {
+    EN_PROCESO,
+    COMPLETADA
+}
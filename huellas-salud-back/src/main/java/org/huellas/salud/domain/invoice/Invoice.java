@@ -22,10 +22,15 @@ import java.util.List;
 public class Invoice implements Serializable {
 
     @BsonProperty("idFactura")
-    @Schema(example = "1805b3a6-2994-4376-b712-27d3ae23ab5e")
+    @Schema(example = "FAC-0000000123")
     @Null(message = "No debe enviar ningún valor en el campo idInvoice", groups = ValidationGroups.Post.class)
     private String idInvoice;
 
+    @BsonProperty("numeroFactura")
+    @Schema(example = "123")
+    @Null(message = "No debe enviar ningún valor en el campo invoiceNumber", groups = ValidationGroups.Post.class)
+    private Long invoiceNumber;
+
     @BsonProperty("fecha")
     private LocalDateTime date;
 
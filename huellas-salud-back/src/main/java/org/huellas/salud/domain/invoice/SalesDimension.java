@@ -0,0 +1,18 @@
+package org.huellas.salud.domain.invoice;
+
+import lombok.Getter;
+
+@Getter
+public enum SalesDimension {
+    TOTAL("Total del dia"),
+    PRODUCTO("Producto"),
+    SERVICIO("Servicio"),
+    CLIENTE("Cliente"),
+    ESTADO("Estado de la factura");
+
+    private final String value;
+
+    SalesDimension(String value) {
+        this.value = value;
+    }
+}
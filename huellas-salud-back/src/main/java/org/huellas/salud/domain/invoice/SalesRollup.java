@@ -0,0 +1,59 @@
+package org.huellas.salud.domain.invoice;
+
+import io.quarkus.mongodb.panache.common.MongoEntity;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.codecs.pojo.annotations.BsonId;
+import org.bson.codecs.pojo.annotations.BsonProperty;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.huellas.salud.helper.utils.ConvertFormatJSON;
+
+import java.time.LocalDate;
+
+/**
+ * Acumulado diario de ventas para un valor de una dimension (un producto, un servicio, un cliente, un estado o el
+ * total del dia). Las facturas lo mantienen con {@code $inc} al crearse, editarse o eliminarse.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@MongoEntity(collection = "ResumenVentasMsg")
+public class SalesRollup {
+
+    // fecha|dimension|clave
+    @BsonId
+    @Schema(hidden = true)
+    private String id;
+
+    @BsonProperty("fecha")
+    @Schema(example = "2025-12-01")
+    private LocalDate date;
+
+    @BsonProperty("dimension")
+    @Schema(example = "PRODUCTO")
+    private SalesDimension dimension;
+
+    @BsonProperty("clave")
+    @Schema(example = "8b86d3bf-b1dd-482c-8fcf-042fb98bc60b")
+    private String key;
+
+    @BsonProperty("ingresos")
+    @Schema(example = "150000")
+    private double revenue;
+
+    @BsonProperty("unidades")
+    @Schema(example = "6")
+    private long units;
+
+    @BsonProperty("facturas")
+    @Schema(example = "3")
+    private long invoices;
+
+    @Override
+    public String toString() {
+        return ConvertFormatJSON.toJson(this);
+    }
+}
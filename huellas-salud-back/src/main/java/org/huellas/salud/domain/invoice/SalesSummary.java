@@ -0,0 +1,29 @@
+package org.huellas.salud.domain.invoice;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesSummary {
+
+    @Schema(example = "PRODUCTO")
+    private SalesDimension dimension;
+
+    @Schema(example = "8b86d3bf-b1dd-482c-8fcf-042fb98bc60b")
+    private String key;
+
+    @Schema(example = "1250000")
+    private double revenue;
+
+    @Schema(example = "48")
+    private long units;
+
+    @Schema(example = "21")
+    private long invoices;
+}
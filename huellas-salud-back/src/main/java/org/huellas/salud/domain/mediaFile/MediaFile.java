@@ -1,9 +1,11 @@
 package org.huellas.salud.domain.mediaFile;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.bson.codecs.pojo.annotations.BsonIgnore;
 import org.bson.codecs.pojo.annotations.BsonProperty;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 
@@ -33,7 +35,19 @@ public class MediaFile {
     @Schema(example = "image")
     private String fileType;
 
+    // En los listados no se envia el contenido, solo la url y el hash de la imagen
     @BsonProperty("Adjunto")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     @Schema(example = "UklGRvhiAABXRUJQVlA4IOxiAABwXgKdASpMBKMCPu10slQpv7")
     private String attachment;
+
+    // SHA-256 del contenido; cambia cada vez que se reemplaza la imagen
+    @BsonProperty("hash")
+    @Schema(example = "3a7bd3e2360a3d29eea436fcfb7e44c735d117c42d1c1835420b6b9942dd4f1b")
+    private String hash;
+
+    @BsonIgnore
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(example = "/internal/media/PRODUCT/6785666d-a30b-4bac-beae-95e2ca308931?v=3a7bd3e2360a3d29")
+    private String url;
 }
@@ -0,0 +1,21 @@
+package org.huellas.salud.domain.product;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetCount {
+
+    // Valor de la faceta; en los rangos de precio es el limite inferior del rango
+    @Schema(example = "COMIDA")
+    private String value;
+
+    @Schema(example = "12")
+    private long count;
+}
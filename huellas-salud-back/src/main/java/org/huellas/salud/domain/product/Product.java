@@ -1,6 +1,7 @@
 package org.huellas.salud.domain.product;
 
 import jakarta.validation.constraints.*;
+import jakarta.validation.groups.Default;
 import java.io.Serializable;
 import java.time.LocalDate;
 import lombok.AllArgsConstructor;
@@ -24,7 +25,8 @@ public class Product implements Serializable {
     @BsonProperty("nombre")
     @Schema(example = "Comida Perro Purina")
     @NotBlank(message = "El campo name no puede ser nulo o vacío")
-    @Size(min = 3, max = 40, message = "El campo name debe contener entre 3 y 40 caracteres")
+    @Size(min = 3, max = 40, message = "El campo name debe contener entre 3 y 40 caracteres",
+            groups = {Default.class, ValidationGroups.Patch.class})
     private String name;
 
     @BsonProperty("categoria")
@@ -40,13 +42,15 @@ public class Product implements Serializable {
     @BsonProperty("descripcion")
     @Schema(example = "Dog Chow Alta Proteína para perros Adultos 7.5 Kg")
     @NotBlank(message = "El valor del campo description no puede ser nulo o vacío")
-    @Size(min = 10, max = 200, message = "El campo description debe contener entre 10 y 200 caracteres")
+    @Size(min = 10, max = 200, message = "El campo description debe contener entre 10 y 200 caracteres",
+            groups = {Default.class, ValidationGroups.Patch.class})
     private String description;
 
     @BsonProperty("precio")
     @Schema(example = "57000")
     @NotNull(message = "El valor del campo price no debe ser nulo")
-    @Positive(message = "El valor del campo precio debe ser mayor a 0")
+    @Positive(message = "El valor del campo precio debe ser mayor a 0",
+            groups = {Default.class, ValidationGroups.Patch.class})
     private Double price;
 
     @BsonProperty("unidadMedida")
@@ -63,7 +67,8 @@ public class Product implements Serializable {
     @BsonProperty("marca")
     @Schema(example = "Purina Pro Plan")
     @NotBlank(message = "El valor del campo brand no puede ser nulo o vacío")
-    @Size(min = 4, max = 60, message = "El campo brand debe contener entre 4 y 60 caracteres")
+    @Size(min = 4, max = 60, message = "El campo brand debe contener entre 4 y 60 caracteres",
+            groups = {Default.class, ValidationGroups.Patch.class})
     private String brand;
 
     @BsonProperty("fechaVencimiento")
@@ -72,8 +77,10 @@ public class Product implements Serializable {
 
     @BsonProperty("codigoBarras")
     @Schema(example = "8412345678905")
-    @NotBlank(message = "El valor del campo barcode no puede ser nulo o vacío")
-    @Size(min = 6, max = 20, message = "El campo barcode debe contener entre 6 y 20 caracteres")
+    @NotBlank(message = "El valor del campo barcode no puede ser nulo o vacío",
+            groups = {Default.class, ValidationGroups.Patch.class})
+    @Size(min = 6, max = 20, message = "El campo barcode debe contener entre 6 y 20 caracteres",
+            groups = {Default.class, ValidationGroups.Patch.class})
     private String barcode;
 
     @BsonProperty("activo")
@@ -0,0 +1,63 @@
+package org.huellas.salud.domain.product;
+
+import io.quarkus.mongodb.panache.common.MongoEntity;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.codecs.pojo.annotations.BsonId;
+import org.bson.codecs.pojo.annotations.BsonProperty;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Alerta de inventario de un producto. Hay a lo sumo una por producto y tipo: mientras la condicion se mantiene la
+ * alerta sigue activa y solo se actualizan sus datos; cuando desaparece se marca como resuelta.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@MongoEntity(collection = "AlertaProductoMsg")
+public class ProductAlert {
+
+    // idProducto|tipo
+    @BsonId
+    @Schema(hidden = true)
+    private String id;
+
+    @BsonProperty("idProducto")
+    @Schema(example = "6785666d-a30b-4bac-beae-95e2ca308931")
+    private String idProduct;
+
+    @BsonProperty("nombreProducto")
+    @Schema(example = "Comida Perro Purina")
+    private String productName;
+
+    @BsonProperty("tipo")
+    @Schema(example = "STOCK_BAJO")
+    private ProductAlertType type;
+
+    @BsonProperty("cantidadDisponible")
+    @Schema(example = "3")
+    private Integer quantityAvailable;
+
+    @BsonProperty("fechaVencimiento")
+    @Schema(example = "2025-02-27")
+    private LocalDate expirationDate;
+
+    @BsonProperty("activa")
+    private boolean active;
+
+    // Indica si la alerta ya se incluyo en un resumen enviado por correo
+    @BsonProperty("notificada")
+    private boolean notified;
+
+    @BsonProperty("fechaDeteccion")
+    private LocalDateTime detectedAt;
+
+    @BsonProperty("fechaResolucion")
+    private LocalDateTime resolvedAt;
+}
@@ -0,0 +1,16 @@
+package org.huellas.salud.domain.product;
+
+import lombok.Getter;
+
+@Getter
+public enum ProductAlertType {
+    STOCK_BAJO("Stock bajo"),
+    POR_VENCER("Próximo a vencer"),
+    VENCIDO("Vencido");
+
+    private final String value;
+
+    ProductAlertType(String value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,24 @@
+package org.huellas.salud.domain.product;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductImportError {
+
+    // Numero de registro en el archivo, contando el encabezado como el registro 1
+    @Schema(example = "14")
+    private long row;
+
+    @Schema(example = "8412345678905")
+    private String barcode;
+
+    @Schema(example = "El campo precio debe ser mayor a 0")
+    private String message;
+}
@@ -0,0 +1,36 @@
+package org.huellas.salud.domain.product;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resumen de una carga masiva de productos. Los conteos incluyen todas las filas del archivo; el detalle de errores
+ * se limita a las primeras filas rechazadas para no devolver una respuesta del tamaño del archivo.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductImportResult {
+
+    @Schema(example = "250")
+    private long totalRows;
+
+    @Schema(example = "240")
+    private long inserted;
+
+    @Schema(example = "6")
+    private long updated;
+
+    @Schema(example = "4")
+    private long rejected;
+
+    @Builder.Default
+    private List<ProductImportError> errors = new ArrayList<>();
+}
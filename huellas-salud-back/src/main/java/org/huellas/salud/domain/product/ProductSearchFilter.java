@@ -0,0 +1,23 @@
+package org.huellas.salud.domain.product;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSearchFilter {
+
+    private String text;
+
+    private String category;
+
+    private String animalType;
+
+    private Double minPrice;
+
+    private Double maxPrice;
+}
@@ -0,0 +1,37 @@
+package org.huellas.salud.domain.product;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * Pagina de resultados del catalogo junto con el conteo de productos por categoria, tipo de animal y rango de
+ * precio. Los conteos se calculan sobre los productos que cumplen todos los filtros de la busqueda.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSearchResult {
+
+    private List<Product> products;
+
+    @Schema(example = "37")
+    private long total;
+
+    @Schema(example = "0")
+    private int page;
+
+    @Schema(example = "20")
+    private int size;
+
+    private List<FacetCount> categories;
+
+    private List<FacetCount> animalTypes;
+
+    private List<FacetCount> priceRanges;
+}
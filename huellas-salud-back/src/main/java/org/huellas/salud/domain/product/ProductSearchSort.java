@@ -0,0 +1,8 @@
+package org.huellas.salud.domain.product;
+
+public enum ProductSearchSort {
+    RELEVANCIA,
+    NOMBRE,
+    PRECIO_ASC,
+    PRECIO_DESC
+}
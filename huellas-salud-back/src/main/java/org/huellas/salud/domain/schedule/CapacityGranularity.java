@@ -0,0 +1,6 @@
+package org.huellas.salud.domain.schedule;
+
+public enum CapacityGranularity {
+    DIA,
+    SEMANA
+}
@@ -0,0 +1,65 @@
+package org.huellas.salud.domain.schedule;
+
+import jakarta.validation.constraints.*;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.codecs.pojo.annotations.BsonProperty;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.huellas.salud.helper.validators.ValidationGroups;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleException implements Serializable {
+
+    @BsonProperty("idExcepcion")
+    @Schema(example = "faf32d41-65b2-431b-a468-0dbc6650ae47")
+    @Null(message = "No debe enviar ningún valor en el campo idException", groups = ValidationGroups.Post.class)
+    private String idException;
+
+    @BsonProperty("idVeterinario")
+    @Schema(description = "Si no se envia, la excepcion aplica a toda la clinica (festivos)", example = "1013100931")
+    private String idVeterinarian;
+
+    @BsonProperty("tipo")
+    @Schema(example = "VACACIONES")
+    @NotNull(message = "Debe indicar el tipo de excepcion")
+    private ScheduleExceptionType type;
+
+    @BsonProperty("fechaInicio")
+    @Schema(example = "2025-12-24")
+    @NotNull(message = "Debe indicar la fecha de inicio de la excepcion")
+    private LocalDate startDate;
+
+    @BsonProperty("fechaFin")
+    @Schema(example = "2025-12-31")
+    @NotNull(message = "Debe indicar la fecha de fin de la excepcion")
+    private LocalDate endDate;
+
+    @BsonProperty("horaInicio")
+    @Schema(description = "Solo para HORARIO_ESPECIAL", example = "08:00")
+    private LocalTime startTime;
+
+    @BsonProperty("horaFin")
+    @Schema(description = "Solo para HORARIO_ESPECIAL", example = "12:00")
+    private LocalTime endTime;
+
+    @BsonProperty("inicioAlmuerzo")
+    @Schema(example = "12:00")
+    private LocalTime lunchStart;
+
+    @BsonProperty("finAlmuerzo")
+    @Schema(example = "13:00")
+    private LocalTime lunchEnd;
+
+    @BsonProperty("motivo")
+    @Schema(example = "Navidad")
+    @Size(max = 120, message = "El motivo no puede superar los 120 caracteres")
+    private String reason;
+}
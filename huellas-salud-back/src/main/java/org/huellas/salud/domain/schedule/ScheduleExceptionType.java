@@ -0,0 +1,19 @@
+package org.huellas.salud.domain.schedule;
+
+import lombok.Getter;
+
+@Getter
+public enum ScheduleExceptionType {
+    CIERRE("Cierre", true),
+    VACACIONES("Vacaciones", true),
+    FESTIVO("Festivo", true),
+    HORARIO_ESPECIAL("Horario especial", false);
+
+    private final String value;
+    private final boolean closesDay;
+
+    ScheduleExceptionType(String value, boolean closesDay) {
+        this.value = value;
+        this.closesDay = closesDay;
+    }
+}
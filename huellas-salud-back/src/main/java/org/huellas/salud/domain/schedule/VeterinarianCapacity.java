@@ -0,0 +1,37 @@
+package org.huellas.salud.domain.schedule;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VeterinarianCapacity {
+
+    @Schema(example = "1013100931")
+    private String idVeterinarian;
+
+    @Schema(example = "Laura Gomez")
+    private String veterinarianName;
+
+    @Schema(description = "Dia del reporte o lunes de la semana cuando se agrupa por semana", example = "2025-12-01")
+    private LocalDate date;
+
+    @Schema(example = "480")
+    private long scheduledMinutes;
+
+    @Schema(example = "360")
+    private long bookedMinutes;
+
+    @Schema(example = "9")
+    private int appointments;
+
+    @Schema(description = "Porcentaje de los minutos de atencion que estan reservados", example = "75.0")
+    private double utilization;
+}
@@ -0,0 +1,27 @@
+package org.huellas.salud.domain.sequence;
+
+import io.quarkus.mongodb.panache.common.MongoEntity;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.codecs.pojo.annotations.BsonId;
+import org.bson.codecs.pojo.annotations.BsonProperty;
+
+/**
+ * Contador de una secuencia (por ejemplo los numeros de factura). Guarda el ultimo valor reservado por cualquier
+ * instancia de la aplicacion; cada instancia reserva bloques de valores incrementandolo.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@MongoEntity(collection = "SecuenciaMsg")
+public class Sequence {
+
+    @BsonId
+    private String name;
+
+    @BsonProperty("valor")
+    private long value;
+}
@@ -61,6 +61,12 @@ public class Service implements Serializable {
     @Schema(example = "true")
     private boolean priceByWeight;
 
+    @BsonProperty("duracionMinutos")
+    @Schema(example = "30")
+    @Positive(message = "El valor del campo duracion debe ser mayor a 0")
+    @Max(value = 600, message = "El valor del campo duracion no puede superar los 600 minutos")
+    private Integer durationMinutes;
+
     @BsonProperty("estado")
     @NotNull(message = "El valor del campo state no puede ser nulo o vacío")
     @AssertTrue(message = "El valor del campo state debe ser true", groups = ValidationGroups.Post.class)
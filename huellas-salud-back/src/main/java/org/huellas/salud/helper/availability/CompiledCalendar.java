@@ -0,0 +1,69 @@
+package org.huellas.salud.helper.availability;
+
+import org.huellas.salud.domain.schedule.ScheduleException;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Calendario efectivo de un veterinario precompilado para una ventana de dias a partir de {@code startDate}. Es
+ * inmutable: los cambios de excepciones generan una copia en la que solo se recalculan los dias afectados.
+ */
+public final class CompiledCalendar {
+
+    private final LocalDate startDate;
+    private final EffectiveDay[] days;
+
+    private CompiledCalendar(LocalDate startDate, EffectiveDay[] days) {
+        this.startDate = startDate;
+        this.days = days;
+    }
+
+    public static CompiledCalendar compile(LocalDate startDate, int dayCount, CompiledWeek week,
+                                           Collection<ScheduleException> exceptions) {
+
+        EffectiveDay[] days = new EffectiveDay[dayCount];
+
+        for (int i = 0; i < dayCount; i++) {
+            days[i] = EffectiveDay.resolve(startDate.plusDays(i), week, exceptions);
+        }
+        return new CompiledCalendar(startDate, days);
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return startDate.plusDays(days.length - 1L);
+    }
+
+    public boolean covers(LocalDate date) {
+        long index = ChronoUnit.DAYS.between(startDate, date);
+        return index >= 0 && index < days.length;
+    }
+
+    public EffectiveDay getDay(LocalDate date) {
+        return days[(int) ChronoUnit.DAYS.between(startDate, date)];
+    }
+
+    /**
+     * Copia del calendario con los dias entre {@code from} y {@code to} recalculados. Las excepciones recibidas
+     * deben ser todas las que se cruzan con ese rango.
+     */
+    public CompiledCalendar withDays(LocalDate from, LocalDate to, CompiledWeek week,
+                                     Collection<ScheduleException> exceptions) {
+
+        EffectiveDay[] copy = Arrays.copyOf(days, days.length);
+
+        int first = (int) Math.max(0, ChronoUnit.DAYS.between(startDate, from));
+        int last = (int) Math.min(days.length - 1L, ChronoUnit.DAYS.between(startDate, to));
+
+        for (int i = first; i <= last; i++) {
+            copy[i] = EffectiveDay.resolve(startDate.plusDays(i), week, exceptions);
+        }
+        return new CompiledCalendar(startDate, copy);
+    }
+}
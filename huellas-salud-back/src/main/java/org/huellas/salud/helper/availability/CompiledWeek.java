@@ -0,0 +1,82 @@
+package org.huellas.salud.helper.availability;
+
+import org.huellas.salud.domain.schedule.Schedule;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.Collection;
+
+/**
+ * Horario semanal de un veterinario compilado a minutos desde la medianoche, indexado por
+ * {@code DayOfWeek.ordinal()}. Es inmutable, por lo que se puede compartir desde cache entre hilos.
+ */
+public final class CompiledWeek {
+
+    public static final int NONE = -1;
+
+    private static final byte NO_SCHEDULE = 0;
+    private static final byte INACTIVE = 1;
+    private static final byte ACTIVE = 2;
+
+    private final byte[] states = new byte[7];
+    private final int[] startMinutes = new int[7];
+    private final int[] endMinutes = new int[7];
+    private final int[] lunchStartMinutes = new int[7];
+    private final int[] lunchEndMinutes = new int[7];
+
+    private CompiledWeek() {
+    }
+
+    public static CompiledWeek compile(Collection<Schedule> schedules) {
+
+        CompiledWeek week = new CompiledWeek();
+
+        for (Schedule schedule : schedules) {
+
+            int day = schedule.getDayOfWeek().ordinal();
+
+            // Si existieran dos horarios para el mismo dia se conserva el activo, igual que al validar la cita
+            if (week.states[day] == ACTIVE) continue;
+
+            week.states[day] = schedule.isActive() ? ACTIVE : INACTIVE;
+            week.startMinutes[day] = toMinute(schedule.getStartTime());
+            week.endMinutes[day] = toMinute(schedule.getEndTime());
+            week.lunchStartMinutes[day] = schedule.getLunchStart() != null && schedule.getLunchEnd() != null
+                    ? toMinute(schedule.getLunchStart()) : NONE;
+            week.lunchEndMinutes[day] = week.lunchStartMinutes[day] != NONE ? toMinute(schedule.getLunchEnd()) : NONE;
+        }
+        return week;
+    }
+
+    public boolean hasSchedule(DayOfWeek day) {
+        return states[day.ordinal()] != NO_SCHEDULE;
+    }
+
+    public boolean isActive(DayOfWeek day) {
+        return states[day.ordinal()] == ACTIVE;
+    }
+
+    public int getStartMinute(DayOfWeek day) {
+        return startMinutes[day.ordinal()];
+    }
+
+    public int getEndMinute(DayOfWeek day) {
+        return endMinutes[day.ordinal()];
+    }
+
+    public int getLunchStartMinute(DayOfWeek day) {
+        return lunchStartMinutes[day.ordinal()];
+    }
+
+    public int getLunchEndMinute(DayOfWeek day) {
+        return lunchEndMinutes[day.ordinal()];
+    }
+
+    public static LocalTime toTime(int minute) {
+        return LocalTime.ofSecondOfDay(minute * 60L);
+    }
+
+    private static int toMinute(LocalTime time) {
+        return time.toSecondOfDay() / 60;
+    }
+}
@@ -0,0 +1,150 @@
+package org.huellas.salud.helper.availability;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Agenda de un veterinario para un dia concreto. El horario laboral se representa como un mapa de bits donde el
+ * bit i corresponde al bloque que inicia en {@code originMinute + i * SLOT_MINUTES} y las citas se guardan en un
+ * {@link IntervalIndex} con su duracion real, de modo que citas de distinta longitud se verifican con una busqueda
+ * binaria y no con una duracion fija.
+ */
+public final class DaySlots {
+
+    public static final int SLOT_MINUTES = 30;
+
+    public enum Status { OPEN, NO_SCHEDULE, INACTIVE, CLOSED }
+
+    private final Status status;
+    private final int originMinute;
+    private final int slotCount;
+    private final long workingMask;
+    private final IntervalIndex bookings = new IntervalIndex();
+
+    private DaySlots(Status status, int originMinute, int slotCount, long workingMask) {
+        this.status = status;
+        this.originMinute = originMinute;
+        this.slotCount = slotCount;
+        this.workingMask = workingMask;
+    }
+
+    public static DaySlots closed(Status status) {
+        return new DaySlots(status, 0, 0, 0L);
+    }
+
+    public static DaySlots open(LocalTime start, LocalTime end, LocalTime lunchStart, LocalTime lunchEnd) {
+
+        boolean hasLunch = lunchStart != null && lunchEnd != null;
+
+        return open(toMinute(start), toMinute(end), hasLunch ? toMinute(lunchStart) : CompiledWeek.NONE,
+                hasLunch ? toMinute(lunchEnd) : CompiledWeek.NONE);
+    }
+
+    /**
+     * Crea la agenda a partir de minutos desde la medianoche; {@link CompiledWeek#NONE} indica que no hay almuerzo.
+     */
+    public static DaySlots open(int startMinute, int endMinute, int lunchStartMinute, int lunchEndMinute) {
+
+        int slotCount = Math.max(0, (endMinute - startMinute) / SLOT_MINUTES);
+        long workingMask = firstBits(slotCount);
+
+        if (lunchStartMinute != CompiledWeek.NONE && lunchEndMinute != CompiledWeek.NONE) {
+            workingMask &= ~rangeMask(startMinute, slotCount, lunchStartMinute, lunchEndMinute);
+        }
+
+        return new DaySlots(Status.OPEN, startMinute, slotCount, workingMask);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Ocupa la agenda con una cita. Los minutos se cuentan desde la medianoche de este dia, por lo que una cita que
+     * termina al dia siguiente tiene un fin mayor a 1440 y una que inicio el dia anterior tiene un inicio negativo.
+     */
+    public synchronized void book(String idAppointment, int startMinute, int endMinute) {
+
+        if (status != Status.OPEN) return;
+
+        bookings.remove(idAppointment);
+        bookings.add(idAppointment, startMinute, endMinute);
+    }
+
+    public synchronized boolean release(String idAppointment) {
+        return bookings.remove(idAppointment);
+    }
+
+    public synchronized boolean overlaps(int startMinute, int endMinute, String excludedAppointment) {
+        return bookings.overlaps(startMinute, endMinute, excludedAppointment);
+    }
+
+    /**
+     * Horas de inicio en las que cabe una cita de {@code durationMinutes} sin salir del horario laboral, sin cruzar
+     * el almuerzo y sin cruzarse con otra cita.
+     */
+    public synchronized List<String> availableSlots(int durationMinutes) {
+
+        List<String> slots = new ArrayList<>();
+
+        for (int i = nextFreeSlot(0, durationMinutes); i >= 0; i = nextFreeSlot(i + 1, durationMinutes)) {
+            slots.add(LocalTime.ofSecondOfDay((originMinute + (long) i * SLOT_MINUTES) * 60L).toString());
+        }
+        return slots;
+    }
+
+    /**
+     * Primera hora disponible para una cita de {@code durationMinutes} que no inicie antes de {@code notBefore}.
+     */
+    public synchronized Optional<LocalTime> firstAvailableSlot(LocalTime notBefore, int durationMinutes) {
+
+        int firstSlot = Math.max(0, -Math.floorDiv(originMinute - toMinute(notBefore), SLOT_MINUTES));
+        int slot = nextFreeSlot(firstSlot, durationMinutes);
+
+        return slot < 0 ? Optional.empty()
+                : Optional.of(LocalTime.ofSecondOfDay((originMinute + (long) slot * SLOT_MINUTES) * 60L));
+    }
+
+    private int nextFreeSlot(int fromSlot, int durationMinutes) {
+
+        int slotsNeeded = Math.max(1, -Math.floorDiv(-durationMinutes, SLOT_MINUTES));
+
+        if (slotsNeeded > slotCount) return -1;
+
+        long needed = firstBits(slotsNeeded);
+
+        for (int i = fromSlot; i + slotsNeeded <= slotCount; i++) {
+
+            if ((workingMask >>> i & needed) != needed) continue;
+
+            int slotStart = originMinute + i * SLOT_MINUTES;
+
+            if (!bookings.overlaps(slotStart, slotStart + durationMinutes, null)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long firstBits(int count) {
+        return count == 0 ? 0L : -1L >>> (Long.SIZE - count);
+    }
+
+    private static long rangeMask(int originMinute, int slotCount, int fromMinute, int toMinute) {
+
+        long mask = 0L;
+        for (int i = 0; i < slotCount; i++) {
+            int slotStart = originMinute + i * SLOT_MINUTES;
+            if (slotStart < toMinute && slotStart + SLOT_MINUTES > fromMinute) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    private static int toMinute(LocalTime time) {
+        return time.toSecondOfDay() / 60;
+    }
+}
@@ -0,0 +1,122 @@
+package org.huellas.salud.helper.availability;
+
+import org.huellas.salud.domain.schedule.ScheduleException;
+import org.huellas.salud.domain.schedule.ScheduleExceptionType;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collection;
+
+/**
+ * Horario efectivo de un veterinario en una fecha concreta: el horario semanal con las excepciones aplicadas. Los
+ * cierres (festivos, vacaciones, cierres) prevalecen sobre los horarios especiales y estos sobre el horario semanal.
+ */
+public final class EffectiveDay {
+
+    private final DaySlots.Status status;
+    private final int startMinute;
+    private final int endMinute;
+    private final int lunchStartMinute;
+    private final int lunchEndMinute;
+    private final String reason;
+
+    private EffectiveDay(DaySlots.Status status, int startMinute, int endMinute, int lunchStartMinute,
+                         int lunchEndMinute, String reason) {
+        this.status = status;
+        this.startMinute = startMinute;
+        this.endMinute = endMinute;
+        this.lunchStartMinute = lunchStartMinute;
+        this.lunchEndMinute = lunchEndMinute;
+        this.reason = reason;
+    }
+
+    public static EffectiveDay resolve(LocalDate date, CompiledWeek week, Collection<ScheduleException> exceptions) {
+
+        ScheduleException specialHours = null;
+
+        for (ScheduleException exception : exceptions) {
+
+            if (date.isBefore(exception.getStartDate()) || date.isAfter(exception.getEndDate())) continue;
+
+            if (exception.getType().isClosesDay()) {
+                return new EffectiveDay(DaySlots.Status.CLOSED, 0, 0, CompiledWeek.NONE, CompiledWeek.NONE,
+                        exception.getReason() != null ? exception.getReason() : exception.getType().getValue());
+            }
+
+            // El horario especial del veterinario prevalece sobre uno general de la clinica
+            if (exception.getType() == ScheduleExceptionType.HORARIO_ESPECIAL
+                    && (specialHours == null || exception.getIdVeterinarian() != null)) {
+                specialHours = exception;
+            }
+        }
+
+        if (specialHours != null) {
+
+            boolean hasLunch = specialHours.getLunchStart() != null && specialHours.getLunchEnd() != null;
+
+            return new EffectiveDay(DaySlots.Status.OPEN, toMinute(specialHours.getStartTime()),
+                    toMinute(specialHours.getEndTime()),
+                    hasLunch ? toMinute(specialHours.getLunchStart()) : CompiledWeek.NONE,
+                    hasLunch ? toMinute(specialHours.getLunchEnd()) : CompiledWeek.NONE, specialHours.getReason());
+        }
+
+        DayOfWeek day = date.getDayOfWeek();
+
+        if (!week.hasSchedule(day)) {
+            return new EffectiveDay(DaySlots.Status.NO_SCHEDULE, 0, 0, CompiledWeek.NONE, CompiledWeek.NONE, null);
+        }
+
+        if (!week.isActive(day)) {
+            return new EffectiveDay(DaySlots.Status.INACTIVE, 0, 0, CompiledWeek.NONE, CompiledWeek.NONE, null);
+        }
+
+        return new EffectiveDay(DaySlots.Status.OPEN, week.getStartMinute(day), week.getEndMinute(day),
+                week.getLunchStartMinute(day), week.getLunchEndMinute(day), null);
+    }
+
+    public DaySlots.Status getStatus() {
+        return status;
+    }
+
+    public int getStartMinute() {
+        return startMinute;
+    }
+
+    public int getEndMinute() {
+        return endMinute;
+    }
+
+    public int getLunchStartMinute() {
+        return lunchStartMinute;
+    }
+
+    public int getLunchEndMinute() {
+        return lunchEndMinute;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * Minutos de atencion del dia descontando el almuerzo. Los dias sin atencion tienen cero minutos.
+     */
+    public int getScheduledMinutes() {
+
+        if (status != DaySlots.Status.OPEN) return 0;
+
+        int lunch = lunchStartMinute == CompiledWeek.NONE ? 0 : lunchEndMinute - lunchStartMinute;
+        return endMinute - startMinute - lunch;
+    }
+
+    public DaySlots toDaySlots() {
+        return status == DaySlots.Status.OPEN
+                ? DaySlots.open(startMinute, endMinute, lunchStartMinute, lunchEndMinute)
+                : DaySlots.closed(status);
+    }
+
+    private static int toMinute(LocalTime time) {
+        return time.toSecondOfDay() / 60;
+    }
+}
@@ -0,0 +1,91 @@
+package org.huellas.salud.helper.availability;
+
+import java.util.Arrays;
+
+/**
+ * Intervalos [inicio, fin) en minutos del dia ordenados por inicio. Ademas del arreglo de finales se mantiene el
+ * maximo acumulado de los finales, lo que permite resolver si un rango se cruza con alguna cita mediante una
+ * busqueda binaria aun cuando existan citas historicas solapadas entre si.
+ */
+public final class IntervalIndex {
+
+    private int size;
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private int[] maxEnds = new int[8];
+    private String[] ids = new String[8];
+
+    public void add(String id, int start, int end) {
+
+        if (size == starts.length) {
+            int capacity = size * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            maxEnds = Arrays.copyOf(maxEnds, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+
+        int position = lastStartBefore(start + 1) + 1;
+
+        System.arraycopy(starts, position, starts, position + 1, size - position);
+        System.arraycopy(ends, position, ends, position + 1, size - position);
+        System.arraycopy(ids, position, ids, position + 1, size - position);
+
+        starts[position] = start;
+        ends[position] = end;
+        ids[position] = id;
+        size++;
+
+        rebuildMaxEnds(position);
+    }
+
+    public boolean remove(String id) {
+
+        for (int i = 0; i < size; i++) {
+            if (ids[i].equals(id)) {
+                System.arraycopy(starts, i + 1, starts, i, size - i - 1);
+                System.arraycopy(ends, i + 1, ends, i, size - i - 1);
+                System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+                ids[--size] = null;
+                rebuildMaxEnds(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean overlaps(int start, int end, String excludedId) {
+
+        for (int i = lastStartBefore(end); i >= 0 && maxEnds[i] > start; i--) {
+            if (ends[i] > start && !ids[i].equals(excludedId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indice del ultimo intervalo cuyo inicio es menor que {@code minute}, o -1 si no existe.
+     */
+    private int lastStartBefore(int minute) {
+
+        int low = 0;
+        int high = size - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (starts[middle] < minute) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    private void rebuildMaxEnds(int from) {
+        for (int i = from; i < size; i++) {
+            maxEnds[i] = i == 0 ? ends[i] : Math.max(maxEnds[i - 1], ends[i]);
+        }
+    }
+}
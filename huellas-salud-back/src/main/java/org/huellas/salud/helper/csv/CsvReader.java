@@ -0,0 +1,100 @@
+package org.huellas.salud.helper.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lector de CSV (RFC 4180) que entrega un registro a la vez, de modo que un archivo se puede procesar sin cargarlo
+ * completo en memoria. Acepta campos entre comillas con separadores o saltos de linea, y finales de linea CRLF o LF.
+ */
+public class CsvReader implements Closeable {
+
+    private static final char SEPARATOR = ',';
+    private static final char BOM = '\uFEFF';
+
+    private final Reader reader;
+
+    private int pending = -2;
+    private long recordNumber;
+
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @return los campos del siguiente registro, o {@code null} si ya no hay mas registros
+     */
+    public List<String> readRecord() throws IOException {
+
+        int current = next();
+
+        if (current == -1) return null;
+        if (recordNumber == 0 && current == BOM) current = next();
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        while (true) {
+            if (quoted) {
+                if (current == -1) break;
+                if (current == '"') {
+                    int following = next();
+                    if (following == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        current = following;
+                        continue;
+                    }
+                } else {
+                    field.append((char) current);
+                }
+            } else if (current == -1 || current == '\n') {
+                break;
+            } else if (current == '\r') {
+                int following = next();
+                if (following != '\n') pending = following;
+                break;
+            } else if (current == SEPARATOR) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (current == '"' && field.isEmpty()) {
+                quoted = true;
+            } else {
+                field.append((char) current);
+            }
+            current = next();
+        }
+
+        fields.add(field.toString());
+        recordNumber++;
+
+        return fields;
+    }
+
+    /**
+     * Numero del ultimo registro leido, contando el encabezado como el registro 1.
+     */
+    public long getRecordNumber() {
+        return recordNumber;
+    }
+
+    private int next() throws IOException {
+
+        if (pending != -2) {
+            int value = pending;
+            pending = -2;
+            return value;
+        }
+        return reader.read();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,66 @@
+package org.huellas.salud.helper.export;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Escritor de CSV (RFC 4180) sobre la respuesta HTTP. Cada fila se escribe apenas se recibe, por lo que la memoria
+ * usada no depende de la cantidad de filas exportadas. Los textos que una hoja de calculo interpretaria como formula
+ * se escriben con una comilla simple al inicio.
+ */
+public class CsvWriter implements Closeable {
+
+    private static final char SEPARATOR = ',';
+
+    private final Writer writer;
+
+    public CsvWriter(OutputStream output) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+    }
+
+    public void writeRow(Object... values) throws IOException {
+
+        for (int index = 0; index < values.length; index++) {
+            if (index > 0) writer.write(SEPARATOR);
+            writeValue(values[index]);
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeValue(Object value) throws IOException {
+
+        if (value == null) return;
+
+        // Los numeros se escriben tal cual para que los negativos sigan siendo numeros en la hoja de calculo
+        String text = value instanceof Number ? value.toString() : escapeFormula(value.toString());
+
+        if (text.indexOf(SEPARATOR) < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            writer.write(text);
+            return;
+        }
+
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static String escapeFormula(String text) {
+
+        if (text.isEmpty()) return text;
+
+        char first = text.charAt(0);
+
+        return first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r'
+                ? "'" + text : text;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,23 @@
+package org.huellas.salud.helper.filters;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * Por defecto ninguna respuesta del API se guarda en cache. Las respuestas que definen su propia politica (las
+ * imagenes, que se sirven con ETag y url versionada) la conservan.
+ */
+@Provider
+public class CacheControlFilter implements ContainerResponseFilter {
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+
+        if (!responseContext.getHeaders().containsKey(HttpHeaders.CACHE_CONTROL)) {
+            responseContext.getHeaders().putSingle(HttpHeaders.CACHE_CONTROL, "no-store");
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.huellas.salud.helper.pricing;
+
+import java.util.Locale;
+import java.util.OptionalDouble;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Normaliza el peso de la mascota, que se guarda como texto libre ("12", "12.5 kg", "12,5 Kilogramos", "800 g"), a
+ * kilogramos.
+ */
+public final class PetWeight {
+
+    private static final Pattern WEIGHT = Pattern.compile("^(\\d+(?:\\.\\d+)?)\\s*([a-z]*)\\.?$");
+
+    private PetWeight() {
+    }
+
+    public static OptionalDouble toKilograms(String weight) {
+
+        if (weight == null) return OptionalDouble.empty();
+
+        String normalized = weight.trim().toLowerCase(Locale.ROOT).replace(',', '.');
+        Matcher matcher = WEIGHT.matcher(normalized);
+
+        if (!matcher.matches()) return OptionalDouble.empty();
+
+        double value = Double.parseDouble(matcher.group(1));
+
+        return switch (matcher.group(2)) {
+            case "", "k", "kg", "kgs", "kilo", "kilos", "kilogramo", "kilogramos" -> OptionalDouble.of(value);
+            case "g", "gr", "grs", "gramo", "gramos" -> OptionalDouble.of(value / 1000);
+            default -> OptionalDouble.empty();
+        };
+    }
+}
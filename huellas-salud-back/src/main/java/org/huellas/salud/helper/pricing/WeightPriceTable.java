@@ -0,0 +1,91 @@
+package org.huellas.salud.helper.pricing;
+
+import org.huellas.salud.domain.service.Service;
+import org.huellas.salud.domain.service.WeightPriceRule;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Tabla de precios de un servicio compilada a arreglos primitivos. Las reglas por peso quedan ordenadas por peso
+ * minimo para resolver el precio con una busqueda binaria; si el peso no cae en ninguna regla se cobra la regla mas
+ * cara, y los servicios sin reglas cobran el precio base. Los rangos incluyen ambos limites y, si varias reglas cubren
+ * el mismo peso, gana la que aparece primero en el servicio.
+ */
+public final class WeightPriceTable {
+
+    private final double basePrice;
+    private final double[] minWeights;
+    private final double[] maxWeights;
+    // Mayor peso maximo entre la primera regla y cada posicion: descarta en O(1) los pesos que ninguna regla cubre
+    private final double[] reach;
+    private final double[] prices;
+    // Posicion de cada regla en el servicio, para desempatar las reglas que se traslapan
+    private final int[] positions;
+    private final double fallbackPrice;
+
+    private WeightPriceTable(double basePrice, double[] minWeights, double[] maxWeights, double[] reach,
+                             double[] prices, int[] positions, double fallbackPrice) {
+        this.basePrice = basePrice;
+        this.minWeights = minWeights;
+        this.maxWeights = maxWeights;
+        this.reach = reach;
+        this.prices = prices;
+        this.positions = positions;
+        this.fallbackPrice = fallbackPrice;
+    }
+
+    public static WeightPriceTable compile(Service service) {
+
+        List<WeightPriceRule> rules = service.isPriceByWeight() && service.getWeightPriceRules() != null
+                ? service.getWeightPriceRules() : List.of();
+
+        Integer[] sorted = IntStream.range(0, rules.size()).boxed()
+                .sorted(Comparator.comparingDouble(position -> rules.get(position).getMinWeight()))
+                .toArray(Integer[]::new);
+
+        double[] minWeights = new double[sorted.length];
+        double[] maxWeights = new double[sorted.length];
+        double[] reach = new double[sorted.length];
+        double[] prices = new double[sorted.length];
+        int[] positions = new int[sorted.length];
+        double fallbackPrice = sorted.length == 0 ? service.getBasePrice() : Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < sorted.length; i++) {
+            WeightPriceRule rule = rules.get(sorted[i]);
+            minWeights[i] = rule.getMinWeight();
+            maxWeights[i] = rule.getMaxWeight();
+            reach[i] = i == 0 ? maxWeights[i] : Math.max(reach[i - 1], maxWeights[i]);
+            prices[i] = rule.getPrice();
+            positions[i] = sorted[i];
+            fallbackPrice = Math.max(fallbackPrice, prices[i]);
+        }
+
+        return new WeightPriceTable(service.getBasePrice(), minWeights, maxWeights, reach, prices, positions,
+                fallbackPrice);
+    }
+
+    public double price(double weight) {
+
+        if (minWeights.length == 0) return basePrice;
+
+        // Ultima regla cuyo peso minimo es menor o igual al peso de la mascota
+        int index = Arrays.binarySearch(minWeights, weight);
+        if (index < 0) index = -index - 2;
+
+        // Con pesos minimos repetidos la busqueda puede caer en cualquiera de ellos; se avanza al ultimo
+        while (index + 1 < minWeights.length && minWeights[index + 1] <= weight) index++;
+
+        if (index < 0 || weight > reach[index]) return fallbackPrice;
+
+        // Se retrocede mientras alguna regla anterior pueda cubrir el peso; sin traslapes son uno o dos pasos
+        int match = -1;
+        for (int i = index; i >= 0 && reach[i] >= weight; i--) {
+            if (maxWeights[i] >= weight && (match < 0 || positions[i] < positions[match])) match = i;
+        }
+
+        return match < 0 ? fallbackPrice : prices[match];
+    }
+}
@@ -0,0 +1,99 @@
+package org.huellas.salud.helper.templates;
+
+import org.huellas.salud.domain.product.ProductAlert;
+
+import java.time.Year;
+import java.util.List;
+
+public final class ProductAlertTemplate {
+
+    public static final String ALERT_DIGEST_TEMPLATE = """
+            <!DOCTYPE html>
+            <html>
+            <head>
+                <meta charset="UTF-8">
+                <meta name="viewport" content="width=device-width, initial-scale=1.0">
+            </head>
+            <body style="font-family: Arial, sans-serif; background-color: #f7fafc; margin: 0; padding: 20px;">
+                <div style="max-width: 600px; margin: 0 auto; background: white; border-radius: 8px; overflow: hidden; box-shadow: 0 2px 10px rgba(0,0,0,0.1);">
+                    <!-- Header -->
+                    <div style="background: linear-gradient(135deg, #38b2ac 0%, #3686ef 100%); padding: 20px; text-align: center; color: white;">
+                        <h1 style="margin: 0; font-size: 28px;">Huellas & Salud</h1>
+                        <h2 style="margin: 0; font-size: 18px;">Alertas de inventario</h2>
+                    </div>
+                    <!-- Content -->
+                    <div style="padding: 20px;">
+                        <p style="color: #4a5568; margin-bottom: 15px;">Hola <strong style="font-size: 14px;">{nombre}</strong>,</p>
+                        <p style="color: #4a5568; margin-bottom: 20px;">Se detectaron {total} alertas nuevas en el inventario de productos:</p>
+                        <table style="width: 100%; border-collapse: collapse; font-size: 14px; color: #2d3748;">
+                            <tr style="background: #edf2f7; text-align: left;">
+                                <th style="padding: 8px;">Producto</th>
+                                <th style="padding: 8px;">Alerta</th>
+                                <th style="padding: 8px;">Unidades</th>
+                                <th style="padding: 8px;">Vencimiento</th>
+                            </tr>
+                            {filas}
+                        </table>
+                    </div>
+                    <!-- Footer -->
+                    <div style="background: #f7fafc; padding: 15px; text-align: center; color: #a0aec0; font-size: 12px;">
+                        © {date} Huellas & Salud. Todos los derechos reservados.
+                    </div>
+                </div>
+            </body>
+            </html>
+            """;
+
+    private static final String ALERT_ROW = """
+            <tr style="border-bottom: 1px solid #e2e8f0;">
+                <td style="padding: 8px;">%s</td>
+                <td style="padding: 8px;">%s</td>
+                <td style="padding: 8px;">%s</td>
+                <td style="padding: 8px;">%s</td>
+            </tr>
+            """;
+
+    private ProductAlertTemplate() {
+    }
+
+    public static String formatAlertDigest(String userName, List<ProductAlert> alerts) {
+
+        StringBuilder rows = new StringBuilder();
+
+        for (ProductAlert alert : alerts) {
+            rows.append(String.format(ALERT_ROW, escape(alert.getProductName()), alert.getType().getValue(),
+                    valueOrDash(alert.getQuantityAvailable()), valueOrDash(alert.getExpirationDate())));
+        }
+
+        String template = ALERT_DIGEST_TEMPLATE;
+
+        template = template.replace("{nombre}", escape(userName));
+        template = template.replace("{total}", String.valueOf(alerts.size()));
+        template = template.replace("{filas}", rows.toString());
+        template = template.replace("{date}", String.valueOf(Year.now().getValue()));
+
+        return template;
+    }
+
+    public static String getTextContentAlertDigest(String userName, List<ProductAlert> alerts) {
+
+        StringBuilder text = new StringBuilder("Hola ").append(userName).append(", se detectaron ")
+                .append(alerts.size()).append(" alertas nuevas en el inventario de productos:\n");
+
+        for (ProductAlert alert : alerts) {
+            text.append("- ").append(alert.getProductName()).append(": ").append(alert.getType().getValue())
+                    .append(". Unidades: ").append(valueOrDash(alert.getQuantityAvailable()))
+                    .append(". Vencimiento: ").append(valueOrDash(alert.getExpirationDate())).append("\n");
+        }
+
+        return text.append("© ").append(Year.now().getValue()).append(" Huellas & Salud").toString();
+    }
+
+    private static String valueOrDash(Object value) {
+        return value == null ? "-" : value.toString();
+    }
+
+    private static String escape(String value) {
+        return value == null ? "" : value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
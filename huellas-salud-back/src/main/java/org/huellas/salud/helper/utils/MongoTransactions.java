@@ -0,0 +1,76 @@
+package org.huellas.salud.helper.utils;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.bson.Document;
+import org.huellas.salud.helper.exceptions.HSException;
+import org.jboss.logging.Logger;
+
+/**
+ * Ejecuta operaciones en una transaccion multi-documento de mongo. Las transacciones solo existen en replica sets y
+ * clusters fragmentados; en un servidor standalone {@link #isSupported()} devuelve {@code false} y el llamador debe
+ * aplicar su propia compensacion.
+ */
+@ApplicationScoped
+public class MongoTransactions {
+
+    private static final Logger LOG = Logger.getLogger(MongoTransactions.class);
+
+    @Inject
+    MongoClient mongoClient;
+
+    private volatile Boolean supported;
+
+    @FunctionalInterface
+    public interface TransactionWork<T> {
+        T execute(ClientSession session) throws HSException;
+    }
+
+    public boolean isSupported() {
+
+        if (supported == null) {
+            try {
+                Document hello = mongoClient.getDatabase("admin").runCommand(new Document("hello", 1));
+                supported = hello.containsKey("setName") || "isdbgrid".equals(hello.getString("msg"));
+
+                LOG.infof("@isSupported UTIL > El servidor de mongo %s soporta transacciones", supported ? "si" : "no");
+            } catch (MongoException ex) {
+                LOG.errorf(ex, "@isSupported UTIL > No fue posible consultar la topologia del servidor de mongo");
+                return false;
+            }
+        }
+        return supported;
+    }
+
+    /**
+     * Ejecuta el trabajo dentro de una transaccion. El driver reintenta los errores transitorios; cualquier
+     * {@link HSException} lanzada por el trabajo aborta la transaccion y se propaga al llamador.
+     */
+    public <T> T execute(TransactionWork<T> work) throws HSException {
+
+        try (ClientSession session = mongoClient.startSession()) {
+            return session.withTransaction(() -> {
+                try {
+                    return work.execute(session);
+                } catch (HSException ex) {
+                    throw new AbortedTransaction(ex);
+                }
+            });
+        } catch (AbortedTransaction ex) {
+            throw ex.error;
+        }
+    }
+
+    private static final class AbortedTransaction extends RuntimeException {
+
+        private final HSException error;
+
+        private AbortedTransaction(HSException cause) {
+            super(cause.getMessage(), cause, false, false);
+            this.error = cause;
+        }
+    }
+}
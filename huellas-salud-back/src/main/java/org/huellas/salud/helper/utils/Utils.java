@@ -4,14 +4,18 @@ import io.vertx.core.http.HttpServerRequest;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.inject.Provider;
+import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.jwt.JsonWebToken;
 import org.huellas.salud.domain.Meta;
+import org.huellas.salud.helper.exceptions.HSException;
 import org.huellas.salud.helper.jwt.JwtService;
 import org.jboss.logging.Logger;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -21,6 +25,9 @@ public class Utils {
 
     private static final Logger LOG = Logger.getLogger(Utils.class);
 
+    // Limite de los rangos de fechas de las consultas y exportaciones que recorren registros por dia
+    public static final int MAX_DATE_RANGE_DAYS = 366;
+
     @Inject
     JwtService jwtService;
 
@@ -55,6 +62,23 @@ public class Utils {
                 .build();
     }
 
+    /**
+     * Valida un rango de fechas con ambos extremos incluidos: el inicio no puede ser posterior al fin y el rango no
+     * puede superar {@link #MAX_DATE_RANGE_DAYS} dias.
+     */
+    public void validateDateRange(LocalDate from, LocalDate to) throws HSException {
+
+        if (to.isBefore(from)) {
+            throw new HSException(Response.Status.BAD_REQUEST, "La fecha de inicio debe ser anterior o igual a la fecha de fin");
+        }
+
+        // Con ambos extremos incluidos el rango tiene un dia mas que la diferencia entre las fechas
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_DATE_RANGE_DAYS) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    "El rango de fechas no puede superar " + MAX_DATE_RANGE_DAYS + " dias");
+        }
+    }
+
     private String getRawTokenWithBearer() {
 
         return Optional.ofNullable(jwtService.getJsonWebToken())
@@ -7,4 +7,6 @@ public interface ValidationGroups {
     interface Post_Get {}
     interface Post extends Default {}
     interface Put extends Default {}
+    // Actualizacion parcial: solo se validan los campos que vienen con valor
+    interface Patch {}
 }
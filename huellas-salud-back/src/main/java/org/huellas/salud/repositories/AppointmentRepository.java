@@ -1,12 +1,31 @@
 package org.huellas.salud.repositories;
 
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.huellas.salud.domain.appointment.Appointment;
+import org.huellas.salud.domain.appointment.AppointmentFilter;
 import org.huellas.salud.domain.appointment.AppointmentMsg;
+import org.huellas.salud.domain.appointment.AppointmentStatus;
 import org.jboss.logging.Logger;
 import io.quarkus.mongodb.panache.PanacheMongoRepository;
 import io.quarkus.panache.common.Sort;
+import io.quarkus.runtime.StartupEvent;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
 import java.util.Optional;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.time.LocalDateTime;
 import java.time.LocalDate;
@@ -17,6 +36,33 @@ public class AppointmentRepository implements PanacheMongoRepository<Appointment
 
     private static final Logger LOG = Logger.getLogger(AppointmentRepository.class);
 
+    // Documentos que el cursor de exportacion trae por cada viaje a mongo
+    private static final int EXPORT_BATCH_SIZE = 500;
+
+    void createIndexes(@Observes StartupEvent startupEvent) {
+
+        LOG.info("@createIndexes REPO > Inicia creacion de los indices de la coleccion de citas");
+
+        try {
+            // Indices para la consulta paginada: cada filtro de igualdad seguido de las llaves del cursor
+            mongoCollection().createIndex(Indexes.ascending("data.idVeterinario", "data.fechaHora", "_id"),
+                    new IndexOptions().name("idx_veterinario_fechaHora_id"));
+            mongoCollection().createIndex(Indexes.ascending("data.idPropietario", "data.fechaHora", "_id"),
+                    new IndexOptions().name("idx_propietario_fechaHora_id"));
+            mongoCollection().createIndex(Indexes.ascending("data.idMascota", "data.fechaHora", "_id"),
+                    new IndexOptions().name("idx_mascota_fechaHora_id"));
+            mongoCollection().createIndex(Indexes.ascending("data.estado", "data.fechaHora", "_id"),
+                    new IndexOptions().name("idx_estado_fechaHora_id"));
+            mongoCollection().createIndex(Indexes.ascending("data.fechaHora", "_id"),
+                    new IndexOptions().name("idx_fechaHora_id"));
+        } catch (MongoException ex) {
+            LOG.errorf(ex, "@createIndexes REPO > No fue posible crear los indices de la coleccion de citas");
+            return;
+        }
+
+        LOG.info("@createIndexes REPO > Finaliza creacion de los indices de la coleccion de citas");
+    }
+
     public Optional<AppointmentMsg> findAppointmentById(String idAppointment) {
 
         LOG.infof("@findAppointmentById REPO > Inicia busqueda del registro de la cita con id: %s", idAppointment);
@@ -55,38 +101,67 @@ public class AppointmentRepository implements PanacheMongoRepository<Appointment
         return delete("data.idCita = ?1", idAppointment);
     }
 
-    public boolean existsAppointmentInRange(String idVeterinarian, LocalDateTime newStart, LocalDateTime newEnd) {
-        LOG.infof("@existsAppointmentInRange REPO > Verificando citas que se crucen entre %s y %s para el veterinario %s",
-                newStart, newEnd, idVeterinarian);
+    public List<AppointmentMsg> findPendingAppointmentsByVeterinarianInRange(String idVeterinarian, LocalDateTime from,
+                                                                              LocalDateTime to) {
+
+        LOG.infof("@findPendingAppointmentsByVeterinarianInRange REPO > Inicia busqueda de las citas pendientes del "
+                + "veterinario %s entre %s y %s", idVeterinarian, from, to);
+
+        return list("data.idVeterinario = ?1 and data.estado = ?2 and data.fechaHora >= ?3 and data.fechaHora < ?4",
+                Sort.ascending("data.fechaHora"), idVeterinarian, AppointmentStatus.PENDIENTE.name(), from, to);
+    }
+
+    public List<AppointmentMsg> findActiveAppointmentsByVeterinariansInRange(Collection<String> idVeterinarians,
+                                                                             LocalDateTime from, LocalDateTime to) {
+
+        LOG.infof("@findActiveAppointmentsByVeterinariansInRange REPO > Inicia busqueda de las citas no canceladas de "
+                + "%s veterinarios entre %s y %s", idVeterinarians.size(), from, to);
+
+        return list("data.idVeterinario in ?1 and data.estado != ?2 and data.fechaHora >= ?3 and data.fechaHora < ?4",
+                idVeterinarians, AppointmentStatus.CANCELADA.name(), from, to);
+    }
+
+    /**
+     * Verifica en mongo si el veterinario tiene una cita no cancelada que se cruce con el intervalo [start, end). Las
+     * citas adyacentes no se cruzan y las citas registradas sin hora de fin se toman con la duracion por defecto. El
+     * limite inferior sobre la fecha de inicio acota el recorrido del indice idx_veterinario_fechaHora_id, ya que ninguna
+     * cita dura mas de un dia.
+     */
+    public boolean existsOverlappingAppointment(String idVeterinarian, LocalDateTime start, LocalDateTime end,
+                                                String excludedAppointment) {
+
+        LOG.infof("@existsOverlappingAppointment REPO > Inicia verificacion de cruces del veterinario %s entre %s y "
+                + "%s sin tener en cuenta la cita %s", idVeterinarian, start, end, excludedAppointment);
+
+        List<Bson> conditions = new ArrayList<>(List.of(
+                Filters.eq("data.idVeterinario", idVeterinarian),
+                Filters.lt("data.fechaHora", end),
+                Filters.gt("data.fechaHora", start.minusDays(1)),
+                Filters.ne("data.estado", AppointmentStatus.CANCELADA.name()),
+                Filters.or(
+                        Filters.gt("data.fechaHoraFin", start),
+                        Filters.and(Filters.eq("data.fechaHoraFin", null),
+                                Filters.gt("data.fechaHora", start.minusMinutes(Appointment.DEFAULT_DURATION_MINUTES))))
+        ));
+
+        if (excludedAppointment != null) conditions.add(Filters.ne("data.idCita", excludedAppointment));
 
-        return find("data.idVeterinario = ?1", idVeterinarian)
-                .stream()
-                .map(AppointmentMsg.class::cast)
-                .map(AppointmentMsg::getData)
-                .anyMatch(existing -> {
-                    LocalDateTime existingStart = existing.getDateTime();
-                    LocalDateTime existingEnd = existingStart.plusMinutes(30);
-                    // ✅ Solo hay conflicto si se cruzan de verdad
-                    return newStart.isBefore(existingEnd) && newEnd.isAfter(existingStart);
-                });
+        return mongoCollection().countDocuments(Filters.and(conditions), new CountOptions().limit(1)) > 0;
     }
 
-    public boolean existsAppointmentInRangeExcludingId(String idVeterinarian, LocalDateTime newStart, LocalDateTime newEnd, String appointmentId) {
-        LOG.infof("@existsAppointmentInRangeExcludingId REPO > Verificando citas que se crucen entre %s y %s para el veterinario %s excluyendo cita %s",
-                newStart, newEnd, idVeterinarian, appointmentId);
+    /**
+     * Cursor sobre las citas no canceladas que inician desde {@code from}. Usa el indice idx_fechaHora_id y quien lo
+     * recibe debe cerrarlo.
+     */
+    public MongoCursor<AppointmentMsg> findActiveAppointmentsFrom(LocalDateTime from) {
 
-        return find("data.idVeterinario = ?1", idVeterinarian)
-                .stream()
-                .map(AppointmentMsg.class::cast)
-                .map(AppointmentMsg::getData)
-                .filter(existing -> !existing.getIdAppointment().equals(appointmentId))
-                .anyMatch(existing -> {
-                    LocalDateTime existingStart = existing.getDateTime();
-                    LocalDateTime existingEnd = existingStart.plusMinutes(30);
+        LOG.infof("@findActiveAppointmentsFrom REPO > Inicia consulta de las citas no canceladas desde %s", from);
 
-                    // 🔍 conflicto real si los rangos se cruzan
-                    return newStart.isBefore(existingEnd) && newEnd.isAfter(existingStart);
-                });
+        return mongoCollection()
+                .find(Filters.and(Filters.gte("data.fechaHora", from),
+                        Filters.ne("data.estado", AppointmentStatus.CANCELADA.name())))
+                .batchSize(EXPORT_BATCH_SIZE)
+                .cursor();
     }
 
     public List<AppointmentMsg> findAppointmentsByVeterinarianAndDate(String idVeterinarian, LocalDate date) {
@@ -96,4 +171,142 @@ public class AppointmentRepository implements PanacheMongoRepository<Appointment
         return list("data.idVeterinario = ?1 and data.fechaHora >= ?2 and data.fechaHora <= ?3",
                 idVeterinarian, startOfDay, endOfDay);
     }
+
+    public List<AppointmentMsg> searchAppointments(AppointmentFilter filter, LocalDateTime afterDate, ObjectId afterId, int limit) {
+
+        LOG.infof("@searchAppointments REPO > Inicia busqueda paginada de citas con el filtro: %s despues de %s / %s. "
+                + "Limite: %s", filter, afterDate, afterId, limit);
+
+        // Las citas sin fecha no pueden ubicarse en el cursor, por lo que no hacen parte de la consulta paginada
+        List<Bson> conditions = new ArrayList<>(List.of(Filters.ne("data.fechaHora", null)));
+
+        if (filter.getIdVeterinarian() != null) conditions.add(Filters.eq("data.idVeterinario", filter.getIdVeterinarian()));
+        if (filter.getIdOwner() != null) conditions.add(Filters.eq("data.idPropietario", filter.getIdOwner()));
+        if (filter.getIdPet() != null) conditions.add(Filters.eq("data.idMascota", filter.getIdPet()));
+        if (filter.getStatus() != null) conditions.add(Filters.eq("data.estado", filter.getStatus().name()));
+        if (filter.getFrom() != null) conditions.add(Filters.gte("data.fechaHora", filter.getFrom()));
+        if (filter.getTo() != null) conditions.add(Filters.lt("data.fechaHora", filter.getTo()));
+
+        // Cursor: las citas se recorren de la mas reciente a la mas antigua y el _id desempata las de igual fecha
+        if (afterDate != null && afterId != null) {
+            conditions.add(Filters.or(
+                    Filters.lt("data.fechaHora", afterDate),
+                    Filters.and(Filters.eq("data.fechaHora", afterDate), Filters.lt("_id", afterId))
+            ));
+        }
+
+        return mongoCollection()
+                .find(Filters.and(conditions))
+                .sort(Sorts.descending("data.fechaHora", "_id"))
+                .limit(limit)
+                .into(new ArrayList<>());
+    }
+
+    /**
+     * Hoja de agenda del veterinario: une en una sola agregacion cada cita con su mascota, su propietario y los
+     * nombres de sus servicios, proyectando solo campos planos (sin archivos adjuntos).
+     */
+    public MongoCursor<Document> aggregateDaySheet(String idVeterinarian, LocalDateTime from, LocalDateTime to) {
+
+        LOG.infof("@aggregateDaySheet REPO > Inicia agregacion de la agenda del veterinario %s entre %s y %s",
+                idVeterinarian, from, to);
+
+        List<Bson> pipeline = List.of(
+                Aggregates.match(Filters.and(
+                        Filters.eq("data.idVeterinario", idVeterinarian),
+                        Filters.gte("data.fechaHora", from),
+                        Filters.lt("data.fechaHora", to)
+                )),
+                Aggregates.sort(Sorts.ascending("data.fechaHora")),
+                lookup("MascotaMsg", "data.idMascota", "data.identificador", new Document("_id", 0)
+                        .append("identificador", "$data.identificador")
+                        .append("nombre", "$data.nombre")
+                        .append("especie", "$data.especie")
+                        .append("raza", "$data.raza")
+                        .append("peso", "$data.peso"), "mascota"),
+                lookup("UsuarioMsg", "data.idPropietario", "data.numeroDocumento", new Document("_id", 0)
+                        .append("numeroDocumento", "$data.numeroDocumento")
+                        .append("nombre", "$data.nombre")
+                        .append("apellido", "$data.apellido")
+                        .append("celular", "$data.celular")
+                        .append("correo", "$data.correo"), "propietario"),
+                lookup("ServicioMsg", "data.servicios", "data.idServicio", new Document("_id", 0)
+                        .append("idServicio", "$data.idServicio")
+                        .append("nombre", "$data.nombre")
+                        .append("duracionMinutos", "$data.duracionMinutos"), "servicios"),
+                Aggregates.project(new Document("_id", 0)
+                        .append("idCita", "$data.idCita")
+                        .append("fechaHora", dateToString("$data.fechaHora"))
+                        .append("fechaHoraFin", dateToString("$data.fechaHoraFin"))
+                        .append("estado", "$data.estado")
+                        .append("observaciones", "$data.observaciones")
+                        .append("mascota", new Document("$arrayElemAt", List.of("$mascota", 0)))
+                        .append("propietario", new Document("$arrayElemAt", List.of("$propietario", 0)))
+                        .append("servicios", "$servicios"))
+        );
+
+        return mongoCollection().withDocumentClass(Document.class).aggregate(pipeline).cursor();
+    }
+
+    /**
+     * {@code $lookup} por igualdad entre {@code localField} y {@code foreignField}, que usa el indice del campo en la
+     * coleccion unida, con una proyeccion para no traer los archivos adjuntos. Si {@code localField} es un arreglo se
+     * unen los documentos de todos sus valores.
+     */
+    private Bson lookup(String from, String localField, String foreignField, Document projection, String as) {
+        return new Document("$lookup", new Document("from", from)
+                .append("localField", localField)
+                .append("foreignField", foreignField)
+                .append("pipeline", List.of(Aggregates.project(projection)))
+                .append("as", as));
+    }
+
+    /**
+     * Minutos reservados y cantidad de citas no canceladas por veterinario y dia. Las citas sin hora de fin se
+     * cuentan con la duracion por defecto.
+     */
+    public List<Document> aggregateBookedMinutes(LocalDateTime from, LocalDateTime to) {
+
+        LOG.infof("@aggregateBookedMinutes REPO > Inicia agregacion de los minutos reservados por veterinario entre %s "
+                + "y %s", from, to);
+
+        Document endDateTime = new Document("$ifNull", List.of("$data.fechaHoraFin",
+                new Document("$add", List.of("$data.fechaHora", Appointment.DEFAULT_DURATION_MINUTES * 60_000L))));
+
+        List<Bson> pipeline = List.of(
+                Aggregates.match(Filters.and(
+                        Filters.gte("data.fechaHora", from),
+                        Filters.lt("data.fechaHora", to),
+                        Filters.ne("data.estado", AppointmentStatus.CANCELADA.name())
+                )),
+                Aggregates.group(new Document("idVeterinario", "$data.idVeterinario")
+                                .append("fecha", new Document("$dateToString",
+                                        new Document("format", "%Y-%m-%d").append("date", "$data.fechaHora"))),
+                        Accumulators.sum("minutosReservados", new Document("$divide", List.of(
+                                new Document("$subtract", List.of(endDateTime, "$data.fechaHora")), 60_000L))),
+                        Accumulators.sum("citas", 1))
+        );
+
+        return mongoCollection().withDocumentClass(Document.class).aggregate(pipeline).into(new ArrayList<>());
+    }
+
+    /**
+     * Cursor sobre las citas con fecha en el rango [from, to), ordenadas por fecha. Usa el indice idx_fechaHora_id y
+     * quien lo recibe debe cerrarlo.
+     */
+    public MongoCursor<AppointmentMsg> findAppointmentsInRange(LocalDateTime from, LocalDateTime to) {
+
+        LOG.infof("@findAppointmentsInRange REPO > Inicia consulta de las citas entre %s y %s", from, to);
+
+        return mongoCollection()
+                .find(Filters.and(Filters.gte("data.fechaHora", from), Filters.lt("data.fechaHora", to)))
+                .sort(Sorts.ascending("data.fechaHora", "_id"))
+                .batchSize(EXPORT_BATCH_SIZE)
+                .cursor();
+    }
+
+    // Las fechas se guardan como LocalDateTime en UTC, por lo que se formatean igual que LocalDateTime.toString
+    private Document dateToString(String field) {
+        return new Document("$dateToString", new Document("format", "%Y-%m-%dT%H:%M:%S").append("date", field));
+    }
 }
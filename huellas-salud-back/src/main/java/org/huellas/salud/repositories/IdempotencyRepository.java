@@ -0,0 +1,87 @@
+package org.huellas.salud.repositories;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Updates;
+import io.quarkus.mongodb.panache.PanacheMongoRepositoryBase;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.huellas.salud.domain.idempotency.IdempotencyRecord;
+import org.huellas.salud.domain.idempotency.IdempotencyStatus;
+import org.jboss.logging.Logger;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+@ApplicationScoped
+public class IdempotencyRepository implements PanacheMongoRepositoryBase<IdempotencyRecord, String> {
+
+    private static final Logger LOG = Logger.getLogger(IdempotencyRepository.class);
+
+    private static final long RECORD_TTL_HOURS = 24;
+
+    void createIndexes(@Observes StartupEvent startupEvent) {
+
+        LOG.info("@createIndexes REPO > Inicia creacion de los indices de la coleccion de idempotencia");
+
+        try {
+            mongoCollection().createIndex(Indexes.ascending("fechaCreacion"),
+                    new IndexOptions().name("idx_ttl_fechaCreacion").expireAfter(RECORD_TTL_HOURS, TimeUnit.HOURS));
+        } catch (MongoException ex) {
+            LOG.errorf(ex, "@createIndexes REPO > No fue posible crear los indices de la coleccion de idempotencia");
+            return;
+        }
+
+        LOG.info("@createIndexes REPO > Finaliza creacion de los indices de la coleccion de idempotencia");
+    }
+
+    /**
+     * Registra la solicitud como EN_PROCESO. El {@code _id} es unico, por lo que si dos reintentos llegan al mismo
+     * tiempo solo uno logra registrarse y procesarla.
+     *
+     * @return {@code false} si ya existia un registro con la misma llave
+     */
+    public boolean reserve(IdempotencyRecord record) {
+
+        try {
+            mongoCollection().insertOne(record);
+            return true;
+        } catch (MongoWriteException ex) {
+            if (ex.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) return false;
+            throw ex;
+        }
+    }
+
+    /**
+     * Reemplaza un registro que quedo EN_PROCESO desde antes de {@code staleBefore}, por ejemplo porque la instancia
+     * que lo procesaba se detuvo. Solo una solicitud logra tomarlo.
+     */
+    public boolean takeOver(IdempotencyRecord record, LocalDateTime staleBefore) {
+
+        LOG.infof("@takeOver REPO > Se intenta retomar la solicitud abandonada %s", record.getId());
+
+        return mongoCollection().replaceOne(Filters.and(
+                Filters.eq("_id", record.getId()),
+                Filters.eq("estado", IdempotencyStatus.EN_PROCESO.name()),
+                Filters.lt("fechaCreacion", staleBefore)
+        ), record).getModifiedCount() == 1;
+    }
+
+    public void complete(String id, int responseStatus, String responseBody) {
+
+        mongoCollection().updateOne(Filters.eq("_id", id), Updates.combine(
+                Updates.set("estado", IdempotencyStatus.COMPLETADA.name()),
+                Updates.set("codigoRespuesta", responseStatus),
+                Updates.set("respuesta", responseBody)
+        ));
+    }
+
+    public void release(String id) {
+        deleteById(id);
+    }
+}
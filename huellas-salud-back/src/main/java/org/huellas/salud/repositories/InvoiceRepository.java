@@ -1,10 +1,23 @@
 package org.huellas.salud.repositories;
 
+import com.mongodb.MongoException;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.result.UpdateResult;
 import io.quarkus.mongodb.panache.PanacheMongoRepository;
+import io.quarkus.runtime.StartupEvent;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.bson.conversions.Bson;
 import org.huellas.salud.domain.invoice.InvoiceMsg;
 import io.quarkus.panache.common.Sort;
 import org.jboss.logging.Logger;
+
+import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.List;
 
@@ -13,6 +26,34 @@ public class InvoiceRepository implements PanacheMongoRepository<InvoiceMsg> {
 
     private static final Logger LOG = Logger.getLogger(InvoiceRepository.class);
 
+    // Documentos que el cursor de exportacion trae por cada viaje a mongo
+    private static final int EXPORT_BATCH_SIZE = 500;
+
+    void createIndexes(@Observes StartupEvent startupEvent) {
+
+        LOG.info("@createIndexes REPO > Inicia creacion de los indices de la coleccion de facturas");
+
+        // Cada indice va por separado: si ya hay facturas con el id repetido el indice unico falla, pero el de
+        // fechas de las exportaciones se debe crear de todas formas
+        try {
+            mongoCollection().createIndex(Indexes.ascending("data.idFactura"),
+                    new IndexOptions().name("idx_idFactura").unique(true));
+        } catch (MongoException ex) {
+            LOG.errorf(ex, "@createIndexes REPO > No fue posible crear el indice unico idx_idFactura. Verifique que no "
+                    + "existan facturas con el mismo id");
+        }
+
+        try {
+            mongoCollection().createIndex(Indexes.ascending("data.fecha", "_id"),
+                    new IndexOptions().name("idx_fecha_id"));
+        } catch (MongoException ex) {
+            LOG.errorf(ex, "@createIndexes REPO > No fue posible crear el indice idx_fecha_id de la coleccion de facturas");
+            return;
+        }
+
+        LOG.info("@createIndexes REPO > Finaliza creacion de los indices de la coleccion de facturas");
+    }
+
     public Optional<InvoiceMsg> findInvoiceById(String idInvoice) {
 
         LOG.infof("@findInvoiceById REPO > Inicia busqueda del registro de la factura con id: %s", idInvoice);
@@ -42,4 +83,39 @@ public class InvoiceRepository implements PanacheMongoRepository<InvoiceMsg> {
 
         return delete("data.idFactura = ?1", idInvoice);
     }
-}
\ No newline at end of file
+
+    /**
+     * Reemplaza la factura solo si no cambio desde que se leyo: la fecha de ultima actualizacion guardada debe ser la
+     * misma que se leyo. {@code session} es nulo cuando la escritura no va dentro de una transaccion.
+     *
+     * @return false si la factura se modifico o se elimino despues de leerla
+     */
+    public boolean replaceIfUnchanged(ClientSession session, InvoiceMsg invoiceMsg, LocalDateTime readLastUpdate) {
+
+        LOG.infof("@replaceIfUnchanged REPO > Inicia reemplazo de la factura con id: %s leida con la version %s",
+                invoiceMsg.getData().getIdInvoice(), readLastUpdate);
+
+        Bson filter = Filters.and(Filters.eq("_id", invoiceMsg.getId()),
+                Filters.eq("meta.ultimaActualizacion", readLastUpdate));
+
+        UpdateResult result = session == null
+                ? mongoCollection().replaceOne(filter, invoiceMsg)
+                : mongoCollection().replaceOne(session, filter, invoiceMsg);
+
+        return result.getMatchedCount() > 0;
+    }
+
+    /**
+     * Cursor sobre las facturas con fecha en el rango [from, to), ordenadas por fecha. Quien lo recibe debe cerrarlo.
+     */
+    public MongoCursor<InvoiceMsg> findInvoicesInRange(LocalDateTime from, LocalDateTime to) {
+
+        LOG.infof("@findInvoicesInRange REPO > Inicia consulta de las facturas entre %s y %s", from, to);
+
+        return mongoCollection()
+                .find(Filters.and(Filters.gte("data.fecha", from), Filters.lt("data.fecha", to)))
+                .sort(Sorts.ascending("data.fecha", "_id"))
+                .batchSize(EXPORT_BATCH_SIZE)
+                .cursor();
+    }
+}
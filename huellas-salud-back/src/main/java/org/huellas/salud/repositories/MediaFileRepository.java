@@ -1,10 +1,23 @@
 package org.huellas.salud.repositories;
 
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
 import io.quarkus.mongodb.panache.PanacheMongoRepository;
+import io.quarkus.runtime.StartupEvent;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.bson.types.ObjectId;
 import org.huellas.salud.domain.mediaFile.MediaFileMsg;
 import org.jboss.logging.Logger;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @ApplicationScoped
@@ -12,6 +25,23 @@ public class MediaFileRepository implements PanacheMongoRepository<MediaFileMsg>
 
     private static final Logger LOG = Logger.getLogger(MediaFileRepository.class);
 
+    private static final String ATTACHMENT = "data.Adjunto";
+
+    void createIndexes(@Observes StartupEvent startupEvent) {
+
+        LOG.info("@createIndexes REPO > Inicia creacion de los indices de la coleccion de archivos");
+
+        try {
+            mongoCollection().createIndex(Indexes.ascending("data.tipoEntidad", "data.identificador"),
+                    new IndexOptions().name("idx_tipoEntidad_identificador"));
+        } catch (MongoException ex) {
+            LOG.errorf(ex, "@createIndexes REPO > No fue posible crear los indices de la coleccion de archivos");
+            return;
+        }
+
+        LOG.info("@createIndexes REPO > Finaliza creacion de los indices de la coleccion de archivos");
+    }
+
     public Optional<MediaFileMsg> getMediaByEntityTypeAndId(String entityType, String entityId) {
 
         LOG.infof("@getMediaByEntityTypeAndId REPO > Inicia consulta de registro con entity type: %s y " +
@@ -20,4 +50,29 @@ public class MediaFileRepository implements PanacheMongoRepository<MediaFileMsg>
         return find("data.tipoEntidad = ?1 AND data.identificador = ?2", entityType, entityId)
                 .firstResultOptional();
     }
+
+    /**
+     * Datos de las imagenes de varias entidades del mismo tipo en una sola consulta y sin el contenido en base64.
+     */
+    public List<MediaFileMsg> findMediaWithoutAttachment(String entityType, Collection<String> entityIds) {
+
+        LOG.infof("@findMediaWithoutAttachment REPO > Inicia consulta de %s imagenes del entity type: %s",
+                entityIds.size(), entityType);
+
+        return mongoCollection()
+                .find(Filters.and(Filters.eq("data.tipoEntidad", entityType), Filters.in("data.identificador", entityIds)))
+                .projection(Projections.exclude(ATTACHMENT))
+                .into(new ArrayList<>());
+    }
+
+    /**
+     * Cursor sobre las imagenes guardadas antes de que se calculara su hash. Quien lo recibe debe cerrarlo.
+     */
+    public MongoCursor<MediaFileMsg> findMediaWithoutHash() {
+        return mongoCollection().find(Filters.exists("data.hash", false)).cursor();
+    }
+
+    public void updateHash(ObjectId id, String hash) {
+        mongoCollection().updateOne(Filters.eq("_id", id), Updates.set("data.hash", hash));
+    }
 }
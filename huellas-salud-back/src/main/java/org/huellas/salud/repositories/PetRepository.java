@@ -1,11 +1,17 @@
 package org.huellas.salud.repositories;
 
+import com.mongodb.MongoException;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
 import io.quarkus.mongodb.panache.PanacheMongoRepository;
 import io.quarkus.panache.common.Sort;
+import io.quarkus.runtime.StartupEvent;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
 import org.huellas.salud.domain.pet.PetMsg;
 import org.jboss.logging.Logger;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,6 +20,21 @@ public class PetRepository implements PanacheMongoRepository<PetMsg> {
 
     private static final Logger LOG = Logger.getLogger(PetRepository.class);
 
+    void createIndexes(@Observes StartupEvent startupEvent) {
+
+        LOG.info("@createIndexes REPO > Inicia creacion de los indices de la coleccion de mascotas");
+
+        try {
+            // Tambien lo usa el $lookup de la hoja de agenda de citas
+            mongoCollection().createIndex(Indexes.ascending("data.identificador"), new IndexOptions().name("idx_identificador"));
+        } catch (MongoException ex) {
+            LOG.errorf(ex, "@createIndexes REPO > No fue posible crear los indices de la coleccion de mascotas");
+            return;
+        }
+
+        LOG.info("@createIndexes REPO > Finaliza creacion de los indices de la coleccion de mascotas");
+    }
+
     public Optional<PetMsg> findPetByNameAndOwner(String ownerDocument, String petName) {
 
         LOG.debugf("@findPetByNameAndOwner REPO > Inicia busqueda del registro de la mascota con el nombre: " +
@@ -30,6 +51,13 @@ public class PetRepository implements PanacheMongoRepository<PetMsg> {
         return find("data.identificador = ?1", petId).firstResultOptional();
     }
 
+    public List<PetMsg> findPetsByIds(Collection<String> petIds) {
+
+        LOG.debugf("@findPetsByIds REPO > Inicia busqueda de los registros de las mascotas con identificador: %s", petIds);
+
+        return list("data.identificador in ?1", petIds);
+    }
+
     public List<PetMsg> getListPetsFromMongo() {
 
         LOG.debug("@getListPetsFromMongo REPO > Inicia obtencion del listado de mascotas registradas en mongo");
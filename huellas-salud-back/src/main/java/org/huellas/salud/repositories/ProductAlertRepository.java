@@ -0,0 +1,135 @@
+package org.huellas.salud.repositories;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import io.quarkus.mongodb.panache.PanacheMongoRepositoryBase;
+import io.quarkus.panache.common.Sort;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.huellas.salud.domain.product.ProductAlert;
+import org.huellas.salud.domain.product.ProductAlertType;
+import org.jboss.logging.Logger;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@ApplicationScoped
+public class ProductAlertRepository implements PanacheMongoRepositoryBase<ProductAlert, String> {
+
+    private static final Logger LOG = Logger.getLogger(ProductAlertRepository.class);
+
+    void createIndexes(@Observes StartupEvent startupEvent) {
+
+        LOG.info("@createIndexes REPO > Inicia creacion de los indices de la coleccion de alertas de productos");
+
+        try {
+            mongoCollection().createIndex(Indexes.ascending("activa", "tipo", "fechaDeteccion"),
+                    new IndexOptions().name("idx_activa_tipo_fechaDeteccion"));
+            mongoCollection().createIndex(Indexes.ascending("activa", "notificada"),
+                    new IndexOptions().name("idx_activa_notificada"));
+        } catch (MongoException ex) {
+            LOG.errorf(ex, "@createIndexes REPO > No fue posible crear los indices de la coleccion de alertas de productos");
+            return;
+        }
+
+        LOG.info("@createIndexes REPO > Finaliza creacion de los indices de la coleccion de alertas de productos");
+    }
+
+    public List<ProductAlert> findActiveAlerts(ProductAlertType type) {
+
+        LOG.infof("@findActiveAlerts REPO > Inicia busqueda de las alertas activas de tipo: %s", type);
+
+        return type == null
+                ? list("activa = ?1", Sort.descending("fechaDeteccion"), true)
+                : list("activa = ?1 and tipo = ?2", Sort.descending("fechaDeteccion"), true, type.name());
+    }
+
+    /**
+     * Reclama las alertas activas que no se han notificado marcandolas como notificadas una a una con
+     * {@code findOneAndUpdate}. Cada alerta solo la puede reclamar una instancia, por lo que si el resumen se envia
+     * desde varias al mismo tiempo ninguna alerta sale en dos correos.
+     */
+    public List<ProductAlert> claimPendingNotification() {
+
+        List<ProductAlert> claimed = new ArrayList<>();
+        FindOneAndUpdateOptions options = new FindOneAndUpdateOptions()
+                .sort(Sorts.ascending("tipo", "nombreProducto"))
+                .returnDocument(ReturnDocument.AFTER);
+
+        for (ProductAlert alert = claimNext(options); alert != null; alert = claimNext(options)) {
+            claimed.add(alert);
+        }
+
+        LOG.infof("@claimPendingNotification REPO > Se reclamaron %s alertas pendientes por notificar", claimed.size());
+
+        return claimed;
+    }
+
+    private ProductAlert claimNext(FindOneAndUpdateOptions options) {
+        return mongoCollection().findOneAndUpdate(
+                Filters.and(Filters.eq("activa", true), Filters.eq("notificada", false)),
+                Updates.set("notificada", true), options);
+    }
+
+    /**
+     * Guarda en un solo bulkWrite las alertas nuevas y las que cambiaron desde el escaneo anterior. Las nuevas
+     * reemplazan la alerta resuelta del mismo producto y tipo si existe; si otra instancia ya la creo activa, el upsert
+     * choca con el id y se conserva la existente. En las que cambiaron solo se actualizan los datos del producto, para
+     * no deshacer la marca de notificada que el envio del resumen pudo poner mientras tanto.
+     */
+    public void saveAlerts(Collection<ProductAlert> created, Collection<ProductAlert> updated) {
+
+        if (created.isEmpty() && updated.isEmpty()) return;
+
+        List<WriteModel<ProductAlert>> writes = new ArrayList<>(created.size() + updated.size());
+
+        created.forEach(alert -> writes.add(new ReplaceOneModel<>(
+                Filters.and(Filters.eq("_id", alert.getId()), Filters.ne("activa", true)), alert,
+                new ReplaceOptions().upsert(true))));
+
+        updated.forEach(alert -> writes.add(new UpdateOneModel<>(Filters.eq("_id", alert.getId()), Updates.combine(
+                Updates.set("nombreProducto", alert.getProductName()),
+                Updates.set("cantidadDisponible", alert.getQuantityAvailable()),
+                Updates.set("fechaVencimiento", alert.getExpirationDate())))));
+
+        try {
+            mongoCollection().bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException ex) {
+            boolean onlyDuplicates = ex.getWriteErrors().stream()
+                    .allMatch(error -> ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY);
+            if (!onlyDuplicates) throw ex;
+        }
+    }
+
+    public void resolveAlerts(Collection<String> alertIds, LocalDateTime resolvedAt) {
+
+        if (alertIds.isEmpty()) return;
+
+        mongoCollection().updateMany(Filters.in("_id", alertIds),
+                Updates.combine(Updates.set("activa", false), Updates.set("fechaResolucion", resolvedAt)));
+    }
+
+    // Devuelve las alertas reclamadas a pendientes cuando el resumen no se pudo entregar
+    public void releaseNotification(Collection<String> alertIds) {
+
+        if (alertIds.isEmpty()) return;
+
+        mongoCollection().updateMany(Filters.in("_id", alertIds), Updates.set("notificada", false));
+    }
+}
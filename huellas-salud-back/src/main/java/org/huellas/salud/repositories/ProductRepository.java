@@ -1,17 +1,120 @@
 package org.huellas.salud.repositories;
 
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BucketOptions;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Facet;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.TextSearchOptions;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
 import io.quarkus.mongodb.panache.PanacheMongoRepository;
+import io.quarkus.runtime.StartupEvent;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.huellas.salud.domain.Meta;
+import org.huellas.salud.domain.product.Product;
 import org.huellas.salud.domain.product.ProductMsg;
+import org.huellas.salud.domain.product.ProductSearchFilter;
+import org.huellas.salud.domain.product.ProductSearchSort;
 import org.jboss.logging.Logger;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.IntPredicate;
 
 @ApplicationScoped
 public class ProductRepository implements PanacheMongoRepository<ProductMsg> {
 
     private static final Logger LOG = Logger.getLogger(ProductRepository.class);
 
+    // Operaciones de inventario en curso aplicadas a cada producto; permiten saber a cuales llego una operacion. La
+    // marca se retira cuando la operacion se confirma o se revierte, asi que la lista no crece con el historial
+    private static final String STOCK_MOVEMENTS = "movimientosStock";
+
+    // Operacion de inventario que dejo el producto sin unidades y lo desactivo; solo esa operacion puede reactivarlo
+    private static final String DEACTIVATED_BY = "desactivadoPorOperacion";
+
+    // Limites inferiores de los rangos de precio del catalogo; el ultimo agrupa todos los precios superiores
+    public static final List<Integer> PRICE_RANGES = List.of(0, 20000, 50000, 100000, 200000);
+
+    private static final Bson BARCODE_FIELDS = Projections.include("data.idProducto", "data.codigoBarras");
+
+    private static final Bson ALERT_FIELDS = Projections.include("data.idProducto", "data.nombre",
+            "data.cantidadDisponible", "data.fechaVencimiento");
+
+    void createIndexes(@Observes StartupEvent startupEvent) {
+
+        LOG.info("@createIndexes REPO > Inicia creacion de los indices de la coleccion de productos");
+
+        try {
+            // Los indices de texto ignoran tildes y mayusculas, y con el idioma espanol se comparan las raices
+            mongoCollection().createIndex(Indexes.compoundIndex(Indexes.text("data.nombre"),
+                            Indexes.text("data.marca"), Indexes.text("data.descripcion")),
+                    new IndexOptions().name("idx_texto_catalogo").defaultLanguage("spanish")
+                            .weights(new Document("data.nombre", 10).append("data.marca", 5)
+                                    .append("data.descripcion", 1)));
+            mongoCollection().createIndex(Indexes.ascending("data.activo", "data.categoria", "data.precio"),
+                    new IndexOptions().name("idx_activo_categoria_precio"));
+            mongoCollection().createIndex(Indexes.ascending("data.activo", "data.tipoAnimal", "data.precio"),
+                    new IndexOptions().name("idx_activo_tipoAnimal_precio"));
+            mongoCollection().createIndex(Indexes.ascending("data.activo", "data.nombre"),
+                    new IndexOptions().name("idx_activo_nombre"));
+            // Indices de rango para el escaneo de alertas de inventario
+            mongoCollection().createIndex(Indexes.ascending("data.cantidadDisponible"),
+                    new IndexOptions().name("idx_cantidadDisponible"));
+            mongoCollection().createIndex(Indexes.ascending("data.fechaVencimiento", "data.cantidadDisponible"),
+                    new IndexOptions().name("idx_fechaVencimiento_cantidadDisponible"));
+        } catch (MongoException ex) {
+            LOG.errorf(ex, "@createIndexes REPO > No fue posible crear los indices de la coleccion de productos");
+            return;
+        }
+
+        // El codigo de barras es unico para que dos registros o cargas concurrentes no creen el mismo producto. Va por
+        // separado porque falla si ya hay codigos repetidos, y reemplaza el indice no unico de versiones anteriores,
+        // que solo se elimina cuando el unico ya existe para que las busquedas por codigo nunca queden sin indice
+        try {
+            mongoCollection().createIndex(Indexes.ascending("data.codigoBarras"),
+                    new IndexOptions().name("uk_codigoBarras").unique(true)
+                            .partialFilterExpression(Filters.type("data.codigoBarras", BsonType.STRING)));
+        } catch (MongoException ex) {
+            LOG.errorf(ex, "@createIndexes REPO > No fue posible crear el indice unico uk_codigoBarras. Verifique que "
+                    + "no existan productos con el mismo codigo de barras");
+            return;
+        }
+
+        try {
+            if (mongoCollection().listIndexes().map(index -> index.getString("name")).into(new ArrayList<>())
+                    .contains("idx_codigoBarras")) {
+                mongoCollection().dropIndex("idx_codigoBarras");
+            }
+        } catch (MongoException ex) {
+            LOG.errorf(ex, "@createIndexes REPO > No fue posible eliminar el indice anterior idx_codigoBarras");
+        }
+
+        LOG.info("@createIndexes REPO > Finaliza creacion de los indices de la coleccion de productos");
+    }
+
     public Optional<ProductMsg> getProductByBarCode(String barCode) {
 
         LOG.debugf("@getProductByBarCode REPO > Inicia busqueda del registro del producto en mongo con el " +
@@ -33,4 +136,328 @@ public class ProductRepository implements PanacheMongoRepository<ProductMsg> {
 
         return delete("data.idProducto = ?1", productId);
     }
+
+    public List<ProductMsg> findProductsByIds(Collection<String> productIds) {
+
+        LOG.infof("@findProductsByIds REPO > Inicia busqueda de los registros de los productos con id: %s", productIds);
+
+        return list("data.idProducto in ?1", productIds);
+    }
+
+    /**
+     * Descuenta las cantidades de cada producto con un {@code $inc} condicionado a que haya stock suficiente, todo en
+     * un solo bulkWrite. Cada producto descontado guarda el id de la operacion, que debe ser unico por llamado, de
+     * modo que si algun producto no tenia stock se revierten exactamente los que si se descontaron. Las cantidades
+     * negativas son unidades devueltas: se suman sin condicion despues de los descuentos, de modo que un producto
+     * eliminado o sin stock no hace fallar la devolucion.
+     *
+     * @return {@code true} si se descontaron todos los productos
+     */
+    public boolean decrementStock(Map<String, Integer> quantities, String idOperation) {
+
+        LOG.infof("@decrementStock REPO > Inicia descuento de stock de la operacion %s: %s", idOperation, quantities);
+
+        Map<String, Integer> decrements = filterQuantities(quantities, quantity -> quantity > 0);
+        Map<String, Integer> returns = filterQuantities(quantities, quantity -> quantity < 0);
+
+        if (!decrements.isEmpty()) {
+
+            int matched = mongoCollection().bulkWrite(stockMovements(decrements, idOperation),
+                    new BulkWriteOptions().ordered(false)).getMatchedCount();
+
+            if (matched != decrements.size()) {
+
+                LOG.warnf("@decrementStock REPO > Solo %s de %s productos tenian stock suficiente. Se revierte la "
+                        + "operacion %s", matched, decrements.size(), idOperation);
+
+                revertStock(decrements, idOperation);
+                return false;
+            }
+
+            mongoCollection().updateMany(soldOut(decrements), deactivate(idOperation));
+        }
+
+        if (!returns.isEmpty()) {
+            mongoCollection().bulkWrite(stockMovements(returns, idOperation), new BulkWriteOptions().ordered(false));
+        }
+        return true;
+    }
+
+    /**
+     * Igual que {@link #decrementStock(Map, String)} pero dentro de una transaccion: si falta stock no se revierte
+     * nada aqui, el llamador aborta la transaccion.
+     */
+    public boolean decrementStock(ClientSession session, Map<String, Integer> quantities, String idOperation) {
+
+        LOG.infof("@decrementStock REPO > Inicia descuento transaccional de stock de la operacion %s: %s",
+                idOperation, quantities);
+
+        Map<String, Integer> decrements = filterQuantities(quantities, quantity -> quantity > 0);
+        Map<String, Integer> returns = filterQuantities(quantities, quantity -> quantity < 0);
+
+        if (!decrements.isEmpty()) {
+
+            int matched = mongoCollection().bulkWrite(session, stockMovements(decrements, idOperation),
+                    new BulkWriteOptions().ordered(false)).getMatchedCount();
+
+            if (matched != decrements.size()) return false;
+
+            mongoCollection().updateMany(session, soldOut(decrements), deactivate(idOperation));
+        }
+
+        if (!returns.isEmpty()) {
+            mongoCollection().bulkWrite(session, stockMovements(returns, idOperation),
+                    new BulkWriteOptions().ordered(false));
+        }
+        return true;
+    }
+
+    /**
+     * Devuelve el stock de los productos a los que se aplico la operacion y retira su marca. Solo se reactivan los
+     * productos que la misma operacion desactivo al dejarlos sin unidades; los que ya estaban inactivos o que se
+     * desactivaron por otro motivo conservan su estado.
+     */
+    public void revertStock(Map<String, Integer> quantities, String idOperation) {
+
+        LOG.infof("@revertStock REPO > Inicia reversion del stock de la operacion %s", idOperation);
+
+        LocalDateTime now = LocalDateTime.now();
+        List<WriteModel<ProductMsg>> writes = new ArrayList<>(quantities.size());
+
+        quantities.forEach((idProduct, quantity) -> writes.add(new UpdateOneModel<>(
+                Filters.and(Filters.eq("data.idProducto", idProduct), Filters.eq(STOCK_MOVEMENTS, idOperation)),
+                Updates.combine(
+                        Updates.inc("data.cantidadDisponible", quantity),
+                        Updates.set("meta.ultimaActualizacion", now),
+                        Updates.pull(STOCK_MOVEMENTS, idOperation)
+                ))));
+
+        writes.add(new UpdateManyModel<>(
+                Filters.and(Filters.in("data.idProducto", quantities.keySet()), Filters.eq(DEACTIVATED_BY, idOperation)),
+                Updates.combine(Updates.set("data.activo", true), Updates.unset(DEACTIVATED_BY))));
+
+        mongoCollection().bulkWrite(writes, new BulkWriteOptions().ordered(false));
+    }
+
+    /**
+     * Retira la marca de una operacion de inventario ya confirmada, que no se va a revertir, de los productos que
+     * toco. Tambien olvida que la operacion desactivo productos, porque ya no le corresponde reactivarlos.
+     */
+    public void clearStockMovements(Collection<String> idProducts, String idOperation) {
+
+        LOG.debugf("@clearStockMovements REPO > Se retira la marca de la operacion %s de %s productos", idOperation,
+                idProducts.size());
+
+        mongoCollection().bulkWrite(List.of(
+                new UpdateManyModel<>(
+                        Filters.and(Filters.in("data.idProducto", idProducts), Filters.eq(STOCK_MOVEMENTS, idOperation)),
+                        Updates.pull(STOCK_MOVEMENTS, idOperation)),
+                new UpdateManyModel<>(
+                        Filters.and(Filters.in("data.idProducto", idProducts), Filters.eq(DEACTIVATED_BY, idOperation)),
+                        Updates.unset(DEACTIVATED_BY))
+        ), new BulkWriteOptions().ordered(false));
+    }
+
+    // Solo los descuentos se condicionan al stock disponible; las devoluciones siempre se suman
+    private List<WriteModel<ProductMsg>> stockMovements(Map<String, Integer> quantities, String idOperation) {
+
+        LocalDateTime now = LocalDateTime.now();
+        List<WriteModel<ProductMsg>> writes = new ArrayList<>(quantities.size());
+
+        quantities.forEach((idProduct, quantity) -> writes.add(new UpdateOneModel<>(
+                quantity > 0
+                        ? Filters.and(Filters.eq("data.idProducto", idProduct), Filters.gte("data.cantidadDisponible", quantity))
+                        : Filters.eq("data.idProducto", idProduct),
+                Updates.combine(
+                        Updates.inc("data.cantidadDisponible", -quantity),
+                        Updates.set("meta.ultimaActualizacion", now),
+                        Updates.push(STOCK_MOVEMENTS, idOperation)
+                ))));
+
+        return writes;
+    }
+
+    private Map<String, Integer> filterQuantities(Map<String, Integer> quantities, IntPredicate condition) {
+
+        Map<String, Integer> filtered = new HashMap<>();
+        quantities.forEach((idProduct, quantity) -> {
+            if (condition.test(quantity)) filtered.put(idProduct, quantity);
+        });
+        return filtered;
+    }
+
+    // Igual que en la edicion del producto, el que se queda sin unidades deja de estar activo
+    private Bson soldOut(Map<String, Integer> quantities) {
+        return Filters.and(Filters.in("data.idProducto", quantities.keySet()), Filters.lte("data.cantidadDisponible", 0),
+                Filters.eq("data.activo", true));
+    }
+
+    private Bson deactivate(String idOperation) {
+        return Updates.combine(Updates.set("data.activo", false), Updates.set(DEACTIVATED_BY, idOperation));
+    }
+
+    /**
+     * Productos con {@code threshold} unidades o menos. Recorre solo el tramo del indice de cantidad que cumple la
+     * condicion y trae unicamente los campos que usan las alertas.
+     */
+    public List<ProductMsg> findLowStock(int threshold) {
+
+        LOG.infof("@findLowStock REPO > Inicia busqueda de los productos con %s unidades o menos", threshold);
+
+        return mongoCollection().find(Filters.lte("data.cantidadDisponible", threshold))
+                .projection(ALERT_FIELDS)
+                .into(new ArrayList<>());
+    }
+
+    /**
+     * Productos con unidades disponibles que vencen en {@code limitDate} o antes, incluidos los ya vencidos.
+     */
+    public List<ProductMsg> findExpiringBefore(LocalDate limitDate) {
+
+        LOG.infof("@findExpiringBefore REPO > Inicia busqueda de los productos que vencen hasta el %s", limitDate);
+
+        return mongoCollection().find(Filters.and(
+                        Filters.lte("data.fechaVencimiento", limitDate),
+                        Filters.gt("data.cantidadDisponible", 0)))
+                .projection(ALERT_FIELDS)
+                .into(new ArrayList<>());
+    }
+
+    /**
+     * Productos registrados con alguno de los codigos de barras indicados, en una sola consulta {@code $in} que trae
+     * unicamente el id y el codigo de barras.
+     */
+    public List<ProductMsg> findByBarcodes(Collection<String> barcodes) {
+
+        LOG.debugf("@findByBarcodes REPO > Inicia busqueda de %s codigos de barras en mongo", barcodes.size());
+
+        return mongoCollection().find(Filters.in("data.codigoBarras", barcodes))
+                .projection(BARCODE_FIELDS)
+                .into(new ArrayList<>());
+    }
+
+    /**
+     * Inserta los productos nuevos y actualiza por codigo de barras los existentes en un solo bulkWrite no ordenado,
+     * con las inserciones primero y en el orden recibido. La actualizacion solo cambia los campos que traia la fila y
+     * nunca el stock, que se mueve con las facturas, ni el estado activo que depende de el.
+     *
+     * @throws com.mongodb.MongoBulkWriteException si alguna escritura falla; las demas se aplican igual
+     */
+    public BulkWriteResult importProducts(List<ProductMsg> inserts, List<ProductMsg> updates) {
+
+        LOG.infof("@importProducts REPO > Inicia carga de %s productos nuevos y %s actualizaciones en mongo",
+                inserts.size(), updates.size());
+
+        List<WriteModel<ProductMsg>> writes = new ArrayList<>(inserts.size() + updates.size());
+
+        inserts.forEach(productMsg -> writes.add(new InsertOneModel<>(productMsg)));
+        updates.forEach(productMsg -> writes.add(new UpdateOneModel<>(
+                Filters.eq("data.codigoBarras", productMsg.getData().getBarcode()), importUpdate(productMsg))));
+
+        return mongoCollection().bulkWrite(writes, new BulkWriteOptions().ordered(false));
+    }
+
+    private Bson importUpdate(ProductMsg productMsg) {
+
+        Product product = productMsg.getData();
+        Meta meta = productMsg.getMeta();
+
+        List<Bson> updates = new ArrayList<>();
+
+        // Una columna vacia o ausente en el archivo deja el valor guardado
+        setIfPresent(updates, "data.nombre", product.getName());
+        setIfPresent(updates, "data.categoria", product.getCategory());
+        setIfPresent(updates, "data.tipoAnimal", product.getAnimalType());
+        setIfPresent(updates, "data.descripcion", product.getDescription());
+        setIfPresent(updates, "data.precio", product.getPrice());
+        setIfPresent(updates, "data.unidadMedida", product.getUnitOfMeasure());
+        setIfPresent(updates, "data.marca", product.getBrand());
+        setIfPresent(updates, "data.fechaVencimiento", product.getExpirationDate());
+
+        updates.add(Updates.set("meta.ultimaActualizacion", meta.getLastUpdate()));
+        updates.add(Updates.set("meta.nombreUsuarioActualizo", meta.getNameUserUpdated()));
+        updates.add(Updates.set("meta.correoUsuarioActualizo", meta.getEmailUserUpdated()));
+        updates.add(Updates.set("meta.rolUsuarioActualizo", meta.getRoleUserUpdated()));
+
+        return Updates.combine(updates);
+    }
+
+    private void setIfPresent(List<Bson> updates, String field, Object value) {
+        if (value != null) updates.add(Updates.set(field, value));
+    }
+
+    /**
+     * Busqueda del catalogo de productos activos en una sola agregacion. Todos los filtros van en el {@code $match}
+     * inicial, que empieza por {@code data.activo} para usar los indices compuestos del catalogo (o el de texto si hay
+     * busqueda), y el {@code $facet} solo pagina y cuenta los productos que ya pasaron los filtros.
+     */
+    public Document searchCatalog(ProductSearchFilter filter, ProductSearchSort sort, int skip, int limit) {
+
+        LOG.infof("@searchCatalog REPO > Inicia busqueda en el catalogo con los filtros: %s. Orden: %s, desde: %s, "
+                + "limite: %s", filter, sort, skip, limit);
+
+        boolean hasText = filter.getText() != null && !filter.getText().isBlank();
+
+        Bson match = and(
+                Filters.eq("data.activo", true),
+                hasText ? Filters.text(filter.getText(), new TextSearchOptions().language("spanish")) : null,
+                filter.getCategory() != null ? Filters.eq("data.categoria", filter.getCategory()) : null,
+                filter.getAnimalType() != null ? Filters.eq("data.tipoAnimal", filter.getAnimalType()) : null,
+                priceFilter(filter.getMinPrice(), filter.getMaxPrice()));
+
+        List<Bson> pipeline = List.of(
+                Aggregates.match(match),
+                Aggregates.facet(
+                        new Facet("productos",
+                                Aggregates.sort(catalogSort(sort, hasText)),
+                                Aggregates.skip(skip),
+                                Aggregates.limit(limit),
+                                Aggregates.project(Projections.exclude("data.mediaFile")),
+                                Aggregates.replaceRoot("$data")),
+                        new Facet("total",
+                                Aggregates.count("total")),
+                        new Facet("categorias",
+                                Aggregates.group("$data.categoria", Accumulators.sum("count", 1)),
+                                Aggregates.sort(Sorts.descending("count"))),
+                        new Facet("tiposAnimal",
+                                Aggregates.group("$data.tipoAnimal", Accumulators.sum("count", 1)),
+                                Aggregates.sort(Sorts.descending("count"))),
+                        new Facet("rangosPrecio",
+                                Aggregates.bucket("$data.precio", PRICE_RANGES, new BucketOptions()
+                                        .defaultBucket(PRICE_RANGES.get(PRICE_RANGES.size() - 1))
+                                        .output(Accumulators.sum("count", 1)))))
+        );
+
+        return mongoCollection().withDocumentClass(Document.class).aggregate(pipeline).first();
+    }
+
+    private Bson catalogSort(ProductSearchSort sort, boolean hasText) {
+
+        return switch (sort) {
+            case RELEVANCIA -> hasText
+                    ? Sorts.orderBy(Sorts.metaTextScore("puntaje"), Sorts.ascending("_id"))
+                    : Sorts.ascending("data.nombre", "_id");
+            case NOMBRE -> Sorts.ascending("data.nombre", "_id");
+            case PRECIO_ASC -> Sorts.orderBy(Sorts.ascending("data.precio"), Sorts.ascending("_id"));
+            case PRECIO_DESC -> Sorts.orderBy(Sorts.descending("data.precio"), Sorts.ascending("_id"));
+        };
+    }
+
+    private Bson priceFilter(Double minPrice, Double maxPrice) {
+
+        List<Bson> filters = new ArrayList<>();
+        if (minPrice != null) filters.add(Filters.gte("data.precio", minPrice));
+        if (maxPrice != null) filters.add(Filters.lte("data.precio", maxPrice));
+
+        return filters.isEmpty() ? null : Filters.and(filters);
+    }
+
+    private Bson and(Bson... filters) {
+
+        List<Bson> present = new ArrayList<>();
+        for (Bson filter : filters) {
+            if (filter != null) present.add(filter);
+        }
+        return present.isEmpty() ? Filters.empty() : Filters.and(present);
+    }
 }
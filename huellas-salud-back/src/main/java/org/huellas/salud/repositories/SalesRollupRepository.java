@@ -0,0 +1,157 @@
+package org.huellas.salud.repositories;
+
+import com.mongodb.MongoException;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.RenameCollectionOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import io.quarkus.mongodb.panache.PanacheMongoRepositoryBase;
+import io.quarkus.panache.common.Sort;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.huellas.salud.domain.invoice.SalesDimension;
+import org.huellas.salud.domain.invoice.SalesRollup;
+import org.jboss.logging.Logger;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@ApplicationScoped
+public class SalesRollupRepository implements PanacheMongoRepositoryBase<SalesRollup, String> {
+
+    private static final Logger LOG = Logger.getLogger(SalesRollupRepository.class);
+
+    private static final String REBUILD_SUFFIX = "_reconstruccion";
+
+    void createIndexes(@Observes StartupEvent startupEvent) {
+
+        LOG.info("@createIndexes REPO > Inicia creacion de los indices de la coleccion de resumen de ventas");
+
+        try {
+            createRollupIndexes(mongoCollection());
+        } catch (MongoException ex) {
+            LOG.errorf(ex, "@createIndexes REPO > No fue posible crear los indices de la coleccion de resumen de ventas");
+            return;
+        }
+
+        LOG.info("@createIndexes REPO > Finaliza creacion de los indices de la coleccion de resumen de ventas");
+    }
+
+    /**
+     * Suma los incrementos a los acumulados diarios con un solo bulkWrite; el acumulado que no existe se crea.
+     *
+     * @param session transaccion en curso, o {@code null} para escribir fuera de una transaccion
+     */
+    public void applyIncrements(ClientSession session, Collection<SalesRollup> increments) {
+
+        if (increments.isEmpty()) return;
+
+        LOG.infof("@applyIncrements REPO > Inicia actualizacion de %s acumulados de ventas", increments.size());
+
+        List<WriteModel<SalesRollup>> writes = new ArrayList<>(increments.size());
+
+        for (SalesRollup increment : increments) {
+            writes.add(new UpdateOneModel<>(Filters.eq("_id", increment.getId()), Updates.combine(
+                    Updates.setOnInsert("fecha", increment.getDate()),
+                    Updates.setOnInsert("dimension", increment.getDimension().name()),
+                    Updates.setOnInsert("clave", increment.getKey()),
+                    Updates.inc("ingresos", increment.getRevenue()),
+                    Updates.inc("unidades", increment.getUnits()),
+                    Updates.inc("facturas", increment.getInvoices())
+            ), new UpdateOptions().upsert(true)));
+        }
+
+        BulkWriteOptions options = new BulkWriteOptions().ordered(false);
+
+        if (session == null) mongoCollection().bulkWrite(writes, options);
+        else mongoCollection().bulkWrite(session, writes, options);
+    }
+
+    /**
+     * Reemplaza todos los acumulados. Se escriben en una coleccion temporal con sus indices y luego se renombra sobre
+     * la coleccion actual, que mongo reemplaza de forma atomica. Los cambios de facturas que lleguen mientras se
+     * reconstruye quedan en la coleccion anterior y se pierden, por lo que la reconstruccion debe ejecutarse cuando no
+     * se esten registrando facturas.
+     */
+    public void replaceAll(Collection<SalesRollup> rollups) {
+
+        MongoNamespace namespace = mongoCollection().getNamespace();
+
+        LOG.infof("@replaceAll REPO > Inicia reemplazo de la coleccion %s con %s acumulados",
+                namespace.getCollectionName(), rollups.size());
+
+        if (rollups.isEmpty()) {
+            mongoCollection().deleteMany(Filters.empty());
+            return;
+        }
+
+        MongoCollection<SalesRollup> rebuild = mongoDatabase()
+                .getCollection(namespace.getCollectionName() + REBUILD_SUFFIX, SalesRollup.class)
+                .withCodecRegistry(mongoCollection().getCodecRegistry());
+
+        rebuild.drop();
+        createRollupIndexes(rebuild);
+        rebuild.insertMany(new ArrayList<>(rollups), new InsertManyOptions().ordered(false));
+        rebuild.renameCollection(namespace, new RenameCollectionOptions().dropTarget(true));
+
+        LOG.infof("@replaceAll REPO > Finaliza reemplazo de la coleccion %s", namespace.getCollectionName());
+    }
+
+    private void createRollupIndexes(MongoCollection<SalesRollup> collection) {
+        collection.createIndex(Indexes.ascending("dimension", "fecha", "clave"),
+                new IndexOptions().name("idx_dimension_fecha_clave"));
+    }
+
+    public List<SalesRollup> findRollups(SalesDimension dimension, LocalDate from, LocalDate to, String key) {
+
+        LOG.infof("@findRollups REPO > Inicia busqueda de los acumulados diarios de %s entre %s y %s. Clave: %s",
+                dimension, from, to, key);
+
+        return key == null
+                ? list("dimension = ?1 and fecha >= ?2 and fecha <= ?3", Sort.ascending("fecha", "clave"),
+                        dimension.name(), from, to)
+                : list("dimension = ?1 and fecha >= ?2 and fecha <= ?3 and clave = ?4", Sort.ascending("fecha"),
+                        dimension.name(), from, to, key);
+    }
+
+    /**
+     * Totales de un rango por cada clave de la dimension, de mayor a menor ingreso.
+     */
+    public List<Document> aggregateTotals(SalesDimension dimension, LocalDate from, LocalDate to, int limit) {
+
+        LOG.infof("@aggregateTotals REPO > Inicia agregacion de los totales de %s entre %s y %s", dimension, from, to);
+
+        List<Bson> pipeline = List.of(
+                Aggregates.match(Filters.and(
+                        Filters.eq("dimension", dimension.name()),
+                        Filters.gte("fecha", from),
+                        Filters.lte("fecha", to)
+                )),
+                Aggregates.group("$clave",
+                        Accumulators.sum("ingresos", "$ingresos"),
+                        Accumulators.sum("unidades", "$unidades"),
+                        Accumulators.sum("facturas", "$facturas")),
+                Aggregates.sort(Sorts.descending("ingresos")),
+                Aggregates.limit(limit)
+        );
+
+        return mongoCollection().withDocumentClass(Document.class).aggregate(pipeline).into(new ArrayList<>());
+    }
+}
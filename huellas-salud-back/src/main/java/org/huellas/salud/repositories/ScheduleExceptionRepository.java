@@ -0,0 +1,65 @@
+package org.huellas.salud.repositories;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import io.quarkus.mongodb.panache.PanacheMongoRepository;
+import io.quarkus.panache.common.Sort;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.huellas.salud.domain.schedule.ScheduleExceptionMsg;
+import org.jboss.logging.Logger;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+@ApplicationScoped
+public class ScheduleExceptionRepository implements PanacheMongoRepository<ScheduleExceptionMsg> {
+
+    private static final Logger LOG = Logger.getLogger(ScheduleExceptionRepository.class);
+
+    void createIndexes(@Observes StartupEvent startupEvent) {
+
+        LOG.info("@createIndexes REPO > Inicia creacion de los indices de la coleccion de excepciones de horario");
+
+        try {
+            mongoCollection().createIndex(Indexes.ascending("data.idVeterinario", "data.fechaFin"),
+                    new IndexOptions().name("idx_veterinario_fechaFin"));
+        } catch (MongoException ex) {
+            LOG.errorf(ex, "@createIndexes REPO > No fue posible crear los indices de la coleccion de excepciones de horario");
+            return;
+        }
+
+        LOG.info("@createIndexes REPO > Finaliza creacion de los indices de la coleccion de excepciones de horario");
+    }
+
+    public Optional<ScheduleExceptionMsg> findScheduleExceptionById(String idException) {
+
+        LOG.infof("@findScheduleExceptionById REPO > Inicia busqueda de la excepcion de horario con id: %s", idException);
+
+        return find("data.idExcepcion = ?1", idException).firstResultOptional();
+    }
+
+    /**
+     * Excepciones del veterinario y festivos de la clinica (sin veterinario) que se cruzan con el rango de fechas.
+     */
+    public List<ScheduleExceptionMsg> findExceptionsInRange(String idVeterinarian, LocalDate from, LocalDate to) {
+
+        LOG.infof("@findExceptionsInRange REPO > Inicia busqueda de las excepciones de horario del veterinario %s "
+                + "entre %s y %s", idVeterinarian, from, to);
+
+        return list("data.idVeterinario in ?1 and data.fechaFin >= ?2 and data.fechaInicio <= ?3",
+                Sort.ascending("data.fechaInicio"), Arrays.asList(idVeterinarian, null), from, to);
+    }
+
+    public long deleteScheduleExceptionDataMongo(String idException) {
+
+        LOG.infof("@deleteScheduleExceptionDataMongo REPO > Inicia eliminacion de la excepcion de horario con id: %s",
+                idException);
+
+        return delete("data.idExcepcion = ?1", idException);
+    }
+}
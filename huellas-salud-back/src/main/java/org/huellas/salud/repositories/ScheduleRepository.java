@@ -4,6 +4,7 @@ import io.quarkus.mongodb.panache.PanacheMongoRepository;
 import io.quarkus.panache.common.Sort;
 import jakarta.enterprise.context.ApplicationScoped;
 import java.time.DayOfWeek;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.huellas.salud.domain.schedule.ScheduleMsg;
@@ -59,6 +60,14 @@ public class ScheduleRepository implements PanacheMongoRepository<ScheduleMsg> {
                 .firstResultOptional();
     }
 
+    public List<ScheduleMsg> findSchedulesByVeterinarians(Collection<String> idVeterinarians) {
+
+        LOG.infof("@findSchedulesByVeterinarians REPO > Inicia busqueda de los horarios de %s veterinarios",
+                idVeterinarians.size());
+
+        return list("data.idVeterinario in ?1", idVeterinarians);
+    }
+
     public boolean existsScheduleForDayExcludingId(String idVet, String day, String excludeId) {
         return count("data.idVeterinario = ?1 AND data.diaSemana = ?2 AND data.idHorario != ?3",
                 idVet, day, excludeId) > 0;
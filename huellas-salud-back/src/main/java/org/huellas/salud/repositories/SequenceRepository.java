@@ -0,0 +1,32 @@
+package org.huellas.salud.repositories;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
+import io.quarkus.mongodb.panache.PanacheMongoRepositoryBase;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.huellas.salud.domain.sequence.Sequence;
+import org.jboss.logging.Logger;
+
+@ApplicationScoped
+public class SequenceRepository implements PanacheMongoRepositoryBase<Sequence, String> {
+
+    private static final Logger LOG = Logger.getLogger(SequenceRepository.class);
+
+    /**
+     * Reserva atomicamente los siguientes {@code size} valores de la secuencia y retorna el ultimo de ellos. El
+     * contador se crea en cero la primera vez que se usa.
+     */
+    public long reserveBlock(String name, int size) {
+
+        LOG.infof("@reserveBlock REPO > Se reserva un bloque de %s valores de la secuencia %s", size, name);
+
+        Sequence sequence = mongoCollection().findOneAndUpdate(
+                Filters.eq("_id", name),
+                Updates.inc("valor", size),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+
+        return sequence.getValue();
+    }
+}
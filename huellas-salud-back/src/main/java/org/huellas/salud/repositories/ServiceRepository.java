@@ -1,11 +1,17 @@
 package org.huellas.salud.repositories;
 
+import com.mongodb.MongoException;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
 import io.quarkus.mongodb.panache.PanacheMongoRepository;
 import io.quarkus.panache.common.Sort;
+import io.quarkus.runtime.StartupEvent;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
 import org.huellas.salud.domain.service.ServiceMsg;
 import org.jboss.logging.Logger;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,6 +20,21 @@ public class ServiceRepository implements PanacheMongoRepository<ServiceMsg> {
 
     private final Logger LOG = Logger.getLogger(ServiceRepository.class);
 
+    void createIndexes(@Observes StartupEvent startupEvent) {
+
+        LOG.info("@createIndexes REPO > Inicia creacion de los indices de la coleccion de servicios");
+
+        try {
+            // Tambien lo usa el $lookup de la hoja de agenda de citas
+            mongoCollection().createIndex(Indexes.ascending("data.idServicio"), new IndexOptions().name("idx_idServicio"));
+        } catch (MongoException ex) {
+            LOG.errorf(ex, "@createIndexes REPO > No fue posible crear los indices de la coleccion de servicios");
+            return;
+        }
+
+        LOG.info("@createIndexes REPO > Finaliza creacion de los indices de la coleccion de servicios");
+    }
+
     public List<ServiceMsg> getRegisteredServicesMongo() {
 
         LOG.infof("@getRegisteredServicesMongo REPO > Inicia obtencion de los servicios registrados en mongo, estos se "
@@ -29,6 +50,13 @@ public class ServiceRepository implements PanacheMongoRepository<ServiceMsg> {
         return find("data.idServicio = ?1", idService).firstResultOptional();
     }
 
+    public List<ServiceMsg> findServicesByIds(Collection<String> serviceIds) {
+
+        LOG.infof("@findServicesByIds REPO > Inicia busqueda de los registros de los servicios con id: %s", serviceIds);
+
+        return list("data.idServicio in ?1", serviceIds);
+    }
+
     public Optional<ServiceMsg> findServiceByName(String name) {
 
         LOG.infof("@findServiceByName REPO > Inicia busqueda del registro del servicio con nombre "
@@ -0,0 +1,134 @@
+package org.huellas.salud.repositories;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Field;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import io.quarkus.mongodb.panache.PanacheMongoRepository;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.huellas.salud.domain.appointment.SlotReservation;
+import org.jboss.logging.Logger;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@ApplicationScoped
+public class SlotReservationRepository implements PanacheMongoRepository<SlotReservation> {
+
+    private static final Logger LOG = Logger.getLogger(SlotReservationRepository.class);
+
+    // La agenda de un dia se purga un dia despues de que termina
+    private static final long EXPIRATION_DAYS = 2;
+
+    void createIndexes(@Observes StartupEvent startupEvent) {
+
+        LOG.info("@createIndexes REPO > Inicia creacion de los indices de la coleccion de reservas de horario");
+
+        try {
+            mongoCollection().createIndex(Indexes.ascending("idVeterinario", "fecha"),
+                    new IndexOptions().name("uk_veterinario_fecha").unique(true));
+            mongoCollection().createIndex(Indexes.ascending("reservas.idCita"), new IndexOptions().name("idx_idCita"));
+            mongoCollection().createIndex(Indexes.ascending("fechaExpiracion"),
+                    new IndexOptions().name("ttl_fechaExpiracion").expireAfter(0L, TimeUnit.SECONDS));
+        } catch (MongoException ex) {
+            LOG.errorf(ex, "@createIndexes REPO > No fue posible crear los indices de la coleccion de reservas de horario");
+            return;
+        }
+
+        LOG.info("@createIndexes REPO > Finaliza creacion de los indices de la coleccion de reservas de horario");
+    }
+
+    /**
+     * Reserva de forma atomica el intervalo exacto [start, end) de la cita en la agenda del dia del veterinario. La
+     * actualizacion solo aplica si ninguna otra cita del documento se cruza con el intervalo, y reemplaza el intervalo
+     * que la cita tenia en ese dia. Si el documento no cumple la condicion, el upsert intenta insertar otro para el
+     * mismo veterinario y dia y el indice unico lo rechaza, por lo que de dos solicitudes concurrentes que se cruzan
+     * solo una puede reservar. Las citas adyacentes (una termina cuando la otra inicia) no se cruzan.
+     * <p>
+     * El intervalo se guarda en el dia en que inicia la cita; el horario del veterinario no permite citas que
+     * terminen otro dia.
+     *
+     * @return false si otra cita ya ocupa parte del intervalo
+     */
+    public boolean reserveSlots(String idVeterinarian, String idAppointment, LocalDateTime start, LocalDateTime end) {
+
+        LOG.infof("@reserveSlots REPO > Inicia reserva del horario entre %s y %s del veterinario %s para la cita %s",
+                start, end, idVeterinarian, idAppointment);
+
+        LocalDate date = start.toLocalDate();
+
+        Bson free = Filters.and(
+                Filters.eq("idVeterinario", idVeterinarian),
+                Filters.eq("fecha", date),
+                Filters.not(Filters.elemMatch("reservas", Filters.and(
+                        Filters.ne("idCita", idAppointment),
+                        Filters.lt("inicio", end),
+                        Filters.gt("fin", start)))));
+
+        Document otherReservations = new Document("$filter", new Document("input",
+                new Document("$ifNull", List.of("$reservas", List.of())))
+                .append("cond", new Document("$ne", List.of("$$this.idCita", new Document("$literal", idAppointment)))));
+
+        Document reservation = new Document("idCita", new Document("$literal", idAppointment))
+                .append("inicio", start)
+                .append("fin", end);
+
+        List<Bson> reserve = List.of(Aggregates.set(
+                new Field<>("reservas", new Document("$concatArrays", List.of(otherReservations, List.of(reservation)))),
+                new Field<>("fechaExpiracion", date.plusDays(EXPIRATION_DAYS).atStartOfDay())));
+
+        if (!upsert(free, reserve) && !upsert(free, reserve)) {
+
+            LOG.warnf("@reserveSlots REPO > El horario entre %s y %s del veterinario %s ya esta reservado. No se "
+                    + "realiza la reserva de la cita %s", start, end, idVeterinarian, idAppointment);
+
+            return false;
+        }
+
+        // Si la cita cambio de dia o de veterinario se libera el intervalo que tenia antes
+        long released = mongoCollection().updateMany(
+                Filters.and(Filters.eq("reservas.idCita", idAppointment),
+                        Filters.nor(Filters.and(Filters.eq("idVeterinario", idVeterinarian), Filters.eq("fecha", date)))),
+                Updates.pull("reservas", new Document("idCita", idAppointment))).getModifiedCount();
+
+        LOG.infof("@reserveSlots REPO > Finaliza reserva de la cita %s. Agendas liberadas: %s", idAppointment, released);
+
+        return true;
+    }
+
+    /**
+     * @return false si el upsert choco con el indice unico. Ocurre cuando el horario esta ocupado, pero tambien
+     * cuando otra reserva creo la agenda del dia al mismo tiempo; por eso quien llama reintenta una vez, ya con el
+     * documento existente.
+     */
+    private boolean upsert(Bson filter, List<Bson> update) {
+
+        try {
+            mongoCollection().updateOne(filter, update, new UpdateOptions().upsert(true));
+            return true;
+        } catch (MongoWriteException ex) {
+            if (ErrorCategory.fromErrorCode(ex.getCode()) != ErrorCategory.DUPLICATE_KEY) throw ex;
+            return false;
+        }
+    }
+
+    public long releaseSlots(String idAppointment) {
+
+        LOG.infof("@releaseSlots REPO > Inicia liberacion del horario reservado por la cita %s", idAppointment);
+
+        return mongoCollection().updateMany(Filters.eq("reservas.idCita", idAppointment),
+                Updates.pull("reservas", new Document("idCita", idAppointment))).getModifiedCount();
+    }
+}
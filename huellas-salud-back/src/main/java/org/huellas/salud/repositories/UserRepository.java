@@ -1,11 +1,17 @@
 package org.huellas.salud.repositories;
 
+import com.mongodb.MongoException;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
 import io.quarkus.mongodb.panache.PanacheMongoRepository;
 import io.quarkus.panache.common.Sort;
+import io.quarkus.runtime.StartupEvent;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
 import org.huellas.salud.domain.user.UserMsg;
 import org.jboss.logging.Logger;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,6 +20,21 @@ public class UserRepository implements PanacheMongoRepository<UserMsg> {
 
     private final Logger LOG = Logger.getLogger(UserRepository.class);
 
+    void createIndexes(@Observes StartupEvent startupEvent) {
+
+        LOG.info("@createIndexes REPO > Inicia creacion de los indices de la coleccion de usuarios");
+
+        try {
+            // Tambien lo usa el $lookup de la hoja de agenda de citas
+            mongoCollection().createIndex(Indexes.ascending("data.numeroDocumento"), new IndexOptions().name("idx_numeroDocumento"));
+        } catch (MongoException ex) {
+            LOG.errorf(ex, "@createIndexes REPO > No fue posible crear los indices de la coleccion de usuarios");
+            return;
+        }
+
+        LOG.info("@createIndexes REPO > Finaliza creacion de los indices de la coleccion de usuarios");
+    }
+
     public List<UserMsg> getRegisteredUsersMongo() {
 
         LOG.infof("@getRegisteredUsersMongo REPO > Inicia obtencion de los usuarios registrados en mongo. estos se " +
@@ -30,6 +51,14 @@ public class UserRepository implements PanacheMongoRepository<UserMsg> {
         return list("data.rol = ?1 and data.activo = ?2", "VETERINARIO", true);
     }
 
+    public List<UserMsg> getAdministratorsMongo() {
+
+        LOG.infof("@getAdministratorsMongo REPO > Inicia obtencion de los usuarios con rol administrador registrados "
+                + "en mongo.");
+
+        return list("data.rol = ?1 and data.activo = ?2", "ADMINISTRADOR", true);
+    }
+
     public Optional<UserMsg> findUserByDocumentNumber(String documentNumber) {
 
         LOG.infof("@findUserByDocumentNumber REPO > Inicia busqueda del registro del usuario con numero de " +
@@ -38,6 +67,14 @@ public class UserRepository implements PanacheMongoRepository<UserMsg> {
         return find("data.numeroDocumento = ?1", documentNumber).firstResultOptional();
     }
 
+    public List<UserMsg> findUsersByDocumentNumbers(Collection<String> documentNumbers) {
+
+        LOG.infof("@findUsersByDocumentNumbers REPO > Inicia busqueda de los registros de los usuarios con numero de " +
+                "documento: %s en mongo", documentNumbers);
+
+        return list("data.numeroDocumento in ?1", documentNumbers);
+    }
+
     public Optional<UserMsg> findUserDataByEmail(String emailUser) {
 
         LOG.infof("@findUserDataByEmail REPO > Inicia busqueda del registro del usuario con email: %s", emailUser);
@@ -1,5 +1,6 @@
 package org.huellas.salud.rest;
 
+import io.smallrye.mutiny.Multi;
 import jakarta.annotation.security.PermitAll;
 import jakarta.annotation.security.RolesAllowed;
 import org.eclipse.microprofile.openapi.annotations.Operation;
@@ -9,10 +10,22 @@ import org.eclipse.microprofile.openapi.annotations.parameters.RequestBody;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
 import org.huellas.salud.domain.appointment.AppointmentMsg;
 import org.huellas.salud.domain.appointment.Appointment;
+import org.huellas.salud.domain.appointment.AppointmentEvent;
+import org.huellas.salud.domain.appointment.AppointmentFilter;
+import org.huellas.salud.domain.appointment.AppointmentPage;
+import org.huellas.salud.domain.appointment.AppointmentRescheduleRequest;
+import org.huellas.salud.domain.appointment.AppointmentRescheduleResult;
+import org.huellas.salud.domain.appointment.AppointmentStatus;
+import org.huellas.salud.domain.appointment.AvailableSlot;
+import org.huellas.salud.services.AppointmentEventPublisher;
+import org.huellas.salud.services.AppointmentRescheduleService;
 import org.huellas.salud.services.AppointmentService;
+import org.huellas.salud.services.ExportService;
+import org.huellas.salud.services.IdempotencyService;
 import jakarta.validation.constraints.NotBlank;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 import org.huellas.salud.helper.exceptions.HSException;
+import org.huellas.salud.helper.export.ExportFormat;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 import org.eclipse.microprofile.openapi.annotations.enums.SchemaType;
@@ -20,6 +33,7 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.core.Response;
 import org.jboss.logging.Logger;
+import org.jboss.resteasy.reactive.RestStreamElementType;
 import jakarta.ws.rs.*;
 import org.huellas.salud.helper.validators.ValidationGroups;
 import jakarta.validation.groups.ConvertGroup;
@@ -31,6 +45,7 @@ import java.util.Map;
 import java.net.UnknownHostException;
 import java.util.List;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Collections;
 
 @Path("/internal/appointment")
@@ -43,6 +58,18 @@ public class AppointmentApi {
     @Inject
     AppointmentService appointmentService;
 
+    @Inject
+    AppointmentEventPublisher appointmentEventPublisher;
+
+    @Inject
+    AppointmentRescheduleService appointmentRescheduleService;
+
+    @Inject
+    ExportService exportService;
+
+    @Inject
+    IdempotencyService idempotencyService;
+
     @GET
     @Path("/list-appointments")
     @RolesAllowed("ADMINISTRADOR")
@@ -72,6 +99,173 @@ public class AppointmentApi {
         return Response.ok().entity(appointments).build();
     }
 
+    @GET
+    @Path("/search")
+    @RolesAllowed({"ADMINISTRADOR", "VETERINARIO"})
+    @Tag(name = "Gestión de citas")
+    @APIResponses(
+            value = {
+                @APIResponse(
+                        responseCode = "200",
+                        description = "Se retorna la pagina de citas que cumplen con los filtros",
+                        content = @Content(schema = @Schema(implementation = AppointmentPage.class))
+                ),
+                @APIResponse(
+                        responseCode = "400",
+                        description = "El cursor o el limite enviados no son validos"
+                ),
+                @APIResponse(
+                        responseCode = "403",
+                        description = "Un veterinario intento consultar las citas de otro veterinario"
+                )
+            }
+    )
+    @Operation(
+            summary = "Consulta paginada de citas",
+            description = "Permite filtrar las citas por estado, rango de fechas, veterinario, mascota y propietario. "
+                    + "Los veterinarios solo consultan las citas que atienden. Los resultados se ordenan de la cita "
+                    + "mas reciente a la mas antigua y se paginan con el cursor nextCursor retornado en la pagina anterior"
+    )
+    public Response searchAppointments(
+            @QueryParam("status") AppointmentStatus status,
+            @QueryParam("from") LocalDateTime from,
+            @QueryParam("to") LocalDateTime to,
+            @QueryParam("idVeterinarian") String idVeterinarian,
+            @QueryParam("idPet") String idPet,
+            @QueryParam("idOwner") String idOwner,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("limit") Integer limit) throws HSException {
+
+        LOG.infof("@searchAppointments API > Inicia servicio para consultar citas paginadas desde el cursor: %s", cursor);
+
+        AppointmentFilter filter = AppointmentFilter.builder()
+                .status(status)
+                .from(from)
+                .to(to)
+                .idVeterinarian(idVeterinarian)
+                .idPet(idPet)
+                .idOwner(idOwner)
+                .build();
+
+        AppointmentPage page = appointmentService.searchAppointments(filter, cursor, limit);
+
+        LOG.infof("@searchAppointments API > Finaliza servicio para consultar citas paginadas. Se retornan %s registros",
+                page.getAppointments().size());
+
+        return Response.ok().entity(page).build();
+    }
+
+    @GET
+    @Path("/day-sheet/{idVeterinarian}")
+    @RolesAllowed({"ADMINISTRADOR", "VETERINARIO"})
+    @Tag(name = "Gestión de citas")
+    @APIResponses(
+            value = {
+                @APIResponse(
+                        responseCode = "200",
+                        description = "Se retorna la agenda del veterinario con la mascota, el propietario y los servicios de cada cita"
+                ),
+                @APIResponse(
+                        responseCode = "400",
+                        description = "La cantidad de dias solicitada no es valida"
+                ),
+                @APIResponse(
+                        responseCode = "403",
+                        description = "El veterinario autenticado intenta consultar la agenda de otro veterinario"
+                )
+            }
+    )
+    @Operation(
+            summary = "Agenda diaria o semanal de un veterinario",
+            description = "Permite obtener en una sola consulta las citas de un veterinario a partir de una fecha "
+                    + "(1 a 7 dias) junto con los datos basicos de la mascota, el propietario y los servicios"
+    )
+    public Response getDaySheet(
+            @PathParam("idVeterinarian") String idVeterinarian,
+            @QueryParam("date") @NotNull(message = "Debe enviar la fecha de la agenda") LocalDate date,
+            @QueryParam("days") Integer days) throws HSException {
+
+        LOG.infof("@getDaySheet API > Inicia servicio para obtener la agenda del veterinario %s desde %s por %s dias",
+                idVeterinarian, date, days);
+
+        return Response.ok(appointmentService.streamDaySheet(idVeterinarian, date, days)).build();
+    }
+
+    @GET
+    @Path("/export")
+    @Produces({"text/csv", "application/x-ndjson"})
+    @RolesAllowed("ADMINISTRADOR")
+    @Tag(name = "Gestión de citas")
+    @APIResponses(
+            value = {
+                @APIResponse(
+                        responseCode = "200",
+                        description = "Se descarga el archivo con las citas del rango de fechas"
+                ),
+                @APIResponse(
+                        responseCode = "400",
+                        description = "El rango de fechas no es valido"
+                )
+            }
+    )
+    @Operation(
+            summary = "Exportación de citas",
+            description = "Permite descargar en CSV o NDJSON las citas de un rango de fechas de hasta un año"
+    )
+    public Response exportAppointments(
+            @QueryParam("from") @NotNull(message = "Debe enviar la fecha de inicio") LocalDate from,
+            @QueryParam("to") @NotNull(message = "Debe enviar la fecha de fin") LocalDate to,
+            @Parameter(description = "CSV o NDJSON", example = "CSV")
+            @QueryParam("format") @DefaultValue("CSV") ExportFormat format) throws HSException {
+
+        LOG.infof("@exportAppointments API > Inicia servicio para exportar en %s las citas entre %s y %s",
+                format, from, to);
+
+        return Response.ok(exportService.exportAppointments(from, to, format), format.getMediaType())
+                .header("Content-Disposition", "attachment; filename=\""
+                        + exportService.fileName("citas", from, to, format) + "\"")
+                .build();
+    }
+
+    @GET
+    @Path("/events")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    @RolesAllowed({"ADMINISTRADOR", "VETERINARIO", "CLIENTE"})
+    @Tag(name = "Gestión de citas")
+    @APIResponse(
+            responseCode = "200",
+            description = "Flujo de eventos de creacion, actualizacion, cancelacion y eliminacion de citas",
+            content = @Content(schema = @Schema(implementation = AppointmentEvent.class))
+    )
+    @Operation(
+            summary = "Suscripcion a los cambios de citas",
+            description = "Envia por Server-Sent Events los cambios de las citas a medida que ocurren, opcionalmente "
+                    + "filtrados por veterinario o por propietario, para que los clientes no tengan que consultar "
+                    + "periodicamente el listado de citas ni los horarios disponibles. Los veterinarios solo reciben "
+                    + "los eventos de las citas que atienden (incluidas las que se les reasignan a otro veterinario) "
+                    + "y los clientes los de sus propias citas. Cada 25 segundos se envia un evento LATIDO para "
+                    + "mantener la conexion. Solo se reciben los cambios hechos en la instancia a la que se conecta "
+                    + "el cliente; al reconectarse debe consultar de nuevo las citas"
+    )
+    public Multi<AppointmentEvent> streamAppointmentEvents(
+            @QueryParam("idVeterinarian") String idVeterinarian,
+            @QueryParam("idOwner") String idOwner) throws HSException {
+
+        LOG.infof("@streamAppointmentEvents API > Inicia suscripcion a los eventos de citas del veterinario %s y "
+                + "propietario %s", idVeterinarian, idOwner);
+
+        // Los filtros de quien no es administrador se fijan con la identidad del token antes de suscribirse
+        AppointmentFilter filter = AppointmentFilter.builder()
+                .idVeterinarian(idVeterinarian)
+                .idOwner(idOwner)
+                .build();
+
+        appointmentService.restrictToCurrentUser(filter);
+
+        return appointmentEventPublisher.stream(filter.getIdVeterinarian(), filter.getIdOwner());
+    }
+
     @GET
     @Path("/list-appointments-user/{idOwner}")
     @RolesAllowed({"ADMINISTRADOR", "CLIENTE"})
@@ -142,7 +336,8 @@ public class AppointmentApi {
     @Tag(name = "Gestión de citas")
     @Operation(
             summary = "Obtiene los horarios disponibles para un veterinario en una fecha específica",
-            description = "Devuelve una lista de horas disponibles (de 30 minutos) dentro del horario del veterinario, excluyendo su almuerzo y citas ocupadas"
+            description = "Devuelve una lista de horas disponibles dentro del horario del veterinario, excluyendo su almuerzo y citas ocupadas. "
+                    + "La duracion de la cita se calcula con los servicios enviados (30 minutos si no se envia ninguno)"
     )
     @APIResponse(
             responseCode = "200",
@@ -151,16 +346,97 @@ public class AppointmentApi {
     )
     public Response getAvailableSlots(
             @QueryParam("idVeterinarian") String idVeterinarian,
-            @QueryParam("date") LocalDate date) throws HSException {
+            @QueryParam("date") LocalDate date,
+            @QueryParam("idService") List<String> serviceIds) throws HSException {
 
-        LOG.infof("@getAvailableSlots API > Consultando horarios disponibles del veterinario %s para el día %s",
-                idVeterinarian, date);
+        LOG.infof("@getAvailableSlots API > Consultando horarios disponibles del veterinario %s para el día %s "
+                + "con los servicios %s", idVeterinarian, date, serviceIds);
 
-        List<String> availableSlots = appointmentService.getAvailableSlots(idVeterinarian, date);
+        List<String> availableSlots = appointmentService.getAvailableSlots(idVeterinarian, date, serviceIds);
+
+        return Response.ok(Collections.singletonMap("availableSlots", availableSlots)).build();
+    }
+
+    @GET
+    @Path("/next-available")
+    @PermitAll
+    @Tag(name = "Gestión de citas")
+    @Operation(
+            summary = "Obtiene los siguientes horarios disponibles con cualquier veterinario",
+            description = "Devuelve los primeros horarios libres entre todos los veterinarios activos en un rango de "
+                    + "fechas (por defecto desde hoy y hasta 31 dias). La duracion de la cita se calcula con los "
+                    + "servicios enviados (30 minutos si no se envia ninguno)"
+    )
+    @APIResponse(
+            responseCode = "200",
+            description = "Lista de horarios disponibles ordenados por fecha",
+            content = @Content(schema = @Schema(implementation = AvailableSlot.class, type = SchemaType.ARRAY))
+    )
+    public Response getNextAvailableSlots(
+            @QueryParam("from") LocalDate from,
+            @QueryParam("to") LocalDate to,
+            @QueryParam("idService") List<String> serviceIds,
+            @QueryParam("limit") Integer limit) throws HSException {
+
+        LOG.infof("@getNextAvailableSlots API > Consultando los siguientes %s horarios disponibles entre %s y %s con "
+                + "los servicios %s", limit, from, to, serviceIds);
+
+        List<AvailableSlot> availableSlots = appointmentService.getNextAvailableSlots(from, to, serviceIds, limit);
 
         return Response.ok(Collections.singletonMap("availableSlots", availableSlots)).build();
     }
 
+    @POST
+    @Path("/reschedule")
+    @RolesAllowed("ADMINISTRADOR")
+    @Tag(name = "Gestión de citas")
+    @APIResponses(
+            value = {
+                @APIResponse(
+                        responseCode = "200",
+                        description = "Se retorna el resultado de la reprogramacion de cada cita",
+                        content = @Content(schema = @Schema(implementation = AppointmentRescheduleResult.class, type = SchemaType.ARRAY))
+                ),
+                @APIResponse(
+                        responseCode = "400",
+                        description = "El periodo o el veterinario destino no son validos"
+                )
+            }
+    )
+    @Operation(
+            summary = "Reprogramacion masiva de citas de un veterinario",
+            description = "Mueve las citas pendientes de un veterinario en un periodo a otro veterinario o a los "
+                    + "siguientes horarios libres del mismo veterinario, e informa el resultado de cada cita"
+    )
+    public Response rescheduleAppointments(
+            @RequestBody(
+                    name = "rescheduleRequest",
+                    description = "Veterinario no disponible, periodo de ausencia y veterinario destino opcional",
+                    required = true,
+                    content = @Content(example = """
+                        {
+                                "idVeterinarian": "1013100931",
+                                "from": "2025-12-05T00:00:00",
+                                "to": "2025-12-06T00:00:00",
+                                "idTargetVeterinarian": "1013100932"
+                        }"""
+                    )
+            )
+            @NotNull(message = "Debe ingresar la informacion de la reprogramacion")
+            @Valid AppointmentRescheduleRequest rescheduleRequest
+    ) throws HSException {
+
+        LOG.infof("@rescheduleAppointments API > Inicia servicio de reprogramacion masiva de citas con la data: %s",
+                rescheduleRequest);
+
+        List<AppointmentRescheduleResult> results = appointmentRescheduleService.rescheduleAppointments(rescheduleRequest);
+
+        LOG.infof("@rescheduleAppointments API > Finaliza servicio de reprogramacion masiva. Se procesaron %s citas",
+                results.size());
+
+        return Response.ok().entity(results).build();
+    }
+
     @POST
     @Path("/create")
     @RolesAllowed({"ADMINISTRADOR", "CLIENTE", "VETERINARIO"})
@@ -190,20 +466,26 @@ public class AppointmentApi {
                     )
             )
             @NotNull(message = "Debe ingresar el objeto data con la informacion de la cita a registrar")
-            @Valid @ConvertGroup(to = ValidationGroups.Post.class) AppointmentMsg appointmentMsg
+            @Valid @ConvertGroup(to = ValidationGroups.Post.class) AppointmentMsg appointmentMsg,
+            @Parameter(description = "Llave unica del intento de creacion. Los reintentos con la misma llave "
+                    + "reciben la respuesta original sin volver a crear el registro")
+            @HeaderParam(IdempotencyService.IDEMPOTENCY_KEY_HEADER) String idempotencyKey
     ) throws UnknownHostException, HSException {
 
         LOG.infof("@createAppointmentData API > Inicia ejecucion del servicio para crear el registro de una cita "
                 + "en base de datos con la data: %s", appointmentMsg.getData());
 
-        AppointmentMsg appointmentCreated = appointmentService.saveAppointmentDataMongo(appointmentMsg);
+        return idempotencyService.execute("appointment-create", idempotencyKey, appointmentMsg, () -> {
 
-        LOG.infof("@createAppointmentData API > Finaliza ejecucion del servicio para crear el registro de una cita "
-                + "en base de datos. Se registro la siguiente informacion: %s", appointmentMsg);
+            AppointmentMsg appointmentCreated = appointmentService.saveAppointmentDataMongo(appointmentMsg);
 
-        return Response.status(Response.Status.CREATED)
-                .entity(appointmentCreated)
-                .build();
+            LOG.infof("@createAppointmentData API > Finaliza ejecucion del servicio para crear el registro de una cita "
+                    + "en base de datos. Se registro la siguiente informacion: %s", appointmentMsg);
+
+            return Response.status(Response.Status.CREATED)
+                    .entity(appointmentCreated)
+                    .build();
+        });
     }
 
     @PUT
@@ -9,10 +9,17 @@ import org.eclipse.microprofile.openapi.annotations.parameters.RequestBody;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
 import org.huellas.salud.domain.invoice.InvoiceMsg;
 import org.huellas.salud.domain.invoice.Invoice;
+import org.huellas.salud.domain.invoice.SalesDimension;
+import org.huellas.salud.domain.invoice.SalesRollup;
+import org.huellas.salud.domain.invoice.SalesSummary;
+import org.huellas.salud.services.ExportService;
+import org.huellas.salud.services.IdempotencyService;
 import org.huellas.salud.services.InvoiceService;
+import org.huellas.salud.services.SalesRollupService;
 import jakarta.validation.constraints.NotBlank;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 import org.huellas.salud.helper.exceptions.HSException;
+import org.huellas.salud.helper.export.ExportFormat;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 import org.eclipse.microprofile.openapi.annotations.enums.SchemaType;
@@ -30,6 +37,7 @@ import java.net.UnknownHostException;
 import java.util.List;
 import java.time.LocalDate;
 import java.util.Collections;
+import java.util.Map;
 
 @Path("/internal/invoice")
 @Produces(MediaType.APPLICATION_JSON)
@@ -41,6 +49,15 @@ public class InvoiceApi {
     @Inject
     InvoiceService invoiceService;
 
+    @Inject
+    SalesRollupService salesRollupService;
+
+    @Inject
+    ExportService exportService;
+
+    @Inject
+    IdempotencyService idempotencyService;
+
     @GET
     @Path("/list-invoices")
     @RolesAllowed("ADMINISTRADOR")
@@ -149,20 +166,26 @@ public class InvoiceApi {
                     )
             )
             @NotNull(message = "Debe ingresar el objeto data con la informacion de la factura a registrar")
-            @Valid @ConvertGroup(to = ValidationGroups.Post.class) InvoiceMsg invoiceMsg
+            @Valid @ConvertGroup(to = ValidationGroups.Post.class) InvoiceMsg invoiceMsg,
+            @Parameter(description = "Llave unica del intento de creacion. Los reintentos con la misma llave "
+                    + "reciben la respuesta original sin volver a crear el registro")
+            @HeaderParam(IdempotencyService.IDEMPOTENCY_KEY_HEADER) String idempotencyKey
     ) throws UnknownHostException, HSException {
 
         LOG.infof("@createInvoiceData API > Inicia ejecucion del servicio para crear el registro de una factura "
                 + "en base de datos con la data: %s", invoiceMsg.getData());
 
-        InvoiceMsg invoiceCreated = invoiceService.saveInvoiceDataMongo(invoiceMsg);
+        return idempotencyService.execute("invoice-create", idempotencyKey, invoiceMsg, () -> {
 
-        LOG.infof("@createInvoiceData API > Finaliza ejecucion del servicio para crear el registro de una factura "
-                + "en base de datos. Se registro la siguiente informacion: %s", invoiceMsg);
+            InvoiceMsg invoiceCreated = invoiceService.saveInvoiceDataMongo(invoiceMsg);
 
-        return Response.status(Response.Status.CREATED)
-                .entity(invoiceCreated)
-                .build();
+            LOG.infof("@createInvoiceData API > Finaliza ejecucion del servicio para crear el registro de una factura "
+                    + "en base de datos. Se registro la siguiente informacion: %s", invoiceMsg);
+
+            return Response.status(Response.Status.CREATED)
+                    .entity(invoiceCreated)
+                    .build();
+        });
     }
 
     @PUT
@@ -258,4 +281,126 @@ public class InvoiceApi {
 
         return Response.status(Response.Status.NO_CONTENT).build();
     }
+
+    @GET
+    @Path("/sales/daily")
+    @RolesAllowed("ADMINISTRADOR")
+    @Tag(name = "Gestión de facturas")
+    @APIResponse(
+            responseCode = "200",
+            description = "Se retornan los acumulados diarios de ventas de la dimension consultada",
+            content = @Content(schema = @Schema(implementation = SalesRollup.class, type = SchemaType.ARRAY))
+    )
+    @Operation(
+            summary = "Ventas diarias",
+            description = "Permite obtener los ingresos, unidades y cantidad de facturas por dia para el total, un "
+                    + "producto, un servicio, un cliente o un estado de factura"
+    )
+    public Response getDailySales(
+            @QueryParam("from") @NotNull(message = "Debe enviar la fecha de inicio") LocalDate from,
+            @QueryParam("to") @NotNull(message = "Debe enviar la fecha de fin") LocalDate to,
+            @Parameter(description = "TOTAL, PRODUCTO, SERVICIO, CLIENTE o ESTADO", example = "TOTAL")
+            @QueryParam("dimension") @DefaultValue("TOTAL") SalesDimension dimension,
+            @Parameter(description = "Id del producto o servicio, documento del cliente o estado. Vacio para todos")
+            @QueryParam("key") String key) throws HSException {
+
+        LOG.infof("@getDailySales API > Inicia servicio para obtener las ventas diarias de %s entre %s y %s. Clave: %s",
+                dimension, from, to, key);
+
+        List<SalesRollup> rollups = salesRollupService.getDailyRollups(dimension, from, to, key);
+
+        LOG.infof("@getDailySales API > Finaliza servicio. Se encontraron %s acumulados", rollups.size());
+
+        return Response.ok().entity(rollups).build();
+    }
+
+    @GET
+    @Path("/sales/ranking")
+    @RolesAllowed("ADMINISTRADOR")
+    @Tag(name = "Gestión de facturas")
+    @APIResponse(
+            responseCode = "200",
+            description = "Se retornan los totales del rango por cada valor de la dimension, de mayor a menor ingreso",
+            content = @Content(schema = @Schema(implementation = SalesSummary.class, type = SchemaType.ARRAY))
+    )
+    @Operation(
+            summary = "Ranking de ventas",
+            description = "Permite obtener los productos, servicios o clientes con mas ingresos en un rango de fechas"
+    )
+    public Response getSalesRanking(
+            @QueryParam("from") @NotNull(message = "Debe enviar la fecha de inicio") LocalDate from,
+            @QueryParam("to") @NotNull(message = "Debe enviar la fecha de fin") LocalDate to,
+            @Parameter(description = "PRODUCTO, SERVICIO, CLIENTE o ESTADO", example = "PRODUCTO")
+            @QueryParam("dimension") @NotNull(message = "Debe enviar la dimension") SalesDimension dimension,
+            @QueryParam("limit") Integer limit) throws HSException {
+
+        LOG.infof("@getSalesRanking API > Inicia servicio para obtener el ranking de ventas por %s entre %s y %s",
+                dimension, from, to);
+
+        List<SalesSummary> ranking = salesRollupService.getSalesRanking(dimension, from, to, limit);
+
+        LOG.infof("@getSalesRanking API > Finaliza servicio. El ranking tiene %s registros", ranking.size());
+
+        return Response.ok().entity(ranking).build();
+    }
+
+    @POST
+    @Path("/sales/rebuild")
+    @RolesAllowed("ADMINISTRADOR")
+    @Tag(name = "Gestión de facturas")
+    @APIResponse(
+            responseCode = "200",
+            description = "Se reconstruyeron los acumulados de ventas a partir de todas las facturas"
+    )
+    @Operation(
+            summary = "Reconstrucción de los acumulados de ventas",
+            description = "Recalcula los acumulados diarios de ventas recorriendo todas las facturas registradas"
+    )
+    public Response rebuildSalesRollups() {
+
+        LOG.info("@rebuildSalesRollups API > Inicia servicio para reconstruir los acumulados de ventas");
+
+        long invoices = salesRollupService.rebuildRollups();
+
+        LOG.infof("@rebuildSalesRollups API > Finaliza servicio. Se procesaron %s facturas", invoices);
+
+        return Response.ok().entity(Map.of("facturasProcesadas", invoices)).build();
+    }
+
+    @GET
+    @Path("/export")
+    @Produces({"text/csv", "application/x-ndjson"})
+    @RolesAllowed("ADMINISTRADOR")
+    @Tag(name = "Gestión de facturas")
+    @APIResponses(
+            value = {
+                @APIResponse(
+                        responseCode = "200",
+                        description = "Se descarga el archivo con las facturas del rango de fechas"
+                ),
+                @APIResponse(
+                        responseCode = "400",
+                        description = "El rango de fechas no es valido"
+                )
+            }
+    )
+    @Operation(
+            summary = "Exportación de facturas",
+            description = "Permite descargar en CSV (una fila por item) o NDJSON (una factura por linea) las facturas "
+                    + "de un rango de fechas de hasta un año"
+    )
+    public Response exportInvoices(
+            @QueryParam("from") @NotNull(message = "Debe enviar la fecha de inicio") LocalDate from,
+            @QueryParam("to") @NotNull(message = "Debe enviar la fecha de fin") LocalDate to,
+            @Parameter(description = "CSV o NDJSON", example = "CSV")
+            @QueryParam("format") @DefaultValue("CSV") ExportFormat format) throws HSException {
+
+        LOG.infof("@exportInvoices API > Inicia servicio para exportar en %s las facturas entre %s y %s",
+                format, from, to);
+
+        return Response.ok(exportService.exportInvoices(from, to, format), format.getMediaType())
+                .header("Content-Disposition", "attachment; filename=\""
+                        + exportService.fileName("facturas", from, to, format) + "\"")
+                .build();
+    }
 }
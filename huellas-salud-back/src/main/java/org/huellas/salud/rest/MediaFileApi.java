@@ -5,7 +5,11 @@ import jakarta.transaction.Transactional;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
@@ -15,6 +19,8 @@ import org.huellas.salud.helper.exceptions.HSException;
 import org.huellas.salud.services.MediaFileService;
 import org.jboss.logging.Logger;
 
+import java.util.Base64;
+
 @Path("/internal")
 @Produces(MediaType.APPLICATION_JSON)
 public class MediaFileApi {
@@ -58,6 +64,53 @@ public class MediaFileApi {
                 .build();
     }
 
+    @GET
+    @Path("/media/{entityType}/{entityId}")
+    @Produces(MediaType.WILDCARD)
+    @Operation(
+            summary = "Descargar imagen de usuario, mascota, producto, servicio o anuncio",
+            description = "Retorna el archivo de la imagen. Los listados envian esta url con el hash de la imagen en el "
+                    + "parametro v; con ese parametro la respuesta se guarda en la cache del navegador hasta que la "
+                    + "imagen cambie, y sin el se valida con el ETag"
+    )
+    public Response getMediaContent(
+            @NotBlank(message = "El valor del entityType (tipoEntidad) no puede ser nulo o vació")
+            @PathParam("entityType") String entityType,
+            @NotBlank(message = "El valor del entityId (idEntidad) no puede ser nulo o vació")
+            @PathParam("entityId") String entityId,
+            @Parameter(description = "Hash de la imagen que aparece en la url de los listados")
+            @QueryParam("v") String version,
+            @Context Request request
+    ) throws HSException {
+
+        LOG.infof("@getMediaContent API > Inicia servicio para descargar la imagen del entity type: %s y " +
+                "entity Id: %s", entityType, entityId);
+
+        MediaFile mediaFile = mediaFileService.getMediaContent(entityType, entityId);
+
+        EntityTag entityTag = new EntityTag(mediaFile.getHash());
+
+        // La url versionada nunca cambia de contenido; sin version el navegador debe validar el ETag en cada uso
+        CacheControl cacheControl = new CacheControl();
+        if (mediaFile.getHash().equals(version)) {
+            cacheControl.setMaxAge(31536000);
+            cacheControl.getCacheExtension().put("immutable", null);
+        } else {
+            cacheControl.setNoCache(true);
+        }
+
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+
+        if (notModified != null) {
+            return notModified.cacheControl(cacheControl).build();
+        }
+
+        return Response.ok(Base64.getDecoder().decode(mediaFile.getAttachment()), mediaFile.getContentType())
+                .tag(entityTag)
+                .cacheControl(cacheControl)
+                .build();
+    }
+
     @POST
     @Transactional
     @Path("/avatar-user/{entityType}/{entityId}")
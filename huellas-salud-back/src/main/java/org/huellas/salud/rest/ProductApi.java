@@ -12,12 +12,24 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 import org.eclipse.microprofile.openapi.annotations.parameters.RequestBody;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.huellas.salud.domain.mediaFile.MediaUploadForm;
+import org.huellas.salud.domain.product.ProductAlert;
+import org.huellas.salud.domain.product.ProductAlertType;
+import org.huellas.salud.domain.product.ProductImportResult;
 import org.huellas.salud.domain.product.ProductMsg;
+import org.huellas.salud.domain.product.ProductSearchFilter;
+import org.huellas.salud.domain.product.ProductSearchResult;
+import org.huellas.salud.domain.product.ProductSearchSort;
 import org.huellas.salud.helper.exceptions.HSException;
 import org.huellas.salud.helper.validators.ValidationGroups;
+import org.huellas.salud.services.ProductAlertService;
+import org.huellas.salud.services.ProductImportService;
 import org.huellas.salud.services.ProductService;
 import org.jboss.logging.Logger;
 
@@ -34,6 +46,12 @@ public class ProductApi {
     @Inject
     ProductService productService;
 
+    @Inject
+    ProductAlertService productAlertService;
+
+    @Inject
+    ProductImportService productImportService;
+
     @GET
     @Path("/list-products")
     @PermitAll
@@ -53,6 +71,81 @@ public class ProductApi {
         return Response.ok().entity(products).build();
     }
 
+    @GET
+    @Path("/search")
+    @PermitAll
+    @Tag(name = "Gestión de productos")
+    @APIResponses(
+            value = {
+                @APIResponse(
+                        responseCode = "200",
+                        description = "Se retorna la pagina de productos junto con los conteos por categoria, tipo de "
+                                + "animal y rango de precio",
+                        content = @Content(schema = @Schema(implementation = ProductSearchResult.class))
+                ),
+                @APIResponse(
+                        responseCode = "400",
+                        description = "La pagina, el tamaño o el rango de precios no son validos"
+                )
+            }
+    )
+    @Operation(
+            summary = "Busqueda en el catalogo de productos",
+            description = "Permite buscar productos activos por texto en el nombre, la marca y la descripcion (sin "
+                    + "importar tildes ni mayusculas), filtrar por categoria, tipo de animal y rango de precio, y "
+                    + "ordenar y paginar los resultados"
+    )
+    public Response searchCatalog(
+            @Parameter(description = "Texto a buscar", example = "concentrado cachorro")
+            @QueryParam("q") String text,
+            @QueryParam("category") String category,
+            @QueryParam("animalType") String animalType,
+            @QueryParam("minPrice") Double minPrice,
+            @QueryParam("maxPrice") Double maxPrice,
+            @Parameter(description = "RELEVANCIA, NOMBRE, PRECIO_ASC o PRECIO_DESC", example = "RELEVANCIA")
+            @QueryParam("sort") ProductSearchSort sort,
+            @QueryParam("page") Integer page,
+            @QueryParam("size") Integer size) throws HSException {
+
+        LOG.infof("@searchCatalog API > Inicia servicio de busqueda en el catalogo con el texto: %s", text);
+
+        ProductSearchFilter filter = ProductSearchFilter.builder()
+                .text(text)
+                .category(category)
+                .animalType(animalType)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .build();
+
+        ProductSearchResult result = productService.searchCatalog(filter, sort, page, size);
+
+        LOG.infof("@searchCatalog API > Finaliza busqueda en el catalogo. Total de coincidencias: %s", result.getTotal());
+
+        return Response.ok().entity(result).build();
+    }
+
+    @GET
+    @Path("/alerts")
+    @RolesAllowed("ADMINISTRADOR")
+    @Tag(name = "Gestión de productos")
+    @Operation(
+            summary = "Obtener alertas de inventario activas",
+            description = "Permite consultar los productos con stock bajo, proximos a vencer o vencidos, detectados "
+                    + "por el escaneo periodico del inventario"
+    )
+    public Response getActiveAlerts(
+            @Parameter(description = "STOCK_BAJO, POR_VENCER o VENCIDO", example = "STOCK_BAJO")
+            @QueryParam("type") ProductAlertType type) {
+
+        LOG.infof("@getActiveAlerts API > Inicia servicio de obtener las alertas de inventario activas de tipo: %s", type);
+
+        List<ProductAlert> alerts = productAlertService.getActiveAlerts(type);
+
+        LOG.infof("@getActiveAlerts API > Finaliza consulta de alertas de inventario. Total elementos: %s", alerts.size());
+
+        return Response.ok().entity(alerts).build();
+    }
+
     @POST
     @Path("/register")
     @RolesAllowed("ADMINISTRADOR")
@@ -100,6 +193,51 @@ public class ProductApi {
                 .build();
     }
 
+    @POST
+    @Path("/import")
+    @RolesAllowed("ADMINISTRADOR")
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @Tag(name = "Gestión de productos")
+    @APIResponses(
+            value = {
+                @APIResponse(
+                        responseCode = "200",
+                        description = "Se retorna el resumen de la carga con el detalle de las filas rechazadas",
+                        content = @Content(schema = @Schema(implementation = ProductImportResult.class))
+                ),
+                @APIResponse(
+                        responseCode = "400",
+                        description = "El archivo no es un CSV, no se puede leer o le faltan columnas obligatorias"
+                )
+            }
+    )
+    @Operation(
+            summary = "Carga masiva de productos",
+            description = "Permite registrar productos desde un archivo CSV con las columnas name, category, "
+                    + "animalType, description, price, unitOfMeasure, quantityAvailable, brand, barcode y "
+                    + "opcionalmente expirationDate (yyyy-MM-dd). Cada fila nueva se valida como en el registro "
+                    + "individual y las filas invalidas se reportan sin detener la carga. Si se actualizan productos "
+                    + "existentes solo la columna barcode es obligatoria y cada fila valida las columnas que trae"
+    )
+    public Response importProducts(
+            @Parameter(description = "Si es true, las filas con un codigo de barras ya registrado actualizan el "
+                    + "producto en lugar de rechazarse. Solo se actualizan las columnas con valor y nunca el stock",
+                    example = "false")
+            @QueryParam("updateExisting") @DefaultValue("false") boolean updateExisting,
+            @Valid MediaUploadForm mediaUploadForm
+    ) throws HSException, UnknownHostException {
+
+        LOG.info("@importProducts API > Inicia ejecucion del servicio de carga masiva de productos");
+
+        ProductImportResult result = productImportService.importProducts(mediaUploadForm.getFileUpload(),
+                updateExisting);
+
+        LOG.infof("@importProducts API > Finaliza la carga masiva de productos. Insertados: %s, actualizados: %s, "
+                + "rechazados: %s", result.getInserted(), result.getUpdated(), result.getRejected());
+
+        return Response.ok().entity(result).build();
+    }
+
     @PUT
     @Path("/update")
     @RolesAllowed("ADMINISTRADOR")
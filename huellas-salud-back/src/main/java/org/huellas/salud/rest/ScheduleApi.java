@@ -7,7 +7,11 @@ import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import org.eclipse.microprofile.openapi.annotations.parameters.RequestBody;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.huellas.salud.domain.schedule.CapacityGranularity;
+import org.huellas.salud.domain.schedule.ScheduleExceptionMsg;
 import org.huellas.salud.domain.schedule.ScheduleMsg;
+import org.huellas.salud.domain.schedule.VeterinarianCapacity;
+import org.huellas.salud.services.CapacityReportService;
 import org.huellas.salud.services.ScheduleService;
 import jakarta.validation.constraints.NotBlank;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
@@ -26,6 +30,7 @@ import jakarta.validation.constraints.NotNull;
 import jakarta.validation.Valid;
 
 import java.net.UnknownHostException;
+import java.time.LocalDate;
 import java.util.List;
 
 @Path("/internal/schedule")
@@ -38,6 +43,9 @@ public class ScheduleApi {
     @Inject
     ScheduleService scheduleService;
 
+    @Inject
+    CapacityReportService capacityReportService;
+
     @GET
     @Path("/list-schedules")
     @RolesAllowed({"ADMINISTRADOR", "VETERINARIO"})
@@ -224,4 +232,137 @@ public class ScheduleApi {
 
         return Response.status(Response.Status.NO_CONTENT).build();
     }
+
+    @POST
+    @Path("/exception/create")
+    @RolesAllowed("ADMINISTRADOR")
+    @Tag(name = "Gestión de horarios")
+    @Operation(
+            summary = "Creación de una excepción de horario",
+            description = "Permite registrar cierres, vacaciones, festivos de la clinica (sin veterinario) u horarios "
+                    + "especiales para un rango de fechas, sin modificar el horario semanal"
+    )
+    public Response createScheduleExceptionData(
+            @RequestBody(
+                    name = "scheduleExceptionMsg",
+                    description = "Objeto con la información de la excepción de horario que se va a crear",
+                    required = true,
+                    content = @Content(example = """
+                        {
+                                "data": {
+                                        "idVeterinarian": "1013100931",
+                                        "type": "VACACIONES",
+                                        "startDate": "2025-12-22",
+                                        "endDate": "2025-12-31",
+                                        "reason": "Vacaciones de fin de año"
+                                }
+                        }"""
+                    )
+            )
+            @NotNull(message = "Debe ingresar el objeto data con la informacion de la excepcion a registrar")
+            @Valid @ConvertGroup(to = ValidationGroups.Post.class) ScheduleExceptionMsg scheduleExceptionMsg
+    ) throws UnknownHostException, HSException {
+
+        LOG.infof("@createScheduleExceptionData API > Inicia ejecucion del servicio para crear una excepcion de "
+                + "horario con la data: %s", scheduleExceptionMsg.getData());
+
+        ScheduleExceptionMsg exceptionCreated = scheduleService.saveScheduleExceptionDataMongo(scheduleExceptionMsg);
+
+        LOG.infof("@createScheduleExceptionData API > Finaliza ejecucion del servicio para crear una excepcion de "
+                + "horario. Se registro la siguiente informacion: %s", exceptionCreated);
+
+        return Response.status(Response.Status.CREATED)
+                .entity(exceptionCreated)
+                .build();
+    }
+
+    @GET
+    @Path("/exception/list")
+    @RolesAllowed({"ADMINISTRADOR", "VETERINARIO"})
+    @Tag(name = "Gestión de horarios")
+    @APIResponse(
+            responseCode = "200",
+            description = "Se retorna el listado de excepciones de horario del veterinario y de la clinica",
+            content = @Content(schema = @Schema(implementation = ScheduleExceptionMsg.class, type = SchemaType.ARRAY))
+    )
+    @Operation(
+            summary = "Obtención de las excepciones de horario",
+            description = "Permite obtener las excepciones de un veterinario junto con los festivos de la clinica que "
+                    + "se cruzan con un rango de fechas"
+    )
+    public Response getListScheduleExceptions(
+            @QueryParam("idVeterinarian") String idVeterinarian,
+            @QueryParam("from") @NotNull(message = "Debe enviar la fecha de inicio") LocalDate from,
+            @QueryParam("to") @NotNull(message = "Debe enviar la fecha de fin") LocalDate to) {
+
+        LOG.infof("@getListScheduleExceptions API > Inicia servicio para obtener las excepciones de horario del "
+                + "veterinario %s entre %s y %s", idVeterinarian, from, to);
+
+        List<ScheduleExceptionMsg> exceptions = scheduleService.getListScheduleExceptions(idVeterinarian, from, to);
+
+        LOG.infof("@getListScheduleExceptions API > Finaliza servicio. Se encontraron %s excepciones", exceptions.size());
+
+        return Response.ok().entity(exceptions).build();
+    }
+
+    @DELETE
+    @Path("/exception/delete")
+    @RolesAllowed("ADMINISTRADOR")
+    @Tag(name = "Gestión de horarios")
+    @Operation(
+            summary = "Eliminación de una excepción de horario",
+            description = "Permite eliminar una excepción de horario; los dias que cubria vuelven al horario semanal"
+    )
+    public Response deleteScheduleExceptionData(
+            @Parameter(
+                    name = "idException",
+                    description = "Identificador de la excepción de horario a eliminar",
+                    required = true,
+                    example = "faf32d41-65b2-431b-a468-0dbc6650ae47"
+            )
+            @NotBlank(message = "Debe ingresar el identificador (idException) de la excepcion a eliminar")
+            @QueryParam("idException") String idException
+    ) throws HSException {
+
+        LOG.infof("@deleteScheduleExceptionData API > Inicia ejecucion del servicio para eliminar la excepcion de "
+                + "horario con id: %s", idException);
+
+        scheduleService.deleteScheduleExceptionDataMongo(idException);
+
+        LOG.infof("@deleteScheduleExceptionData API > Finaliza ejecucion del servicio para eliminar la excepcion de "
+                + "horario con id: %s", idException);
+
+        return Response.status(Response.Status.NO_CONTENT).build();
+    }
+
+    @GET
+    @Path("/capacity-report")
+    @RolesAllowed("ADMINISTRADOR")
+    @Tag(name = "Gestión de horarios")
+    @APIResponse(
+            responseCode = "200",
+            description = "Se retorna la ocupacion de los veterinarios en el rango consultado",
+            content = @Content(schema = @Schema(implementation = VeterinarianCapacity.class, type = SchemaType.ARRAY))
+    )
+    @Operation(
+            summary = "Reporte de ocupacion de los veterinarios",
+            description = "Permite comparar los minutos reservados con los minutos de atencion de cada veterinario por "
+                    + "dia o por semana"
+    )
+    public Response getCapacityReport(
+            @QueryParam("from") @NotNull(message = "Debe enviar la fecha de inicio") LocalDate from,
+            @QueryParam("to") @NotNull(message = "Debe enviar la fecha de fin") LocalDate to,
+            @Parameter(description = "Agrupacion del reporte: DIA o SEMANA", example = "SEMANA")
+            @QueryParam("granularity") @DefaultValue("DIA") CapacityGranularity granularity,
+            @QueryParam("idVeterinarian") String idVeterinarian) throws HSException {
+
+        LOG.infof("@getCapacityReport API > Inicia servicio para obtener el reporte de ocupacion entre %s y %s "
+                + "agrupado por %s", from, to, granularity);
+
+        List<VeterinarianCapacity> report = capacityReportService.getCapacityReport(from, to, granularity, idVeterinarian);
+
+        LOG.infof("@getCapacityReport API > Finaliza servicio. El reporte tiene %s registros", report.size());
+
+        return Response.ok().entity(report).build();
+    }
 }
@@ -0,0 +1,33 @@
+package org.huellas.salud.scheduler;
+
+import org.huellas.salud.services.ProductAlertService;
+import jakarta.enterprise.context.ApplicationScoped;
+import io.quarkus.scheduler.Scheduled;
+import org.jboss.logging.Logger;
+import jakarta.inject.Inject;
+
+@ApplicationScoped
+public class ProductAlertScheduler {
+
+    private static final Logger LOG = Logger.getLogger(ProductAlertScheduler.class);
+
+    @Inject
+    ProductAlertService productAlertService;
+
+    // Ejecuta cada hora excepto a las 7:00 am, cuando el escaneo lo hace el resumen diario
+    @Scheduled(cron = "0 0 0-6,8-23 * * ?", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scanProducts() {
+        LOG.info("@scanProducts SCH > Inicia escaneo de stock bajo y vencimiento de productos");
+        int created = productAlertService.scanProducts();
+        LOG.infof("@scanProducts SCH > Finaliza escaneo: %s alertas nuevas", created);
+    }
+
+    // Ejecuta todos los dias a las 7:00 am: escanea una sola vez y envia el resumen con las alertas recien creadas
+    @Scheduled(cron = "0 0 7 * * ?", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void sendAlertDigest() {
+        LOG.info("@sendAlertDigest SCH > Inicia escaneo y envio del resumen diario de alertas de inventario");
+        int created = productAlertService.scanProducts();
+        LOG.infof("@sendAlertDigest SCH > Finaliza escaneo: %s alertas nuevas. Se envia el resumen", created);
+        productAlertService.sendAlertDigest();
+    }
+}
@@ -41,6 +41,9 @@ public class AnnouncementService {
     @Inject
     MediaFileRepository mediaFileRepository;
 
+    @Inject
+    MediaFileService mediaFileService;
+
     @CacheInvalidateAll(cacheName = "announcements-list-cache")
     public AnnouncementMsg saveAnnouncementDataMongo(AnnouncementMsg announcementMsg) throws HSException, UnknownHostException {
 
@@ -72,10 +75,9 @@ public class AnnouncementService {
 
         List<AnnouncementMsg> announcements = announcementRepository.getListAnnouncementMongo();
 
-        announcements.forEach(announcementMsg -> {
-            mediaFileRepository.getMediaByEntityTypeAndId("ANNOUNCEMENT", announcementMsg.getData().getIdAnnouncement())
-                    .ifPresent(media -> announcementMsg.getData().setMediaFile(media.getData()));
-        });
+        mediaFileService.toThin("ANNOUNCEMENT", announcements,
+                announcementMsg -> announcementMsg.getData().getIdAnnouncement(),
+                (announcementMsg, media) -> announcementMsg.getData().setMediaFile(media));
 
         LOG.infof("@getListAnnouncementMsg SERV > Finaliza consulta en mongo. Finaliza ejecucion del servicio para "
                 + "obtener el listado de los anuncios desde mongo. Se obtuvo: %s registros", announcements.size());
@@ -0,0 +1,106 @@
+package org.huellas.salud.services;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.huellas.salud.domain.appointment.Appointment;
+import org.huellas.salud.domain.appointment.AppointmentEntities;
+import org.huellas.salud.domain.pet.PetMsg;
+import org.huellas.salud.domain.service.ServiceMsg;
+import org.huellas.salud.domain.user.UserMsg;
+import org.huellas.salud.helper.availability.EffectiveDay;
+import org.huellas.salud.repositories.PetRepository;
+import org.huellas.salud.repositories.ServiceRepository;
+import org.huellas.salud.repositories.UserRepository;
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.jboss.logging.Logger;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@ApplicationScoped
+public class AppointmentEntityLoader {
+
+    private static final Logger LOG = Logger.getLogger(AppointmentEntityLoader.class);
+
+    @Inject
+    ManagedExecutor executor;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Inject
+    PetRepository petRepository;
+
+    @Inject
+    ServiceRepository serviceRepository;
+
+    @Inject
+    ScheduleCalendarService scheduleCalendarService;
+
+    /**
+     * Consulta en paralelo el propietario y el veterinario, la mascota, los servicios y el horario efectivo de la cita.
+     */
+    public AppointmentEntities load(Appointment appointment) {
+
+        LOG.infof("@load SERV > Inicia carga de las entidades relacionadas con la cita del veterinario %s",
+                appointment.getIdVeterinarian());
+
+        List<String> documents = Stream.of(appointment.getIdOwner(), appointment.getIdVeterinarian())
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+
+        CompletableFuture<Map<String, UserMsg>> users = CompletableFuture.supplyAsync(() -> userRepository
+                .findUsersByDocumentNumbers(documents).stream()
+                .collect(Collectors.toMap(user -> user.getData().getDocumentNumber(), Function.identity(),
+                        (first, second) -> first)), executor);
+
+        CompletableFuture<Optional<PetMsg>> pet = CompletableFuture.supplyAsync(() ->
+                petRepository.findPetById(appointment.getIdPet()), executor);
+
+        CompletableFuture<Map<String, ServiceMsg>> services = CompletableFuture.supplyAsync(() ->
+                findServices(appointment.getServices()), executor);
+
+        CompletableFuture<EffectiveDay> scheduleDay = appointment.getDateTime() == null
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.supplyAsync(() -> scheduleCalendarService.getEffectiveDay(
+                        appointment.getIdVeterinarian(), appointment.getDateTime().toLocalDate()), executor);
+
+        try {
+            CompletableFuture.allOf(users, pet, services, scheduleDay).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) throw cause;
+            throw ex;
+        }
+
+        Map<String, UserMsg> usersByDocument = users.join();
+
+        LOG.infof("@load SERV > Finaliza carga de las entidades relacionadas con la cita. Usuarios: %s, servicios: %s",
+                usersByDocument.size(), services.join().size());
+
+        return AppointmentEntities.builder()
+                .owner(Optional.ofNullable(usersByDocument.get(appointment.getIdOwner())))
+                .veterinarian(Optional.ofNullable(usersByDocument.get(appointment.getIdVeterinarian())))
+                .pet(pet.join())
+                .services(services.join())
+                .scheduleDay(scheduleDay.join())
+                .build();
+    }
+
+    public Map<String, ServiceMsg> findServices(Collection<String> serviceIds) {
+
+        if (serviceIds == null || serviceIds.isEmpty()) return Map.of();
+
+        return serviceRepository.findServicesByIds(serviceIds).stream()
+                .collect(Collectors.toMap(service -> service.getData().getIdService(), Function.identity(),
+                        (first, second) -> first));
+    }
+}
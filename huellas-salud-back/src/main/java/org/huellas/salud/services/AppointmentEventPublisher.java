@@ -0,0 +1,81 @@
+package org.huellas.salud.services;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.operators.multi.processors.BroadcastProcessor;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.huellas.salud.domain.appointment.Appointment;
+import org.huellas.salud.domain.appointment.AppointmentEvent;
+import org.huellas.salud.domain.appointment.AppointmentEventType;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Difunde los cambios de citas a los clientes conectados por Server-Sent Events. Los eventos viven solo en memoria:
+ * un cliente recibe unicamente los cambios hechos en la instancia a la que esta conectado, por lo que con varias
+ * instancias desplegadas debe complementar el flujo consultando las citas al reconectarse.
+ */
+@ApplicationScoped
+public class AppointmentEventPublisher {
+
+    private static final Logger LOG = Logger.getLogger(AppointmentEventPublisher.class);
+
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(25);
+
+    // Los suscriptores solo reciben los eventos emitidos despues de conectarse
+    private final BroadcastProcessor<AppointmentEvent> processor = BroadcastProcessor.create();
+
+    public void publish(AppointmentEventType type, Appointment appointment) {
+        publish(type, appointment, null);
+    }
+
+    /**
+     * @param previousVeterinarian veterinario que tenia la cita antes del cambio; si es otro, tambien recibe el evento
+     */
+    public void publish(AppointmentEventType type, Appointment appointment, String previousVeterinarian) {
+
+        AppointmentEvent event = AppointmentEvent.builder()
+                .type(type)
+                .idAppointment(appointment.getIdAppointment())
+                .idVeterinarian(appointment.getIdVeterinarian())
+                .idPreviousVeterinarian(Objects.equals(previousVeterinarian, appointment.getIdVeterinarian())
+                        ? null : previousVeterinarian)
+                .idOwner(appointment.getIdOwner())
+                .dateTime(appointment.getDateTime())
+                .endDateTime(appointment.getEndDateTime())
+                .status(appointment.getStatus())
+                .occurredAt(LocalDateTime.now())
+                .build();
+
+        LOG.debugf("@publish SERV > Se publica el evento %s de la cita %s", type, appointment.getIdAppointment());
+
+        synchronized (processor) {
+            processor.onNext(event);
+        }
+    }
+
+    public Multi<AppointmentEvent> stream(String idVeterinarian, String idOwner) {
+
+        LOG.infof("@stream SERV > Nueva suscripcion a los eventos de citas. Veterinario: %s, propietario: %s",
+                idVeterinarian, idOwner);
+
+        Multi<AppointmentEvent> events = processor
+                .filter(event -> idVeterinarian == null || idVeterinarian.equals(event.getIdVeterinarian())
+                        || idVeterinarian.equals(event.getIdPreviousVeterinarian()))
+                .filter(event -> idOwner == null || idOwner.equals(event.getIdOwner()))
+                // Un cliente lento descarta eventos en lugar de frenar las escrituras de citas
+                .onOverflow().invoke(event -> LOG.warnf("@stream SERV > Se descarta el evento %s de la cita %s para "
+                        + "un suscriptor lento", event.getType(), event.getIdAppointment())).drop();
+
+        Multi<AppointmentEvent> heartbeats = Multi.createFrom().ticks().every(HEARTBEAT_INTERVAL)
+                .onOverflow().drop()
+                .map(tick -> AppointmentEvent.builder()
+                        .type(AppointmentEventType.LATIDO)
+                        .occurredAt(LocalDateTime.now())
+                        .build());
+
+        return Multi.createBy().merging().streams(events, heartbeats);
+    }
+}
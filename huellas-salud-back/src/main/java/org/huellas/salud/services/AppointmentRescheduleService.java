@@ -0,0 +1,302 @@
+package org.huellas.salud.services;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import io.quarkus.cache.CacheInvalidateAll;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.Response;
+import org.huellas.salud.domain.appointment.Appointment;
+import org.huellas.salud.domain.appointment.AppointmentEventType;
+import org.huellas.salud.domain.appointment.AppointmentMsg;
+import org.huellas.salud.domain.appointment.AppointmentRescheduleRequest;
+import org.huellas.salud.domain.appointment.AppointmentRescheduleResult;
+import org.huellas.salud.domain.user.UserMsg;
+import org.huellas.salud.helper.exceptions.HSException;
+import org.huellas.salud.helper.jwt.JwtService;
+import org.huellas.salud.repositories.AppointmentRepository;
+import org.huellas.salud.repositories.SlotReservationRepository;
+import org.huellas.salud.repositories.UserRepository;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+@ApplicationScoped
+public class AppointmentRescheduleService {
+
+    private static final Logger LOG = Logger.getLogger(AppointmentRescheduleService.class);
+
+    // Dias posteriores al periodo de ausencia en los que se buscan horarios libres
+    private static final int SEARCH_DAYS = 30;
+
+    @Inject
+    JwtService jwtService;
+
+    @Inject
+    AppointmentRepository appointmentRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Inject
+    SlotReservationRepository slotReservationRepository;
+
+    @Inject
+    AvailabilityService availabilityService;
+
+    @Inject
+    AppointmentEventPublisher appointmentEventPublisher;
+
+    /**
+     * Mueve las citas pendientes de un veterinario en un periodo. Si se indica un veterinario destino cada cita se
+     * asigna a su primer horario libre desde la hora original; si no, al primer horario libre del mismo veterinario
+     * despues del periodo. Las ubicaciones se calculan sobre las agendas en memoria, se reservan los bloques y todas
+     * las citas movidas se guardan con un unico bulkWrite.
+     */
+    @CacheInvalidateAll(cacheName = "appointments-list-cache")
+    public List<AppointmentRescheduleResult> rescheduleAppointments(AppointmentRescheduleRequest request) throws HSException {
+
+        LOG.infof("@rescheduleAppointments SERV > Inicia reprogramacion de las citas del veterinario %s entre %s y %s. "
+                + "Veterinario destino: %s", request.getIdVeterinarian(), request.getFrom(), request.getTo(),
+                request.getIdTargetVeterinarian());
+
+        validateRequest(request);
+
+        List<AppointmentMsg> appointments = appointmentRepository.findPendingAppointmentsByVeterinarianInRange(
+                request.getIdVeterinarian(), request.getFrom(), request.getTo());
+
+        // Horario con el que cada cita esta guardada en mongo, para devolverselo si la reprogramacion no se completa
+        Map<String, OriginalSlot> originals = new HashMap<>();
+        appointments.forEach(appointmentMsg -> originals.put(appointmentMsg.getData().getIdAppointment(),
+                OriginalSlot.of(appointmentMsg.getData())));
+
+        // Las citas que se van a mover no deben bloquear los horarios que se buscan para las demas
+        appointments.forEach(appointmentMsg -> availabilityService.releaseAppointment(appointmentMsg.getData().getIdAppointment()));
+
+        String targetVeterinarian = request.getIdTargetVeterinarian() != null
+                ? request.getIdTargetVeterinarian() : request.getIdVeterinarian();
+
+        List<AppointmentRescheduleResult> results = new ArrayList<>(appointments.size());
+        List<WriteModel<AppointmentMsg>> writes = new ArrayList<>();
+        List<AppointmentMsg> moved = new ArrayList<>();
+
+        try {
+            placeAppointments(appointments, request, targetVeterinarian, results, writes, moved);
+        } catch (RuntimeException ex) {
+
+            LOG.errorf(ex, "@rescheduleAppointments SERV > Error ubicando las citas del veterinario %s. Se devuelven "
+                    + "los horarios originales de las citas", request.getIdVeterinarian());
+
+            // Aun no se ha escrito ninguna cita, por lo que todas conservan en mongo su horario original
+            originals.keySet().forEach(idAppointment -> restoreOriginalSlots(idAppointment, originals));
+
+            // Las agendas en memoria pudieron quedar sin algunas citas, por lo que se reconstruyen desde mongo
+            availabilityService.invalidateVeterinarian(request.getIdVeterinarian());
+            availabilityService.invalidateVeterinarian(targetVeterinarian);
+
+            throw new HSException(Response.Status.INTERNAL_SERVER_ERROR, "No fue posible reprogramar las citas del "
+                    + "veterinario. Las citas conservan su horario original");
+        }
+
+        if (!writes.isEmpty()) {
+            commitPlacements(writes, moved, results, originals, request.getIdVeterinarian(), targetVeterinarian);
+        }
+
+        LOG.infof("@rescheduleAppointments SERV > Finaliza reprogramacion de citas del veterinario %s. Citas "
+                + "encontradas: %s, reprogramadas: %s", request.getIdVeterinarian(), appointments.size(),
+                results.stream().filter(result -> result.getStatus() == AppointmentRescheduleResult.Status.REPROGRAMADA).count());
+
+        return results;
+    }
+
+    private void placeAppointments(List<AppointmentMsg> appointments, AppointmentRescheduleRequest request,
+                                   String targetVeterinarian, List<AppointmentRescheduleResult> results,
+                                   List<WriteModel<AppointmentMsg>> writes, List<AppointmentMsg> moved) {
+
+        LocalDateTime now = LocalDateTime.now();
+
+        for (AppointmentMsg appointmentMsg : appointments) {
+
+            Appointment appointment = appointmentMsg.getData();
+            int durationMinutes = (int) Duration.between(appointment.getDateTime(), appointment.resolveEndDateTime()).toMinutes();
+
+            LocalDateTime notBefore = request.getIdTargetVeterinarian() != null ? appointment.getDateTime() : request.getTo();
+            if (notBefore.isBefore(now)) notBefore = now;
+
+            AppointmentRescheduleResult.AppointmentRescheduleResultBuilder result = AppointmentRescheduleResult.builder()
+                    .idAppointment(appointment.getIdAppointment())
+                    .previousVeterinarian(appointment.getIdVeterinarian())
+                    .previousDateTime(appointment.getDateTime());
+
+            Optional<LocalDateTime> placement = findPlacement(targetVeterinarian, appointment.getIdAppointment(),
+                    notBefore, durationMinutes);
+
+            if (placement.isEmpty()) {
+
+                LOG.warnf("@rescheduleAppointments SERV > No hay horario libre para la cita %s", appointment.getIdAppointment());
+
+                availabilityService.registerAppointment(appointment);
+                results.add(result.status(AppointmentRescheduleResult.Status.SIN_DISPONIBILIDAD)
+                        .message("No se encontro un horario libre en los siguientes " + SEARCH_DAYS + " dias")
+                        .build());
+                continue;
+            }
+
+            LocalDateTime newStart = placement.get();
+            LocalDateTime newEnd = newStart.plusMinutes(durationMinutes);
+
+            appointment.setIdVeterinarian(targetVeterinarian);
+            appointment.setDateTime(newStart);
+            appointment.setEndDateTime(newEnd);
+            availabilityService.registerAppointment(appointment);
+
+            writes.add(new UpdateOneModel<>(Filters.eq("_id", appointmentMsg.getId()), Updates.combine(
+                    Updates.set("data.idVeterinario", targetVeterinarian),
+                    Updates.set("data.fechaHora", newStart),
+                    Updates.set("data.fechaHoraFin", newEnd),
+                    Updates.set("meta.ultimaActualizacion", now),
+                    Updates.set("meta.nombreUsuarioActualizo", jwtService.getCurrentUserName()),
+                    Updates.set("meta.correoUsuarioActualizo", jwtService.getCurrentUserEmail()),
+                    Updates.set("meta.rolUsuarioActualizo", jwtService.getCurrentUserRole())
+            )));
+            moved.add(appointmentMsg);
+            results.add(result.status(AppointmentRescheduleResult.Status.REPROGRAMADA)
+                    .newVeterinarian(targetVeterinarian)
+                    .newDateTime(newStart)
+                    .build());
+        }
+    }
+
+    private void validateRequest(AppointmentRescheduleRequest request) throws HSException {
+
+        if (!request.getFrom().isBefore(request.getTo())) {
+            throw new HSException(Response.Status.BAD_REQUEST, "La fecha de inicio debe ser anterior a la fecha de fin");
+        }
+
+        if (request.getIdVeterinarian().equals(request.getIdTargetVeterinarian())) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    "El veterinario destino debe ser diferente al veterinario que no estara disponible");
+        }
+
+        if (request.getIdTargetVeterinarian() != null) {
+
+            Optional<UserMsg> target = userRepository.findUserByDocumentNumber(request.getIdTargetVeterinarian());
+
+            if (target.isEmpty() || !"VETERINARIO".equals(target.get().getData().getRole())
+                    || !Boolean.TRUE.equals(target.get().getData().getActive())) {
+                throw new HSException(Response.Status.BAD_REQUEST,
+                        "No se encontró un veterinario activo con documento: " + request.getIdTargetVeterinarian());
+            }
+        }
+    }
+
+    /**
+     * Busca el primer horario libre y reserva sus bloques. Si otra solicitud gano la reserva se continua con el
+     * siguiente horario libre.
+     */
+    private Optional<LocalDateTime> findPlacement(String idVeterinarian, String idAppointment, LocalDateTime notBefore,
+                                                  int durationMinutes) {
+
+        LocalDate lastDay = notBefore.toLocalDate().plusDays(SEARCH_DAYS);
+        Optional<LocalDateTime> candidate = availabilityService.findNextFreeStart(idVeterinarian, notBefore, durationMinutes, lastDay);
+
+        while (candidate.isPresent()) {
+
+            LocalDateTime start = candidate.get();
+
+            if (slotReservationRepository.reserveSlots(idVeterinarian, idAppointment, start, start.plusMinutes(durationMinutes))) {
+                return candidate;
+            }
+
+            candidate = availabilityService.findNextFreeStart(idVeterinarian, start.plusMinutes(1), durationMinutes, lastDay);
+        }
+        return Optional.empty();
+    }
+
+    private void commitPlacements(List<WriteModel<AppointmentMsg>> writes, List<AppointmentMsg> moved,
+                                  List<AppointmentRescheduleResult> results, Map<String, OriginalSlot> originals,
+                                  String idVeterinarian, String targetVeterinarian) {
+
+        LOG.infof("@commitPlacements SERV > Se guardan %s citas reprogramadas con un unico bulkWrite", writes.size());
+
+        Set<String> failed = new HashSet<>();
+
+        try {
+            appointmentRepository.mongoCollection().bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException ex) {
+
+            LOG.errorf(ex, "@commitPlacements SERV > %s citas no se pudieron reprogramar", ex.getWriteErrors().size());
+
+            for (BulkWriteError error : ex.getWriteErrors()) {
+                failed.add(moved.get(error.getIndex()).getData().getIdAppointment());
+            }
+
+            // La cita conserva en mongo su horario original, por lo que se le devuelven sus bloques
+            for (AppointmentRescheduleResult result : results) {
+
+                if (!failed.contains(result.getIdAppointment())) continue;
+
+                boolean restored = restoreOriginalSlots(result.getIdAppointment(), originals);
+
+                result.setStatus(AppointmentRescheduleResult.Status.ERROR);
+                result.setNewVeterinarian(null);
+                result.setNewDateTime(null);
+                result.setMessage(restored
+                        ? "No fue posible guardar la reprogramacion de la cita; conserva su horario original"
+                        : "No fue posible guardar la reprogramacion de la cita y su horario original ya fue reservado "
+                                + "por otra cita. Debe reprogramarse manualmente");
+            }
+
+            // Las agendas en memoria se reconstruyen desde mongo con el estado real de las citas
+            availabilityService.invalidateVeterinarian(idVeterinarian);
+            availabilityService.invalidateVeterinarian(targetVeterinarian);
+        }
+
+        moved.stream()
+                .map(AppointmentMsg::getData)
+                .filter(appointment -> !failed.contains(appointment.getIdAppointment()))
+                .forEach(appointment -> appointmentEventPublisher.publish(AppointmentEventType.ACTUALIZADA, appointment,
+                        idVeterinarian));
+    }
+
+    /**
+     * Devuelve a la cita la reserva del horario con el que esta guardada en mongo.
+     *
+     * @return false si otra cita ocupo ese horario mientras se reprogramaba
+     */
+    private boolean restoreOriginalSlots(String idAppointment, Map<String, OriginalSlot> originals) {
+
+        OriginalSlot original = originals.get(idAppointment);
+
+        boolean restored = slotReservationRepository.reserveSlots(original.idVeterinarian(), idAppointment,
+                original.start(), original.end());
+
+        if (!restored) {
+            LOG.errorf("@restoreOriginalSlots SERV > No fue posible devolver a la cita %s su horario original entre %s "
+                    + "y %s del veterinario %s", idAppointment, original.start(), original.end(), original.idVeterinarian());
+        }
+        return restored;
+    }
+
+    private record OriginalSlot(String idVeterinarian, LocalDateTime start, LocalDateTime end) {
+
+        private static OriginalSlot of(Appointment appointment) {
+            return new OriginalSlot(appointment.getIdVeterinarian(), appointment.getDateTime(),
+                    appointment.resolveEndDateTime());
+        }
+    }
+}
@@ -1,32 +1,49 @@
 package org.huellas.salud.services;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCursor;
 import io.quarkus.cache.CacheInvalidateAll;
 import io.quarkus.cache.CacheResult;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.Priority;
 import jakarta.inject.Inject;
 import jakarta.enterprise.context.ApplicationScoped;
-import org.huellas.salud.domain.schedule.Schedule;
-import org.huellas.salud.domain.schedule.ScheduleMsg;
-import org.huellas.salud.repositories.ScheduleRepository;
+import jakarta.enterprise.event.Observes;
+import jakarta.interceptor.Interceptor;
 import org.huellas.salud.domain.appointment.Appointment;
 import org.huellas.salud.repositories.AppointmentRepository;
 import org.huellas.salud.domain.appointment.AppointmentStatus;
 import org.huellas.salud.domain.pet.Pet;
-import org.huellas.salud.repositories.PetRepository;
-import org.huellas.salud.domain.service.Service;
 import org.huellas.salud.domain.service.ServiceMsg;
-import org.huellas.salud.domain.service.WeightPriceRule;
 import org.huellas.salud.repositories.ServiceRepository;
+import org.huellas.salud.repositories.SlotReservationRepository;
 import org.huellas.salud.domain.pet.PetMsg;
 import org.huellas.salud.repositories.UserRepository;
 import org.huellas.salud.domain.user.UserMsg;
+import org.huellas.salud.domain.user.UserRoleEnum;
 import org.huellas.salud.domain.Meta;
+import org.huellas.salud.domain.appointment.AppointmentEntities;
+import org.huellas.salud.domain.appointment.AppointmentEventType;
+import org.huellas.salud.domain.appointment.AppointmentFilter;
 import org.huellas.salud.domain.appointment.AppointmentMsg;
+import org.huellas.salud.domain.appointment.AppointmentPage;
+import org.huellas.salud.domain.appointment.AvailableSlot;
+import org.huellas.salud.helper.availability.CompiledWeek;
+import org.huellas.salud.helper.availability.DaySlots;
+import org.huellas.salud.helper.availability.EffectiveDay;
 import org.huellas.salud.helper.exceptions.HSException;
 import org.huellas.salud.helper.jwt.JwtService;
 import org.huellas.salud.helper.utils.Utils;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.jboss.logging.Logger;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.Optional;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -36,6 +53,7 @@ import java.util.HashMap;
 import java.net.UnknownHostException;
 import java.util.List;
 import java.util.UUID;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.LocalDate;
 
@@ -44,6 +62,12 @@ public class AppointmentService {
 
     private static final Logger LOG = Logger.getLogger(AppointmentService.class);
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_SHEET_DAYS = 7;
+    private static final int MAX_SEARCH_DAYS = 31;
+    private static final int DEFAULT_NEXT_SLOTS = 5;
+
     @Inject
     Utils utils;
 
@@ -57,13 +81,22 @@ public class AppointmentService {
     UserRepository userRepository;
 
     @Inject
-    PetRepository petRepository;
+    ServiceRepository serviceRepository;
 
     @Inject
-    ServiceRepository serviceRepository;
+    AvailabilityService availabilityService;
+
+    @Inject
+    SlotReservationRepository slotReservationRepository;
 
     @Inject
-    ScheduleRepository scheduleRepository;
+    AppointmentEntityLoader appointmentEntityLoader;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    AppointmentEventPublisher appointmentEventPublisher;
 
     @CacheInvalidateAll(cacheName = "appointments-list-cache")
     public AppointmentMsg saveAppointmentDataMongo(AppointmentMsg appointmentMsg) throws HSException, UnknownHostException {
@@ -75,19 +108,7 @@ public class AppointmentService {
 
         validateAppointmentData(appointmentData);
 
-        LocalDateTime start = appointmentData.getDateTime();
-        LocalDateTime end = start.plusMinutes(30);
-
-        boolean overlaps = appointmentRepository.existsAppointmentInRange(
-                appointmentData.getIdVeterinarian(),
-                start,
-                end
-        );
-
-        if (overlaps) {
-            throw new HSException(Response.Status.BAD_REQUEST,
-                    "El veterinario ya tiene una cita que se cruza con ese horario");
-        }
+        validateNoOverlap(appointmentData, null);
 
         LOG.infof("@saveAppointmentDataMongo SERV > Inicia formato de la info enviada y se agrega metadata");
 
@@ -98,7 +119,17 @@ public class AppointmentService {
         LOG.infof("@saveAppointmentDataMongo SERV > Finaliza formato de la data. Se realiza el registro de la cita "
                 + "en mongo con la siguiente informacion: %s", appointmentMsg);
 
-        appointmentRepository.persist(appointmentMsg);
+        reserveAppointmentSlots(appointmentData);
+
+        try {
+            appointmentRepository.persist(appointmentMsg);
+        } catch (RuntimeException ex) {
+            slotReservationRepository.releaseSlots(appointmentData.getIdAppointment());
+            throw ex;
+        }
+
+        availabilityService.registerAppointment(appointmentData);
+        appointmentEventPublisher.publish(AppointmentEventType.CREADA, appointmentData);
 
         LOG.infof("@saveAppointmentDataMongo SERV > La cita se registro exitosamente en la base de datos. Finaliza "
                 + "ejecucion del servicio para almacenar el registro de una cita con la data: %s", appointmentMsg);
@@ -166,6 +197,153 @@ public class AppointmentService {
         return appointments;
     }
 
+    public AppointmentPage searchAppointments(AppointmentFilter filter, String cursor, Integer limit) throws HSException {
+
+        LOG.infof("@searchAppointments SERV > Inicia ejecucion del servicio para consultar las citas con el filtro: %s "
+                + "desde el cursor: %s", filter, cursor);
+
+        restrictToCurrentUser(filter);
+
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    "El limite de registros debe estar entre 1 y " + MAX_PAGE_SIZE);
+        }
+
+        LocalDateTime afterDate = null;
+        ObjectId afterId = null;
+
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                afterDate = LocalDateTime.parse(parts[0]);
+                afterId = new ObjectId(parts[1]);
+            } catch (RuntimeException ex) {
+                LOG.errorf("@searchAppointments SERV > El cursor %s no es valido: %s", cursor, ex.getMessage());
+                throw new HSException(Response.Status.BAD_REQUEST, "El cursor de paginacion enviado no es valido");
+            }
+        }
+
+        // Se consulta un registro adicional para saber si existe una pagina siguiente
+        List<AppointmentMsg> appointments = appointmentRepository.searchAppointments(filter, afterDate, afterId, pageSize + 1);
+
+        boolean hasMore = appointments.size() > pageSize;
+        String nextCursor = null;
+
+        if (hasMore) {
+            appointments = appointments.subList(0, pageSize);
+            AppointmentMsg last = appointments.get(pageSize - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (last.getData().getDateTime() + "|" + last.getId().toHexString()).getBytes(StandardCharsets.UTF_8));
+        }
+
+        LOG.infof("@searchAppointments SERV > Finaliza consulta paginada de citas. Se obtuvo: %s registros. "
+                + "Existen mas registros: %s", appointments.size(), hasMore);
+
+        return AppointmentPage.builder()
+                .appointments(appointments)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * Limita la consulta a las citas del usuario autenticado: el veterinario solo ve las citas que atiende y el
+     * cliente solo las suyas. El administrador puede consultar las de cualquier usuario.
+     */
+    public void restrictToCurrentUser(AppointmentFilter filter) throws HSException {
+
+        String role = jwtService.getCurrentUserRole();
+
+        if (UserRoleEnum._0_ADMINISTRADOR.getValue().equals(role)) return;
+
+        String email = jwtService.getCurrentUserEmail();
+        String document = userRepository.findUserDataByEmail(email)
+                .map(userMsg -> userMsg.getData().getDocumentNumber())
+                .orElseThrow(() -> new HSException(Response.Status.FORBIDDEN,
+                        "No fue posible identificar al usuario autenticado"));
+
+        if (UserRoleEnum._1_VETERINARIO.getValue().equals(role)) {
+            validateOwnIdentity(filter.getIdVeterinarian(), document, email);
+            filter.setIdVeterinarian(document);
+        } else if (UserRoleEnum._3_CLIENTE.getValue().equals(role)) {
+            validateOwnIdentity(filter.getIdOwner(), document, email);
+            filter.setIdOwner(document);
+        } else {
+            throw new HSException(Response.Status.FORBIDDEN, "No tiene permisos para consultar las citas");
+        }
+    }
+
+    private void validateOwnIdentity(String requested, String document, String email) throws HSException {
+
+        if (requested != null && !requested.equals(document)) {
+
+            LOG.errorf("@validateOwnIdentity SERV > El usuario %s intento consultar las citas del usuario con "
+                    + "documento: %s", email, requested);
+
+            throw new HSException(Response.Status.FORBIDDEN, "No tiene permisos para consultar las citas de otro usuario");
+        }
+    }
+
+    /**
+     * Hoja de agenda de un veterinario. Un veterinario solo puede consultar la suya.
+     */
+    public StreamingOutput streamDaySheet(String idVeterinarian, LocalDate date, Integer days) throws HSException {
+
+        restrictToCurrentUser(AppointmentFilter.builder().idVeterinarian(idVeterinarian).build());
+
+        int sheetDays = days == null ? 1 : days;
+
+        if (sheetDays < 1 || sheetDays > MAX_SHEET_DAYS) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    "La cantidad de dias de la agenda debe estar entre 1 y " + MAX_SHEET_DAYS);
+        }
+
+        LocalDateTime from = date.atStartOfDay();
+        LocalDateTime to = date.plusDays(sheetDays).atStartOfDay();
+
+        LOG.infof("@streamDaySheet SERV > Inicia la generacion de la agenda del veterinario %s entre %s y %s",
+                idVeterinarian, from, to);
+
+        // Cada cita se escribe en la respuesta apenas llega del cursor, sin acumular la agenda en memoria
+        return output -> {
+            int written = 0;
+            try (MongoCursor<Document> cursor = appointmentRepository.aggregateDaySheet(idVeterinarian, from, to);
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+
+                generator.writeStartArray();
+                while (cursor.hasNext()) {
+                    generator.writeObject(cursor.next());
+                    written++;
+                }
+                generator.writeEndArray();
+            }
+
+            LOG.infof("@streamDaySheet SERV > Finaliza la generacion de la agenda del veterinario %s. Se enviaron "
+                    + "%s citas", idVeterinarian, written);
+        };
+    }
+
+    /**
+     * La agenda en memoria descarta rapido los horarios que ya se sabe que estan ocupados, pero puede no reflejar las
+     * citas registradas por otra instancia; por eso, si no encuentra cruces, la decision final se toma en mongo.
+     */
+    private void validateNoOverlap(Appointment appointmentData, String excludedAppointment) throws HSException {
+
+        String idVeterinarian = appointmentData.getIdVeterinarian();
+        LocalDateTime start = appointmentData.getDateTime();
+        LocalDateTime end = appointmentData.getEndDateTime();
+
+        boolean overlaps = availabilityService.hasConflict(idVeterinarian, start, end, excludedAppointment)
+                || appointmentRepository.existsOverlappingAppointment(idVeterinarian, start, end, excludedAppointment);
+
+        if (overlaps) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    "El veterinario ya tiene una cita que se cruza con ese horario");
+        }
+    }
+
     @CacheInvalidateAll(cacheName = "appointments-list-cache")
     public void updateAppointmentDataMongo(AppointmentMsg appointmentMsg) throws HSException {
 
@@ -176,21 +354,11 @@ public class AppointmentService {
         validateAppointmentData(appointmentData);
         AppointmentMsg appointmentMsgMongo = getAppointmentMsg(appointmentMsg.getData().getIdAppointment());
 
-        LocalDateTime start = appointmentData.getDateTime();
-        LocalDateTime end = start.plusMinutes(30);
-
         // Validación de cruces EXCLUYENDO la misma cita
-        boolean overlaps = appointmentRepository.existsAppointmentInRangeExcludingId(
-                appointmentData.getIdVeterinarian(),
-                start,
-                end,
-                appointmentData.getIdAppointment()
-        );
+        validateNoOverlap(appointmentData, appointmentData.getIdAppointment());
 
-        if (overlaps) {
-            throw new HSException(Response.Status.BAD_REQUEST,
-                    "El veterinario ya tiene una cita que se cruza con ese horario");
-        }
+        Appointment previous = reservationOf(appointmentMsgMongo.getData());
+        String previousVeterinarian = appointmentMsgMongo.getData().getIdVeterinarian();
 
         setAppointmentInformation(appointmentMsg.getData().getIdAppointment(), appointmentMsg.getData(), appointmentMsgMongo);
 
@@ -200,7 +368,19 @@ public class AppointmentService {
         LOG.infof("@updateAppointmentDataMongo SERV > Finaliza edicion de la informacion de la cita con id: %s. "
                 + "Inicia actualizacion en mongo con la data: %s", appointmentMsg.getData().getIdAppointment(), appointmentMsg);
 
-        appointmentRepository.update(appointmentMsgMongo);
+        reserveAppointmentSlots(appointmentMsgMongo.getData());
+
+        try {
+            appointmentRepository.update(appointmentMsgMongo);
+        } catch (RuntimeException ex) {
+            restoreAppointmentSlots(previous);
+            throw ex;
+        }
+
+        availabilityService.registerAppointment(appointmentMsgMongo.getData());
+        appointmentEventPublisher.publish(appointmentMsgMongo.getData().getStatus() == AppointmentStatus.CANCELADA
+                ? AppointmentEventType.CANCELADA : AppointmentEventType.ACTUALIZADA, appointmentMsgMongo.getData(),
+                previousVeterinarian);
 
         LOG.infof("@updateAppointmentDataMongo SERV > Finaliza actualizacion del registro de la cita con id: %s. "
                 + "Finaliza ejecucion de servicio de actualizacion", appointmentMsg.getData().getIdAppointment());
@@ -228,6 +408,8 @@ public class AppointmentService {
             appointmentMongo.setDateTime(appointmentRequest.getDateTime());
         }
 
+        appointmentMongo.setEndDateTime(appointmentRequest.getEndDateTime());
+
         appointmentMongo.setStatus(appointmentRequest.getStatus());
         appointmentMongo.setNotes(appointmentRequest.getNotes());
         appointmentMongo.setIdVeterinarian(appointmentRequest.getIdVeterinarian());
@@ -246,7 +428,10 @@ public class AppointmentService {
         LOG.infof("@deleteAppointmentDataMongo SERV > Inicia ejecucion del servicio para eliminar el registro de la "
                 + "cita con id: %s", idAppointment);
 
-        long deletedRecords = appointmentRepository.deleteAppointmentDataMongo(idAppointment);
+        Optional<AppointmentMsg> optionalAppointment = appointmentRepository.findAppointmentById(idAppointment);
+
+        long deletedRecords = optionalAppointment.isEmpty() ? 0
+                : appointmentRepository.deleteAppointmentDataMongo(idAppointment);
 
         if (deletedRecords == 0) {
 
@@ -256,195 +441,243 @@ public class AppointmentService {
             throw new HSException(Response.Status.NOT_FOUND, "La cita con id: " + idAppointment + ". No esta registrada en base de datos");
         }
 
+        slotReservationRepository.releaseSlots(idAppointment);
+        availabilityService.releaseAppointment(idAppointment);
+        appointmentEventPublisher.publish(AppointmentEventType.ELIMINADA, optionalAppointment.get().getData());
+
         LOG.infof("@deleteAppointmentDataMongo SERV > Finaliza ejecucion del servicio para eliminar el registro de la cita "
                 + "con id: %s. El registro se elimino correctamente.", idAppointment);
     }
 
-    private AppointmentMsg getAppointmentMsg(String idAppointment) throws HSException {
+    private void reserveAppointmentSlots(Appointment appointment) throws HSException {
 
-        return appointmentRepository.findAppointmentById(idAppointment).orElseThrow(() -> {
+        if (appointment.getStatus() == AppointmentStatus.CANCELADA) {
+            slotReservationRepository.releaseSlots(appointment.getIdAppointment());
+            return;
+        }
 
-            LOG.errorf("@getAppointmentMsg SERV > La cita con el id: %s No esta registrada. "
-                    + "Solicitud invalida no se puede modificar el registro", idAppointment);
+        LocalDateTime start = appointment.getDateTime();
 
-            return new HSException(Response.Status.NOT_FOUND, "No se encontro el registro de la cita con "
-                    + "id: " + idAppointment + " en la base de datos");
-        });
-    }
+        boolean reserved = slotReservationRepository.reserveSlots(appointment.getIdVeterinarian(),
+                appointment.getIdAppointment(), start, appointment.resolveEndDateTime());
 
-    private void validateAppointmentWithinSchedule(String idVeterinarian, LocalDateTime start, LocalDateTime end) throws HSException {
-        String dayOfWeek = start.getDayOfWeek().toString(); // Ejemplo: MONDAY
+        if (!reserved) {
+            LOG.errorf("@reserveAppointmentSlots SERV > El horario %s del veterinario %s fue reservado por otra cita",
+                    start, appointment.getIdVeterinarian());
 
-        Optional<ScheduleMsg> optionalSchedule = scheduleRepository.findByVeterinarianAndDay(idVeterinarian, dayOfWeek);
+            throw new HSException(Response.Status.CONFLICT,
+                    "El veterinario ya tiene una cita que se cruza con ese horario");
+        }
+    }
 
-        String diaEsp = traducirDia(dayOfWeek);
+    /**
+     * Si la cita no se pudo actualizar en mongo se vuelve a reservar el horario que tenia, que la reserva del nuevo
+     * horario ya habia reemplazado.
+     */
+    private void restoreAppointmentSlots(Appointment previous) {
 
-        if (optionalSchedule.isEmpty()) {
-            throw new HSException(Response.Status.BAD_REQUEST,
-                    "El veterinario no tiene horario para el día " + diaEsp);
+        if (previous.getStatus() == AppointmentStatus.CANCELADA || previous.getDateTime() == null) {
+            slotReservationRepository.releaseSlots(previous.getIdAppointment());
+            return;
         }
 
-        Schedule schedule = optionalSchedule.get().getData();
+        boolean restored = slotReservationRepository.reserveSlots(previous.getIdVeterinarian(),
+                previous.getIdAppointment(), previous.getDateTime(), previous.resolveEndDateTime());
 
-        if (!schedule.isActive()) {
-            throw new HSException(Response.Status.BAD_REQUEST,
-                    "El horario del veterinario para el día " + diaEsp + " está inactivo");
+        if (!restored) {
+            LOG.errorf("@restoreAppointmentSlots SERV > No fue posible restaurar el horario %s del veterinario %s para "
+                    + "la cita %s", previous.getDateTime(), previous.getIdVeterinarian(), previous.getIdAppointment());
         }
+    }
 
-        LocalDateTime scheduleStart = start.toLocalDate().atTime(schedule.getStartTime());
-        LocalDateTime scheduleEnd = start.toLocalDate().atTime(schedule.getEndTime());
+    private Appointment reservationOf(Appointment appointment) {
 
-        if (start.isBefore(scheduleStart) || end.isAfter(scheduleEnd)) {
-            throw new HSException(Response.Status.BAD_REQUEST,
-                    String.format("La cita está fuera del horario del veterinario (%s - %s)",
-                            schedule.getStartTime(), schedule.getEndTime()));
-        }
+        return Appointment.builder()
+                .idAppointment(appointment.getIdAppointment())
+                .idVeterinarian(appointment.getIdVeterinarian())
+                .dateTime(appointment.getDateTime())
+                .endDateTime(appointment.getEndDateTime())
+                .status(appointment.getStatus())
+                .build();
+    }
+
+    /**
+     * Reserva el horario de las citas registradas antes de que existieran las reservas. Las citas ya reservadas
+     * vuelven a escribir el mismo intervalo, por lo que se puede ejecutar en cada arranque y en varias instancias.
+     * Se ejecuta despues de la creacion de los indices, que usan la prioridad por defecto.
+     */
+    void backfillReservations(@Observes @Priority(Interceptor.Priority.APPLICATION + 1000) StartupEvent startupEvent) {
 
-        if (schedule.getLunchStart() != null && schedule.getLunchEnd() != null) {
-            LocalDateTime lunchStart = start.toLocalDate().atTime(schedule.getLunchStart());
-            LocalDateTime lunchEnd = start.toLocalDate().atTime(schedule.getLunchEnd());
+        int reserved = 0;
+        int conflicts = 0;
 
-            boolean startsDuringLunch = !start.isBefore(lunchStart) && start.isBefore(lunchEnd);
-            boolean endsDuringLunch = end.isAfter(lunchStart) && !end.isAfter(lunchEnd);
-            boolean overlapsLunch = start.isBefore(lunchStart) && end.isAfter(lunchEnd);
+        try (MongoCursor<AppointmentMsg> cursor = appointmentRepository.findActiveAppointmentsFrom(
+                LocalDate.now().atStartOfDay())) {
 
-            if (startsDuringLunch || endsDuringLunch || overlapsLunch) {
-                throw new HSException(Response.Status.BAD_REQUEST,
-                        String.format("La cita se cruza con el horario de almuerzo del veterinario (%s - %s)",
-                                schedule.getLunchStart(), schedule.getLunchEnd()));
+            while (cursor.hasNext()) {
+
+                Appointment appointment = cursor.next().getData();
+
+                if (appointment.getIdVeterinarian() == null || appointment.getDateTime() == null) continue;
+
+                if (slotReservationRepository.reserveSlots(appointment.getIdVeterinarian(),
+                        appointment.getIdAppointment(), appointment.getDateTime(), appointment.resolveEndDateTime())) {
+                    reserved++;
+                } else {
+                    conflicts++;
+                }
             }
+        } catch (MongoException ex) {
+            LOG.errorf(ex, "@backfillReservations SERV > No fue posible reservar el horario de las citas existentes");
         }
+
+        LOG.infof("@backfillReservations SERV > Se reservo el horario de %s citas. Citas que se cruzan con otra: %s",
+                reserved, conflicts);
     }
 
+    private AppointmentMsg getAppointmentMsg(String idAppointment) throws HSException {
 
-    public List<String> getAvailableSlots(String idVeterinarian, LocalDate date) throws HSException {
-        String dayOfWeek = date.getDayOfWeek().toString();
+        return appointmentRepository.findAppointmentById(idAppointment).orElseThrow(() -> {
 
-        Optional<ScheduleMsg> optionalSchedule = scheduleRepository.findByVeterinarianAndDay(idVeterinarian, dayOfWeek);
+            LOG.errorf("@getAppointmentMsg SERV > La cita con el id: %s No esta registrada. "
+                    + "Solicitud invalida no se puede modificar el registro", idAppointment);
+
+            return new HSException(Response.Status.NOT_FOUND, "No se encontro el registro de la cita con "
+                    + "id: " + idAppointment + " en la base de datos");
+        });
+    }
+
+    private void validateAppointmentWithinSchedule(EffectiveDay scheduleDay, LocalDateTime start, LocalDateTime end) throws HSException {
+        String dayOfWeek = start.getDayOfWeek().toString(); // Ejemplo: MONDAY
 
         String diaEsp = traducirDia(dayOfWeek);
 
-        if (optionalSchedule.isEmpty()) {
+        if (scheduleDay.getStatus() == DaySlots.Status.NO_SCHEDULE) {
             throw new HSException(Response.Status.BAD_REQUEST,
                     "El veterinario no tiene horario para el día " + diaEsp);
         }
 
-        Schedule schedule = optionalSchedule.get().getData();
-
-        if (!schedule.isActive()) {
+        if (scheduleDay.getStatus() == DaySlots.Status.INACTIVE) {
             throw new HSException(Response.Status.BAD_REQUEST,
                     "El horario del veterinario para el día " + diaEsp + " está inactivo");
         }
 
-        LocalDateTime scheduleStart = date.atTime(schedule.getStartTime());
-        LocalDateTime scheduleEnd = date.atTime(schedule.getEndTime());
-
-        LocalDateTime lunchStart = schedule.getLunchStart() != null
-                ? date.atTime(schedule.getLunchStart()) : null;
-        LocalDateTime lunchEnd = schedule.getLunchEnd() != null
-                ? date.atTime(schedule.getLunchEnd()) : null;
+        if (scheduleDay.getStatus() == DaySlots.Status.CLOSED) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    "El veterinario no atiende el " + start.toLocalDate() + ": " + scheduleDay.getReason());
+        }
 
-        List<AppointmentMsg> appointments = appointmentRepository.findAppointmentsByVeterinarianAndDate(idVeterinarian, date);
+        // Minutos desde la medianoche del dia de la cita; una cita que termina otro dia queda fuera del horario
+        int startMinute = start.toLocalTime().toSecondOfDay() / 60;
+        int endMinute = (int) Duration.between(start.toLocalDate().atStartOfDay(), end).toMinutes();
 
-        List<LocalDateTime> timeSlots = new ArrayList<>();
-        LocalDateTime current = scheduleStart;
-        while (current.plusMinutes(30).isBefore(scheduleEnd) || current.plusMinutes(30).equals(scheduleEnd)) {
-            timeSlots.add(current);
-            current = current.plusMinutes(30);
+        if (startMinute < scheduleDay.getStartMinute() || endMinute > scheduleDay.getEndMinute()) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    String.format("La cita está fuera del horario del veterinario (%s - %s)",
+                            CompiledWeek.toTime(scheduleDay.getStartMinute()),
+                            CompiledWeek.toTime(scheduleDay.getEndMinute())));
         }
 
-        List<String> availableSlots = timeSlots.stream()
-                .filter(slot -> {
-                    LocalDateTime slotEnd = slot.plusMinutes(30);
-
-                    if (lunchStart != null && lunchEnd != null) {
-                        boolean overlapsLunch = (slot.isBefore(lunchEnd) && slotEnd.isAfter(lunchStart));
-                        if (overlapsLunch) return false;
-                    }
+        int lunchStart = scheduleDay.getLunchStartMinute();
+        int lunchEnd = scheduleDay.getLunchEndMinute();
 
-                    boolean overlapsAppointment = appointments.stream()
-                            .anyMatch(appt -> {
-                                Appointment appointment = appt.getData();
+        if (lunchStart != CompiledWeek.NONE && startMinute < lunchEnd && endMinute > lunchStart) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    String.format("La cita se cruza con el horario de almuerzo del veterinario (%s - %s)",
+                            CompiledWeek.toTime(lunchStart), CompiledWeek.toTime(lunchEnd)));
+        }
+    }
 
-                                if (appointment.getStatus() == AppointmentStatus.CANCELADA) {
-                                    return false;
-                                }
 
-                                LocalDateTime apptStart = appointment.getDateTime();
-                                LocalDateTime apptEnd = apptStart.plusMinutes(30);
+    public List<String> getAvailableSlots(String idVeterinarian, LocalDate date, List<String> serviceIds) throws HSException {
 
-                                return slot.isBefore(apptEnd) && slotEnd.isAfter(apptStart);
-                            });
+        LOG.infof("@getAvailableSlots SERV > Inicia consulta de la agenda en memoria del veterinario %s para %s "
+                + "con los servicios: %s", idVeterinarian, date, serviceIds);
 
-                    return !overlapsAppointment;
-                })
-                .map(slot -> slot.toLocalTime().toString())
-                .collect(Collectors.toList());
+        return availabilityService.getAvailableSlots(idVeterinarian, date, calculateDuration(serviceIds));
+    }
 
-        LOG.infof("@getAvailableSlots SERV > Veterinario %s tiene %s horarios disponibles para %s",
-                idVeterinarian, availableSlots.size(), date);
+    public List<AvailableSlot> getNextAvailableSlots(LocalDate from, LocalDate to, List<String> serviceIds, Integer limit)
+            throws HSException {
 
-        return availableSlots;
-    }
+        LOG.infof("@getNextAvailableSlots SERV > Inicia busqueda de los siguientes horarios libres entre %s y %s con "
+                + "los servicios: %s", from, to, serviceIds);
 
+        LocalDate firstDay = from == null ? LocalDate.now() : from;
+        LocalDate lastDay = to == null ? firstDay.plusDays(MAX_SEARCH_DAYS - 1L) : to;
+        int slotsLimit = limit == null ? DEFAULT_NEXT_SLOTS : limit;
 
-    public double calculateTotal(String idPet, List<String> serviceIds) {
+        if (lastDay.isBefore(firstDay) || firstDay.plusDays(MAX_SEARCH_DAYS).isBefore(lastDay.plusDays(1))) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    "El rango de busqueda debe ser valido y de maximo " + MAX_SEARCH_DAYS + " dias");
+        }
 
-        PetMsg petMsg = petRepository.findPetById(idPet)
-                .orElseThrow(() -> new RuntimeException("Mascota no encontrada"));
+        if (slotsLimit < 1 || slotsLimit > MAX_PAGE_SIZE) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    "La cantidad de horarios debe estar entre 1 y " + MAX_PAGE_SIZE);
+        }
 
-        double petWeight = Double.parseDouble(petMsg.getData().getWeight());
-        double total = 0.0;
+        Map<String, UserMsg> veterinarians = userRepository.getVeterinariansMongo().stream()
+                .collect(Collectors.toMap(user -> user.getData().getDocumentNumber(), user -> user, (a, b) -> a));
 
-        for (String id : serviceIds) {
+        List<AvailableSlot> slots = availabilityService.findNextAvailableSlots(veterinarians.keySet(), firstDay, lastDay,
+                calculateDuration(serviceIds), slotsLimit);
 
-            ServiceMsg serviceMsg = serviceRepository.findServiceById(id)
-                    .orElseThrow(() -> new RuntimeException("Servicio no encontrado"));
+        slots.forEach(slot -> {
+            UserMsg veterinarian = veterinarians.get(slot.getIdVeterinarian());
+            slot.setVeterinarianName(veterinarian.getData().getName() + " " + veterinarian.getData().getLastName());
+        });
 
-            Service serviceData = serviceMsg.getData();
+        LOG.infof("@getNextAvailableSlots SERV > Finaliza busqueda de horarios libres. Se encontraron %s horarios",
+                slots.size());
 
-            double price;
+        return slots;
+    }
 
-            if (serviceData.isPriceByWeight() && serviceData.getWeightPriceRules() != null) {
+    private int calculateDuration(List<String> serviceIds) throws HSException {
 
-                // Buscar regla cuyo rango incluya el peso
-                Optional<Double> rulePrice = serviceData.getWeightPriceRules().stream()
-                        .filter(rule -> petWeight >= rule.getMinWeight() && petWeight <= rule.getMaxWeight())
-                        .map(WeightPriceRule::getPrice)
-                        .findFirst();
+        if (serviceIds == null || serviceIds.isEmpty()) {
+            return Appointment.DEFAULT_DURATION_MINUTES;
+        }
 
-                if (rulePrice.isPresent()) {
-                    price = rulePrice.get();
-                } else {
-                    // Si no hay regla aplicable → tomar el precio mayor de todas las reglas
-                    price = serviceData.getWeightPriceRules().stream()
-                            .map(WeightPriceRule::getPrice)
-                            .max(Double::compare)
-                            .orElse(serviceData.getBasePrice());
-                }
+        Map<String, ServiceMsg> services = appointmentEntityLoader.findServices(serviceIds);
 
-            } else {
-                // Precio fijo sin reglas
-                price = serviceData.getBasePrice();
+        for (String id : serviceIds) {
+            if (!services.containsKey(id)) {
+                throw new HSException(Response.Status.BAD_REQUEST, "El servicio con ID " + id + " no existe");
             }
+        }
+        return calculateDuration(serviceIds, services);
+    }
 
-            total += price;
+    /**
+     * Los servicios de una cita se atienden uno tras otro, por lo que la duracion es la suma de sus duraciones.
+     */
+    private int calculateDuration(List<String> serviceIds, Map<String, ServiceMsg> services) {
+
+        int durationMinutes = 0;
+
+        for (String id : serviceIds) {
+            Integer serviceDuration = services.get(id).getData().getDurationMinutes();
+            durationMinutes += serviceDuration != null ? serviceDuration : Appointment.DEFAULT_DURATION_MINUTES;
         }
 
-        return total;
+        return durationMinutes > 0 ? durationMinutes : Appointment.DEFAULT_DURATION_MINUTES;
     }
 
     private void validateAppointmentData(Appointment appointmentData) throws HSException {
 
+        // Todas las consultas se resuelven en paralelo antes de iniciar las validaciones
+        AppointmentEntities entities = appointmentEntityLoader.load(appointmentData);
+
         // 1️⃣ Validar usuario
-        Optional<UserMsg> optionalUser = userRepository.findUserByDocumentNumber(appointmentData.getIdOwner());
-        if (optionalUser.isEmpty()) {
+        if (entities.getOwner().isEmpty()) {
             throw new HSException(Response.Status.BAD_REQUEST,
                     "No se encontró el usuario con documento: " + appointmentData.getIdOwner());
         }
 
         // 2️⃣ Validar mascota
-        Optional<PetMsg> optionalPet = petRepository.findPetById(appointmentData.getIdPet());
+        Optional<PetMsg> optionalPet = entities.getPet();
         if (optionalPet.isEmpty()) {
             throw new HSException(Response.Status.BAD_REQUEST,
                     "No se encontró la mascota con id: " + appointmentData.getIdPet());
@@ -459,8 +692,7 @@ public class AppointmentService {
         }
 
         // 3️⃣ Validar veterinario
-        Optional<UserMsg> optionalVet = userRepository.findUserByDocumentNumber(appointmentData.getIdVeterinarian());
-        if (optionalVet.isEmpty()) {
+        if (entities.getVeterinarian().isEmpty()) {
             throw new HSException(Response.Status.BAD_REQUEST,
                     "No se encontró el veterinario con documento: " + appointmentData.getIdVeterinarian());
         }
@@ -468,17 +700,18 @@ public class AppointmentService {
         // 4️⃣ Validar servicios
         List<String> serviceIds = appointmentData.getServices();
         for (String id : serviceIds) {
-            if (serviceRepository.findServiceById(id).isEmpty()) {
+            if (!entities.getServices().containsKey(id)) {
                 throw new HSException(Response.Status.BAD_REQUEST, "El servicio con ID " + id + " no existe");
             }
         }
 
-        // 5️⃣ Validación de horarios del veterinario
+        // 5️⃣ Validación de horarios del veterinario con la duracion de los servicios
         LocalDateTime start = appointmentData.getDateTime();
-        LocalDateTime end = start.plusMinutes(30);
+        LocalDateTime end = start.plusMinutes(calculateDuration(serviceIds, entities.getServices()));
 
-        validateAppointmentWithinSchedule(appointmentData.getIdVeterinarian(), start, end);
+        validateAppointmentWithinSchedule(entities.getScheduleDay(), start, end);
 
+        appointmentData.setEndDateTime(end);
     }
 
     private String traducirDia(String day) {
@@ -0,0 +1,323 @@
+package org.huellas.salud.services;
+
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CaffeineCache;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.Response;
+import org.huellas.salud.domain.appointment.Appointment;
+import org.huellas.salud.domain.appointment.AppointmentMsg;
+import org.huellas.salud.domain.appointment.AppointmentStatus;
+import org.huellas.salud.domain.appointment.AvailableSlot;
+import org.huellas.salud.helper.availability.DaySlots;
+import org.huellas.salud.helper.availability.EffectiveDay;
+import org.huellas.salud.helper.exceptions.HSException;
+import org.huellas.salud.repositories.AppointmentRepository;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+@ApplicationScoped
+public class AvailabilityService {
+
+    private static final Logger LOG = Logger.getLogger(AvailabilityService.class);
+
+    // Agendas por veterinario y dia. El vencimiento limita cuanto puede divergir de mongo cuando hay varias
+    // instancias desplegadas y el tamaño maximo, la memoria que ocupan las consultas de fechas lejanas
+    @Inject
+    @CacheName("availability-day-cache")
+    Cache dayCache;
+
+    // Agenda en la que esta ocupada cada cita, para liberarla sin recorrer todas las agendas
+    @Inject
+    @CacheName("availability-appointment-cache")
+    Cache appointmentDayCache;
+
+    @Inject
+    ScheduleService scheduleService;
+
+    @Inject
+    ScheduleCalendarService scheduleCalendarService;
+
+    @Inject
+    AppointmentRepository appointmentRepository;
+
+    public List<String> getAvailableSlots(String idVeterinarian, LocalDate date, int durationMinutes) throws HSException {
+
+        DaySlots daySlots = getDaySlots(idVeterinarian, date);
+
+        String diaEsp = translateDay(date.getDayOfWeek().toString());
+
+        if (daySlots.getStatus() == DaySlots.Status.NO_SCHEDULE) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    "El veterinario no tiene horario para el día " + diaEsp);
+        }
+
+        if (daySlots.getStatus() == DaySlots.Status.INACTIVE) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    "El horario del veterinario para el día " + diaEsp + " está inactivo");
+        }
+
+        if (daySlots.getStatus() == DaySlots.Status.CLOSED) {
+            throw new HSException(Response.Status.BAD_REQUEST, "El veterinario no atiende el " + date + ": "
+                    + scheduleCalendarService.getEffectiveDay(idVeterinarian, date).getReason());
+        }
+
+        List<String> availableSlots = daySlots.availableSlots(durationMinutes);
+
+        LOG.infof("@getAvailableSlots SERV > Veterinario %s tiene %s horarios disponibles de %s minutos para %s",
+                idVeterinarian, availableSlots.size(), durationMinutes, date);
+
+        return availableSlots;
+    }
+
+    /**
+     * Validacion rapida de cruces contra la agenda en memoria. La agenda refleja las escrituras de esta instancia
+     * pero puede no tener las de otras instancias hasta que vence, por lo que un resultado negativo no garantiza que
+     * el horario este libre: quien llama debe confirmarlo en mongo.
+     */
+    public boolean hasConflict(String idVeterinarian, LocalDateTime start, LocalDateTime end, String excludedAppointment) {
+
+        // Una cita que pasa la medianoche se valida contra la agenda de cada dia que ocupa
+        for (LocalDate day = start.toLocalDate(); day.atStartOfDay().isBefore(end); day = day.plusDays(1)) {
+
+            DaySlots daySlots = getDaySlots(idVeterinarian, day);
+
+            if (daySlots.overlaps(minutesFrom(day, start), minutesFrom(day, end), excludedAppointment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Primeros {@code limit} horarios libres entre todos los veterinarios indicados. El horario efectivo de cada
+     * veterinario se resuelve una sola vez para todo el rango, las citas del rango se consultan una sola vez y las
+     * agendas se arman dia por dia, deteniendo la busqueda en cuanto se completa el limite.
+     */
+    public List<AvailableSlot> findNextAvailableSlots(Collection<String> idVeterinarians, LocalDate from, LocalDate to,
+                                                      int durationMinutes, int limit) {
+
+        // Los horarios semanales que no esten en cache se cargan con una sola consulta antes de armar los calendarios
+        scheduleService.getCompiledWeeks(idVeterinarians);
+
+        // Una resolucion por veterinario para todo el rango en lugar de una por veterinario y dia
+        Map<String, List<EffectiveDay>> effectiveDays = new HashMap<>();
+        for (String idVeterinarian : idVeterinarians) {
+            effectiveDays.put(idVeterinarian, scheduleCalendarService.getEffectiveDays(idVeterinarian, from, to));
+        }
+
+        Map<String, List<Appointment>> appointmentsByDay = new HashMap<>();
+
+        for (AppointmentMsg appointmentMsg : appointmentRepository.findActiveAppointmentsByVeterinariansInRange(
+                idVeterinarians, from.atStartOfDay(), to.plusDays(1).atStartOfDay())) {
+            Appointment appointment = appointmentMsg.getData();
+            appointmentsByDay.computeIfAbsent(dayKey(appointment.getIdVeterinarian(), appointment.getDateTime().toLocalDate()),
+                    key -> new ArrayList<>()).add(appointment);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<AvailableSlot> slots = new ArrayList<>(limit);
+
+        for (LocalDate day = from; !day.isAfter(to) && slots.size() < limit; day = day.plusDays(1)) {
+
+            List<AvailableSlot> daySlots = new ArrayList<>();
+
+            for (String idVeterinarian : idVeterinarians) {
+
+                DaySlots agenda = effectiveDays.get(idVeterinarian).get((int) ChronoUnit.DAYS.between(from, day))
+                        .toDaySlots();
+
+                if (agenda.getStatus() != DaySlots.Status.OPEN) continue;
+
+                for (Appointment appointment : appointmentsByDay.getOrDefault(dayKey(idVeterinarian, day), List.of())) {
+                    agenda.book(appointment.getIdAppointment(), minutesFrom(day, appointment.getDateTime()),
+                            minutesFrom(day, appointment.resolveEndDateTime()));
+                }
+
+                for (String slot : agenda.availableSlots(durationMinutes)) {
+
+                    LocalDateTime start = day.atTime(LocalTime.parse(slot));
+
+                    if (start.isAfter(now)) {
+                        daySlots.add(AvailableSlot.builder().idVeterinarian(idVeterinarian).dateTime(start).build());
+                    }
+                }
+            }
+
+            daySlots.sort(Comparator.comparing(AvailableSlot::getDateTime).thenComparing(AvailableSlot::getIdVeterinarian));
+            slots.addAll(daySlots.subList(0, Math.min(daySlots.size(), limit - slots.size())));
+        }
+
+        LOG.infof("@findNextAvailableSlots SERV > Se encontraron %s horarios libres de %s minutos entre %s y %s",
+                slots.size(), durationMinutes, from, to);
+
+        return slots;
+    }
+
+    public Optional<LocalDateTime> findNextFreeStart(String idVeterinarian, LocalDateTime notBefore, int durationMinutes,
+                                                     LocalDate lastDay) {
+
+        for (LocalDate day = notBefore.toLocalDate(); !day.isAfter(lastDay); day = day.plusDays(1)) {
+
+            DaySlots daySlots = getDaySlots(idVeterinarian, day);
+
+            if (daySlots.getStatus() != DaySlots.Status.OPEN) continue;
+
+            LocalTime from = day.equals(notBefore.toLocalDate()) ? notBefore.toLocalTime() : LocalTime.MIN;
+            Optional<LocalTime> slot = daySlots.firstAvailableSlot(from, durationMinutes);
+
+            if (slot.isPresent()) {
+                return Optional.of(day.atTime(slot.get()));
+            }
+        }
+        return Optional.empty();
+    }
+
+    public void registerAppointment(Appointment appointment) {
+
+        releaseAppointment(appointment.getIdAppointment());
+
+        if (appointment.getStatus() == AppointmentStatus.CANCELADA || appointment.getDateTime() == null) return;
+
+        String key = dayKey(appointment.getIdVeterinarian(), appointment.getDateTime().toLocalDate());
+        DaySlots daySlots = cachedDay(key);
+
+        if (daySlots == null) return;
+
+        LocalDate day = appointment.getDateTime().toLocalDate();
+
+        daySlots.book(appointment.getIdAppointment(), minutesFrom(day, appointment.getDateTime()),
+                minutesFrom(day, appointment.resolveEndDateTime()));
+        appointmentDayCache.as(CaffeineCache.class).put(appointment.getIdAppointment(),
+                CompletableFuture.completedFuture(key));
+
+        LOG.debugf("@registerAppointment SERV > Se ocupa en memoria la cita %s en la agenda %s",
+                appointment.getIdAppointment(), key);
+    }
+
+    public void releaseAppointment(String idAppointment) {
+
+        CompletableFuture<String> cachedKey = appointmentDayCache.as(CaffeineCache.class).getIfPresent(idAppointment);
+
+        if (cachedKey == null) return;
+
+        String key = cachedKey.join();
+        appointmentDayCache.invalidate(idAppointment).await().indefinitely();
+
+        DaySlots daySlots = cachedDay(key);
+
+        if (daySlots != null && daySlots.release(idAppointment)) {
+            LOG.debugf("@releaseAppointment SERV > Se libera en memoria la cita %s de la agenda %s", idAppointment, key);
+        }
+    }
+
+    public void invalidateVeterinarian(String idVeterinarian) {
+
+        LOG.infof("@invalidateVeterinarian SERV > Se descartan las agendas en memoria del veterinario %s", idVeterinarian);
+
+        String prefix = idVeterinarian + "|";
+        invalidateDaysMatching(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Descarta las agendas en memoria de los dias entre {@code from} y {@code to}; si {@code idVeterinarian} es
+     * nulo se descartan las de todos los veterinarios.
+     */
+    public void invalidateDays(String idVeterinarian, LocalDate from, LocalDate to) {
+
+        LOG.infof("@invalidateDays SERV > Se descartan las agendas en memoria entre %s y %s del veterinario %s",
+                from, to, idVeterinarian == null ? "(todos)" : idVeterinarian);
+
+        invalidateDaysMatching(key -> {
+            int separator = key.lastIndexOf('|');
+            LocalDate date = LocalDate.parse(key.substring(separator + 1));
+            return (idVeterinarian == null || key.substring(0, separator).equals(idVeterinarian))
+                    && !date.isBefore(from) && !date.isAfter(to);
+        });
+    }
+
+    // Las citas de las agendas descartadas quedan en appointmentDayCache hasta vencer; liberarlas no tiene efecto
+    private void invalidateDaysMatching(Predicate<String> condition) {
+
+        for (Object key : List.copyOf(dayCache.as(CaffeineCache.class).keySet())) {
+            if (condition.test((String) key)) dayCache.invalidate(key).await().indefinitely();
+        }
+    }
+
+    private DaySlots cachedDay(String key) {
+
+        CompletableFuture<DaySlots> cached = dayCache.as(CaffeineCache.class).getIfPresent(key);
+
+        return cached != null ? cached.join() : null;
+    }
+
+    private DaySlots getDaySlots(String idVeterinarian, LocalDate date) {
+
+        String key = dayKey(idVeterinarian, date);
+
+        return dayCache.get(key, ignored -> loadDaySlots(idVeterinarian, date, key)).await().indefinitely();
+    }
+
+    private DaySlots loadDaySlots(String idVeterinarian, LocalDate date, String key) {
+
+        LOG.infof("@loadDaySlots SERV > Se construye en memoria la agenda del veterinario %s para %s",
+                idVeterinarian, date);
+
+        DaySlots daySlots = scheduleCalendarService.getEffectiveDay(idVeterinarian, date).toDaySlots();
+
+        if (daySlots.getStatus() != DaySlots.Status.OPEN) {
+            return daySlots;
+        }
+
+        CaffeineCache appointmentDays = appointmentDayCache.as(CaffeineCache.class);
+
+        for (AppointmentMsg appointmentMsg : appointmentRepository.findAppointmentsByVeterinarianAndDate(idVeterinarian, date)) {
+
+            Appointment appointment = appointmentMsg.getData();
+
+            if (appointment.getStatus() == AppointmentStatus.CANCELADA) continue;
+
+            daySlots.book(appointment.getIdAppointment(), minutesFrom(date, appointment.getDateTime()),
+                    minutesFrom(date, appointment.resolveEndDateTime()));
+            appointmentDays.put(appointment.getIdAppointment(), CompletableFuture.completedFuture(key));
+        }
+
+        return daySlots;
+    }
+
+    private int minutesFrom(LocalDate day, LocalDateTime dateTime) {
+        return (int) Duration.between(day.atStartOfDay(), dateTime).toMinutes();
+    }
+
+    private String dayKey(String idVeterinarian, LocalDate date) {
+        return idVeterinarian + "|" + date;
+    }
+
+    private String translateDay(String day) {
+        return switch (day.toUpperCase()) {
+            case "MONDAY" -> "LUNES";
+            case "TUESDAY" -> "MARTES";
+            case "WEDNESDAY" -> "MIERCOLES";
+            case "THURSDAY" -> "JUEVES";
+            case "FRIDAY" -> "VIERNES";
+            case "SATURDAY" -> "SABADO";
+            case "SUNDAY" -> "DOMINGO";
+            default -> day;
+        };
+    }
+}
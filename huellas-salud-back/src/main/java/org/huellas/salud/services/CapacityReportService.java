@@ -0,0 +1,208 @@
+package org.huellas.salud.services;
+
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.Response;
+import org.bson.Document;
+import org.huellas.salud.domain.schedule.CapacityGranularity;
+import org.huellas.salud.domain.schedule.VeterinarianCapacity;
+import org.huellas.salud.domain.user.User;
+import org.huellas.salud.domain.user.UserMsg;
+import org.huellas.salud.helper.availability.EffectiveDay;
+import org.huellas.salud.helper.exceptions.HSException;
+import org.huellas.salud.repositories.AppointmentRepository;
+import org.huellas.salud.repositories.UserRepository;
+import org.jboss.logging.Logger;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@ApplicationScoped
+public class CapacityReportService {
+
+    private static final Logger LOG = Logger.getLogger(CapacityReportService.class);
+
+    private static final int MAX_REPORT_WEEKS = 26;
+
+    @Inject
+    AppointmentRepository appointmentRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Inject
+    ScheduleCalendarService scheduleCalendarService;
+
+    @Inject
+    @CacheName("capacity-week-cache")
+    Cache capacityWeekCache;
+
+    /**
+     * Reporte de ocupacion: minutos reservados frente a minutos de atencion por veterinario, por dia o por semana.
+     * El reporte se arma semana a semana. De las semanas cerradas (anteriores a la actual) solo se guardan en cache
+     * los minutos reservados, que ya no cambian; los minutos de atencion no se guardan porque no se conserva el
+     * historial de horarios y se calculan en cada consulta con el calendario vigente.
+     */
+    public List<VeterinarianCapacity> getCapacityReport(LocalDate from, LocalDate to, CapacityGranularity granularity,
+                                                        String idVeterinarian) throws HSException {
+
+        LOG.infof("@getCapacityReport SERV > Inicia reporte de ocupacion entre %s y %s agrupado por %s. Veterinario: %s",
+                from, to, granularity, idVeterinarian);
+
+        if (to.isBefore(from)) {
+            throw new HSException(Response.Status.BAD_REQUEST, "La fecha de inicio debe ser anterior o igual a la fecha de fin");
+        }
+
+        LocalDate firstWeek = from.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        LocalDate currentWeek = LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+
+        if (firstWeek.plusWeeks(MAX_REPORT_WEEKS).isBefore(to)) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    "El rango del reporte no puede superar " + MAX_REPORT_WEEKS + " semanas");
+        }
+
+        List<VeterinarianCapacity> days = new ArrayList<>();
+
+        for (LocalDate week = firstWeek; !week.isAfter(to); week = week.plusWeeks(1)) {
+
+            WeekBookings bookings = week.isBefore(currentWeek)
+                    ? capacityWeekCache.get(week, this::aggregateWeek).await().indefinitely()
+                    : aggregateWeek(week);
+
+            computeWeek(week, bookings).stream()
+                    .filter(day -> !day.getDate().isBefore(from) && !day.getDate().isAfter(to))
+                    .filter(day -> idVeterinarian == null || idVeterinarian.equals(day.getIdVeterinarian()))
+                    .forEach(days::add);
+        }
+
+        List<VeterinarianCapacity> report = granularity == CapacityGranularity.SEMANA ? groupByWeek(days) : days;
+
+        LOG.infof("@getCapacityReport SERV > Finaliza reporte de ocupacion con %s registros", report.size());
+
+        return report;
+    }
+
+    /**
+     * Minutos reservados y cantidad de citas por veterinario y dia en la semana que inicia el lunes indicado, a
+     * partir de una agregacion sobre las citas.
+     */
+    private WeekBookings aggregateWeek(LocalDate monday) {
+
+        LOG.infof("@aggregateWeek SERV > Se consultan los minutos reservados de la semana que inicia el %s", monday);
+
+        Map<String, DayBookings> days = new HashMap<>();
+        Set<String> veterinarians = new LinkedHashSet<>();
+
+        for (Document row : appointmentRepository.aggregateBookedMinutes(monday.atStartOfDay(),
+                monday.plusWeeks(1).atStartOfDay())) {
+
+            Document key = row.get("_id", Document.class);
+            String idVeterinarian = key.getString("idVeterinario");
+
+            if (idVeterinarian == null) continue;
+
+            days.put(idVeterinarian + "|" + key.getString("fecha"), new DayBookings(
+                    row.get("minutosReservados", Number.class).longValue(), row.getInteger("citas")));
+            veterinarians.add(idVeterinarian);
+        }
+
+        return new WeekBookings(Map.copyOf(days), Collections.unmodifiableSet(veterinarians));
+    }
+
+    /**
+     * Calcula la ocupacion diaria de todos los veterinarios en la semana que inicia el lunes indicado, con los
+     * minutos de atencion del calendario efectivo de cada uno.
+     */
+    private List<VeterinarianCapacity> computeWeek(LocalDate monday, WeekBookings bookings) {
+
+        LocalDate sunday = monday.plusDays(6);
+
+        Set<String> veterinarians = new LinkedHashSet<>(bookings.veterinarians());
+
+        // Se incluyen los veterinarios activos aunque no tengan citas y los inactivos que si las tuvieron
+        userRepository.getVeterinariansMongo().forEach(user -> veterinarians.add(user.getData().getDocumentNumber()));
+
+        Map<String, User> users = userRepository.findUsersByDocumentNumbers(veterinarians).stream()
+                .map(UserMsg::getData)
+                .collect(Collectors.toMap(User::getDocumentNumber, Function.identity(), (first, second) -> first));
+
+        List<VeterinarianCapacity> days = new ArrayList<>(veterinarians.size() * 7);
+
+        for (String idVeterinarian : veterinarians) {
+
+            User user = users.get(idVeterinarian);
+            String name = user != null ? user.getName() + " " + user.getLastName() : null;
+
+            List<EffectiveDay> schedule = scheduleCalendarService.getEffectiveDays(idVeterinarian, monday, sunday);
+
+            for (int offset = 0; offset < 7; offset++) {
+
+                LocalDate date = monday.plusDays(offset);
+                DayBookings booked = bookings.days().get(idVeterinarian + "|" + date);
+
+                days.add(buildCapacity(idVeterinarian, name, date, schedule.get(offset).getScheduledMinutes(),
+                        booked != null ? booked.minutes() : 0, booked != null ? booked.appointments() : 0));
+            }
+        }
+        return days;
+    }
+
+    private List<VeterinarianCapacity> groupByWeek(List<VeterinarianCapacity> days) {
+
+        Map<String, VeterinarianCapacity> weeks = new LinkedHashMap<>();
+
+        for (VeterinarianCapacity day : days) {
+
+            LocalDate monday = day.getDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+
+            weeks.merge(day.getIdVeterinarian() + "|" + monday,
+                    buildCapacity(day.getIdVeterinarian(), day.getVeterinarianName(), monday, day.getScheduledMinutes(),
+                            day.getBookedMinutes(), day.getAppointments()),
+                    (week, other) -> buildCapacity(week.getIdVeterinarian(), week.getVeterinarianName(), monday,
+                            week.getScheduledMinutes() + other.getScheduledMinutes(),
+                            week.getBookedMinutes() + other.getBookedMinutes(),
+                            week.getAppointments() + other.getAppointments()));
+        }
+
+        return weeks.values().stream()
+                .sorted(Comparator.comparing(VeterinarianCapacity::getDate)
+                        .thenComparing(VeterinarianCapacity::getIdVeterinarian))
+                .toList();
+    }
+
+    private VeterinarianCapacity buildCapacity(String idVeterinarian, String name, LocalDate date, long scheduledMinutes,
+                                               long bookedMinutes, int appointments) {
+
+        double utilization = scheduledMinutes == 0 ? 0 : Math.round(bookedMinutes * 1000.0 / scheduledMinutes) / 10.0;
+
+        return VeterinarianCapacity.builder()
+                .idVeterinarian(idVeterinarian)
+                .veterinarianName(name)
+                .date(date)
+                .scheduledMinutes(scheduledMinutes)
+                .bookedMinutes(bookedMinutes)
+                .appointments(appointments)
+                .utilization(utilization)
+                .build();
+    }
+
+    private record DayBookings(long minutes, int appointments) {
+    }
+
+    private record WeekBookings(Map<String, DayBookings> days, Set<String> veterinarians) {
+    }
+}
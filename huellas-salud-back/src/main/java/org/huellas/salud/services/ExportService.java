@@ -0,0 +1,171 @@
+package org.huellas.salud.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoCursor;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.huellas.salud.domain.appointment.Appointment;
+import org.huellas.salud.domain.appointment.AppointmentMsg;
+import org.huellas.salud.domain.invoice.Invoice;
+import org.huellas.salud.domain.invoice.InvoiceMsg;
+import org.huellas.salud.domain.invoice.ItemInvoice;
+import org.huellas.salud.helper.exceptions.HSException;
+import org.huellas.salud.helper.export.CsvWriter;
+import org.huellas.salud.helper.export.ExportFormat;
+import org.huellas.salud.helper.utils.Utils;
+import org.huellas.salud.repositories.AppointmentRepository;
+import org.huellas.salud.repositories.InvoiceRepository;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Exportaciones masivas de facturas y citas. Los registros se leen con un cursor de mongo y se escriben en la
+ * respuesta a medida que llegan, por lo que la memoria usada no depende del tamaño del rango exportado.
+ */
+@ApplicationScoped
+public class ExportService {
+
+    private static final Logger LOG = Logger.getLogger(ExportService.class);
+
+    @Inject
+    InvoiceRepository invoiceRepository;
+
+    @Inject
+    AppointmentRepository appointmentRepository;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    Utils utils;
+
+    /**
+     * Exporta las facturas con fecha entre {@code from} y {@code to} (ambos incluidos). En CSV se escribe una fila
+     * por item con los datos de la factura repetidos; en NDJSON una factura completa por linea.
+     */
+    public StreamingOutput exportInvoices(LocalDate from, LocalDate to, ExportFormat format) throws HSException {
+
+        utils.validateDateRange(from, to);
+
+        LOG.infof("@exportInvoices SERV > Inicia exportacion en %s de las facturas entre %s y %s", format, from, to);
+
+        return output -> {
+            long written = 0;
+            try (MongoCursor<InvoiceMsg> cursor = invoiceRepository.findInvoicesInRange(from.atStartOfDay(),
+                    to.plusDays(1).atStartOfDay())) {
+
+                written = format == ExportFormat.CSV
+                        ? writeInvoicesCsv(cursor, output)
+                        : writeNdjson(cursor, InvoiceMsg::getData, output);
+            }
+
+            LOG.infof("@exportInvoices SERV > Finaliza exportacion de las facturas entre %s y %s. Se exportaron %s "
+                    + "facturas", from, to, written);
+        };
+    }
+
+    /**
+     * Exporta las citas con fecha entre {@code from} y {@code to} (ambos incluidos), una por fila o linea.
+     */
+    public StreamingOutput exportAppointments(LocalDate from, LocalDate to, ExportFormat format) throws HSException {
+
+        utils.validateDateRange(from, to);
+
+        LOG.infof("@exportAppointments SERV > Inicia exportacion en %s de las citas entre %s y %s", format, from, to);
+
+        return output -> {
+            long written = 0;
+            try (MongoCursor<AppointmentMsg> cursor = appointmentRepository.findAppointmentsInRange(
+                    from.atStartOfDay(), to.plusDays(1).atStartOfDay())) {
+
+                written = format == ExportFormat.CSV
+                        ? writeAppointmentsCsv(cursor, output)
+                        : writeNdjson(cursor, AppointmentMsg::getData, output);
+            }
+
+            LOG.infof("@exportAppointments SERV > Finaliza exportacion de las citas entre %s y %s. Se exportaron %s "
+                    + "citas", from, to, written);
+        };
+    }
+
+    public String fileName(String prefix, LocalDate from, LocalDate to, ExportFormat format) {
+        return prefix + "_" + from + "_" + to + "." + format.getExtension();
+    }
+
+    private long writeInvoicesCsv(MongoCursor<InvoiceMsg> cursor, OutputStream output) throws IOException {
+
+        long written = 0;
+        try (CsvWriter csv = new CsvWriter(output)) {
+
+            csv.writeRow("idFactura", "fecha", "idCliente", "tipoFactura", "estado", "total", "idProducto",
+                    "idServicio", "idMascota", "cantidad", "precioUnitario", "subTotal");
+
+            while (cursor.hasNext()) {
+
+                Invoice invoice = cursor.next().getData();
+                List<ItemInvoice> items = invoice.getItemInvoice() != null ? invoice.getItemInvoice() : List.of();
+
+                if (items.isEmpty()) {
+                    csv.writeRow(invoice.getIdInvoice(), invoice.getDate(), invoice.getIdClient(),
+                            invoice.getTypeInvoice(), invoice.getStatus(), invoice.getTotal());
+                }
+
+                for (ItemInvoice item : items) {
+                    csv.writeRow(invoice.getIdInvoice(), invoice.getDate(), invoice.getIdClient(),
+                            invoice.getTypeInvoice(), invoice.getStatus(), invoice.getTotal(), item.getIdProduct(),
+                            item.getIdService(), item.getIdPet(), item.getQuantity(), item.getUnitPrice(),
+                            item.getSubTotal());
+                }
+                written++;
+            }
+        }
+        return written;
+    }
+
+    private long writeAppointmentsCsv(MongoCursor<AppointmentMsg> cursor, OutputStream output) throws IOException {
+
+        long written = 0;
+        try (CsvWriter csv = new CsvWriter(output)) {
+
+            csv.writeRow("idCita", "fechaHora", "fechaHoraFin", "estado", "idPropietario", "idMascota",
+                    "idVeterinario", "servicios", "observaciones");
+
+            while (cursor.hasNext()) {
+
+                Appointment appointment = cursor.next().getData();
+
+                csv.writeRow(appointment.getIdAppointment(), appointment.getDateTime(), appointment.getEndDateTime(),
+                        appointment.getStatus(), appointment.getIdOwner(), appointment.getIdPet(),
+                        appointment.getIdVeterinarian(),
+                        appointment.getServices() != null ? String.join("|", appointment.getServices()) : null,
+                        appointment.getNotes());
+                written++;
+            }
+        }
+        return written;
+    }
+
+    private <T> long writeNdjson(MongoCursor<T> cursor, Function<T, ?> data, OutputStream output) throws IOException {
+
+        long written = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+
+            // Cada documento va en su propia linea, sin el separador que Jackson agrega entre valores de la raiz
+            generator.setRootValueSeparator(null);
+
+            while (cursor.hasNext()) {
+                generator.writeObject(data.apply(cursor.next()));
+                generator.writeRaw('\n');
+                written++;
+            }
+        }
+        return written;
+    }
+}
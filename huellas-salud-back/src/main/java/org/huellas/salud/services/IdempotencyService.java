@@ -0,0 +1,189 @@
+package org.huellas.salud.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CaffeineCache;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.huellas.salud.domain.idempotency.IdempotencyRecord;
+import org.huellas.salud.domain.idempotency.IdempotencyStatus;
+import org.huellas.salud.helper.exceptions.HSException;
+import org.huellas.salud.helper.jwt.JwtService;
+import org.huellas.salud.repositories.IdempotencyRepository;
+import org.jboss.logging.Logger;
+
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Soporte de la cabecera {@code Idempotency-Key} para las operaciones de creacion. La primera solicitud con una
+ * llave se procesa y su respuesta se guarda en mongo (coleccion con TTL) y en la cache {@code idempotency-cache};
+ * los reintentos con la misma llave y el mismo cuerpo reciben esa respuesta sin volver a ejecutar la operacion.
+ */
+@ApplicationScoped
+public class IdempotencyService {
+
+    private static final Logger LOG = Logger.getLogger(IdempotencyService.class);
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    // Tiempo despues del cual una solicitud que sigue EN_PROCESO se considera abandonada
+    private static final long PENDING_TIMEOUT_MINUTES = 5;
+
+    @Inject
+    IdempotencyRepository idempotencyRepository;
+
+    @Inject
+    JwtService jwtService;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @CacheName("idempotency-cache")
+    Cache idempotencyCache;
+
+    /**
+     * Ejecuta la operacion una sola vez por llave. Sin llave la operacion se ejecuta normalmente. Si la operacion
+     * falla la llave se libera para que el cliente pueda reintentar.
+     *
+     * @param operation nombre de la operacion, separa las llaves de distintos endpoints
+     * @param key       valor de la cabecera {@code Idempotency-Key}
+     * @param request   cuerpo de la solicitud, antes de que el servicio lo modifique
+     */
+    public Response execute(String operation, String key, Object request, IdempotentOperation action)
+            throws HSException, UnknownHostException {
+
+        if (key == null || key.isBlank()) return action.execute();
+
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    "La cabecera " + IDEMPOTENCY_KEY_HEADER + " no puede superar " + MAX_KEY_LENGTH + " caracteres");
+        }
+
+        String id = operation + "|" + jwtService.getCurrentUserEmail() + "|" + key;
+        String fingerprint = fingerprint(request);
+
+        CompletableFuture<IdempotencyRecord> cached = idempotencyCache.as(CaffeineCache.class).getIfPresent(id);
+
+        if (cached != null) return replay(cached.join(), fingerprint);
+
+        IdempotencyRecord pending = IdempotencyRecord.builder()
+                .id(id)
+                .fingerprint(fingerprint)
+                .status(IdempotencyStatus.EN_PROCESO)
+                .creationDate(LocalDateTime.now(ZoneOffset.UTC))
+                .build();
+
+        if (!idempotencyRepository.reserve(pending)) {
+
+            IdempotencyRecord stored = idempotencyRepository.findByIdOptional(id).orElse(null);
+
+            if (stored != null && stored.getStatus() == IdempotencyStatus.COMPLETADA) {
+                remember(stored);
+                return replay(stored, fingerprint);
+            }
+
+            if (stored != null) validateFingerprint(stored, fingerprint);
+
+            // El registro pudo expirar entre ambas consultas o quedar abandonado por una instancia que se detuvo
+            boolean acquired = stored == null
+                    ? idempotencyRepository.reserve(pending)
+                    : idempotencyRepository.takeOver(pending, pending.getCreationDate().minusMinutes(PENDING_TIMEOUT_MINUTES));
+
+            if (!acquired) {
+                LOG.warnf("@execute SERV > La solicitud %s ya se esta procesando", id);
+                throw new HSException(Response.Status.CONFLICT,
+                        "Ya se esta procesando una solicitud con la misma " + IDEMPOTENCY_KEY_HEADER);
+            }
+        }
+
+        Response response;
+        try {
+            response = action.execute();
+        } catch (Exception ex) {
+            idempotencyRepository.release(id);
+            throw ex;
+        }
+
+        try {
+            String body = serialize(response.getEntity());
+
+            idempotencyRepository.complete(id, response.getStatus(), body);
+            remember(IdempotencyRecord.builder()
+                    .id(id)
+                    .fingerprint(fingerprint)
+                    .status(IdempotencyStatus.COMPLETADA)
+                    .responseStatus(response.getStatus())
+                    .responseBody(body)
+                    .creationDate(pending.getCreationDate())
+                    .build());
+        } catch (HSException | RuntimeException ex) {
+            // La operacion ya se realizo; el fallo solo impide responder a los reintentos desde el registro
+            LOG.errorf(ex, "@execute SERV > No fue posible guardar la respuesta de la solicitud %s", id);
+        }
+
+        return response;
+    }
+
+    private Response replay(IdempotencyRecord record, String fingerprint) throws HSException {
+
+        validateFingerprint(record, fingerprint);
+
+        LOG.infof("@replay SERV > Se responde el reintento de la solicitud %s con la respuesta original", record.getId());
+
+        return Response.status(record.getResponseStatus())
+                .entity(record.getResponseBody())
+                .type(MediaType.APPLICATION_JSON)
+                .header(REPLAYED_HEADER, "true")
+                .build();
+    }
+
+    private void validateFingerprint(IdempotencyRecord record, String fingerprint) throws HSException {
+
+        if (!record.getFingerprint().equals(fingerprint)) {
+            LOG.warnf("@validateFingerprint SERV > La llave de la solicitud %s se reutilizo con otro cuerpo", record.getId());
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    "La " + IDEMPOTENCY_KEY_HEADER + " ya se uso con una solicitud diferente");
+        }
+    }
+
+    private void remember(IdempotencyRecord record) {
+        idempotencyCache.as(CaffeineCache.class).put(record.getId(), CompletableFuture.completedFuture(record));
+    }
+
+    private String fingerprint(Object request) throws HSException {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(serialize(request).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private String serialize(Object value) throws HSException {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException ex) {
+            LOG.errorf(ex, "@serialize SERV > No fue posible serializar la solicitud");
+            throw new HSException(Response.Status.INTERNAL_SERVER_ERROR, "No fue posible procesar la solicitud");
+        }
+    }
+
+    @FunctionalInterface
+    public interface IdempotentOperation {
+        Response execute() throws HSException, UnknownHostException;
+    }
+}
@@ -1,6 +1,11 @@
 package org.huellas.salud.services;
 
+import com.mongodb.MongoException;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.model.Filters;
+import io.quarkus.cache.Cache;
 import io.quarkus.cache.CacheInvalidateAll;
+import io.quarkus.cache.CacheName;
 import io.quarkus.cache.CacheResult;
 import jakarta.inject.Inject;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -14,29 +19,33 @@ import org.huellas.salud.domain.product.Product;
 import org.huellas.salud.domain.product.ProductMsg;
 import org.huellas.salud.repositories.ProductRepository;
 import org.huellas.salud.services.ProductService;
-import org.huellas.salud.services.AppointmentService;
 
 import org.huellas.salud.domain.pet.Pet;
 import org.huellas.salud.repositories.PetRepository;
 import org.huellas.salud.domain.service.Service;
 import org.huellas.salud.domain.service.ServiceMsg;
 import org.huellas.salud.domain.service.WeightPriceRule;
-import org.huellas.salud.repositories.ServiceRepository;
 import org.huellas.salud.domain.pet.PetMsg;
 import org.huellas.salud.repositories.UserRepository;
 import org.huellas.salud.domain.user.UserMsg;
 import org.huellas.salud.domain.Meta;
 import org.huellas.salud.helper.exceptions.HSException;
 import org.huellas.salud.helper.jwt.JwtService;
+import org.huellas.salud.helper.utils.MongoTransactions;
 import org.huellas.salud.helper.utils.Utils;
 import org.jboss.logging.Logger;
 import java.util.Optional;
 import jakarta.ws.rs.core.Response;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
 
 import java.net.UnknownHostException;
 import java.util.List;
@@ -49,6 +58,9 @@ public class InvoiceService {
 
     private static final Logger LOG = Logger.getLogger(InvoiceService.class);
 
+    private static final String INVOICE_SEQUENCE = "facturas";
+    private static final String INVOICE_ID_FORMAT = "FAC-%010d";
+
     @Inject
     Utils utils;
 
@@ -65,13 +77,25 @@ public class InvoiceService {
     ProductRepository productRepository;
 
     @Inject
-    ServiceRepository serviceRepository;
+    ProductService productService;
 
     @Inject
-    ProductService productService;
+    PetRepository petRepository;
+
+    @Inject
+    PricingService pricingService;
+
+    @Inject
+    SalesRollupService salesRollupService;
 
     @Inject
-    AppointmentService appointmentService;
+    MongoTransactions mongoTransactions;
+
+    @Inject
+    SequenceService sequenceService;
+
+    @CacheName("products-list-cache")
+    Cache productsCache;
 
     @CacheInvalidateAll(cacheName = "invoices-list-cache")
     public InvoiceMsg saveInvoiceDataMongo(InvoiceMsg invoiceMsg) throws HSException, UnknownHostException {
@@ -88,78 +112,15 @@ public class InvoiceService {
             throw new HSException(Response.Status.BAD_REQUEST, "No se encontró el usuario con documento: " + invoiceData.getIdClient());
         }
 
-        double totalFactura = 0;
-        for (ItemInvoice item : invoiceData.getItemInvoice()) {
-            double precioUnitario;
-            double subtotal;
-
-            String idProduct = item.getIdProduct();
-            String idService = item.getIdService();
-
-            boolean hasProduct = idProduct != null && !idProduct.isBlank();
-            boolean hasService = idService != null && !idService.isBlank();
-
-            if (!hasProduct && !hasService) {
-                throw new HSException(Response.Status.BAD_REQUEST,
-                        "Cada ítem de la factura debe estar asociado al menos a un producto o un servicio.");
-            }
-
-            if (hasProduct) {
-
-                ProductMsg productMsg = productService.getProductById(idProduct);
-                if (productMsg == null) {
-                    throw new HSException(Response.Status.BAD_REQUEST, "No se encontró el producto con id: " + idProduct);
-                }
-                if (productMsg.getData().getActive() == null || !productMsg.getData().getActive()) {
-                    throw new HSException(Response.Status.BAD_REQUEST,
-                            "El producto con id " + idProduct + " no está activo");
-                }
-
-                precioUnitario = productMsg.getData().getPrice();
-                item.setUnitPrice(precioUnitario);
-                item.setSubTotal(precioUnitario * item.getQuantity());
-                totalFactura += item.getSubTotal();
-
-                int stockActual = productMsg.getData().getQuantityAvailable();
-                int cantidadComprada = item.getQuantity();
-
-                if (stockActual < cantidadComprada) {
-                    throw new HSException(Response.Status.BAD_REQUEST,
-                            "No hay suficiente stock del producto: " + productMsg.getData().getName());
-                }
-
-                int nuevoStock = stockActual - cantidadComprada;
-                productMsg.getData().setQuantityAvailable(nuevoStock);
-
-                productService.updateProductDataInMongo(productMsg);
-
-                LOG.infof("@saveInvoiceDataMongo SERV > Stock actualizado para producto %s: %d → %d",
-                        productMsg.getData().getName(), stockActual, nuevoStock);
-            }
-
-            if (hasService) {
-                Optional<ServiceMsg> optionalService = serviceRepository.findServiceById(idService);
-                if (item.getIdPet() == null || item.getIdPet().isBlank()) {
-                    throw new HSException(Response.Status.BAD_REQUEST,
-                            "Debe especificar idPet para calcular el precio del servicio.");
-                }
-
-                if (optionalService.isEmpty()) {
-                    LOG.warnf("@saveInvoiceDataMongo SERV > No se encontró ningún servicio con el id: %s", idService);
-                    throw new HSException(Response.Status.BAD_REQUEST,
-                            "No se encontró el servicio con id: " + idService);
-                }
-
-                double price = appointmentService.calculateTotal(item.getIdPet(), List.of(item.getIdService()));
-                item.setUnitPrice(price);
-                item.setSubTotal(price);
-                totalFactura += price;
-            }
-        }
+        double totalFactura = priceItems(invoiceData.getItemInvoice());
 
         LOG.infof("@saveInvoiceDataMongo SERV > Inicia formato de la info enviada y se agrega metadata");
 
-        invoiceData.setIdInvoice(UUID.randomUUID().toString());
+        // Numero consecutivo legible; los ids crecientes ademas se insertan siempre al final del indice
+        long invoiceNumber = sequenceService.nextValue(INVOICE_SEQUENCE);
+
+        invoiceData.setInvoiceNumber(invoiceNumber);
+        invoiceData.setIdInvoice(String.format(INVOICE_ID_FORMAT, invoiceNumber));
         invoiceData.setDate(LocalDateTime.now());
         invoiceData.setTotal(totalFactura);
         invoiceMsg.setMeta(utils.getMetaToEntity());
@@ -167,7 +128,12 @@ public class InvoiceService {
         LOG.infof("@saveInvoiceDataMongo SERV > Finaliza formato de la data. Se realiza el registro de la factura "
                 + "en mongo con la siguiente informacion: %s", invoiceMsg);
 
-        invoiceRepository.persist(invoiceMsg);
+        // Todos los productos de la factura se descuentan junto con su registro
+        writeInvoice(invoiceData.getIdInvoice(), productQuantities(invoiceData.getItemInvoice()), session -> {
+            if (session == null) invoiceRepository.persist(invoiceMsg);
+            else invoiceRepository.mongoCollection().insertOne(session, invoiceMsg);
+            return true;
+        }, null, invoiceData);
 
         LOG.infof("@saveInvoiceDataMongo SERV > La factura se registro exitosamente en la base de datos. Finaliza "
                 + "ejecucion del servicio para almacenar el registro de una factura con la data: %s", invoiceMsg);
@@ -230,9 +196,10 @@ public class InvoiceService {
 
         LOG.infof("@updateInvoiceDataMongo SERV > Inicia la ejecución del servicio para actualizar la factura %s", idInvoice);
 
-        // Obtener factura original
+        // Obtener factura original. Su fecha de ultima actualizacion es la version contra la que se calculan los cambios
         InvoiceMsg invoiceMsgMongo = getInvoiceMsg(idInvoice);
         Invoice invoiceMongo = invoiceMsgMongo.getData();
+        LocalDateTime readVersion = invoiceMsgMongo.getMeta().getLastUpdate();
 
         // Validar cliente
         Optional<UserMsg> optionalUser = userRepository.findUserByDocumentNumber(invoiceRequest.getIdClient());
@@ -241,148 +208,335 @@ public class InvoiceService {
                     "No se encontró el usuario con documento: " + invoiceRequest.getIdClient());
         }
 
-        double totalFactura = 0.0;
+        // Validar estado
+        if (invoiceMongo.getStatus() == InvoiceStatus.PAGADA
+                && invoiceRequest.getStatus() != InvoiceStatus.PAGADA) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    "No se puede cambiar el estado de una factura pagada.");
+        }
+
+        // Solo se recalculan los items nuevos o modificados; los demas conservan el precio con el que se facturaron
+        ItemDiff diff = diffItems(invoiceMongo.getItemInvoice(), invoiceRequest.getItemInvoice());
+        double totalFactura = Optional.ofNullable(invoiceMongo.getTotal()).orElse(0.0)
+                - diff.removed().stream().mapToDouble(item -> Optional.ofNullable(item.getSubTotal()).orElse(0.0)).sum()
+                + priceItems(diff.added());
+
+        // Stock: solo la diferencia neta por producto entre los items anteriores y los nuevos
+        Map<String, Integer> deltas = productQuantities(invoiceRequest.getItemInvoice());
+        productQuantities(invoiceMongo.getItemInvoice()).forEach((idProduct, quantity) ->
+                deltas.merge(idProduct, -quantity, Integer::sum));
+        deltas.values().removeIf(delta -> delta == 0);
+
+        LOG.infof("@updateInvoiceDataMongo SERV > Items modificados: %s de %s. Diferencia de stock por producto: %s",
+                diff.added().size(), invoiceRequest.getItemInvoice().size(), deltas);
+
+        // Copia de la factura guardada para restar su aporte a los acumulados de ventas
+        Invoice previousInvoice = Invoice.builder()
+                .idInvoice(invoiceMongo.getIdInvoice())
+                .invoiceNumber(invoiceMongo.getInvoiceNumber())
+                .date(invoiceMongo.getDate())
+                .idClient(invoiceMongo.getIdClient())
+                .total(invoiceMongo.getTotal())
+                .typeInvoice(invoiceMongo.getTypeInvoice())
+                .status(invoiceMongo.getStatus())
+                .itemInvoice(invoiceMongo.getItemInvoice())
+                .build();
+
+        // Actualizar la factura en el objeto original
+        invoiceRequest.setTotal(totalFactura);
+        setInvoiceInformation(idInvoice, invoiceRequest, invoiceMsgMongo);
+
+        // Guardar en Mongo junto con el ajuste de stock. Si otra operacion cambio la factura despues de leerla, las
+        // diferencias de stock calculadas ya no son validas y la operacion completa se descarta
+        writeInvoice(idInvoice + ":" + UUID.randomUUID(), deltas, session -> {
+
+            if (invoiceRepository.replaceIfUnchanged(session, invoiceMsgMongo, readVersion)) return true;
+
+            LOG.errorf("@updateInvoiceDataMongo SERV > La factura %s fue modificada por otra operacion despues de "
+                    + "leerla. No se guardan los cambios", idInvoice);
+
+            throw new HSException(Response.Status.CONFLICT, "La factura fue modificada por otra operación mientras "
+                    + "se actualizaba. Consulte la factura de nuevo e intente otra vez");
+        }, previousInvoice, invoiceMongo);
+
+        LOG.infof("@updateInvoiceDataMongo SERV > Finaliza ejecución del servicio para actualizar factura con id: %s", idInvoice);
+    }
+
+    private void setInvoiceInformation(String idInvoice, Invoice invoiceRequest, InvoiceMsg invoiceMsgMongo) {
+
+        LOG.infof("@setInvoiceInformation SERV > Inicia set de los datos de la factura con id: %s", idInvoice);
+
+        Invoice invoiceMongo = invoiceMsgMongo.getData();
+        Meta metaMongo = invoiceMsgMongo.getMeta();
+
+        invoiceMongo.setIdClient(invoiceRequest.getIdClient());
+        invoiceMongo.setStatus(invoiceRequest.getStatus());
+        invoiceMongo.setTypeInvoice(invoiceRequest.getTypeInvoice());
+        invoiceMongo.setItemInvoice(invoiceRequest.getItemInvoice());
+        invoiceMongo.setTotal(invoiceRequest.getTotal());
+
+        metaMongo.setLastUpdate(LocalDateTime.now());
+        metaMongo.setNameUserUpdated(jwtService.getCurrentUserName());
+        metaMongo.setEmailUserUpdated(jwtService.getCurrentUserEmail());
+        metaMongo.setRoleUserUpdated(jwtService.getCurrentUserRole());
+
+        LOG.infof("@setInvoiceInformation SERV > Finaliza set de los datos de la factura con id: %s", idInvoice);
+    }
+
+    @CacheInvalidateAll(cacheName = "invoices-list-cache")
+    public void deleteInvoiceDataMongo(String idInvoice) throws HSException {
+
+        LOG.infof("@deleteInvoiceDataMongo SERV > Inicia ejecucion del servicio para eliminar el registro de la "
+                + "factura con id: %s", idInvoice);
+
+        Optional<InvoiceMsg> optionalInvoice = invoiceRepository.findInvoiceById(idInvoice);
+
+        if (optionalInvoice.isEmpty()) {
+
+            LOG.errorf("@deleteInvoiceDataMongo SERV > El registro de la factura con id: %s no existe en mongo. No se "
+                    + "elimina el registro.", idInvoice);
+
+            throw new HSException(Response.Status.NOT_FOUND, "La factura con id: " + idInvoice + ". No esta registrada en base de datos");
+        }
+
+        // Si otra solicitud ya la elimino no se vuelve a restar de los acumulados
+        writeInvoice(idInvoice + ":" + UUID.randomUUID(), Map.of(), session -> session == null
+                ? invoiceRepository.deleteInvoiceDataMongo(idInvoice) > 0
+                : invoiceRepository.mongoCollection().deleteOne(session, Filters.eq("data.idFactura", idInvoice))
+                        .getDeletedCount() > 0, optionalInvoice.get().getData(), null);
 
-        // Validar y recalcular items
-        for (ItemInvoice item : invoiceRequest.getItemInvoice()) {
+        LOG.infof("@deleteInvoiceDataMongo SERV > Finaliza ejecucion del servicio para eliminar el registro de la factura "
+                + "con id: %s. El registro se elimino correctamente.", idInvoice);
+    }
 
-            String idProduct = item.getIdProduct();
-            String idService = item.getIdService();
+    /**
+     * Valida los items de la factura y calcula su precio. Los productos y mascotas referenciados se consultan con una
+     * sola consulta {@code $in} por coleccion y los servicios se tarifan con las tablas en memoria del motor de precios.
+     *
+     * @return la suma de los subtotales de los items
+     */
+    private double priceItems(List<ItemInvoice> items) throws HSException {
 
-            boolean hasProduct = idProduct != null && !idProduct.isBlank();
-            boolean hasService = idService != null && !idService.isBlank();
+        Set<String> productIds = new HashSet<>();
+        Set<String> serviceIds = new HashSet<>();
+        Set<String> petIds = new HashSet<>();
+
+        for (ItemInvoice item : items) {
+
+            boolean hasProduct = item.getIdProduct() != null && !item.getIdProduct().isBlank();
+            boolean hasService = item.getIdService() != null && !item.getIdService().isBlank();
 
             if (!hasProduct && !hasService) {
                 throw new HSException(Response.Status.BAD_REQUEST,
                         "Cada ítem de la factura debe estar asociado al menos a un producto o un servicio.");
             }
 
-            if (hasProduct) {
+            if (hasProduct) productIds.add(item.getIdProduct());
 
-                ProductMsg productMsg = productService.getProductById(idProduct);
-                if (productMsg == null) {
-                    throw new HSException(Response.Status.BAD_REQUEST,
-                            "No se encontró el producto con id: " + idProduct);
-                }
-                if (productMsg.getData().getActive() == null || !productMsg.getData().getActive()) {
+            if (hasService) {
+
+                if (item.getIdPet() == null || item.getIdPet().isBlank()) {
                     throw new HSException(Response.Status.BAD_REQUEST,
-                            "El producto con id " + idProduct + " no está activo");
+                            "Debe especificar idPet para calcular el precio del servicio.");
                 }
 
-                double precioUnitario = productMsg.getData().getPrice();
-                double subtotal = precioUnitario * item.getQuantity();
+                serviceIds.add(item.getIdService());
+                petIds.add(item.getIdPet());
+            }
+        }
+
+        LOG.infof("@priceItems SERV > Se consultan %s productos y %s mascotas de la factura. Los %s servicios se "
+                + "tarifan con el motor de precios", productIds.size(), petIds.size(), serviceIds.size());
+
+        Map<String, ProductMsg> products = productIds.isEmpty() ? Map.of()
+                : productRepository.findProductsByIds(productIds).stream().collect(Collectors.toMap(
+                        productMsg -> productMsg.getData().getIdProduct(), Function.identity(), (first, second) -> first));
+        Map<String, PetMsg> pets = petIds.isEmpty() ? Map.of()
+                : petRepository.findPetsByIds(petIds).stream().collect(Collectors.toMap(
+                        petMsg -> petMsg.getData().getIdPet(), Function.identity(), (first, second) -> first));
+
+        // El peso de cada mascota se normaliza una sola vez aunque tenga varios servicios en la factura
+        Map<String, Double> weights = new HashMap<>();
+        double total = 0;
 
-                item.setUnitPrice(precioUnitario);
-                item.setSubTotal(subtotal);
+        for (ItemInvoice item : items) {
 
-                totalFactura += subtotal;
+            if (item.getIdProduct() != null && !item.getIdProduct().isBlank()) {
 
-                int stockActual = productMsg.getData().getQuantityAvailable();
-                int cantidadComprada = item.getQuantity();
+                ProductMsg productMsg = products.get(item.getIdProduct());
 
-                if (stockActual < cantidadComprada) {
+                if (productMsg == null) {
+                    throw new HSException(Response.Status.BAD_REQUEST, "No se encontró el producto con id: " + item.getIdProduct());
+                }
+                if (productMsg.getData().getActive() == null || !productMsg.getData().getActive()) {
                     throw new HSException(Response.Status.BAD_REQUEST,
-                            "No hay suficiente stock del producto: " + productMsg.getData().getName());
+                            "El producto con id " + item.getIdProduct() + " no está activo");
                 }
 
-                int nuevoStock = stockActual - cantidadComprada;
-                productMsg.getData().setQuantityAvailable(nuevoStock);
+                validateQuantity(item);
 
-                productService.updateProductDataInMongo(productMsg);
-
-                LOG.infof("@saveInvoiceDataMongo SERV > Stock actualizado para producto %s: %d → %d",
-                        productMsg.getData().getName(), stockActual, nuevoStock);
+                double unitPrice = productMsg.getData().getPrice();
+                item.setUnitPrice(unitPrice);
+                item.setSubTotal(unitPrice * item.getQuantity());
+                total += item.getSubTotal();
             }
 
-            if (hasService) {
+            if (item.getIdService() != null && !item.getIdService().isBlank()) {
 
-                if (item.getIdPet() == null || item.getIdPet().isBlank()) {
+                if (!pricingService.hasService(item.getIdService())) {
+                    LOG.warnf("@priceItems SERV > No se encontró ningún servicio con el id: %s", item.getIdService());
                     throw new HSException(Response.Status.BAD_REQUEST,
-                            "Debe especificar idPet para calcular el precio del servicio.");
+                            "No se encontró el servicio con id: " + item.getIdService());
                 }
 
-                // Recalcular precio con reglas de peso
-                double precioServicio = appointmentService.calculateTotal(item.getIdPet(), List.of(item.getIdService()));
-
-                item.setUnitPrice(precioServicio);
-                item.setSubTotal(precioServicio);
+                PetMsg petMsg = pets.get(item.getIdPet());
 
-                totalFactura += precioServicio;
+                if (petMsg == null) {
+                    throw new HSException(Response.Status.BAD_REQUEST, "No se encontró la mascota con id: " + item.getIdPet());
+                }
 
-                // Validar existencia del servicio
-                if (serviceRepository.findServiceById(idService).isEmpty()) {
-                    throw new HSException(Response.Status.BAD_REQUEST,
-                            "No se encontró el servicio con id: " + idService);
+                Double weight = weights.get(item.getIdPet());
+                if (weight == null) {
+                    weight = pricingService.weightOf(petMsg);
+                    weights.put(item.getIdPet(), weight);
                 }
+
+                // Precio segun las reglas de peso del servicio
+                double price = pricingService.priceService(item.getIdService(), weight);
+                item.setUnitPrice(price);
+                item.setSubTotal(price);
+                total += price;
             }
         }
+        return total;
+    }
 
-        // Validar estado
-        if (invoiceMongo.getStatus() == InvoiceStatus.PAGADA
-                && invoiceRequest.getStatus() != InvoiceStatus.PAGADA) {
-            throw new HSException(Response.Status.BAD_REQUEST,
-                    "No se puede cambiar el estado de una factura pagada.");
-        }
+    // Items agregados o modificados en la factura nueva y los items guardados que ya no estan
+    private record ItemDiff(List<ItemInvoice> added, List<ItemInvoice> removed) {
+    }
 
-        // Actualizar la factura en el objeto original
-        invoiceMongo.setItemInvoice(invoiceRequest.getItemInvoice());
-        invoiceMongo.setIdClient(invoiceRequest.getIdClient());
-        invoiceMongo.setTypeInvoice(invoiceRequest.getTypeInvoice());
-        invoiceMongo.setStatus(invoiceRequest.getStatus());
-        invoiceMongo.setTotal(totalFactura);
+    /**
+     * Compara los items guardados con los nuevos. Un item nuevo identico a uno guardado (mismo producto, servicio,
+     * mascota y cantidad) se queda con el precio guardado y no se vuelve a consultar.
+     */
+    private ItemDiff diffItems(List<ItemInvoice> previousItems, List<ItemInvoice> newItems) {
 
-        invoiceMsgMongo.setData(invoiceMongo);
+        Map<String, Deque<ItemInvoice>> previousByKey = new HashMap<>();
+        previousItems.forEach(item -> previousByKey.computeIfAbsent(itemKey(item), key -> new ArrayDeque<>()).add(item));
 
-        // Guardar en Mongo
-        try {
-            invoiceRepository.update(invoiceMsgMongo);
-        } catch (Exception e) {
-            throw new HSException(Response.Status.INTERNAL_SERVER_ERROR,
-                    "Error interno al actualizar la factura.");
+        List<ItemInvoice> added = new ArrayList<>();
+
+        for (ItemInvoice item : newItems) {
+
+            ItemInvoice previous = Optional.ofNullable(previousByKey.get(itemKey(item)))
+                    .map(Deque::poll)
+                    .orElse(null);
+
+            if (previous == null) {
+                added.add(item);
+                continue;
+            }
+
+            item.setUnitPrice(previous.getUnitPrice());
+            item.setSubTotal(previous.getSubTotal());
         }
 
-        LOG.infof("@updateInvoiceDataMongo SERV > Finaliza ejecución del servicio para actualizar factura con id: %s", idInvoice);
+        List<ItemInvoice> removed = previousByKey.values().stream().flatMap(Deque::stream).toList();
+
+        return new ItemDiff(added, removed);
     }
 
-    private void setInvoiceInformation(String idInvoice, Invoice invoiceRequest, InvoiceMsg invoiceMsgMongo) {
+    private String itemKey(ItemInvoice item) {
+        return item.getIdProduct() + "|" + item.getIdService() + "|" + item.getIdPet() + "|" + item.getQuantity();
+    }
 
-        LOG.infof("@setInvoiceInformation SERV > Inicia set de los datos de la factura con id: %s", idInvoice);
+    private Map<String, Integer> productQuantities(List<ItemInvoice> items) {
 
-        Invoice invoiceMongo = invoiceMsgMongo.getData();
-        Meta metaMongo = invoiceMsgMongo.getMeta();
+        Map<String, Integer> quantities = new HashMap<>();
 
-        invoiceMongo.setIdClient(invoiceRequest.getIdClient());
-        invoiceMongo.setStatus(invoiceRequest.getStatus());
-        invoiceMongo.setTypeInvoice(invoiceRequest.getTypeInvoice());
-        invoiceMongo.setItemInvoice(invoiceRequest.getItemInvoice());
-        invoiceMongo.setTotal(invoiceRequest.getTotal());
-
-        metaMongo.setLastUpdate(LocalDateTime.now());
-        metaMongo.setNameUserUpdated(jwtService.getCurrentUserName());
-        metaMongo.setEmailUserUpdated(jwtService.getCurrentUserEmail());
-        metaMongo.setRoleUserUpdated(jwtService.getCurrentUserRole());
+        for (ItemInvoice item : items) {
+            if (item.getIdProduct() != null && !item.getIdProduct().isBlank() && item.getQuantity() != null) {
+                quantities.merge(item.getIdProduct(), item.getQuantity(), Integer::sum);
+            }
+        }
+        return quantities;
+    }
 
-        LOG.infof("@setInvoiceInformation SERV > Finaliza set de los datos de la factura con id: %s", idInvoice);
+    @FunctionalInterface
+    private interface InvoiceWrite {
+        // session es nulo cuando la escritura no va dentro de una transaccion. Retorna false si no modifico la factura
+        boolean apply(ClientSession session) throws HSException;
     }
 
-    @CacheInvalidateAll(cacheName = "invoices-list-cache")
-    public void deleteInvoiceDataMongo(String idInvoice) throws HSException {
+    /**
+     * Escribe la factura y aplica su movimiento de stock y su cambio en los acumulados de ventas como una sola
+     * unidad. Las cantidades positivas se descuentan y las negativas se devuelven. Si mongo soporta transacciones
+     * todas las escrituras van en la misma transaccion; en un servidor standalone se aplica primero el stock y, si la
+     * factura no se puede guardar, se revierte (saga con compensacion). Ahi los acumulados se actualizan despues de
+     * guardar la factura y, si fallan, se corrigen con la reconstruccion de acumulados. Si la escritura no modifico
+     * ninguna factura los acumulados no cambian.
+     */
+    private void writeInvoice(String idOperation, Map<String, Integer> quantities, InvoiceWrite write,
+                                Invoice previous, Invoice current) throws HSException {
+
+        if (mongoTransactions.isSupported()) {
+
+            mongoTransactions.execute(session -> {
+                productService.decrementStock(session, quantities, idOperation);
+                if (write.apply(session)) salesRollupService.applyInvoiceChange(session, previous, current);
+                return null;
+            });
+
+            productService.completeStockOperation(quantities, idOperation);
+            if (!quantities.isEmpty()) productsCache.invalidateAll().await().indefinitely();
+            return;
+        }
 
-        LOG.infof("@deleteInvoiceDataMongo SERV > Inicia ejecucion del servicio para eliminar el registro de la "
-                + "factura con id: %s", idInvoice);
+        LOG.warnf("@writeInvoice SERV > Mongo no soporta transacciones. La operacion %s se registra con "
+                + "compensacion del stock", idOperation);
 
-        long deletedRecords = invoiceRepository.deleteInvoiceDataMongo(idInvoice);
+        productService.decrementStock(quantities, idOperation);
+        boolean written;
 
-        if (deletedRecords == 0) {
+        try {
+            written = write.apply(null);
+        } catch (MongoException ex) {
 
-            LOG.errorf("@deleteInvoiceDataMongo SERV > El registro de la factura con id: %s no existe en mongo. No se "
-                    + "elimina el registro.", idInvoice);
+            LOG.errorf(ex, "@writeInvoice SERV > No fue posible guardar la factura de la operacion %s. Se revierte "
+                    + "el stock", idOperation);
 
-            throw new HSException(Response.Status.NOT_FOUND, "La factura con id: " + idInvoice + ". No esta registrada en base de datos");
+            productService.restoreStock(quantities, idOperation);
+            throw new HSException(Response.Status.INTERNAL_SERVER_ERROR, "Error interno al guardar la factura.");
+        } catch (HSException ex) {
+            productService.restoreStock(quantities, idOperation);
+            throw ex;
         }
 
-        LOG.infof("@deleteInvoiceDataMongo SERV > Finaliza ejecucion del servicio para eliminar el registro de la factura "
-                + "con id: %s. El registro se elimino correctamente.", idInvoice);
+        if (!written) {
+
+            LOG.warnf("@writeInvoice SERV > La operacion %s no modifico ninguna factura. No se actualizan los "
+                    + "acumulados de ventas", idOperation);
+
+            productService.restoreStock(quantities, idOperation);
+            return;
+        }
+
+        productService.completeStockOperation(quantities, idOperation);
+
+        try {
+            salesRollupService.applyInvoiceChange(null, previous, current);
+        } catch (MongoException ex) {
+            LOG.errorf(ex, "@writeInvoice SERV > No fue posible actualizar los acumulados de ventas de la operacion "
+                    + "%s. Se deben reconstruir los acumulados", idOperation);
+        }
+    }
+
+    private void validateQuantity(ItemInvoice item) throws HSException {
+
+        if (item.getQuantity() == null || item.getQuantity() <= 0) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    "La cantidad del producto con id " + item.getIdProduct() + " debe ser mayor a cero");
+        }
     }
 
     private InvoiceMsg getInvoiceMsg(String idInvoice) throws HSException {
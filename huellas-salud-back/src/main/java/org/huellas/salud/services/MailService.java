@@ -17,10 +17,12 @@ import org.huellas.salud.domain.mail.ContextEmailConfirm;
 import org.huellas.salud.domain.mail.EmailConfirmation;
 import org.huellas.salud.domain.mail.EmailDelivery;
 import org.huellas.salud.domain.mail.PasswordRecoveryEmail;
+import org.huellas.salud.domain.product.ProductAlert;
 import org.huellas.salud.domain.user.User;
 import org.huellas.salud.domain.user.UserMsg;
 import org.huellas.salud.helper.exceptions.HSException;
 import org.huellas.salud.helper.templates.PasswordRecoveryTemplate;
+import org.huellas.salud.helper.templates.ProductAlertTemplate;
 import org.huellas.salud.repositories.EmailConfirmationRepository;
 import org.huellas.salud.repositories.EmailDeliveryRepository;
 import org.huellas.salud.repositories.PasswordRecoveryRepository;
@@ -247,6 +249,24 @@ public class MailService {
                 "cuenta al cliente con correo: %s", userEmail);
     }
 
+    public void sendProductAlertDigest(User user, List<ProductAlert> alerts) throws HSException {
+
+        String userEmail = user.getEmail();
+
+        LOG.infof("@sendProductAlertDigest SERV > Inicia envio del resumen de %s alertas de inventario a: %s",
+                alerts.size(), userEmail);
+
+        String userName = user.getName() + " " + user.getLastName();
+        String type = "ALERTA_INVENTARIO";
+        String subject = "Alertas de inventario - Huellas & Salud";
+        String html = ProductAlertTemplate.formatAlertDigest(userName, alerts);
+        String text = ProductAlertTemplate.getTextContentAlertDigest(userName, alerts);
+
+        sendEmail(userEmail, subject, html, text, type);
+
+        LOG.infof("@sendProductAlertDigest SERV > Finaliza envio del resumen de alertas de inventario a: %s", userEmail);
+    }
+
     private String getApprovalLink(User user) {
 
         LOG.info("@getApprovalLink SERV > Inicia obtencion y guardado de codigo de aprobacion para confirmacion de correo");
@@ -1,6 +1,11 @@
 package org.huellas.salud.services;
 
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCursor;
+import io.quarkus.cache.CacheManager;
+import io.quarkus.runtime.StartupEvent;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.core.Response;
 import org.huellas.salud.domain.Meta;
@@ -14,16 +19,35 @@ import org.huellas.salud.repositories.MediaFileRepository;
 import org.jboss.logging.Logger;
 
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @ApplicationScoped
 public class MediaFileService {
 
     private static final Logger LOG = Logger.getLogger(MediaFileService.class);
 
+    private static final String MEDIA_URL = "/internal/media/%s/%s";
+
+    // Listados en cache que incluyen la url y el hash de la imagen de cada registro, por tipo de entidad
+    private static final Map<String, String> LIST_CACHES = Map.of(
+            "PET", "pets-list-cache",
+            "PRODUCT", "products-list-cache",
+            "SERVICE", "services-list-cache",
+            "ANNOUNCEMENT", "announcements-list-cache",
+            "USER", "users-list-cache"
+    );
+
     @Inject
     Utils utils;
 
@@ -33,6 +57,73 @@ public class MediaFileService {
     @Inject
     MediaFileRepository mediaFileRepository;
 
+    @Inject
+    CacheManager cacheManager;
+
+    /**
+     * Calcula el hash de las imagenes guardadas antes de que este existiera. Se recorren con un cursor, por lo que
+     * solo hay una imagen en memoria a la vez.
+     */
+    void backfillHashes(@Observes StartupEvent startupEvent) {
+
+        int updated = 0;
+
+        try (MongoCursor<MediaFileMsg> cursor = mediaFileRepository.findMediaWithoutHash()) {
+            while (cursor.hasNext()) {
+                MediaFileMsg media = cursor.next();
+                if (media.getData() == null || media.getData().getAttachment() == null) continue;
+                mediaFileRepository.updateHash(media.getId(), contentHash(media.getData().getAttachment()));
+                updated++;
+            }
+        } catch (MongoException | IllegalArgumentException ex) {
+            LOG.errorf(ex, "@backfillHashes SERV > No fue posible calcular el hash de las imagenes existentes");
+        }
+
+        if (updated > 0) LOG.infof("@backfillHashes SERV > Se calculo el hash de %s imagenes", updated);
+    }
+
+    /**
+     * Asigna a cada registro de un listado la version liviana de su imagen: sin el contenido en base64, solo con la
+     * url para descargarla aparte y su hash. La url incluye el hash para que el navegador pueda guardar la imagen en
+     * cache hasta que cambie. Las imagenes de todo el listado se consultan juntas y los registros sin imagen quedan
+     * con {@code null}.
+     *
+     * @param entityId  identificador con el que se guardo la imagen de cada registro
+     * @param mediaFile asigna la imagen al registro
+     */
+    public <T> void toThin(String entityType, Collection<T> records, Function<T, String> entityId,
+                           BiConsumer<T, MediaFile> mediaFile) {
+
+        Map<String, MediaFile> media = getThinMedia(entityType, records.stream().map(entityId).toList());
+
+        records.forEach(record -> mediaFile.accept(record, media.get(entityId.apply(record))));
+    }
+
+    private Map<String, MediaFile> getThinMedia(String entityType, Collection<String> entityIds) {
+
+        if (entityIds.isEmpty()) return Map.of();
+
+        return mediaFileRepository.findMediaWithoutAttachment(entityType, entityIds).stream()
+                .map(MediaFileMsg::getData)
+                .peek(media -> media.setUrl(mediaUrl(media)))
+                .collect(Collectors.toMap(MediaFile::getEntityId, Function.identity(), (first, second) -> first));
+    }
+
+    /**
+     * Imagen completa para servirla como archivo. Si la imagen aun no tiene hash se calcula y se guarda.
+     */
+    public MediaFile getMediaContent(String entityType, String entityId) throws HSException {
+
+        MediaFileMsg mediaMsg = getMediaMsg(entityType, entityId);
+        MediaFile media = mediaMsg.getData();
+
+        if (media.getHash() == null) {
+            media.setHash(contentHash(media.getAttachment()));
+            mediaFileRepository.updateHash(mediaMsg.getId(), media.getHash());
+        }
+        return media;
+    }
+
     public MediaFile getMedia(String entityType, String entityId) throws HSException {
 
         LOG.infof("@getMedia SERV > Inicia servicio para obtener imagen de la entidad: %s", entityId);
@@ -68,6 +159,7 @@ public class MediaFileService {
                     .contentType(mediaUploadForm.getFileUpload().contentType())
                     .fileType(mediaUploadForm.getFileUpload().contentType().split("/")[0])
                     .attachment(base64Image)
+                    .hash(contentHash(imageBytes))
                     .build();
 
             mediaFileRepository.persist(MediaFileMsg.builder()
@@ -75,6 +167,8 @@ public class MediaFileService {
                     .meta(utils.getMetaToEntity())
                     .build());
 
+            invalidateListCache(entityType);
+
             LOG.info("@saveFile SERV > Finaliza servicio de guardado del archivo de la imagen del usuario");
 
             return mediaFile;
@@ -102,7 +196,7 @@ public class MediaFileService {
                 mediaMsgMongo);
 
         mediaFileRepository.update(mediaMsgMongo);
-
+        invalidateListCache(entityType);
 
         LOG.infof("@updateMediaFileInMongo SERV > Finaliza actualización del media con entityId: %s", entityId);
 
@@ -144,6 +238,7 @@ public class MediaFileService {
             mediaMongo.setContentType(form.getFileUpload().contentType());
             mediaMongo.setFileType(form.getFileUpload().contentType().split("/")[0]);
             mediaMongo.setAttachment(base64Image);
+            mediaMongo.setHash(contentHash(imageBytes));
 
         } catch (Exception e) {
             LOG.errorf(e, "@setMediaInformation SERV > Error al procesar archivo subido");
@@ -158,4 +253,32 @@ public class MediaFileService {
 
         LOG.infof("@setMediaInformation SERV > Finaliza set de datos de media para entityId: %s", entityId);
     }
+
+    private String mediaUrl(MediaFile media) {
+
+        String url = String.format(MEDIA_URL, media.getEntityType(), media.getEntityId());
+
+        return media.getHash() != null ? url + "?v=" + media.getHash() : url;
+    }
+
+    private void invalidateListCache(String entityType) {
+
+        String cacheName = LIST_CACHES.get(entityType.toUpperCase());
+
+        if (cacheName != null) {
+            cacheManager.getCache(cacheName).ifPresent(cache -> cache.invalidateAll().await().indefinitely());
+        }
+    }
+
+    private String contentHash(String base64Content) {
+        return contentHash(Base64.getDecoder().decode(base64Content));
+    }
+
+    private String contentHash(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
 }
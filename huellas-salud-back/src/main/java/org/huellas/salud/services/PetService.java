@@ -47,6 +47,9 @@ public class PetService {
     @Inject
     MediaFileRepository mediaFileRepository;
 
+    @Inject
+    MediaFileService mediaFileService;
+
     @ConfigProperty(name = "PARAMETER.HUELLAS_SALUD.DEFAULT_BREED")
     String defaultBreed;
 
@@ -101,10 +104,8 @@ public class PetService {
 
         List<PetMsg> pets = petRepository.getListPetsFromMongo();
 
-        pets.forEach(petMsg -> {
-            mediaFileRepository.getMediaByEntityTypeAndId("PET", petMsg.getData().getIdPet())
-                    .ifPresent(media -> petMsg.getData().setMediaFile(media.getData()));
-        });
+        mediaFileService.toThin("PET", pets, petMsg -> petMsg.getData().getIdPet(),
+                (petMsg, media) -> petMsg.getData().setMediaFile(media));
 
         LOG.infof("@getListPetMsg SERV > Finaliza consulta en mongo. Finaliza ejecucion del servicio para " +
                 "obtener listado de las mascotas desde mongo. Se obtuvo: %s registros", pets.size());
@@ -141,10 +142,8 @@ public class PetService {
 
         List<PetMsg> pets = petRepository.getListPetsByOwner(idOwner);
 
-        pets.forEach(petMsg -> {
-            mediaFileRepository.getMediaByEntityTypeAndId("PET", petMsg.getData().getIdPet())
-                    .ifPresent(media -> petMsg.getData().setMediaFile(media.getData()));
-        });
+        mediaFileService.toThin("PET", pets, petMsg -> petMsg.getData().getIdPet(),
+                (petMsg, media) -> petMsg.getData().setMediaFile(media));
 
         LOG.infof("@getListPetsByOwner SERV > Finaliza consulta de mascotas en mongo. Se obtuvo: %s registros " +
                 "de mascotas relacionadas al propietario con numero de documento: %s", pets.size(), idOwner);
@@ -0,0 +1,114 @@
+package org.huellas.salud.services;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.huellas.salud.domain.pet.PetMsg;
+import org.huellas.salud.domain.service.Service;
+import org.huellas.salud.domain.service.ServiceMsg;
+import org.huellas.salud.helper.exceptions.HSException;
+import org.huellas.salud.helper.pricing.PetWeight;
+import org.huellas.salud.helper.pricing.WeightPriceTable;
+import org.huellas.salud.repositories.ServiceRepository;
+import org.jboss.logging.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Motor de precios de los servicios. Mantiene en memoria la tabla de precios compilada de cada servicio, que
+ * {@link ServiceService} actualiza cada vez que crea, edita o elimina un servicio, de modo que calcular el precio de
+ * una cita o de una factura no consulta mongo. Como los cambios hechos por otra instancia no pasan por aqui, las
+ * tablas se vuelven a compilar completas desde mongo cada {@code PRICING_RELOAD_MINUTES} minutos.
+ */
+@ApplicationScoped
+public class PricingService {
+
+    private static final Logger LOG = Logger.getLogger(PricingService.class);
+
+    @ConfigProperty(name = "PARAMETER.HUELLAS_SALUD.PRICING_RELOAD_MINUTES", defaultValue = "5")
+    long reloadMinutes;
+
+    private volatile Map<String, WeightPriceTable> tables = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded;
+
+    private volatile long loadedAt;
+
+    @Inject
+    ServiceRepository serviceRepository;
+
+    public boolean hasService(String idService) {
+        return findTable(idService) != null;
+    }
+
+    /**
+     * Precio de un servicio para una mascota con el peso indicado en kilogramos.
+     */
+    public double priceService(String idService, double weightKg) throws HSException {
+
+        WeightPriceTable table = findTable(idService);
+
+        if (table == null) {
+            throw new HSException(Response.Status.BAD_REQUEST, "No se encontró el servicio con id: " + idService);
+        }
+        return table.price(weightKg);
+    }
+
+    public double weightOf(PetMsg petMsg) throws HSException {
+
+        String weight = petMsg.getData().getWeight();
+
+        return PetWeight.toKilograms(weight).orElseThrow(() -> new HSException(Response.Status.BAD_REQUEST,
+                "El peso de la mascota " + petMsg.getData().getName() + " no es valido: " + weight));
+    }
+
+    public synchronized void refresh(Service service) {
+
+        LOG.infof("@refresh SERV > Se compila la tabla de precios del servicio %s", service.getIdService());
+
+        tables.put(service.getIdService(), WeightPriceTable.compile(service));
+    }
+
+    public synchronized void remove(String idService) {
+        tables.remove(idService);
+    }
+
+    private WeightPriceTable findTable(String idService) {
+
+        if (!loaded || System.nanoTime() - loadedAt > TimeUnit.MINUTES.toNanos(reloadMinutes)) loadTables();
+
+        WeightPriceTable table = tables.get(idService);
+
+        if (table != null) return table;
+
+        // Un servicio que no esta en memoria (por ejemplo creado por otra instancia) se compila al primer uso
+        return serviceRepository.findServiceById(idService)
+                .map(serviceMsg -> {
+                    refresh(serviceMsg.getData());
+                    return tables.get(idService);
+                })
+                .orElse(null);
+    }
+
+    // Se compila un mapa nuevo y se reemplaza el anterior, asi los servicios eliminados por otra instancia desaparecen
+    private synchronized void loadTables() {
+
+        if (loaded && System.nanoTime() - loadedAt <= TimeUnit.MINUTES.toNanos(reloadMinutes)) return;
+
+        LOG.info("@loadTables SERV > Inicia compilacion de las tablas de precios de los servicios");
+
+        Map<String, WeightPriceTable> compiled = new ConcurrentHashMap<>();
+
+        for (ServiceMsg serviceMsg : serviceRepository.getRegisteredServicesMongo()) {
+            compiled.put(serviceMsg.getData().getIdService(), WeightPriceTable.compile(serviceMsg.getData()));
+        }
+        tables = compiled;
+        loadedAt = System.nanoTime();
+        loaded = true;
+
+        LOG.infof("@loadTables SERV > Finaliza compilacion. Se compilaron %s tablas de precios", compiled.size());
+    }
+}
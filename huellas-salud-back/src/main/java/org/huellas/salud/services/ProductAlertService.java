@@ -0,0 +1,167 @@
+package org.huellas.salud.services;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.huellas.salud.domain.product.Product;
+import org.huellas.salud.domain.product.ProductAlert;
+import org.huellas.salud.domain.product.ProductAlertType;
+import org.huellas.salud.domain.product.ProductMsg;
+import org.huellas.salud.domain.user.UserMsg;
+import org.huellas.salud.helper.exceptions.HSException;
+import org.huellas.salud.repositories.ProductAlertRepository;
+import org.huellas.salud.repositories.ProductRepository;
+import org.huellas.salud.repositories.UserRepository;
+import org.jboss.logging.Logger;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@ApplicationScoped
+public class ProductAlertService {
+
+    private static final Logger LOG = Logger.getLogger(ProductAlertService.class);
+
+    @ConfigProperty(name = "PARAMETER.HUELLAS_SALUD.LOW_STOCK_THRESHOLD", defaultValue = "5")
+    int lowStockThreshold;
+
+    @ConfigProperty(name = "PARAMETER.HUELLAS_SALUD.EXPIRATION_WARNING_DAYS", defaultValue = "30")
+    int expirationWarningDays;
+
+    @Inject
+    ProductRepository productRepository;
+
+    @Inject
+    ProductAlertRepository productAlertRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Inject
+    MailService mailService;
+
+    public List<ProductAlert> getActiveAlerts(ProductAlertType type) {
+        return productAlertRepository.findActiveAlerts(type);
+    }
+
+    /**
+     * Compara los productos que hoy cumplen alguna condicion de alerta con las alertas activas: crea las nuevas,
+     * actualiza las que cambiaron y resuelve las que ya no aplican. Las consultas recorren solo el tramo de los
+     * indices de cantidad y vencimiento que cumple la condicion, por lo que el costo depende de los productos en
+     * alerta y no del tamaño del catalogo.
+     *
+     * @return cantidad de alertas nuevas
+     */
+    public int scanProducts() {
+
+        LocalDate today = LocalDate.now();
+        LocalDateTime now = LocalDateTime.now();
+
+        Map<String, ProductAlert> detected = new HashMap<>();
+
+        for (ProductMsg productMsg : productRepository.findLowStock(lowStockThreshold)) {
+            addAlert(detected, productMsg.getData(), ProductAlertType.STOCK_BAJO);
+        }
+
+        for (ProductMsg productMsg : productRepository.findExpiringBefore(today.plusDays(expirationWarningDays))) {
+            Product product = productMsg.getData();
+            addAlert(detected, product, product.getExpirationDate().isBefore(today)
+                    ? ProductAlertType.VENCIDO
+                    : ProductAlertType.POR_VENCER);
+        }
+
+        Map<String, ProductAlert> active = productAlertRepository.findActiveAlerts(null).stream()
+                .collect(Collectors.toMap(ProductAlert::getId, Function.identity()));
+
+        List<ProductAlert> created = new ArrayList<>();
+        List<ProductAlert> updated = new ArrayList<>();
+
+        for (ProductAlert alert : detected.values()) {
+
+            ProductAlert existing = active.remove(alert.getId());
+
+            if (existing == null) {
+                alert.setActive(true);
+                alert.setDetectedAt(now);
+                created.add(alert);
+            } else if (!Objects.equals(existing.getQuantityAvailable(), alert.getQuantityAvailable())
+                    || !Objects.equals(existing.getExpirationDate(), alert.getExpirationDate())
+                    || !Objects.equals(existing.getProductName(), alert.getProductName())) {
+                // La alerta sigue siendo la misma, solo se actualizan los datos del producto
+                existing.setQuantityAvailable(alert.getQuantityAvailable());
+                existing.setExpirationDate(alert.getExpirationDate());
+                existing.setProductName(alert.getProductName());
+                updated.add(existing);
+            }
+        }
+
+        productAlertRepository.saveAlerts(created, updated);
+        productAlertRepository.resolveAlerts(active.keySet(), now);
+
+        LOG.infof("@scanProducts SERV > Escaneo de inventario: %s alertas nuevas, %s actualizadas y %s resueltas",
+                created.size(), updated.size(), active.size());
+
+        return created.size();
+    }
+
+    /**
+     * Envia a los administradores un solo correo con las alertas que aun no se han notificado. Las alertas se
+     * reclaman como notificadas antes de enviar, de modo que otra instancia que envie el resumen al mismo tiempo no
+     * las repite; si ningun administrador recibio el correo vuelven a quedar pendientes.
+     */
+    public void sendAlertDigest() {
+
+        List<UserMsg> administrators = userRepository.getAdministratorsMongo();
+
+        if (administrators.isEmpty()) {
+            LOG.warn("@sendAlertDigest SERV > No hay administradores activos para notificar las alertas de inventario");
+            return;
+        }
+
+        List<ProductAlert> pending = productAlertRepository.claimPendingNotification();
+
+        if (pending.isEmpty()) {
+            LOG.info("@sendAlertDigest SERV > No hay alertas de inventario pendientes por notificar");
+            return;
+        }
+
+        boolean delivered = false;
+
+        for (UserMsg administrator : administrators) {
+            try {
+                mailService.sendProductAlertDigest(administrator.getData(), pending);
+                delivered = true;
+            } catch (HSException ex) {
+                LOG.errorf(ex, "@sendAlertDigest SERV > No fue posible enviar el resumen de alertas a: %s",
+                        administrator.getData().getEmail());
+            }
+        }
+
+        if (!delivered) {
+            LOG.warnf("@sendAlertDigest SERV > Ningun administrador recibio el resumen. Las %s alertas quedan "
+                    + "pendientes por notificar", pending.size());
+            productAlertRepository.releaseNotification(pending.stream().map(ProductAlert::getId).toList());
+        }
+    }
+
+    private void addAlert(Map<String, ProductAlert> alerts, Product product, ProductAlertType type) {
+
+        String id = product.getIdProduct() + "|" + type.name();
+
+        alerts.put(id, ProductAlert.builder()
+                .id(id)
+                .idProduct(product.getIdProduct())
+                .productName(product.getName())
+                .type(type)
+                .quantityAvailable(product.getQuantityAvailable())
+                .expirationDate(product.getExpirationDate())
+                .build());
+    }
+}
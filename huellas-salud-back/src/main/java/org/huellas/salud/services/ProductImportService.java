@@ -0,0 +1,408 @@
+package org.huellas.salud.services;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import jakarta.ws.rs.core.Response;
+import org.huellas.salud.domain.Meta;
+import org.huellas.salud.domain.product.Product;
+import org.huellas.salud.domain.product.ProductImportError;
+import org.huellas.salud.domain.product.ProductImportResult;
+import org.huellas.salud.domain.product.ProductMsg;
+import org.huellas.salud.helper.exceptions.HSException;
+import org.huellas.salud.helper.csv.CsvReader;
+import org.huellas.salud.helper.jwt.JwtService;
+import org.huellas.salud.helper.utils.Utils;
+import org.huellas.salud.helper.validators.ValidationGroups;
+import org.huellas.salud.repositories.ProductRepository;
+import org.jboss.logging.Logger;
+import org.jboss.resteasy.reactive.multipart.FileUpload;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Carga masiva de productos desde un archivo CSV. El archivo se lee registro a registro y se procesa por bloques:
+ * las filas de cada bloque se convierten y validan en paralelo, los codigos de barras se comparan con mongo en una
+ * sola consulta y los productos se escriben en un solo bulkWrite. El cache del listado se invalida una sola vez al
+ * terminar la carga. Las filas que mongo rechaza al escribir se reportan como las que no pasan la validacion. Las
+ * filas de productos nuevos se validan como el registro individual; las que actualizan un producto existente solo
+ * necesitan el codigo de barras y validan las columnas que traen valor.
+ */
+@ApplicationScoped
+public class ProductImportService {
+
+    private static final Logger LOG = Logger.getLogger(ProductImportService.class);
+
+    private static final int CHUNK_SIZE = 500;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private static final String BARCODE_COLUMN = "barcode";
+    // Columnas que necesita una fila para registrar un producto nuevo
+    private static final List<String> REQUIRED_COLUMNS = List.of("name", "category", "animalType", "description",
+            "price", "unitOfMeasure", "quantityAvailable", "brand", BARCODE_COLUMN);
+    private static final String EXPIRATION_COLUMN = "expirationDate";
+
+    @Inject
+    Utils utils;
+
+    @Inject
+    JwtService jwtService;
+
+    @Inject
+    Validator validator;
+
+    @Inject
+    ProductRepository productRepository;
+
+    @CacheName("products-list-cache")
+    Cache productsCache;
+
+    /**
+     * @param updateExisting si es {@code true} las filas con un codigo de barras ya registrado actualizan el
+     *                       producto; si es {@code false} se rechazan igual que en el registro individual
+     */
+    public ProductImportResult importProducts(FileUpload file, boolean updateExisting)
+            throws HSException, UnknownHostException {
+
+        LOG.infof("@importProducts SERV > Inicia carga masiva de productos desde el archivo: %s. Actualizar "
+                + "existentes: %s", file.fileName(), updateExisting);
+
+        if (file.fileName() == null || !file.fileName().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+            throw new HSException(Response.Status.BAD_REQUEST, "El archivo de carga de productos debe ser un CSV");
+        }
+
+        // Los metadatos dependen de la peticion y del token, por lo que se arman una sola vez antes del paralelismo
+        Meta createMeta = utils.getMetaToEntity();
+        Meta updateMeta = Meta.builder()
+                .lastUpdate(LocalDateTime.now())
+                .nameUserUpdated(jwtService.getCurrentUserName())
+                .emailUserUpdated(jwtService.getCurrentUserEmail())
+                .roleUserUpdated(jwtService.getCurrentUserRole())
+                .build();
+
+        ProductImportResult result;
+
+        try (Reader source = Files.newBufferedReader(file.uploadedFile(), StandardCharsets.UTF_8)) {
+            result = importProducts(source, updateExisting, createMeta, updateMeta);
+        } catch (IOException ex) {
+
+            LOG.errorf(ex, "@importProducts SERV > No fue posible leer el archivo: %s", file.fileName());
+
+            throw new HSException(Response.Status.BAD_REQUEST, "No fue posible leer el archivo de carga de productos");
+        }
+
+        LOG.infof("@importProducts SERV > Finaliza carga masiva del archivo: %s. Filas: %s, insertados: %s, "
+                        + "actualizados: %s, rechazados: %s", file.fileName(), result.getTotalRows(),
+                result.getInserted(), result.getUpdated(), result.getRejected());
+
+        return result;
+    }
+
+    // Recibe el contenido ya abierto y los metadatos armados, para no depender de la peticion ni del archivo subido
+    ProductImportResult importProducts(Reader source, boolean updateExisting, Meta createMeta, Meta updateMeta)
+            throws HSException, IOException {
+
+        ImportContext context = new ImportContext(createMeta, updateMeta, updateExisting);
+
+        try (CsvReader reader = new CsvReader(source)) {
+
+            resolveColumns(reader.readRecord(), context);
+
+            List<CsvRow> chunk = new ArrayList<>(CHUNK_SIZE);
+            List<String> record;
+
+            while ((record = reader.readRecord()) != null) {
+
+                if (record.stream().allMatch(String::isBlank)) continue;
+
+                chunk.add(new CsvRow(reader.getRecordNumber(), record));
+
+                if (chunk.size() == CHUNK_SIZE) {
+                    processChunk(chunk, context);
+                    chunk.clear();
+                }
+            }
+
+            if (!chunk.isEmpty()) processChunk(chunk, context);
+
+        } finally {
+            if (context.result.getInserted() + context.result.getUpdated() > 0) {
+                productsCache.invalidateAll().await().indefinitely();
+            }
+        }
+
+        return context.result;
+    }
+
+    private void processChunk(List<CsvRow> rows, ImportContext context) {
+
+        LOG.debugf("@processChunk SERV > Inicia procesamiento del bloque que inicia en la fila %s con %s filas",
+                rows.get(0).number(), rows.size());
+
+        Map<String, Integer> columns = context.columns;
+
+        // La conversion y la validacion de cada fila no dependen de las demas; el resultado conserva el orden
+        List<ParsedRow> parsed = rows.parallelStream()
+                .map(row -> parseRow(row, columns))
+                .toList();
+
+        List<ParsedRow> valid = new ArrayList<>(parsed.size());
+
+        for (ParsedRow row : parsed) {
+
+            context.result.setTotalRows(context.result.getTotalRows() + 1);
+
+            if (row.error() != null) {
+                reject(context, row, row.error());
+            } else if (!context.barcodes.add(row.product().getBarcode())) {
+                reject(context, row, "El código de barras está repetido en el archivo");
+            } else {
+                valid.add(row);
+            }
+        }
+
+        if (valid.isEmpty()) return;
+
+        Map<String, String> registered = productRepository.findByBarcodes(valid.stream()
+                        .map(row -> row.product().getBarcode())
+                        .toList())
+                .stream()
+                .collect(Collectors.toMap(productMsg -> productMsg.getData().getBarcode(),
+                        productMsg -> productMsg.getData().getIdProduct(), (first, second) -> first));
+
+        List<ProductMsg> inserts = new ArrayList<>();
+        List<ProductMsg> updates = new ArrayList<>();
+        List<ParsedRow> insertRows = new ArrayList<>();
+        List<ParsedRow> updateRows = new ArrayList<>();
+
+        for (ParsedRow row : valid) {
+
+            Product product = row.product();
+            String idProduct = registered.get(product.getBarcode());
+
+            if (idProduct == null && !context.missingColumns.isEmpty()) {
+                reject(context, row, "Para registrar un producto nuevo el archivo debe tener las columnas: "
+                        + String.join(", ", context.missingColumns));
+            } else if (idProduct == null && row.insertError() != null) {
+                reject(context, row, row.insertError());
+            } else if (idProduct == null) {
+                product.setIdProduct(UUID.randomUUID().toString());
+                product.setActive(product.getQuantityAvailable() > 0);
+                inserts.add(new ProductMsg(null, product, context.createMeta));
+                insertRows.add(row);
+            } else if (context.updateExisting) {
+                product.setIdProduct(idProduct);
+                updates.add(new ProductMsg(null, product, context.updateMeta));
+                updateRows.add(row);
+            } else {
+                reject(context, row, "El producto con el código de barras: " + product.getBarcode()
+                        + " ya se encuentra registrado en la base de datos");
+            }
+        }
+
+        if (inserts.isEmpty() && updates.isEmpty()) return;
+
+        BulkWriteResult written;
+
+        try {
+            written = productRepository.importProducts(inserts, updates);
+        } catch (MongoBulkWriteException ex) {
+
+            LOG.warnf("@processChunk SERV > Mongo rechazo %s escrituras del bloque que inicia en la fila %s",
+                    ex.getWriteErrors().size(), rows.get(0).number());
+
+            // El indice de cada error es la posicion en el bulkWrite, que tiene primero las inserciones
+            List<ParsedRow> writtenRows = new ArrayList<>(insertRows);
+            writtenRows.addAll(updateRows);
+
+            for (BulkWriteError error : ex.getWriteErrors()) {
+                ParsedRow row = writtenRows.get(error.getIndex());
+                reject(context, row, ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY
+                        ? "El producto con el código de barras: " + row.barcode() + " ya se encuentra registrado en "
+                                + "la base de datos"
+                        : "No fue posible guardar el producto: " + error.getMessage());
+            }
+            written = ex.getWriteResult();
+        }
+
+        context.result.setInserted(context.result.getInserted() + written.getInsertedCount());
+        context.result.setUpdated(context.result.getUpdated() + written.getMatchedCount());
+    }
+
+    private ParsedRow parseRow(CsvRow row, Map<String, Integer> columns) {
+
+        String barcode = value(row, columns, BARCODE_COLUMN);
+
+        try {
+            Product product = new Product();
+
+            product.setName(capitalized(row, columns, "name"));
+            product.setCategory(value(row, columns, "category"));
+            product.setAnimalType(value(row, columns, "animalType"));
+            product.setDescription(capitalized(row, columns, "description"));
+            product.setPrice(parseNumber(value(row, columns, "price"), Double::valueOf, "price"));
+            product.setUnitOfMeasure(value(row, columns, "unitOfMeasure"));
+            product.setQuantityAvailable(parseNumber(value(row, columns, "quantityAvailable"), Integer::valueOf,
+                    "quantityAvailable"));
+            product.setBrand(capitalized(row, columns, "brand"));
+            product.setExpirationDate(parseDate(value(row, columns, EXPIRATION_COLUMN)));
+            product.setBarcode(barcode);
+
+            // Aun no se sabe si la fila registra o actualiza: se validan los valores que trae y, aparte, si le
+            // alcanza para registrar un producto nuevo
+            String error = violations(product, ValidationGroups.Patch.class);
+
+            if (error != null) return new ParsedRow(row.number(), barcode, null, error, null);
+
+            return new ParsedRow(row.number(), barcode, product, null,
+                    violations(product, ValidationGroups.Post.class));
+
+        } catch (IllegalArgumentException ex) {
+            return new ParsedRow(row.number(), barcode, null, ex.getMessage(), null);
+        }
+    }
+
+    private String violations(Product product, Class<?> group) {
+
+        Set<ConstraintViolation<Product>> violations = validator.validate(product, group);
+
+        return violations.isEmpty() ? null : violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    /**
+     * Ubica las columnas del encabezado. El codigo de barras siempre es obligatorio; las demas columnas de
+     * {@link #REQUIRED_COLUMNS} solo son obligatorias si el archivo no puede actualizar productos existentes, porque
+     * entonces todas sus filas son registros nuevos.
+     */
+    private void resolveColumns(List<String> header, ImportContext context) throws HSException {
+
+        if (header == null) {
+            throw new HSException(Response.Status.BAD_REQUEST, "El archivo de carga de productos esta vacio");
+        }
+
+        Map<String, Integer> columns = new HashMap<>();
+
+        for (int index = 0; index < header.size(); index++) {
+            columns.putIfAbsent(header.get(index).trim().toLowerCase(Locale.ROOT), index);
+        }
+
+        List<String> missing = REQUIRED_COLUMNS.stream()
+                .filter(column -> !columns.containsKey(column.toLowerCase(Locale.ROOT)))
+                .toList();
+
+        if (missing.contains(BARCODE_COLUMN) || (!missing.isEmpty() && !context.updateExisting)) {
+            throw new HSException(Response.Status.BAD_REQUEST, "Al archivo de carga de productos le faltan las "
+                    + "columnas: " + String.join(", ", missing));
+        }
+
+        context.columns = columns;
+        context.missingColumns = missing;
+    }
+
+    private String value(CsvRow row, Map<String, Integer> columns, String column) {
+
+        Integer index = columns.get(column.toLowerCase(Locale.ROOT));
+
+        if (index == null || index >= row.fields().size()) return null;
+
+        String value = row.fields().get(index).trim();
+
+        return value.isEmpty() ? null : value;
+    }
+
+    // capitalizeWords convierte un valor ausente en vacio; aqui debe seguir ausente para no pisar el valor guardado
+    private String capitalized(CsvRow row, Map<String, Integer> columns, String column) {
+
+        String value = value(row, columns, column);
+
+        return value == null ? null : utils.capitalizeWords(value);
+    }
+
+    private <T> T parseNumber(String value, Function<String, T> parser, String column) {
+
+        if (value == null) return null;
+
+        try {
+            return parser.apply(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("El valor del campo " + column + " no es un numero valido: " + value);
+        }
+    }
+
+    private LocalDate parseDate(String value) {
+
+        if (value == null) return null;
+
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("El valor del campo " + EXPIRATION_COLUMN + " debe tener el formato "
+                    + "yyyy-MM-dd: " + value);
+        }
+    }
+
+    private void reject(ImportContext context, ParsedRow row, String message) {
+
+        ProductImportResult result = context.result;
+        result.setRejected(result.getRejected() + 1);
+
+        if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+            result.getErrors().add(ProductImportError.builder()
+                    .row(row.number())
+                    .barcode(row.barcode())
+                    .message(message)
+                    .build());
+        }
+    }
+
+    private record CsvRow(long number, List<String> fields) {
+    }
+
+    // insertError explica por que la fila no alcanza para registrar un producto nuevo; no aplica si actualiza uno
+    private record ParsedRow(long number, String barcode, Product product, String error, String insertError) {
+    }
+
+    private static class ImportContext {
+
+        private final Meta createMeta;
+        private final Meta updateMeta;
+        private final boolean updateExisting;
+        private final Set<String> barcodes = new HashSet<>();
+        private final ProductImportResult result = ProductImportResult.builder().build();
+        private Map<String, Integer> columns;
+        private List<String> missingColumns;
+
+        private ImportContext(Meta createMeta, Meta updateMeta, boolean updateExisting) {
+            this.createMeta = createMeta;
+            this.updateMeta = updateMeta;
+            this.updateExisting = updateExisting;
+        }
+    }
+}
@@ -1,14 +1,25 @@
 package org.huellas.salud.services;
 
+import com.mongodb.MongoException;
+import com.mongodb.client.ClientSession;
 import io.quarkus.cache.CacheInvalidateAll;
 import io.quarkus.cache.CacheResult;
 import io.quarkus.panache.common.Sort;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.core.Response;
+import org.bson.BsonDocumentReader;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
 import org.huellas.salud.domain.Meta;
+import org.huellas.salud.domain.product.FacetCount;
 import org.huellas.salud.domain.product.Product;
 import org.huellas.salud.domain.product.ProductMsg;
+import org.huellas.salud.domain.product.ProductSearchFilter;
+import org.huellas.salud.domain.product.ProductSearchResult;
+import org.huellas.salud.domain.product.ProductSearchSort;
 import org.huellas.salud.helper.exceptions.HSException;
 import org.huellas.salud.helper.jwt.JwtService;
 import org.huellas.salud.helper.utils.Utils;
@@ -19,14 +30,19 @@ import org.jboss.logging.Logger;
 import java.net.UnknownHostException;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @ApplicationScoped
 public class ProductService {
 
     private static final Logger LOG = Logger.getLogger(ProductService.class);
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 50;
+
     @Inject
     Utils utils;
 
@@ -39,23 +55,70 @@ public class ProductService {
     @Inject
     MediaFileRepository mediaFileRepository;
 
+    @Inject
+    MediaFileService mediaFileService;
+
     @CacheResult(cacheName = "products-list-cache")
     public List<ProductMsg> getListProducts() {
 
         LOG.info("@getListProducts SERV > Inicia servicio para obtener listado de productos registrados en mongo");
 
-        List<ProductMsg> products = productRepository.listAll(Sort.descending("data.name"));
+        List<ProductMsg> products = productRepository.listAll(Sort.ascending("data.nombre"));
 
-        products.forEach(productMsg -> {
-            mediaFileRepository.getMediaByEntityTypeAndId("PRODUCT", productMsg.getData().getIdProduct())
-                    .ifPresent(media -> productMsg.getData().setMediaFile(media.getData()));
-        });
+        mediaFileService.toThin("PRODUCT", products, productMsg -> productMsg.getData().getIdProduct(),
+                (productMsg, media) -> productMsg.getData().setMediaFile(media));
 
         LOG.infof("@getListProducts SERV > Finaliza consulta. Se obtuvo: %s productos", products.size());
 
         return products;
     }
 
+    public ProductSearchResult searchCatalog(ProductSearchFilter filter, ProductSearchSort sort, Integer page,
+                                             Integer size) throws HSException {
+
+        int pageNumber = page == null ? 0 : page;
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+
+        if (pageNumber < 0 || pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    "La pagina debe ser mayor o igual a 0 y el tamaño debe estar entre 1 y " + MAX_PAGE_SIZE);
+        }
+
+        if (filter.getMinPrice() != null && filter.getMaxPrice() != null && filter.getMinPrice() > filter.getMaxPrice()) {
+            throw new HSException(Response.Status.BAD_REQUEST, "El precio minimo no puede ser mayor al precio maximo");
+        }
+
+        LOG.infof("@searchCatalog SERV > Inicia busqueda en el catalogo con los filtros: %s. Pagina %s de tamaño %s",
+                filter, pageNumber, pageSize);
+
+        Document result = productRepository.searchCatalog(filter, sort == null ? ProductSearchSort.RELEVANCIA : sort,
+                pageNumber * pageSize, pageSize);
+
+        CodecRegistry registry = productRepository.mongoCollection().getCodecRegistry();
+        Codec<Product> codec = registry.get(Product.class);
+
+        List<Product> products = result.getList("productos", Document.class).stream()
+                .map(document -> codec.decode(new BsonDocumentReader(document.toBsonDocument(Document.class, registry)),
+                        DecoderContext.builder().build()))
+                .toList();
+
+        mediaFileService.toThin("PRODUCT", products, Product::getIdProduct, Product::setMediaFile);
+
+        List<Document> total = result.getList("total", Document.class);
+
+        LOG.infof("@searchCatalog SERV > Finaliza busqueda en el catalogo. Se retornan %s productos", products.size());
+
+        return ProductSearchResult.builder()
+                .products(products)
+                .total(total.isEmpty() ? 0 : total.get(0).get("total", Number.class).longValue())
+                .page(pageNumber)
+                .size(pageSize)
+                .categories(toFacet(result.getList("categorias", Document.class)))
+                .animalTypes(toFacet(result.getList("tiposAnimal", Document.class)))
+                .priceRanges(toFacet(result.getList("rangosPrecio", Document.class)))
+                .build();
+    }
+
     public ProductMsg getProductById(String idProduct) {
         LOG.infof("@getProductById SERV > Inicia ejecucion del servicio para obtener el producto con id: "
                 + " %s. Inicia consulta a mongo", idProduct);
@@ -184,6 +247,87 @@ public class ProductService {
         });
     }
 
+    /**
+     * Descuenta el stock de todos los productos de una operacion con una sola escritura en mongo y refresca el
+     * catalogo una unica vez. Si algun producto no tiene unidades suficientes no se descuenta ninguno.
+     */
+    @CacheInvalidateAll(cacheName = "products-list-cache")
+    public void decrementStock(Map<String, Integer> quantities, String idOperation) throws HSException {
+
+        LOG.infof("@decrementStock SERV > Inicia descuento de stock de %s productos para la operacion %s",
+                quantities.size(), idOperation);
+
+        if (quantities.isEmpty()) return;
+
+        if (!productRepository.decrementStock(quantities, idOperation)) {
+            throw stockShortage(quantities, idOperation);
+        }
+
+        LOG.infof("@decrementStock SERV > Finaliza descuento de stock de la operacion %s", idOperation);
+    }
+
+    /**
+     * Descuento de stock dentro de una transaccion. La cache del catalogo no se toca aqui: el llamador la refresca
+     * cuando la transaccion se confirma.
+     */
+    public void decrementStock(ClientSession session, Map<String, Integer> quantities, String idOperation)
+            throws HSException {
+
+        LOG.infof("@decrementStock SERV > Inicia descuento transaccional de stock de %s productos para la operacion %s",
+                quantities.size(), idOperation);
+
+        if (quantities.isEmpty()) return;
+
+        if (!productRepository.decrementStock(session, quantities, idOperation)) {
+            throw stockShortage(quantities, idOperation);
+        }
+    }
+
+    /**
+     * Compensacion de {@link #decrementStock(Map, String)} cuando el resto de la operacion falla.
+     */
+    @CacheInvalidateAll(cacheName = "products-list-cache")
+    public void restoreStock(Map<String, Integer> quantities, String idOperation) {
+
+        LOG.warnf("@restoreStock SERV > Se devuelve el stock de %s productos de la operacion %s",
+                quantities.size(), idOperation);
+
+        if (!quantities.isEmpty()) productRepository.revertStock(quantities, idOperation);
+    }
+
+    /**
+     * Cierra una operacion de inventario confirmada retirando su marca de los productos. Si falla solo queda una marca
+     * huerfana en el producto, por lo que no se interrumpe la operacion.
+     */
+    public void completeStockOperation(Map<String, Integer> quantities, String idOperation) {
+
+        if (quantities.isEmpty()) return;
+
+        try {
+            productRepository.clearStockMovements(quantities.keySet(), idOperation);
+        } catch (MongoException ex) {
+            LOG.errorf(ex, "@completeStockOperation SERV > No fue posible retirar la marca de la operacion %s de los "
+                    + "productos", idOperation);
+        }
+    }
+
+    // Se consulta el estado confirmado en mongo para informar que productos no alcanzaron
+    private HSException stockShortage(Map<String, Integer> quantities, String idOperation) {
+
+        String products = productRepository.findProductsByIds(quantities.keySet()).stream()
+                .map(ProductMsg::getData)
+                .filter(product -> product.getQuantityAvailable() < quantities.get(product.getIdProduct()))
+                .map(Product::getName)
+                .collect(Collectors.joining(", "));
+
+        LOG.warnf("@stockShortage SERV > No hay stock suficiente para la operacion %s. Productos: %s",
+                idOperation, products);
+
+        return new HSException(Response.Status.BAD_REQUEST, products.isEmpty()
+                ? "No hay suficiente stock de los productos solicitados"
+                : "No hay suficiente stock del producto: " + products);
+    }
+
     @CacheInvalidateAll(cacheName = "products-list-cache")
     public void deleteProductDataMongo(String productId) throws HSException {
 
@@ -206,4 +350,13 @@ public class ProductService {
                 + "la base de datos", productId, deleted);
 
     }
+
+    private List<FacetCount> toFacet(List<Document> buckets) {
+        return buckets.stream()
+                .map(bucket -> FacetCount.builder()
+                        .value(String.valueOf(bucket.get("_id")))
+                        .count(bucket.get("count", Number.class).longValue())
+                        .build())
+                .toList();
+    }
 }
@@ -0,0 +1,173 @@
+package org.huellas.salud.services;
+
+import com.mongodb.client.ClientSession;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.huellas.salud.domain.invoice.Invoice;
+import org.huellas.salud.domain.invoice.InvoiceMsg;
+import org.huellas.salud.domain.invoice.ItemInvoice;
+import org.huellas.salud.domain.invoice.SalesDimension;
+import org.huellas.salud.domain.invoice.SalesRollup;
+import org.huellas.salud.domain.invoice.SalesSummary;
+import org.huellas.salud.helper.exceptions.HSException;
+import org.huellas.salud.helper.utils.Utils;
+import org.huellas.salud.repositories.InvoiceRepository;
+import org.huellas.salud.repositories.SalesRollupRepository;
+import org.jboss.logging.Logger;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+@ApplicationScoped
+public class SalesRollupService {
+
+    private static final Logger LOG = Logger.getLogger(SalesRollupService.class);
+
+    private static final String TOTAL_KEY = "TOTAL";
+    private static final int DEFAULT_RANKING_SIZE = 20;
+
+    @Inject
+    SalesRollupRepository salesRollupRepository;
+
+    @Inject
+    InvoiceRepository invoiceRepository;
+
+    @Inject
+    Utils utils;
+
+    /**
+     * Aplica a los acumulados diarios el cambio de una factura: su aporte anterior se resta y el nuevo se suma, de
+     * modo que solo se escriben los acumulados que realmente cambian.
+     *
+     * @param previous la factura antes del cambio, o {@code null} si se esta creando
+     * @param current  la factura despues del cambio, o {@code null} si se esta eliminando
+     * @param session  transaccion en curso, o {@code null}
+     */
+    public void applyInvoiceChange(ClientSession session, Invoice previous, Invoice current) {
+
+        Map<String, SalesRollup> increments = new HashMap<>();
+
+        if (previous != null) addContribution(increments, previous, -1);
+        if (current != null) addContribution(increments, current, 1);
+
+        increments.values().removeIf(increment -> increment.getInvoices() == 0 && increment.getUnits() == 0
+                && Math.abs(increment.getRevenue()) < 0.005);
+
+        salesRollupRepository.applyIncrements(session, increments.values());
+    }
+
+    public List<SalesRollup> getDailyRollups(SalesDimension dimension, LocalDate from, LocalDate to, String key)
+            throws HSException {
+
+        utils.validateDateRange(from, to);
+
+        return salesRollupRepository.findRollups(dimension, from, to, key);
+    }
+
+    public List<SalesSummary> getSalesRanking(SalesDimension dimension, LocalDate from, LocalDate to, Integer limit)
+            throws HSException {
+
+        utils.validateDateRange(from, to);
+
+        int size = limit == null || limit <= 0 ? DEFAULT_RANKING_SIZE : limit;
+
+        return salesRollupRepository.aggregateTotals(dimension, from, to, size).stream()
+                .map(document -> SalesSummary.builder()
+                        .dimension(dimension)
+                        .key(document.getString("_id"))
+                        .revenue(document.get("ingresos", Number.class).doubleValue())
+                        .units(document.get("unidades", Number.class).longValue())
+                        .invoices(document.get("facturas", Number.class).longValue())
+                        .build())
+                .toList();
+    }
+
+    /**
+     * Reconstruye todos los acumulados recorriendo las facturas una sola vez. Sirve para poblar la coleccion con las
+     * facturas anteriores a los acumulados o para corregirla despues de un fallo. Los acumulados nuevos reemplazan a
+     * los anteriores de una sola vez, de modo que las consultas nunca ven la coleccion vacia o a medio llenar.
+     */
+    public long rebuildRollups() {
+
+        LOG.info("@rebuildRollups SERV > Inicia reconstruccion de los acumulados de ventas");
+
+        Map<String, SalesRollup> rollups = new HashMap<>();
+        long invoices = 0;
+
+        try (Stream<InvoiceMsg> stream = invoiceRepository.streamAll()) {
+            for (InvoiceMsg invoiceMsg : (Iterable<InvoiceMsg>) stream::iterator) {
+                addContribution(rollups, invoiceMsg.getData(), 1);
+                invoices++;
+            }
+        }
+
+        salesRollupRepository.replaceAll(rollups.values());
+
+        LOG.infof("@rebuildRollups SERV > Finaliza reconstruccion. Se procesaron %s facturas y se generaron %s "
+                + "acumulados", invoices, rollups.size());
+
+        return invoices;
+    }
+
+    private void addContribution(Map<String, SalesRollup> rollups, Invoice invoice, int sign) {
+
+        if (invoice.getDate() == null) return;
+
+        LocalDate day = invoice.getDate().toLocalDate();
+        double total = invoice.getTotal() != null ? invoice.getTotal() : 0;
+        long invoiceUnits = 0;
+
+        // Una factura cuenta una sola vez por producto o servicio aunque aparezca en varios items
+        Set<String> counted = new HashSet<>();
+
+        for (ItemInvoice item : invoice.getItemInvoice() != null ? invoice.getItemInvoice() : List.<ItemInvoice>of()) {
+
+            long units = item.getQuantity() != null ? item.getQuantity() : 1;
+            double subTotal = item.getSubTotal() != null ? item.getSubTotal() : 0;
+            invoiceUnits += units;
+
+            boolean hasProduct = item.getIdProduct() != null && !item.getIdProduct().isBlank();
+            boolean hasService = item.getIdService() != null && !item.getIdService().isBlank();
+
+            // Un item con producto y servicio cuenta en ambas dimensiones; su subtotal guardado es el precio del
+            // servicio, por lo que el ingreso se asigna al servicio
+            if (hasProduct) {
+                add(rollups, day, SalesDimension.PRODUCTO, item.getIdProduct(), hasService ? 0 : sign * subTotal,
+                        sign * units, counted.add("P" + item.getIdProduct()) ? sign : 0);
+            }
+            if (hasService) {
+                add(rollups, day, SalesDimension.SERVICIO, item.getIdService(), sign * subTotal, sign * units,
+                        counted.add("S" + item.getIdService()) ? sign : 0);
+            }
+        }
+
+        add(rollups, day, SalesDimension.TOTAL, TOTAL_KEY, sign * total, sign * invoiceUnits, sign);
+        add(rollups, day, SalesDimension.CLIENTE, invoice.getIdClient(), sign * total, sign * invoiceUnits, sign);
+
+        if (invoice.getStatus() != null) {
+            add(rollups, day, SalesDimension.ESTADO, invoice.getStatus().name(), sign * total, sign * invoiceUnits, sign);
+        }
+    }
+
+    private void add(Map<String, SalesRollup> rollups, LocalDate day, SalesDimension dimension, String key,
+                     double revenue, long units, long invoices) {
+
+        String id = day + "|" + dimension.name() + "|" + key;
+
+        SalesRollup rollup = rollups.computeIfAbsent(id, ignored -> SalesRollup.builder()
+                .id(id)
+                .date(day)
+                .dimension(dimension)
+                .key(key)
+                .build());
+
+        rollup.setRevenue(rollup.getRevenue() + revenue);
+        rollup.setUnits(rollup.getUnits() + units);
+        rollup.setInvoices(rollup.getInvoices() + invoices);
+    }
+}
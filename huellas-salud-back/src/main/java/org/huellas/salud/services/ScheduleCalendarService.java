@@ -0,0 +1,139 @@
+package org.huellas.salud.services;
+
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CaffeineCache;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.huellas.salud.domain.schedule.ScheduleException;
+import org.huellas.salud.domain.schedule.ScheduleExceptionMsg;
+import org.huellas.salud.helper.availability.CompiledCalendar;
+import org.huellas.salud.helper.availability.EffectiveDay;
+import org.huellas.salud.repositories.ScheduleExceptionRepository;
+import org.jboss.logging.Logger;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+@ApplicationScoped
+public class ScheduleCalendarService {
+
+    private static final Logger LOG = Logger.getLogger(ScheduleCalendarService.class);
+
+    // Semanas que se precompilan a partir del dia actual
+    private static final int CALENDAR_WEEKS = 8;
+
+    @Inject
+    @CacheName("schedule-calendar-cache")
+    Cache calendarCache;
+
+    @Inject
+    ScheduleService scheduleService;
+
+    @Inject
+    ScheduleExceptionRepository scheduleExceptionRepository;
+
+    public EffectiveDay getEffectiveDay(String idVeterinarian, LocalDate date) {
+
+        CompiledCalendar calendar = getCalendar(idVeterinarian);
+
+        if (calendar.covers(date)) {
+            return calendar.getDay(date);
+        }
+
+        // Las fechas fuera de la ventana precompilada se resuelven puntualmente
+        return EffectiveDay.resolve(date, scheduleService.getCompiledWeek(idVeterinarian),
+                findExceptions(idVeterinarian, date, date));
+    }
+
+    /**
+     * Horario efectivo de cada dia de un rango. Los dias de la ventana precompilada se leen del calendario y los
+     * demas se resuelven con una sola consulta de excepciones para todo el rango.
+     */
+    public List<EffectiveDay> getEffectiveDays(String idVeterinarian, LocalDate from, LocalDate to) {
+
+        CompiledCalendar calendar = getCalendar(idVeterinarian);
+        List<ScheduleException> exceptions = null;
+        List<EffectiveDay> days = new ArrayList<>();
+
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+
+            if (calendar.covers(date)) {
+                days.add(calendar.getDay(date));
+                continue;
+            }
+
+            if (exceptions == null) exceptions = findExceptions(idVeterinarian, from, to);
+            days.add(EffectiveDay.resolve(date, scheduleService.getCompiledWeek(idVeterinarian), exceptions));
+        }
+        return days;
+    }
+
+    /**
+     * Recalcula solo los dias afectados por una excepcion en los calendarios ya compilados. Si la excepcion es de
+     * toda la clinica ({@code idVeterinarian} nulo) se actualizan los calendarios de todos los veterinarios.
+     */
+    public void refresh(String idVeterinarian, LocalDate from, LocalDate to) {
+
+        LOG.infof("@refresh SERV > Se recalculan los dias entre %s y %s del calendario del veterinario %s",
+                from, to, idVeterinarian == null ? "(todos)" : idVeterinarian);
+
+        CaffeineCache cache = calendarCache.as(CaffeineCache.class);
+
+        for (Object key : idVeterinarian == null ? Set.copyOf(cache.keySet()) : Set.of(idVeterinarian)) {
+
+            CompletableFuture<CompiledCalendar> cached = cache.getIfPresent(key);
+
+            if (cached == null) continue;
+
+            String id = (String) key;
+
+            // El calendario se recalcula por fuera de la cache y luego se reemplaza, sin bloquear a quien la lee
+            cache.put(id, CompletableFuture.completedFuture(cached.join().withDays(from, to,
+                    scheduleService.getCompiledWeek(id), findExceptions(id, from, to))));
+        }
+    }
+
+    public void invalidate(String idVeterinarian) {
+        calendarCache.invalidate(idVeterinarian).await().indefinitely();
+    }
+
+    private CompiledCalendar getCalendar(String idVeterinarian) {
+
+        LocalDate today = LocalDate.now();
+        CompiledCalendar calendar = loadCalendar(idVeterinarian, today);
+
+        // El calendario compilado ayer ya no inicia en el dia actual, por lo que se vuelve a compilar
+        if (!calendar.getStartDate().equals(today)) {
+            invalidate(idVeterinarian);
+            calendar = loadCalendar(idVeterinarian, today);
+        }
+        return calendar;
+    }
+
+    /**
+     * La cache ejecuta la compilacion por fuera del bloqueo de la llave, por lo que las consultas a mongo de un
+     * veterinario no detienen las lecturas de los calendarios de los demas.
+     */
+    private CompiledCalendar loadCalendar(String idVeterinarian, LocalDate today) {
+
+        return calendarCache.get(idVeterinarian, id -> {
+
+            LocalDate lastDay = today.plusWeeks(CALENDAR_WEEKS).minusDays(1);
+
+            LOG.infof("@loadCalendar SERV > Se compila el calendario del veterinario %s entre %s y %s", id, today, lastDay);
+
+            return CompiledCalendar.compile(today, CALENDAR_WEEKS * 7, scheduleService.getCompiledWeek(id),
+                    findExceptions(id, today, lastDay));
+        }).await().indefinitely();
+    }
+
+    private List<ScheduleException> findExceptions(String idVeterinarian, LocalDate from, LocalDate to) {
+        return scheduleExceptionRepository.findExceptionsInRange(idVeterinarian, from, to).stream()
+                .map(ScheduleExceptionMsg::getData)
+                .toList();
+    }
+}
@@ -1,15 +1,23 @@
 package org.huellas.salud.services;
 
+import io.quarkus.cache.Cache;
 import io.quarkus.cache.CacheInvalidateAll;
+import io.quarkus.cache.CacheName;
 import io.quarkus.cache.CacheResult;
+import io.quarkus.cache.CaffeineCache;
 import jakarta.inject.Inject;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.huellas.salud.domain.schedule.Schedule;
+import org.huellas.salud.repositories.ScheduleExceptionRepository;
 import org.huellas.salud.repositories.ScheduleRepository;
 import org.huellas.salud.repositories.UserRepository;
 import org.huellas.salud.domain.user.UserMsg;
 import org.huellas.salud.domain.Meta;
+import org.huellas.salud.domain.schedule.ScheduleException;
+import org.huellas.salud.domain.schedule.ScheduleExceptionMsg;
+import org.huellas.salud.domain.schedule.ScheduleExceptionType;
 import org.huellas.salud.domain.schedule.ScheduleMsg;
+import org.huellas.salud.helper.availability.CompiledWeek;
 import org.huellas.salud.helper.exceptions.HSException;
 import org.huellas.salud.helper.jwt.JwtService;
 import org.huellas.salud.helper.utils.Utils;
@@ -18,9 +26,17 @@ import java.util.Optional;
 import jakarta.ws.rs.core.Response;
 
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 
 @ApplicationScoped
 public class ScheduleService {
@@ -39,6 +55,19 @@ public class ScheduleService {
     @Inject
     UserRepository userRepository;
 
+    @Inject
+    AvailabilityService availabilityService;
+
+    @Inject
+    ScheduleCalendarService scheduleCalendarService;
+
+    @Inject
+    ScheduleExceptionRepository scheduleExceptionRepository;
+
+    @Inject
+    @CacheName("schedule-week-cache")
+    Cache scheduleWeekCache;
+
     @CacheInvalidateAll(cacheName = "schedules-list-cache")
     public ScheduleMsg saveScheduleDataMongo(ScheduleMsg scheduleMsg) throws HSException, UnknownHostException {
 
@@ -47,6 +76,8 @@ public class ScheduleService {
 
         Schedule scheduleData = scheduleMsg.getData();
 
+        validateWorkingHours(scheduleData);
+
         Optional<UserMsg> optionalUser = userRepository.findUserByDocumentNumber(scheduleData.getIdVeterinarian());
 
         if (optionalUser.isEmpty()) {
@@ -73,6 +104,7 @@ public class ScheduleService {
                 + "en mongo con la siguiente informacion: %s", scheduleMsg);
 
         scheduleRepository.persist(scheduleMsg);
+        invalidateVeterinarian(scheduleData.getIdVeterinarian());
 
         LOG.infof("@saveScheduleDataMongo SERV > El horario se registro exitosamente en la base de datos. Finaliza "
                 + "ejecucion del servicio para almacenar el registro de un horario con la data: %s", scheduleMsg);
@@ -133,6 +165,8 @@ public class ScheduleService {
         LOG.infof("@updateScheduleDataMongo SERV > Inicia la ejecucion del servicio para actualizar registro de "
                 + "el horario con id: %s. Data a modificar: %s", scheduleMsg.getData().getIdSchedule(), scheduleMsg);
 
+        validateWorkingHours(scheduleMsg.getData());
+
         ScheduleMsg scheduleMsgMongo = getScheduleMsg(scheduleMsg.getData().getIdSchedule());
 
         String diaEsp = traducirDia(scheduleMsg.getData().getDayOfWeek().name());
@@ -151,6 +185,8 @@ public class ScheduleService {
             );
         }
 
+        String previousVeterinarian = scheduleMsgMongo.getData().getIdVeterinarian();
+
         setScheduleInformation(scheduleMsg.getData().getIdSchedule(), scheduleMsg.getData(), scheduleMsgMongo);
 
         LOG.infof("@updateScheduleDataMongo SERV > El horario con id: %s si esta registrado. Inicia la "
@@ -160,6 +196,8 @@ public class ScheduleService {
                 + "Inicia actualizacion en mongo con la data: %s", scheduleMsg.getData().getIdSchedule(), scheduleMsg);
 
         scheduleRepository.update(scheduleMsgMongo);
+        invalidateVeterinarian(previousVeterinarian);
+        invalidateVeterinarian(scheduleMsgMongo.getData().getIdVeterinarian());
 
         LOG.infof("@updateScheduleDataMongo SERV > Finaliza actualizacion del registro del horario con id: %s. "
                 + "Finaliza ejecucion de servicio de actualizacion", scheduleMsg.getData().getIdSchedule());
@@ -194,6 +232,8 @@ public class ScheduleService {
         LOG.infof("@deleteScheduleDataMongo SERV > Inicia ejecucion del servicio para eliminar el registro del "
                 + "horario con id: %s", idSchedule);
 
+        Optional<ScheduleMsg> optionalSchedule = scheduleRepository.findScheduleById(idSchedule);
+
         long deletedRecords = scheduleRepository.deleteScheduleDataMongo(idSchedule);
 
         if (deletedRecords == 0) {
@@ -204,10 +244,186 @@ public class ScheduleService {
             throw new HSException(Response.Status.NOT_FOUND, "El horario con id: " + idSchedule + ". No esta registrada en base de datos");
         }
 
+        optionalSchedule.ifPresent(schedule -> invalidateVeterinarian(schedule.getData().getIdVeterinarian()));
+
         LOG.infof("@deleteScheduleDataMongo SERV > Finaliza ejecucion del servicio para eliminar el registro del horario "
                 + "con id: %s. El registro se elimino correctamente.", idSchedule);
     }
 
+    public ScheduleExceptionMsg saveScheduleExceptionDataMongo(ScheduleExceptionMsg exceptionMsg) throws HSException, UnknownHostException {
+
+        LOG.infof("@saveScheduleExceptionDataMongo SERV > Inicia ejecucion del servicio para almacenar una excepcion "
+                + "de horario con la data: %s", exceptionMsg.getData());
+
+        ScheduleException exceptionData = exceptionMsg.getData();
+
+        validateScheduleException(exceptionData);
+
+        exceptionData.setIdException(UUID.randomUUID().toString());
+        exceptionMsg.setMeta(utils.getMetaToEntity());
+
+        scheduleExceptionRepository.persist(exceptionMsg);
+
+        refreshCalendars(exceptionData);
+
+        LOG.infof("@saveScheduleExceptionDataMongo SERV > Finaliza registro de la excepcion de horario con id: %s",
+                exceptionData.getIdException());
+
+        return exceptionMsg;
+    }
+
+    public List<ScheduleExceptionMsg> getListScheduleExceptions(String idVeterinarian, LocalDate from, LocalDate to) {
+
+        LOG.infof("@getListScheduleExceptions SERV > Inicia consulta de las excepciones de horario del veterinario %s "
+                + "entre %s y %s", idVeterinarian, from, to);
+
+        List<ScheduleExceptionMsg> exceptions = scheduleExceptionRepository.findExceptionsInRange(idVeterinarian, from, to);
+
+        LOG.infof("@getListScheduleExceptions SERV > Finaliza consulta de excepciones de horario. Se obtuvo: %s "
+                + "registros", exceptions.size());
+
+        return exceptions;
+    }
+
+    public void deleteScheduleExceptionDataMongo(String idException) throws HSException {
+
+        LOG.infof("@deleteScheduleExceptionDataMongo SERV > Inicia ejecucion del servicio para eliminar la excepcion "
+                + "de horario con id: %s", idException);
+
+        ScheduleExceptionMsg exceptionMsg = scheduleExceptionRepository.findScheduleExceptionById(idException)
+                .orElseThrow(() -> new HSException(Response.Status.NOT_FOUND, "La excepcion de horario con id: "
+                        + idException + " no esta registrada en base de datos"));
+
+        scheduleExceptionRepository.deleteScheduleExceptionDataMongo(idException);
+
+        refreshCalendars(exceptionMsg.getData());
+
+        LOG.infof("@deleteScheduleExceptionDataMongo SERV > Finaliza eliminacion de la excepcion de horario con id: %s",
+                idException);
+    }
+
+    private void validateScheduleException(ScheduleException exception) throws HSException {
+
+        if (exception.getEndDate().isBefore(exception.getStartDate())) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    "La fecha de fin de la excepcion no puede ser anterior a la fecha de inicio");
+        }
+
+        if (exception.getType() == ScheduleExceptionType.HORARIO_ESPECIAL) {
+
+            if (exception.getStartTime() == null || exception.getEndTime() == null
+                    || !exception.getStartTime().isBefore(exception.getEndTime())) {
+                throw new HSException(Response.Status.BAD_REQUEST,
+                        "El horario especial debe tener una hora de inicio anterior a la hora de fin");
+            }
+
+            validateLunchWindow(exception.getStartTime(), exception.getEndTime(), exception.getLunchStart(),
+                    exception.getLunchEnd());
+        }
+
+        if (exception.getIdVeterinarian() != null
+                && userRepository.findUserByDocumentNumber(exception.getIdVeterinarian()).isEmpty()) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    "No se encontró el veterinario con documento: " + exception.getIdVeterinarian());
+        }
+    }
+
+    private void validateWorkingHours(Schedule schedule) throws HSException {
+
+        if (!schedule.getStartTime().isBefore(schedule.getEndTime())) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    "La hora de inicio del horario debe ser anterior a la hora de fin");
+        }
+
+        validateLunchWindow(schedule.getStartTime(), schedule.getEndTime(), schedule.getLunchStart(),
+                schedule.getLunchEnd());
+    }
+
+    // El almuerzo es opcional, pero si se envia debe quedar completo dentro de la jornada
+    private void validateLunchWindow(LocalTime startTime, LocalTime endTime, LocalTime lunchStart, LocalTime lunchEnd)
+            throws HSException {
+
+        if ((lunchStart == null) != (lunchEnd == null)) {
+            throw new HSException(Response.Status.BAD_REQUEST,
+                    "Debe enviar tanto el inicio como el fin del almuerzo, o ninguno");
+        }
+
+        if (lunchStart == null) return;
+
+        if (!lunchStart.isBefore(lunchEnd) || lunchStart.isBefore(startTime) || lunchEnd.isAfter(endTime)) {
+            throw new HSException(Response.Status.BAD_REQUEST, "El almuerzo debe iniciar antes de terminar y estar "
+                    + "dentro del horario de " + startTime + " a " + endTime);
+        }
+    }
+
+    // Solo se recalculan los dias que cubre la excepcion, del veterinario o de todos si es de la clinica
+    private void refreshCalendars(ScheduleException exception) {
+
+        scheduleCalendarService.refresh(exception.getIdVeterinarian(), exception.getStartDate(), exception.getEndDate());
+        availabilityService.invalidateDays(exception.getIdVeterinarian(), exception.getStartDate(), exception.getEndDate());
+    }
+
+    /**
+     * Horario semanal del veterinario compilado a minutos. Se consulta en cada validacion de cita y en cada
+     * consulta de disponibilidad, por lo que solo se lee de mongo cuando el horario del veterinario cambia.
+     */
+    @CacheResult(cacheName = "schedule-week-cache")
+    public CompiledWeek getCompiledWeek(String idVeterinarian) {
+
+        LOG.infof("@getCompiledWeek SERV > Se compila el horario semanal del veterinario %s", idVeterinarian);
+
+        return CompiledWeek.compile(scheduleRepository.getListSchedulesVeterinarian(idVeterinarian).stream()
+                .map(ScheduleMsg::getData)
+                .toList());
+    }
+
+    /**
+     * Horarios compilados de varios veterinarios. Los que ya estan en schedule-week-cache se toman de ahi y los demas
+     * se consultan en mongo con una sola consulta y se agregan a la cache, de modo que las busquedas sobre todos los
+     * veterinarios no hacen una consulta por veterinario.
+     */
+    public Map<String, CompiledWeek> getCompiledWeeks(Collection<String> idVeterinarians) {
+
+        CaffeineCache cache = scheduleWeekCache.as(CaffeineCache.class);
+        Map<String, CompiledWeek> weeks = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+
+        for (String idVeterinarian : idVeterinarians) {
+
+            CompletableFuture<CompiledWeek> cached = cache.getIfPresent(idVeterinarian);
+
+            if (cached != null) {
+                weeks.put(idVeterinarian, cached.join());
+            } else {
+                missing.add(idVeterinarian);
+            }
+        }
+
+        if (missing.isEmpty()) return weeks;
+
+        LOG.infof("@getCompiledWeeks SERV > Se compilan los horarios semanales de %s veterinarios", missing.size());
+
+        Map<String, List<Schedule>> schedules = scheduleRepository.findSchedulesByVeterinarians(missing).stream()
+                .map(ScheduleMsg::getData)
+                .collect(Collectors.groupingBy(Schedule::getIdVeterinarian));
+
+        for (String idVeterinarian : missing) {
+
+            CompiledWeek week = CompiledWeek.compile(schedules.getOrDefault(idVeterinarian, List.of()));
+
+            cache.put(idVeterinarian, CompletableFuture.completedFuture(week));
+            weeks.put(idVeterinarian, week);
+        }
+        return weeks;
+    }
+
+    private void invalidateVeterinarian(String idVeterinarian) {
+
+        scheduleWeekCache.invalidate(idVeterinarian).await().indefinitely();
+        scheduleCalendarService.invalidate(idVeterinarian);
+        availabilityService.invalidateVeterinarian(idVeterinarian);
+    }
+
     private ScheduleMsg getScheduleMsg(String idSchedule) throws HSException {
 
         return scheduleRepository.findScheduleById(idSchedule).orElseThrow(() -> {
@@ -0,0 +1,55 @@
+package org.huellas.salud.services;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.huellas.salud.repositories.SequenceRepository;
+import org.jboss.logging.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Entrega valores consecutivos de una secuencia sin consultar mongo por cada uno: reserva bloques del contador con
+ * una sola operacion atomica y los reparte desde memoria. Como el incremento es atomico, varias instancias nunca
+ * reciben el mismo valor; los valores de un bloque que no alcanzan a usarse (por ejemplo al reiniciar) quedan como
+ * huecos en la numeracion.
+ */
+@ApplicationScoped
+public class SequenceService {
+
+    private static final Logger LOG = Logger.getLogger(SequenceService.class);
+
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    @Inject
+    SequenceRepository sequenceRepository;
+
+    @ConfigProperty(name = "PARAMETER.HUELLAS_SALUD.SEQUENCE_BLOCK_SIZE", defaultValue = "50")
+    int blockSize;
+
+    public long nextValue(String name) {
+
+        Block block = blocks.computeIfAbsent(name, ignored -> new Block());
+
+        synchronized (block) {
+
+            if (block.next > block.last) {
+
+                long last = sequenceRepository.reserveBlock(name, blockSize);
+                block.next = last - blockSize + 1;
+                block.last = last;
+
+                LOG.infof("@nextValue SERV > Se reservaron los valores %s a %s de la secuencia %s", block.next, last, name);
+            }
+            return block.next++;
+        }
+    }
+
+    private static final class Block {
+
+        // Un bloque vacio (next > last) obliga a reservar en el primer uso
+        private long next = 1;
+        private long last = 0;
+    }
+}
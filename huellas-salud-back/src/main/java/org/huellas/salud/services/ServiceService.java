@@ -41,6 +41,12 @@ public class ServiceService {
     @Inject
     MediaFileRepository mediaFileRepository;
 
+    @Inject
+    MediaFileService mediaFileService;
+
+    @Inject
+    PricingService pricingService;
+
     @CacheInvalidateAll(cacheName = "services-list-cache")
     public ServiceMsg saveServiceDataMongo(ServiceMsg serviceMsg) throws HSException, UnknownHostException {
 
@@ -66,6 +72,7 @@ public class ServiceService {
         serviceData.setIdService(UUID.randomUUID().toString());
 
         serviceRepository.persist(serviceMsg);
+        pricingService.refresh(serviceData);
 
         LOG.infof("@saveServiceDataMongo SERV > El servicio se registro exitosamente en la base de datos. Finaliza " +
                 "ejecucion de servicio para almacenar el registro de un servicio con la data: %s", serviceMsg);
@@ -81,10 +88,8 @@ public class ServiceService {
 
         List<ServiceMsg> services = serviceRepository.getRegisteredServicesMongo();
 
-        services.forEach(serviceMsg -> {
-            mediaFileRepository.getMediaByEntityTypeAndId("SERVICE", serviceMsg.getData().getIdService())
-                    .ifPresent(media -> serviceMsg.getData().setMediaFile(media.getData()));
-        });
+        mediaFileService.toThin("SERVICE", services, serviceMsg -> serviceMsg.getData().getIdService(),
+                (serviceMsg, media) -> serviceMsg.getData().setMediaFile(media));
 
         LOG.infof("@getListServiceMsg SERV > Finaliza consulta en mongo. Finaliza ejecucion del servicio para " +
                 "obtener el listado de los servicios desde mongo. Se obtuvo: %s registros", services.size());
@@ -108,6 +113,7 @@ public class ServiceService {
                 "Inicia actualizacion del registro en mongo con la data: %s", serviceMsg.getData().getIdService(), serviceMsg);
         
         serviceRepository.update(serviceMsgMongo);
+        pricingService.refresh(serviceMsgMongo.getData());
 
         LOG.infof("updateServiceDataMongo SERV > Finaliza actualizacion del registro del servicio con id: %s. " +
                 "Finaliza ejecucion del servicio de actualizacion", serviceMsg.getData().getIdService());
@@ -129,6 +135,8 @@ public class ServiceService {
                         "registrado en la base de datos.");
         }
 
+        pricingService.remove(idService);
+
         LOG.infof("@deleteServiceDataMongo SERV > El registro del servicio con id: %s se elimino correctamente de " +
                 "mongo. Finaliza ejecucion del servicio para eliminar usuario y se elimino %s registro de la base " +
                 "de datos", idService, deleted);
@@ -146,6 +154,7 @@ public class ServiceService {
         serviceMongo.setLongDescription(serviceRequest.getLongDescription());
         serviceMongo.setBasePrice(serviceRequest.getBasePrice());
         serviceMongo.setPriceByWeight(serviceRequest.isPriceByWeight());
+        serviceMongo.setDurationMinutes(serviceRequest.getDurationMinutes());
         serviceMongo.setState(serviceRequest.getState());
         serviceMongo.setWeightPriceRules(serviceRequest.getWeightPriceRules());
         
@@ -51,6 +51,9 @@ public class UserService {
     @Inject
     MediaFileRepository mediaFileRepository;
 
+    @Inject
+    MediaFileService mediaFileService;
+
     @Inject
     PasswordRecoveryRepository passwordRecoveryRepository;
 
@@ -325,9 +328,14 @@ public class UserService {
         LOG.info("@getUserData SERV > Inicia servicio que consulta y transforma la informacion de cada usuario en " +
                 "un DTO para asi retornar solo los datos necesarios");
 
-        return userRepository.getRegisteredUsersMongo().stream()
-                .peek(userMsg -> userMsg.setData(getUserDto(userMsg, true)))
-                .toList();
+        List<UserMsg> users = userRepository.getRegisteredUsersMongo();
+
+        users.forEach(userMsg -> userMsg.setData(getUserDto(userMsg, false)));
+
+        mediaFileService.toThin("USER", users, userMsg -> userMsg.getData().getDocumentNumber(),
+                (userMsg, media) -> userMsg.getData().setMediaFile(media));
+
+        return users;
     }
 
     private void validateIfUserIsRegistered(String documentNumber, String email) throws HSException {
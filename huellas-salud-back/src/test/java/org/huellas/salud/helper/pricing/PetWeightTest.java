@@ -0,0 +1,38 @@
+package org.huellas.salud.helper.pricing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.OptionalDouble;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PetWeightTest {
+
+    @Test
+    void kilogramsAcceptNumbersWithAndWithoutUnit() {
+
+        assertEquals(OptionalDouble.of(12), PetWeight.toKilograms("12"));
+        assertEquals(OptionalDouble.of(12.5), PetWeight.toKilograms(" 12.5 kg "));
+        assertEquals(OptionalDouble.of(12.5), PetWeight.toKilograms("12,5 Kilogramos"));
+        assertEquals(OptionalDouble.of(3), PetWeight.toKilograms("3kg."));
+    }
+
+    @Test
+    void gramsAreConvertedToKilograms() {
+
+        assertEquals(OptionalDouble.of(0.8), PetWeight.toKilograms("800 g"));
+        assertEquals(OptionalDouble.of(1.25), PetWeight.toKilograms("1250 gramos"));
+    }
+
+    @Test
+    void missingOrUnreadableWeightsAreEmpty() {
+
+        assertTrue(PetWeight.toKilograms(null).isEmpty());
+        assertTrue(PetWeight.toKilograms("").isEmpty());
+        assertTrue(PetWeight.toKilograms("   ").isEmpty());
+        assertTrue(PetWeight.toKilograms("doce").isEmpty());
+        assertTrue(PetWeight.toKilograms("12 lb").isEmpty());
+        assertTrue(PetWeight.toKilograms("-3").isEmpty());
+    }
+}
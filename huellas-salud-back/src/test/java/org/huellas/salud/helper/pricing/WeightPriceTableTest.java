@@ -0,0 +1,86 @@
+package org.huellas.salud.helper.pricing;
+
+import org.huellas.salud.domain.service.Service;
+import org.huellas.salud.domain.service.WeightPriceRule;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WeightPriceTableTest {
+
+    @Test
+    void rangesIncludeBothBounds() {
+
+        WeightPriceTable table = table(rule(0, 10, 30000), rule(10.01, 25, 45000), rule(25.01, 50, 60000));
+
+        assertEquals(30000, table.price(0));
+        assertEquals(30000, table.price(10));
+        assertEquals(45000, table.price(10.01));
+        assertEquals(45000, table.price(25));
+        assertEquals(60000, table.price(50));
+    }
+
+    @Test
+    void weightOutsideEveryRuleChargesTheMostExpensiveRule() {
+
+        WeightPriceTable table = table(rule(5, 10, 30000), rule(20, 30, 60000), rule(30.01, 40, 45000));
+
+        // Antes de la primera regla, en el hueco entre reglas y despues de la ultima
+        assertEquals(60000, table.price(4.99));
+        assertEquals(60000, table.price(15));
+        assertEquals(60000, table.price(40.01));
+    }
+
+    @Test
+    void overlappingRulesKeepTheFirstRuleOfTheService() {
+
+        // La regla amplia va primero pero empieza despues de la angosta al ordenar por peso minimo
+        WeightPriceTable table = table(rule(5, 50, 40000), rule(0, 10, 25000), rule(8, 12, 35000));
+
+        assertEquals(25000, table.price(3));
+        assertEquals(40000, table.price(9));
+        assertEquals(40000, table.price(11));
+        assertEquals(40000, table.price(50));
+    }
+
+    @Test
+    void sharedBoundKeepsTheFirstRuleOfTheService() {
+
+        WeightPriceTable table = table(rule(10, 20, 50000), rule(0, 10, 30000));
+
+        assertEquals(50000, table.price(10));
+        assertEquals(30000, table.price(9.99));
+    }
+
+    @Test
+    void repeatedMinimumWeightsResolveTheCoveringRule() {
+
+        WeightPriceTable table = table(rule(0, 5, 20000), rule(0, 15, 30000), rule(0, 10, 25000));
+
+        assertEquals(20000, table.price(5));
+        assertEquals(30000, table.price(5.5));
+        assertEquals(30000, table.price(12));
+    }
+
+    @Test
+    void servicesWithoutWeightRulesChargeTheBasePrice() {
+
+        Service fixed = Service.builder().basePrice(35000).priceByWeight(false)
+                .weightPriceRules(List.of(rule(0, 10, 10000))).build();
+        Service withoutRules = Service.builder().basePrice(42000).priceByWeight(true).build();
+
+        assertEquals(35000, WeightPriceTable.compile(fixed).price(5));
+        assertEquals(42000, WeightPriceTable.compile(withoutRules).price(5));
+    }
+
+    private static WeightPriceTable table(WeightPriceRule... rules) {
+        return WeightPriceTable.compile(Service.builder().basePrice(1000).priceByWeight(true)
+                .weightPriceRules(List.of(rules)).build());
+    }
+
+    private static WeightPriceRule rule(double minWeight, double maxWeight, double price) {
+        return WeightPriceRule.builder().minWeight(minWeight).maxWeight(maxWeight).price(price).build();
+    }
+}
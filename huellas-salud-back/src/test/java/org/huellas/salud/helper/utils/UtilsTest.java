@@ -0,0 +1,38 @@
+package org.huellas.salud.helper.utils;
+
+import org.huellas.salud.helper.exceptions.HSException;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UtilsTest {
+
+    private static final LocalDate FROM = LocalDate.of(2024, 1, 1);
+
+    // La validacion del rango no usa las dependencias inyectadas
+    private final Utils utils = new Utils();
+
+    @Test
+    void rangeOfExactlyTheMaximumDaysIsAccepted() {
+        assertDoesNotThrow(() -> utils.validateDateRange(FROM, FROM.plusDays(Utils.MAX_DATE_RANGE_DAYS - 1)));
+    }
+
+    @Test
+    void rangeOneDayOverTheMaximumIsRejected() {
+        assertThrows(HSException.class,
+                () -> utils.validateDateRange(FROM, FROM.plusDays(Utils.MAX_DATE_RANGE_DAYS)));
+    }
+
+    @Test
+    void singleDayRangeIsAccepted() {
+        assertDoesNotThrow(() -> utils.validateDateRange(FROM, FROM));
+    }
+
+    @Test
+    void endBeforeStartIsRejected() {
+        assertThrows(HSException.class, () -> utils.validateDateRange(FROM, FROM.minusDays(1)));
+    }
+}
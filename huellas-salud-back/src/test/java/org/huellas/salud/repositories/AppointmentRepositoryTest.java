@@ -0,0 +1,102 @@
+package org.huellas.salud.repositories;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.huellas.salud.domain.appointment.Appointment;
+import org.huellas.salud.domain.appointment.AppointmentMsg;
+import org.huellas.salud.domain.appointment.AppointmentStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+class AppointmentRepositoryTest {
+
+    @Inject
+    AppointmentRepository appointmentRepository;
+
+    private final String idVeterinarian = "test-" + UUID.randomUUID();
+
+    private final LocalDateTime start = LocalDateTime.now().plusDays(30).withHour(10).withMinute(0)
+            .withSecond(0).withNano(0);
+
+    @AfterEach
+    void cleanAppointments() {
+        appointmentRepository.delete("data.idVeterinario = ?1", idVeterinarian);
+    }
+
+    @Test
+    void adjacentAppointmentsDoNotOverlap() {
+
+        persistAppointment("cita-1", start, start.plusMinutes(40), AppointmentStatus.PENDIENTE);
+
+        assertFalse(appointmentRepository.existsOverlappingAppointment(idVeterinarian, start.plusMinutes(40),
+                start.plusMinutes(60), null));
+        assertFalse(appointmentRepository.existsOverlappingAppointment(idVeterinarian, start.minusMinutes(30),
+                start, null));
+        assertTrue(appointmentRepository.existsOverlappingAppointment(idVeterinarian, start.plusMinutes(39),
+                start.plusMinutes(60), null));
+    }
+
+    @Test
+    void appointmentCrossingMidnightOverlapsTheNextDay() {
+
+        LocalDateTime lateStart = start.withHour(23).withMinute(30);
+
+        persistAppointment("cita-1", lateStart, lateStart.plusMinutes(60), AppointmentStatus.PENDIENTE);
+
+        assertTrue(appointmentRepository.existsOverlappingAppointment(idVeterinarian, lateStart.plusMinutes(40),
+                lateStart.plusMinutes(70), null));
+        assertFalse(appointmentRepository.existsOverlappingAppointment(idVeterinarian, lateStart.plusMinutes(60),
+                lateStart.plusMinutes(90), null));
+    }
+
+    @Test
+    void cancelledAndExcludedAppointmentsAreIgnored() {
+
+        persistAppointment("cita-1", start, start.plusMinutes(30), AppointmentStatus.CANCELADA);
+        persistAppointment("cita-2", start.plusMinutes(60), start.plusMinutes(90), AppointmentStatus.PENDIENTE);
+
+        assertFalse(appointmentRepository.existsOverlappingAppointment(idVeterinarian, start, start.plusMinutes(30),
+                null));
+        assertFalse(appointmentRepository.existsOverlappingAppointment(idVeterinarian, start.plusMinutes(60),
+                start.plusMinutes(90), "cita-2"));
+        assertTrue(appointmentRepository.existsOverlappingAppointment(idVeterinarian, start.plusMinutes(60),
+                start.plusMinutes(90), "cita-3"));
+    }
+
+    @Test
+    void appointmentWithoutEndUsesTheDefaultDuration() {
+
+        persistAppointment("cita-1", start, null, AppointmentStatus.PENDIENTE);
+
+        assertTrue(appointmentRepository.existsOverlappingAppointment(idVeterinarian,
+                start.plusMinutes(Appointment.DEFAULT_DURATION_MINUTES - 1), start.plusMinutes(60), null));
+        assertFalse(appointmentRepository.existsOverlappingAppointment(idVeterinarian,
+                start.plusMinutes(Appointment.DEFAULT_DURATION_MINUTES), start.plusMinutes(60), null));
+    }
+
+    private void persistAppointment(String idAppointment, LocalDateTime dateTime, LocalDateTime endDateTime,
+                                    AppointmentStatus status) {
+
+        AppointmentMsg appointmentMsg = new AppointmentMsg();
+        appointmentMsg.setData(Appointment.builder()
+                .idAppointment(idAppointment)
+                .idOwner("test-propietario")
+                .idPet("test-mascota")
+                .services(List.of("Consulta general"))
+                .dateTime(dateTime)
+                .endDateTime(endDateTime)
+                .status(status)
+                .idVeterinarian(idVeterinarian)
+                .build());
+
+        appointmentRepository.persist(appointmentMsg);
+    }
+}
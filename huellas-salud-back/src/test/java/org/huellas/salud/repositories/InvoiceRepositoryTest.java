@@ -0,0 +1,69 @@
+package org.huellas.salud.repositories;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.huellas.salud.domain.Meta;
+import org.huellas.salud.domain.invoice.Invoice;
+import org.huellas.salud.domain.invoice.InvoiceMsg;
+import org.huellas.salud.domain.invoice.InvoiceStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+class InvoiceRepositoryTest {
+
+    @Inject
+    InvoiceRepository invoiceRepository;
+
+    private final String idInvoice = "test-" + UUID.randomUUID();
+
+    @AfterEach
+    void cleanInvoices() {
+        invoiceRepository.delete("data.idFactura = ?1", idInvoice);
+    }
+
+    @Test
+    void replaceAppliesOnlyOverTheVersionThatWasRead() {
+
+        LocalDateTime readVersion = LocalDateTime.now().minusMinutes(5).truncatedTo(ChronoUnit.MILLIS);
+        InvoiceMsg invoiceMsg = persistInvoice(readVersion);
+
+        invoiceMsg.getData().setTotal(20000D);
+        invoiceMsg.getMeta().setLastUpdate(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS));
+
+        assertTrue(invoiceRepository.replaceIfUnchanged(null, invoiceMsg, readVersion));
+
+        invoiceMsg.getData().setTotal(30000D);
+
+        assertFalse(invoiceRepository.replaceIfUnchanged(null, invoiceMsg, readVersion));
+        assertEquals(20000D, invoiceRepository.findById(invoiceMsg.getId()).getData().getTotal());
+    }
+
+    private InvoiceMsg persistInvoice(LocalDateTime lastUpdate) {
+
+        InvoiceMsg invoiceMsg = new InvoiceMsg();
+        invoiceMsg.setData(Invoice.builder()
+                .idInvoice(idInvoice)
+                .idClient("test-cliente")
+                .date(lastUpdate)
+                .total(10000D)
+                .typeInvoice("PRODUCTO")
+                .status(InvoiceStatus.PAGADA)
+                .itemInvoice(List.of())
+                .build());
+        invoiceMsg.setMeta(Meta.builder().creationDate(lastUpdate).lastUpdate(lastUpdate).build());
+
+        invoiceRepository.persist(invoiceMsg);
+
+        return invoiceMsg;
+    }
+}
@@ -0,0 +1,182 @@
+package org.huellas.salud.repositories;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.Response;
+import org.huellas.salud.domain.Meta;
+import org.huellas.salud.domain.product.Product;
+import org.huellas.salud.domain.product.ProductMsg;
+import org.huellas.salud.helper.exceptions.HSException;
+import org.huellas.salud.helper.utils.MongoTransactions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Los casos transaccionales requieren un replica set (ver README); en un mongo standalone se omiten.
+ */
+@QuarkusTest
+class ProductRepositoryTest {
+
+    @Inject
+    ProductRepository productRepository;
+
+    @Inject
+    MongoTransactions mongoTransactions;
+
+    private final String prefix = "test-" + UUID.randomUUID();
+
+    @AfterEach
+    void cleanProducts() {
+        productRepository.delete("data.idProducto like ?1", "^" + prefix);
+    }
+
+    @Test
+    void partialDecrementIsRevertedWhenAProductLacksStock() {
+
+        String withStock = createProduct("a", 5);
+        String withoutStock = createProduct("b", 1);
+
+        boolean decremented = productRepository.decrementStock(Map.of(withStock, 3, withoutStock, 2), prefix + "-op");
+
+        assertFalse(decremented);
+        assertEquals(5, stockOf(withStock));
+        assertEquals(1, stockOf(withoutStock));
+    }
+
+    @Test
+    void productWithoutUnitsIsDeactivated() {
+
+        String product = createProduct("a", 2);
+
+        assertTrue(productRepository.decrementStock(Map.of(product, 2), prefix + "-op"));
+
+        ProductMsg stored = productRepository.findProductById(product).orElseThrow();
+        assertEquals(0, stored.getData().getQuantityAvailable());
+        assertFalse(stored.getData().getActive());
+    }
+
+    @Test
+    void revertReactivatesOnlyProductsTheOperationDeactivated() {
+
+        String soldOut = createProduct("a", 2);
+        String inactive = createProduct("b", 5, false);
+
+        assertTrue(productRepository.decrementStock(Map.of(soldOut, 2, inactive, 1), prefix + "-op"));
+
+        productRepository.revertStock(Map.of(soldOut, 2, inactive, 1), prefix + "-op");
+
+        ProductMsg restored = productRepository.findProductById(soldOut).orElseThrow();
+        assertEquals(2, restored.getData().getQuantityAvailable());
+        assertTrue(restored.getData().getActive());
+
+        ProductMsg untouched = productRepository.findProductById(inactive).orElseThrow();
+        assertEquals(5, untouched.getData().getQuantityAvailable());
+        assertFalse(untouched.getData().getActive());
+    }
+
+    @Test
+    void returnedUnitsAreAddedEvenIfAReturnedProductNoLongerExists() {
+
+        String sold = createProduct("a", 5);
+        String returned = createProduct("b", 0);
+
+        assertTrue(productRepository.decrementStock(Map.of(sold, 2, returned, -3, prefix + "-eliminado", -1),
+                prefix + "-op"));
+
+        assertEquals(3, stockOf(sold));
+        assertEquals(3, stockOf(returned));
+    }
+
+    @Test
+    void revertUndoesDecrementsAndReturnsOfTheOperation() {
+
+        String sold = createProduct("a", 5);
+        String returned = createProduct("b", 1);
+
+        assertTrue(productRepository.decrementStock(Map.of(sold, 2, returned, -3), prefix + "-op"));
+
+        productRepository.revertStock(Map.of(sold, 2, returned, -3), prefix + "-op");
+
+        assertEquals(5, stockOf(sold));
+        assertEquals(1, stockOf(returned));
+    }
+
+    @Test
+    void abortedTransactionLeavesStockUntouched() {
+
+        assumeTrue(mongoTransactions.isSupported(), "Mongo no soporta transacciones");
+
+        String product = createProduct("a", 5);
+
+        assertThrows(HSException.class, () -> mongoTransactions.execute(session -> {
+            productRepository.decrementStock(session, Map.of(product, 5), prefix + "-op");
+            throw new HSException(Response.Status.INTERNAL_SERVER_ERROR, "Falla al guardar la factura");
+        }));
+
+        assertEquals(5, stockOf(product));
+    }
+
+    @Test
+    void importUpdateKeepsStockAndColumnsMissingInTheFile() {
+
+        String idProduct = createProduct("a", 7);
+        LocalDate expirationDate = LocalDate.now().plusMonths(6);
+
+        ProductMsg stored = productRepository.findProductById(idProduct).orElseThrow();
+        stored.getData().setBarcode(prefix + "-codigo");
+        stored.getData().setExpirationDate(expirationDate);
+        productRepository.update(stored);
+
+        Product row = new Product();
+        row.setBarcode(prefix + "-codigo");
+        row.setName("Producto Importado");
+        row.setPrice(15000D);
+        row.setQuantityAvailable(99);
+
+        ProductMsg update = new ProductMsg(null, row, Meta.builder().lastUpdate(LocalDateTime.now()).build());
+
+        assertEquals(1, productRepository.importProducts(List.of(), List.of(update)).getMatchedCount());
+
+        Product imported = productRepository.findProductById(idProduct).orElseThrow().getData();
+        assertEquals("Producto Importado", imported.getName());
+        assertEquals(15000D, imported.getPrice());
+        assertEquals(7, imported.getQuantityAvailable());
+        assertTrue(imported.getActive());
+        assertEquals(expirationDate, imported.getExpirationDate());
+    }
+
+    private String createProduct(String suffix, int quantity) {
+        return createProduct(suffix, quantity, true);
+    }
+
+    private String createProduct(String suffix, int quantity, boolean active) {
+
+        Product product = new Product();
+        product.setIdProduct(prefix + "-" + suffix);
+        product.setName("Producto " + suffix);
+        product.setQuantityAvailable(quantity);
+        product.setActive(active);
+
+        ProductMsg productMsg = new ProductMsg();
+        productMsg.setData(product);
+        productRepository.persist(productMsg);
+
+        return product.getIdProduct();
+    }
+
+    private int stockOf(String idProduct) {
+        return productRepository.findProductById(idProduct).orElseThrow().getData().getQuantityAvailable();
+    }
+}
@@ -0,0 +1,117 @@
+package org.huellas.salud.repositories;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.huellas.salud.domain.appointment.SlotReservation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+class SlotReservationRepositoryTest {
+
+    private static final int CLIENTS = 64;
+
+    @Inject
+    SlotReservationRepository slotReservationRepository;
+
+    private final String idVeterinarian = "test-" + UUID.randomUUID();
+
+    private final LocalDateTime start = LocalDateTime.now().plusDays(30).withHour(10).withMinute(0)
+            .withSecond(0).withNano(0);
+
+    @AfterEach
+    void cleanReservations() {
+        slotReservationRepository.delete("idVeterinario like ?1", "^" + idVeterinarian);
+    }
+
+    @Test
+    void concurrentBookingsOfTheSameSlotProduceASingleReservation() throws Exception {
+
+        // Todas las citas se cruzan entre si: inician a las 10:00 o a las 10:15 y duran 30 minutos
+        List<Boolean> results = runConcurrently(client -> slotReservationRepository.reserveSlots(idVeterinarian,
+                "cita-" + client, start.plusMinutes(client % 2 == 0 ? 0 : 15), start.plusMinutes(client % 2 == 0 ? 30 : 45)));
+
+        assertEquals(1, results.stream().filter(Boolean::booleanValue).count());
+
+        List<SlotReservation> stored = slotReservationRepository.list("idVeterinario = ?1", idVeterinarian);
+
+        assertEquals(1, stored.size());
+        assertEquals(1, stored.get(0).getReservations().size());
+    }
+
+    @Test
+    void adjacentAppointmentsDoNotConflict() {
+
+        assertTrue(slotReservationRepository.reserveSlots(idVeterinarian, "cita-1", start, start.plusMinutes(20)));
+        assertTrue(slotReservationRepository.reserveSlots(idVeterinarian, "cita-2", start.plusMinutes(20),
+                start.plusMinutes(40)));
+        assertFalse(slotReservationRepository.reserveSlots(idVeterinarian, "cita-3", start.plusMinutes(19),
+                start.plusMinutes(21)));
+    }
+
+    @Test
+    void movingAnAppointmentReleasesItsPreviousInterval() {
+
+        assertTrue(slotReservationRepository.reserveSlots(idVeterinarian, "cita-1", start, start.plusMinutes(30)));
+        assertTrue(slotReservationRepository.reserveSlots(idVeterinarian, "cita-1", start.plusDays(1),
+                start.plusDays(1).plusMinutes(30)));
+
+        assertTrue(slotReservationRepository.reserveSlots(idVeterinarian, "cita-2", start, start.plusMinutes(30)));
+    }
+
+    @Test
+    void concurrentBookingsOfDifferentVeterinariansAreNotSerialized() throws Exception {
+
+        List<Boolean> results = runConcurrently(client -> slotReservationRepository.reserveSlots(
+                idVeterinarian + "-" + client, "cita-" + client, start, start.plusMinutes(30)));
+
+        assertEquals(CLIENTS, results.stream().filter(Boolean::booleanValue).count());
+    }
+
+    private List<Boolean> runConcurrently(ClientCall call) throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<Future<Boolean>> futures = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < CLIENTS; i++) {
+                int client = i;
+                Callable<Boolean> task = () -> {
+                    startSignal.await();
+                    return call.reserve(client);
+                };
+                futures.add(executor.submit(task));
+            }
+
+            startSignal.countDown();
+
+            List<Boolean> results = new ArrayList<>();
+            for (Future<Boolean> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ClientCall {
+        boolean reserve(int client);
+    }
+}
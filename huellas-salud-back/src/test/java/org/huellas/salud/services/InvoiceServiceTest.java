@@ -0,0 +1,121 @@
+package org.huellas.salud.services;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.huellas.salud.domain.Meta;
+import org.huellas.salud.domain.invoice.Invoice;
+import org.huellas.salud.domain.invoice.InvoiceMsg;
+import org.huellas.salud.domain.invoice.InvoiceStatus;
+import org.huellas.salud.domain.invoice.ItemInvoice;
+import org.huellas.salud.domain.invoice.SalesDimension;
+import org.huellas.salud.domain.invoice.SalesRollup;
+import org.huellas.salud.helper.exceptions.HSException;
+import org.huellas.salud.repositories.InvoiceRepository;
+import org.huellas.salud.repositories.SalesRollupRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@QuarkusTest
+class InvoiceServiceTest {
+
+    // Un dia sin facturas reales, para que los acumulados del dia sean solo los de la prueba
+    private static final LocalDate DAY = LocalDate.of(1990, 1, 1);
+
+    @Inject
+    InvoiceService invoiceService;
+
+    @Inject
+    SalesRollupService salesRollupService;
+
+    @Inject
+    InvoiceRepository invoiceRepository;
+
+    @Inject
+    SalesRollupRepository salesRollupRepository;
+
+    private final String prefix = "test-" + UUID.randomUUID();
+
+    @AfterEach
+    void cleanInvoices() {
+        invoiceRepository.delete("data.idFactura = ?1", prefix);
+        salesRollupRepository.delete("fecha = ?1", DAY);
+    }
+
+    @Test
+    void deletedInvoiceIsSubtractedFromTheRollupsOnlyOnce() throws HSException {
+
+        Invoice invoice = persistInvoice(item(prefix + "-producto", null, 2, 20000D));
+        salesRollupService.applyInvoiceChange(null, null, invoice);
+
+        invoiceService.deleteInvoiceDataMongo(prefix);
+
+        assertThrows(HSException.class, () -> invoiceService.deleteInvoiceDataMongo(prefix));
+
+        SalesRollup client = rollup(SalesDimension.CLIENTE, prefix + "-cliente");
+        assertEquals(0, client.getInvoices());
+        assertEquals(0, client.getUnits());
+        assertEquals(0, client.getRevenue(), 0.001);
+    }
+
+    @Test
+    void itemWithProductAndServiceCountsInBothDimensions() throws HSException {
+
+        Invoice invoice = persistInvoice(item(prefix + "-producto", prefix + "-servicio", 1, 35000D));
+        salesRollupService.applyInvoiceChange(null, null, invoice);
+
+        SalesRollup product = rollup(SalesDimension.PRODUCTO, prefix + "-producto");
+        SalesRollup service = rollup(SalesDimension.SERVICIO, prefix + "-servicio");
+
+        assertEquals(1, product.getInvoices());
+        assertEquals(1, product.getUnits());
+        assertEquals(1, service.getInvoices());
+        assertEquals(35000D, service.getRevenue(), 0.001);
+    }
+
+    private SalesRollup rollup(SalesDimension dimension, String key) throws HSException {
+
+        List<SalesRollup> rollups = salesRollupService.getDailyRollups(dimension, DAY, DAY, key);
+
+        assertEquals(1, rollups.size());
+        return rollups.get(0);
+    }
+
+    private ItemInvoice item(String idProduct, String idService, int quantity, double subTotal) {
+
+        ItemInvoice item = new ItemInvoice();
+        item.setIdProduct(idProduct);
+        item.setIdService(idService);
+        item.setQuantity(quantity);
+        item.setSubTotal(subTotal);
+        return item;
+    }
+
+    private Invoice persistInvoice(ItemInvoice item) {
+
+        LocalDateTime date = DAY.atTime(10, 0);
+
+        InvoiceMsg invoiceMsg = new InvoiceMsg();
+        invoiceMsg.setData(Invoice.builder()
+                .idInvoice(prefix)
+                .idClient(prefix + "-cliente")
+                .date(date)
+                .total(item.getSubTotal())
+                .typeInvoice("PRODUCTO")
+                .status(InvoiceStatus.PAGADA)
+                .itemInvoice(List.of(item))
+                .build());
+        invoiceMsg.setMeta(Meta.builder().creationDate(date).lastUpdate(date).build());
+
+        invoiceRepository.persist(invoiceMsg);
+
+        return invoiceMsg.getData();
+    }
+}
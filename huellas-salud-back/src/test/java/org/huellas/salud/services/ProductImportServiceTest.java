@@ -0,0 +1,111 @@
+package org.huellas.salud.services;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.huellas.salud.domain.Meta;
+import org.huellas.salud.domain.product.Product;
+import org.huellas.salud.domain.product.ProductImportResult;
+import org.huellas.salud.domain.product.ProductMsg;
+import org.huellas.salud.helper.exceptions.HSException;
+import org.huellas.salud.repositories.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+class ProductImportServiceTest {
+
+    @Inject
+    ProductImportService productImportService;
+
+    @Inject
+    ProductRepository productRepository;
+
+    private final String prefix = "test-" + UUID.randomUUID();
+
+    // El codigo de barras admite maximo 20 caracteres, por lo que no puede llevar el prefijo completo
+    private final String barcode = "T" + UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+
+    @AfterEach
+    void cleanProducts() {
+        productRepository.delete("data.idProducto like ?1", "^" + prefix);
+        productRepository.delete("data.codigoBarras like ?1", "^" + barcode);
+    }
+
+    @Test
+    void partialRowUpdatesOnlyItsColumns() throws Exception {
+
+        String idProduct = createProduct(barcode);
+
+        ProductImportResult result = importCsv("barcode,price\n" + barcode + ",18000\n", true);
+
+        assertEquals(1, result.getTotalRows());
+        assertEquals(1, result.getUpdated());
+        assertEquals(0, result.getRejected());
+
+        Product stored = productRepository.findProductById(idProduct).orElseThrow().getData();
+        assertEquals(18000D, stored.getPrice());
+        assertEquals("Producto Guardado", stored.getName());
+        assertEquals("Alimento guardado para las pruebas de carga", stored.getDescription());
+        assertEquals(7, stored.getQuantityAvailable());
+    }
+
+    @Test
+    void partialRowWithInvalidValueIsRejected() throws Exception {
+
+        createProduct(barcode);
+
+        ProductImportResult result = importCsv("barcode,price,name\n" + barcode + ",-5,\n", true);
+
+        assertEquals(0, result.getUpdated());
+        assertEquals(1, result.getRejected());
+        assertEquals("El valor del campo precio debe ser mayor a 0", result.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    void partialRowForANewBarcodeIsRejected() throws Exception {
+
+        ProductImportResult result = importCsv("barcode,price\n" + barcode + "N,18000\n", true);
+
+        assertEquals(0, result.getInserted());
+        assertEquals(1, result.getRejected());
+        assertTrue(result.getErrors().get(0).getMessage().startsWith("Para registrar un producto nuevo"));
+    }
+
+    @Test
+    void fileWithoutInsertColumnsIsRejectedWhenItCannotUpdate() {
+        assertThrows(HSException.class, () -> importCsv("barcode,price\n" + barcode + ",18000\n", false));
+    }
+
+    private ProductImportResult importCsv(String csv, boolean updateExisting) throws HSException, IOException {
+        return productImportService.importProducts(new StringReader(csv), updateExisting,
+                Meta.builder().creationDate(LocalDateTime.now()).build(),
+                Meta.builder().lastUpdate(LocalDateTime.now()).build());
+    }
+
+    private String createProduct(String productBarcode) {
+
+        Product product = new Product();
+        product.setIdProduct(prefix + "-producto");
+        product.setName("Producto Guardado");
+        product.setDescription("Alimento guardado para las pruebas de carga");
+        product.setPrice(12000D);
+        product.setQuantityAvailable(7);
+        product.setBarcode(productBarcode);
+        product.setActive(true);
+
+        ProductMsg productMsg = new ProductMsg();
+        productMsg.setData(product);
+        productRepository.persist(productMsg);
+
+        return product.getIdProduct();
+    }
+}
@@ -1,6 +1,6 @@
 import axios from "axios";
 
-const PATH_BASE = import.meta.env.VITE_API_BASE_URL || "http://localhost:8080/internal";
+export const PATH_BASE = import.meta.env.VITE_API_BASE_URL || "http://localhost:8080/internal";
 
 const axiosInstance = axios.create({
     baseURL: PATH_BASE,
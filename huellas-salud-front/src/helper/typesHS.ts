@@ -214,7 +214,9 @@ export interface Meta {
 export interface MediaFile {
     fileName: string;
     contentType: string;
-    attachment: string;
+    attachment?: string;
+    url?: string;
+    hash?: string;
 }
 
 export interface CategoryCard {
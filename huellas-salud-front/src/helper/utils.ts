@@ -1,5 +1,7 @@
 import axios from "axios";
 import { toast } from "react-toastify";
+import { PATH_BASE } from "../context/axiosInstance";
+import { MediaFile } from "./typesHS";
 
 export const handleError = (error: unknown, message: string) => {
     let errorMessage = message;
@@ -19,4 +21,11 @@ export const handleError = (error: unknown, message: string) => {
     } else if (error instanceof Error) errorMessage = error.message;
 
     toast.error(`${errorMessage} ❌`);
-}
\ No newline at end of file
+}
+
+// Los listados solo traen la url de la imagen, relativa al servidor del API; el detalle puede traer el contenido
+export const mediaSrc = (mediaFile?: MediaFile): string => {
+    if (mediaFile?.url) return new URL(mediaFile.url, PATH_BASE).toString();
+    if (mediaFile?.attachment) return `data:${mediaFile.contentType};base64,${mediaFile.attachment}`;
+    return "";
+}
@@ -7,6 +7,7 @@ import { RegisterOptions } from "react-hook-form";
 import ButtonComponent from "../../components/Button/Button";
 import { useAnnouncementsService } from "./announcementsService";
 import { useAnnouncementRegister } from "./announcementRegisterService";
+import { mediaSrc } from "../../helper/utils";
 
 export const AnnouncementsFilters = ({
   searchTerm,
@@ -148,7 +149,7 @@ export const AnnouncementTable = ({ announcements, setAnnouncementsData }: Annou
 
 export const AnnouncementImg = ({ announcement }: { announcement: Announcement }) => {
   if (announcement.mediaFile) {
-    return (<img src={`data:${announcement.mediaFile.contentType};base64,${announcement.mediaFile.attachment}`} alt={announcement.cellPhone} />);
+    return (<img src={mediaSrc(announcement.mediaFile)} alt={announcement.cellPhone} />);
   }
 
   const initials = announcement.description.charAt(0).toUpperCase();
@@ -5,6 +5,7 @@ import { Announcement, AnnouncementData, CreateAnnouncementModalProps, MediaFile
 import axiosInstance from "../../context/axiosInstance";
 import axios from "axios";
 import Swal from "sweetalert2";
+import { mediaSrc } from "../../helper/utils";
 
 export const useAnnouncementRegister = ({ setModalCreateAnnouncement, setAnnouncementsData, announcementSelected }: CreateAnnouncementModalProps) => {
     const fileInput = useRef<HTMLInputElement>(null);
@@ -23,7 +24,7 @@ export const useAnnouncementRegister = ({ setModalCreateAnnouncement, setAnnounc
 
     useEffect(() => {
         if (announcementSelected?.data.mediaFile) {
-            setPreviewImg(`data:${announcementSelected.data.mediaFile.contentType};base64,${announcementSelected.data.mediaFile.attachment}`);
+            setPreviewImg(mediaSrc(announcementSelected.data.mediaFile));
             setFileName(announcementSelected.data.mediaFile.fileName);
         }
         if (announcementSelected?.data) {
@@ -5,6 +5,7 @@ import styles from "./styles/cart.module.css";
 import { formatCurrencyCOP } from "../../helper/formatter";
 import { useInvoiceRegister } from "../Invoices/invoiceRegisterService";
 import { toast } from "react-toastify";
+import { mediaSrc } from "../../helper/utils";
 
 export const CartItem = ({ item, onRemove, onUpdateQty }: CartItemProps) => {
   return (
@@ -150,7 +151,7 @@ export const CartSummary = () => {
 
 export const ProductImg = ({ product }: { product: Product }) => {
   if (product.mediaFile) {
-    return (<img src={`data:${product.mediaFile.contentType};base64,${product.mediaFile.attachment}`} alt={product.category} />);
+    return (<img src={mediaSrc(product.mediaFile)} alt={product.category} />);
   }
 
   const initials = product.name.charAt(0).toUpperCase();
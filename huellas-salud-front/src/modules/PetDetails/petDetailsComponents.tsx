@@ -5,6 +5,7 @@ import { memo, useContext, useEffect, useState } from "react";
 import { useHistoryRegister } from "./petDetailsService";
 import ButtonComponent from "../../components/Button/Button";
 import { useUserService } from "../Users/UserManagement/usersService";
+import { mediaSrc } from "../../helper/utils";
 
 export const PetDetails = ({ pet }: { pet: PetData }) => {
   const petData = pet.data;
@@ -14,7 +15,7 @@ export const PetDetails = ({ pet }: { pet: PetData }) => {
     <section className={styles.historyContainer}>
       <aside className={styles.photoPet}>
         <h1>{petData.name}</h1>
-        <img src={`data:${petData.mediaFile?.contentType};base64,${petData.mediaFile?.attachment}`} alt={petData.name} width="200" />
+        <img src={mediaSrc(petData.mediaFile)} alt={petData.name} width="200" />
       </aside>
       <aside className={styles.informationPet}>
         <section className={styles.options}>
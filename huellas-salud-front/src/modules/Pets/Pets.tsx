@@ -12,6 +12,7 @@ import { RegisterOptions } from "react-hook-form";
 import { validationRules } from "./validationRulesPetRegister";
 import { useUserService } from "../Users/UserManagement/usersService";
 import Spinner from "../../components/spinner/Spinner";
+import { mediaSrc } from "../../helper/utils";
 
 // export const FormPetRegister = () => (
 //   <section className={styles.containerFormPet}>
@@ -390,7 +391,7 @@ const PetCard = ({ pets, setPetsData }: PetCardProps) => {
 
 const getPetImage = (pet: Pet) => {
   if (pet.mediaFile) {
-    return `data:${pet.mediaFile.contentType};base64,${pet.mediaFile.attachment}`;
+    return mediaSrc(pet.mediaFile);
   }
   return defaultPetImage;
 }
@@ -5,6 +5,7 @@ import { CreatePetModalProps, MediaFile, Pet, PetData } from "../../helper/types
 import axiosInstance from "../../context/axiosInstance";
 import axios from "axios";
 import Swal from "sweetalert2";
+import { mediaSrc } from "../../helper/utils";
 
 export const usePetRegister = ({ setModalCreatePet, setPetsData, petSelected }: CreatePetModalProps) => {
     const fileInput = useRef<HTMLInputElement>(null);
@@ -23,7 +24,7 @@ export const usePetRegister = ({ setModalCreatePet, setPetsData, petSelected }:
 
     useEffect(() => {
         if (petSelected?.data.mediaFile) {
-            setPreviewImg(`data:${petSelected.data.mediaFile.contentType};base64,${petSelected.data.mediaFile.attachment}`); // Base64 si lo tienes
+            setPreviewImg(mediaSrc(petSelected.data.mediaFile));
             setFileName(petSelected.data.mediaFile.fileName);
         }
         if (petSelected?.data) {
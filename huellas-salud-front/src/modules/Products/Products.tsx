@@ -7,6 +7,7 @@ import { formatCurrencyCOP } from '../../helper/formatter.ts';
 import { CartContext } from '../Cart/types/cart.types.ts';
 import Cart from '../Cart/Cart.tsx';
 import Spinner from '../../components/spinner/Spinner.tsx';
+import { mediaSrc } from "../../helper/utils";
 
 const Products = () => {
 
@@ -237,7 +238,7 @@ const ProductCard = ({ products }: ProductCardProps) => {
 
 const getProductImage = (product: Product) => {
   if (product.mediaFile) {
-    return `data:${product.mediaFile.contentType};base64,${product.mediaFile.attachment}`;
+    return mediaSrc(product.mediaFile);
   }
   return defaultPetImage;
 };
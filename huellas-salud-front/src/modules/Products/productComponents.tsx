@@ -8,6 +8,7 @@ import { productValidationRules } from "./validationRulesProductRegister";
 import { RegisterOptions } from "react-hook-form";
 import ButtonComponent from "../../components/Button/Button";
 import { useProductService } from "./productsService";
+import { mediaSrc } from "../../helper/utils";
 
 export const ProductFilters = ({
   searchTerm,
@@ -168,7 +169,7 @@ export const ProductTable = ({ products, setProductsData }: ProductTableProps) =
 
 export const ProductImg = ({ product }: { product: Product }) => {
   if (product.mediaFile) {
-    return (<img src={`data:${product.mediaFile.contentType};base64,${product.mediaFile.attachment}`} alt={product.category} />);
+    return (<img src={mediaSrc(product.mediaFile)} alt={product.category} />);
   }
 
   const initials = product.name.charAt(0).toUpperCase();
@@ -5,6 +5,7 @@ import { CreateProductModalProps, MediaFile, Product, ProductData } from "../../
 import axiosInstance from "../../context/axiosInstance";
 import axios from "axios";
 import Swal from "sweetalert2";
+import { mediaSrc } from "../../helper/utils";
 
 export const useProductRegister = ({ setModalProduct, setProductsData, productSelected }: CreateProductModalProps) => {
     const fileInput = useRef<HTMLInputElement>(null);
@@ -23,7 +24,7 @@ export const useProductRegister = ({ setModalProduct, setProductsData, productSe
 
     useEffect(() => {
         if (productSelected?.data.mediaFile) {
-            setPreviewImg(`data:${productSelected.data.mediaFile.contentType};base64,${productSelected.data.mediaFile.attachment}`); // Base64 si lo tienes
+            setPreviewImg(mediaSrc(productSelected.data.mediaFile));
             setFileName(productSelected.data.mediaFile.fileName);
         }
         if (productSelected?.data) {
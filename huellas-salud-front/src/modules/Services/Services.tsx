@@ -7,6 +7,7 @@ import { formatCurrencyCOP } from '../../helper/formatter.ts';
 import { SearchBar } from './serviceComponents.tsx';
 import Spinner from '../../components/spinner/Spinner.tsx';
 import { AppointmentModal } from '../Appointments/appointmentComponents.tsx';
+import { mediaSrc } from '../../helper/utils';
 
 const Services = () => {
   const [searchTerm, setSearchTerm] = useState<string>("");
@@ -96,7 +97,7 @@ const ServiceCard = ({ services }: { services?: ServiceData[] }) => {
 
 const getServiceImage = (service: Service) => {
   if (service.mediaFile) {
-    return `data:${service.mediaFile.contentType};base64,${service.mediaFile.attachment}`;
+    return mediaSrc(service.mediaFile);
   }
   return defaultServiceImg;
 }
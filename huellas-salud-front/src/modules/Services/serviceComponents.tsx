@@ -8,6 +8,7 @@ import { serviceValidationRules } from "./validationRulesServiceRegister";
 import { RegisterOptions } from "react-hook-form";
 import ButtonComponent from "../../components/Button/Button";
 import { useServiceService } from "./servicesService";
+import { mediaSrc } from "../../helper/utils";
 
 export const ServiceFilters = ({
   searchTerm,
@@ -151,7 +152,7 @@ export const ServiceTable = ({ services, setServicesData }: ServiceTableProps) =
 
 export const ServiceImg = ({ service }: { service: Service }) => {
   if (service.mediaFile) {
-    return (<img src={`data:${service.mediaFile.contentType};base64,${service.mediaFile.attachment}`} alt={service.name} />);
+    return (<img src={mediaSrc(service.mediaFile)} alt={service.name} />);
   }
 
   const initials = service.name.charAt(0).toUpperCase();
@@ -5,6 +5,7 @@ import { CreateServiceModalProps, MediaFile, Service, ServiceData } from "../../
 import axiosInstance from "../../context/axiosInstance";
 import axios from "axios";
 import Swal from "sweetalert2";
+import { mediaSrc } from "../../helper/utils";
 
 export const useServiceRegister = ({ setModalService, setServicesData, serviceSelected }: CreateServiceModalProps) => {
     const fileInput = useRef<HTMLInputElement>(null);
@@ -23,7 +24,7 @@ export const useServiceRegister = ({ setModalService, setServicesData, serviceSe
 
     useEffect(() => {
         if (serviceSelected?.data.mediaFile) {
-            setPreviewImg(`data:${serviceSelected.data.mediaFile.contentType};base64,${serviceSelected.data.mediaFile.attachment}`);
+            setPreviewImg(mediaSrc(serviceSelected.data.mediaFile));
             setFileName(serviceSelected.data.mediaFile.fileName);
         }
         if (serviceSelected?.data) {
@@ -4,6 +4,7 @@ import { roles, statusOptions, tableColumns } from "./usersUtils";
 import { useUserService } from "./usersService";
 import { FormUser } from "../UserRegister/userRegisterComponenets";
 import styles from "./users.module.css";
+import { mediaSrc } from "../../../helper/utils";
 
 export const UserFilters = ({
     searchTerm,
@@ -170,7 +171,7 @@ export const UserTable = ({ users, setUsersData }: UserTableProps) => {
 export const UserAvatar = ({ user }: { user: User }) => {
 
     if (user.mediaFile) {
-        return (<img src={`data:${user.mediaFile.contentType};base64,${user.mediaFile.attachment}`} alt={user.name} />);
+        return (<img src={mediaSrc(user.mediaFile)} alt={user.name} />);
     }
 
     const initials = user.name.charAt(0).toUpperCase() + user.lastName.charAt(0).toUpperCase();
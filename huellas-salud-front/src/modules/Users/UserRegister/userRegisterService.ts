@@ -5,6 +5,7 @@ import { AuthContext, CreateUserModalProps, MediaFile, User, UserData } from "..
 import axiosInstance from "../../../context/axiosInstance";
 import axios from "axios";
 import Swal from "sweetalert2";
+import { mediaSrc } from "../../../helper/utils";
 
 export const useUserRegister = ({ setModalCreate, setUsersData, userSelected }: CreateUserModalProps) => {
 
@@ -25,7 +26,7 @@ export const useUserRegister = ({ setModalCreate, setUsersData, userSelected }:
 
     useEffect(() => {
         if (userSelected?.data.mediaFile) {
-            setPreviewImg(`data:${userSelected.data.mediaFile.contentType};base64,${userSelected.data.mediaFile.attachment}`); // Base64 si lo tienes
+            setPreviewImg(mediaSrc(userSelected.data.mediaFile));
             setFileName(userSelected.data.mediaFile.fileName);
         }
         if (userSelected?.data) {